@@ -18,6 +18,8 @@ package com.android.cts.verifier.audio;
 
 import android.util.Log;
 
+import com.android.cts.verifier.audio.wavelib.DspFftServer;
+
 
 public class Correlation {
 
@@ -149,12 +151,10 @@ public class Correlation {
         }
 
         if (sumsquared>0) {
+            //zero padded to twice the length, so the circular autocorrelation doesn't wrap around
+            DspFftServer fftServer = DspFftServer.getInstance(Util.nextPowerOfTwo(2 * N));
+            fftServer.autocorrelation(data, dataOut);
             for (int i = 0; i < N; i++) {
-                dataOut[i] = 0;
-                for (int j = 0; j < N - i; j++) {
-
-                    dataOut[i] += data[j] * data[i + j];
-                }
                 dataOut[i] = dataOut[i] / sumsquared;
             }
             status = true;
@@ -1,7 +1,5 @@
 package com.android.cts.verifier.audio;
 
-import org.apache.commons.math.complex.Complex;
-
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -156,16 +154,7 @@ public class WavAnalyzer {
       }
       for (int i = 0; i < Common.PIP_NUM; i++) {
         double freq = Common.FREQUENCIES_ORIGINAL[i];
-        Complex fourierCoeff = new Complex(0, 0);
-        final Complex rotator = new Complex(0,
-            -2.0 * Math.PI * freq / sampleRate).exp();
-        Complex phasor = new Complex(1, 0);
-        for (int j = 0; j < noisePoints.length; j++) {
-          fourierCoeff = fourierCoeff.add(phasor.multiply(noisePoints[j]));
-          phasor = phasor.multiply(rotator);
-        }
-        fourierCoeff = fourierCoeff.multiply(1.0 / noisePoints.length);
-        noisePower[i][s] = fourierCoeff.multiply(fourierCoeff.conjugate()).abs();
+        noisePower[i][s] = fourierPower(noisePoints, freq);
       }
     }
     for (int i = 0; i < Common.PIP_NUM; i++) {
@@ -193,18 +182,9 @@ public class WavAnalyzer {
       for (int j = 0; j < Common.WINDOW_FOR_RECORDER.length; j++) {
         pipPoints[j] = pipPoints[j] * Common.WINDOW_FOR_RECORDER[j];
       }
-      Complex fourierCoeff = new Complex(0, 0);
-      final Complex rotator = new Complex(0,
-          -2.0 * Math.PI * Common.FREQUENCIES[i] / sampleRate).exp();
-      Complex phasor = new Complex(1, 0);
-      for (int j = 0; j < pipPoints.length; j++) {
-        fourierCoeff = fourierCoeff.add(phasor.multiply(pipPoints[j]));
-        phasor = phasor.multiply(rotator);
-      }
-      fourierCoeff = fourierCoeff.multiply(1.0 / pipPoints.length);
       int j = Common.ORDER[i];
       power[j % Common.PIP_NUM][j / Common.PIP_NUM] =
-          fourierCoeff.multiply(fourierCoeff.conjugate()).abs();
+          fourierPower(pipPoints, Common.FREQUENCIES[i]);
     }
 
     // Calculate median of trials.
@@ -228,11 +208,33 @@ public class WavAnalyzer {
     double[] dataCut = new double[fftSize - zeroPad];
     System.arraycopy(data, 0, dataCut, 0, fftSize - zeroPad);
     double[] xCorrDataPrefix = Util.computeCrossCorrelation(
-        Util.padZeros(Util.toComplex(dataCut), fftSize),
-        Util.padZeros(Util.toComplex(Common.PREFIX_FOR_RECORDER), fftSize));
+        dataCut, Common.PREFIX_FOR_RECORDER, fftSize);
     return Util.findMaxIndex(xCorrDataPrefix);
   }
 
+  /**
+   * Calculate the power of the Fourier coefficient of the data at a single frequency, by rotating
+   * a phasor sample by sample.
+   */
+  private double fourierPower(double[] points, double freq) {
+    final double rotatorRe = Math.cos(-2.0 * Math.PI * freq / sampleRate);
+    final double rotatorIm = Math.sin(-2.0 * Math.PI * freq / sampleRate);
+    double phasorRe = 1;
+    double phasorIm = 0;
+    double coeffRe = 0;
+    double coeffIm = 0;
+    for (int j = 0; j < points.length; j++) {
+      coeffRe += phasorRe * points[j];
+      coeffIm += phasorIm * points[j];
+      final double re = phasorRe * rotatorRe - phasorIm * rotatorIm;
+      phasorIm = phasorRe * rotatorIm + phasorIm * rotatorRe;
+      phasorRe = re;
+    }
+    coeffRe /= points.length;
+    coeffIm /= points.length;
+    return coeffRe * coeffRe + coeffIm * coeffIm;
+  }
+
   double[] getDB() {
     return dB;
   }
@@ -16,14 +16,45 @@
 
 package com.android.cts.verifier.audio.wavelib;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Radix-2 FFT of {@link DspBufferComplex} buffers, with correlations of real signals built on it.
+ * Twiddle factors and the bit-reversal permutation are computed once per size.
+ */
 public class DspFftServer {
+    // Servers shared by getInstance(), by size.
+    private static final Map<Integer, DspFftServer> sInstances =
+            new HashMap<Integer, DspFftServer>();
+
     private int mN = 0;
     private int mOrder = 0;
 
     DspBufferDouble mCos;
     DspBufferDouble mSin;
+    // Pairs of indices swapped by the bit-reversal permutation.
+    private int[] mBitReverseSwaps;
+    // Work buffer of the correlations, allocated on first use.
+    private DspBufferComplex mWork;
     public boolean isInitialized = false;
 
+    /**
+     * Returns a server of the given size, shared with all other callers of this method, so its
+     * tables and work buffer are only allocated once. Its correlation methods may be called
+     * from any thread, but buffers passed to {@link #fft} must not be shared.
+     */
+    public static DspFftServer getInstance(int size) {
+        synchronized (sInstances) {
+            DspFftServer server = sInstances.get(size);
+            if (server == null) {
+                server = new DspFftServer(size);
+                sInstances.put(size, server);
+            }
+            return server;
+        }
+    }
+
     public DspFftServer(int size) {
         init(size);
     }
@@ -40,6 +71,8 @@ public class DspFftServer {
                 mCos.mData[i] = Math.cos(-2 * Math.PI * i / mN);
                 mSin.mData[i] = Math.sin(-2 * Math.PI * i / mN);
             }
+            initBitReverse();
+            mWork = null;
             status = true;
         } else {
             mN = 0;
@@ -49,11 +82,11 @@ public class DspFftServer {
         return status;
     }
 
-    public void fft(DspBufferComplex r, int sign) {
-        int ii, jj, kk, n1, n2, aa;
-        double cc, ss, t1, t2;
+    private void initBitReverse() {
+        int ii, jj, n1, n2;
+        int swaps = 0;
+        int[] pairs = new int[mN];
 
-        // Bit-reverse
         jj = 0;
         n2 = mN / 2;
         for (ii = 1; ii < mN - 1; ii++) {
@@ -65,14 +98,33 @@ public class DspFftServer {
             jj = jj + n1;
 
             if (ii < jj) {
-                t1 =  r.mReal[ii];
-                r.mReal[ii] = r.mReal[jj];
-                r.mReal[jj] = t1;
-                t1 = r.mImag[ii];
-                r.mImag[ii] = r.mImag[jj];
-                r.mImag[jj] = t1;
+                pairs[swaps++] = ii;
+                pairs[swaps++] = jj;
             }
         }
+        mBitReverseSwaps = new int[swaps];
+        System.arraycopy(pairs, 0, mBitReverseSwaps, 0, swaps);
+    }
+
+    /**
+     * In place FFT of the given buffer, forward for sign 1 and inverse, without the 1/N
+     * scaling, for sign -1.
+     */
+    public void fft(DspBufferComplex r, int sign) {
+        int ii, jj, kk, n1, n2, aa;
+        double cc, ss, t1, t2;
+
+        // Bit-reverse
+        for (ii = 0; ii < mBitReverseSwaps.length; ii += 2) {
+            jj = mBitReverseSwaps[ii];
+            kk = mBitReverseSwaps[ii + 1];
+            t1 = r.mReal[jj];
+            r.mReal[jj] = r.mReal[kk];
+            r.mReal[kk] = t1;
+            t1 = r.mImag[jj];
+            r.mImag[jj] = r.mImag[kk];
+            r.mImag[kk] = t1;
+        }
 
         // FFT
         n1 = 0;
@@ -97,4 +149,88 @@ public class DspFftServer {
             }
         }
     }
+
+    /**
+     * Computes the circular cross correlation out[k] = sum_j x[(j + k) % N] * y[j] of two real
+     * signals, zero padded or truncated to the size N of this server. Both signals are
+     * transformed together, as the real and imaginary parts of one complex signal.
+     *
+     * @param out the first min(N, out.length) values of the correlation.
+     */
+    public synchronized void crossCorrelation(double[] x, double[] y, double[] out) {
+        DspBufferComplex w = getWork();
+        copyPadded(x, w.mReal);
+        copyPadded(y, w.mImag);
+        fft(w, 1);
+
+        // With Z the transform of x + iy, the transforms of x and y are
+        // X[k] = (Z[k] + conj(Z[N - k])) / 2 and Y[k] = (Z[k] - conj(Z[N - k])) / 2i,
+        // and X[N - k] conj(Y[N - k]) = conj(X[k] conj(Y[k])) as x and y are real.
+        for (int k = 0; k <= mN / 2; k++) {
+            int m = (mN - k) & (mN - 1);
+            double a = w.mReal[k];
+            double b = w.mImag[k];
+            double c = w.mReal[m];
+            double d = w.mImag[m];
+            double xr = (a + c) / 2;
+            double xi = (b - d) / 2;
+            double yr = (b + d) / 2;
+            double yi = (c - a) / 2;
+            double pr = xr * yr + xi * yi;
+            double pi = xi * yr - xr * yi;
+            w.mReal[k] = pr;
+            w.mImag[k] = pi;
+            w.mReal[m] = pr;
+            w.mImag[m] = -pi;
+        }
+
+        fft(w, -1);
+        copyScaled(w.mReal, out);
+    }
+
+    /**
+     * Computes the circular autocorrelation out[k] = sum_j x[(j + k) % N] * x[j] of a real
+     * signal, zero padded or truncated to the size N of this server. For the linear
+     * autocorrelation, use a server at least twice the length of the signal.
+     *
+     * @param out the first min(N, out.length) values of the autocorrelation.
+     */
+    public synchronized void autocorrelation(double[] x, double[] out) {
+        DspBufferComplex w = getWork();
+        copyPadded(x, w.mReal);
+        for (int i = 0; i < mN; i++) {
+            w.mImag[i] = 0;
+        }
+        fft(w, 1);
+
+        for (int k = 0; k < mN; k++) {
+            w.mReal[k] = w.mReal[k] * w.mReal[k] + w.mImag[k] * w.mImag[k];
+            w.mImag[k] = 0;
+        }
+
+        fft(w, -1);
+        copyScaled(w.mReal, out);
+    }
+
+    private DspBufferComplex getWork() {
+        if (mWork == null) {
+            mWork = new DspBufferComplex(mN);
+        }
+        return mWork;
+    }
+
+    private void copyPadded(double[] data, double[] padded) {
+        int length = Math.min(data.length, mN);
+        System.arraycopy(data, 0, padded, 0, length);
+        for (int i = length; i < mN; i++) {
+            padded[i] = 0;
+        }
+    }
+
+    private void copyScaled(double[] data, double[] out) {
+        int length = Math.min(out.length, mN);
+        for (int i = 0; i < length; i++) {
+            out[i] = data[i] / mN;
+        }
+    }
 }
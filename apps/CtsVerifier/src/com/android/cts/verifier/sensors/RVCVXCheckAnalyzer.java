@@ -49,7 +49,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.opengl.GLES20;
 import javax.microedition.khronos.opengles.GL10;
@@ -70,6 +76,12 @@ public class RVCVXCheckAnalyzer {
     private static final boolean TRACE_VIDEO_ANALYSIS = false;
     private static final double DECIMATION_FPS_TARGET = 15.0;
     private static final double MIN_VIDEO_LENGTH_SEC = 10;
+    private static final int MAX_VIDEO_ANALYSIS_THREADS = 4;
+
+    // range and resolution of the time offset search
+    private static final double MIN_DELTA_T_SEC = -2.0;
+    private static final double DELTA_T_STEP_SEC = 0.01;
+    private static final int DELTA_T_STEPS = 400;
 
     RVCVXCheckAnalyzer(String path)
     {
@@ -221,10 +233,6 @@ public class RVCVXCheckAnalyzer {
             nslog = loadSensorLog(srecs);
         }
 
-        // Gradient descent will have faster performance than this simple search,
-        // but the performance is dominated by the vision part, so it is not very necessary.
-        double delta_t;
-        double min_rms = Double.MAX_VALUE;
         double min_delta_t =0.;
         double min_yaw_offset =0.;
 
@@ -234,15 +242,13 @@ public class RVCVXCheckAnalyzer {
         }
 
         // find optimal offset
-        for (delta_t = -2.0; delta_t<2.0; delta_t +=0.01) {
-            double rms;
-            resampleSensorLog(srecs, vrecs, delta_t, 0.0, srecs2);
-            rms = Math.sqrt(calcSqrErr(vrecs, srecs2, 0)+ calcSqrErr(vrecs, srecs2, 1));
-            if (rms < min_rms) {
-                min_rms = rms;
-                min_delta_t = delta_t;
-                min_yaw_offset = vrecs.get(0).yaw - srecs2.get(0).yaw;
-            }
+        AttitudeArrays sarr = new AttitudeArrays(srecs);
+        AttitudeArrays varr = new AttitudeArrays(vrecs);
+        int min_step = findMinErrStep(sarr, varr);
+        if (min_step >= 0) {
+            min_delta_t = MIN_DELTA_T_SEC + min_step * DELTA_T_STEP_SEC;
+            resampleSensorLog(srecs, vrecs, min_delta_t, 0.0, srecs2);
+            min_yaw_offset = vrecs.get(0).yaw - srecs2.get(0).yaw;
         }
         // sample at optimal offset
         resampleSensorLog(srecs, vrecs, min_delta_t, min_yaw_offset, srecs2);
@@ -382,6 +388,34 @@ public class RVCVXCheckAnalyzer {
     }
 
 
+    /**
+     *  Attitude records in time roll pitch yaw format, one array per field, for the offset search
+     *  which reads them many times.
+     */
+    private static class AttitudeArrays {
+        final int size;
+        final double [] time;
+        final double [] roll;
+        final double [] pitch;
+        final double [] yaw;
+
+        // ctor
+        AttitudeArrays(ArrayList<AttitudeRec> recs) {
+            size = recs.size();
+            time = new double[size];
+            roll = new double[size];
+            pitch = new double[size];
+            yaw = new double[size];
+            for (int i = 0; i < size; ++i) {
+                AttitudeRec rec = recs.get(i);
+                time[i] = rec.time;
+                roll[i] = rec.roll;
+                pitch[i] = rec.pitch;
+                yaw[i] = rec.yaw;
+            }
+        }
+    }
+
     /**
      *  Load the sensor log in (time Roll-pitch-yaw) format to a ArrayList<AttitudeRec>
      *
@@ -708,6 +742,67 @@ public class RVCVXCheckAnalyzer {
         return sum/ra.size();
     }
 
+    /**
+     *  Find the time offset step with the minimum roll and pitch error between the video
+     *  attitudes and the sensor attitudes resampled at their time plus the offset, trying
+     *  every step.
+     *
+     * @param srec  sensor attitudes
+     * @param vrec  video attitudes
+     * @return the first step with the minimum error, or -1 if no error could be computed
+     */
+    private int findMinErrStep(AttitudeArrays srec, AttitudeArrays vrec) {
+        int min_step = -1;
+        double min_err = Double.MAX_VALUE;
+        for (int i = 0; i < DELTA_T_STEPS; i++) {
+            double err = calcOffsetSqrErr(srec, vrec, MIN_DELTA_T_SEC + i * DELTA_T_STEP_SEC);
+            if (err < min_err) {
+                min_err = err;
+                min_step = i;
+            }
+        }
+        return min_step;
+    }
+
+    /**
+     *  Calculate the sum of the roll and pitch mean square errors between the video attitudes
+     *  and the sensor attitudes resampled at their time plus delta_t, like calcSqrErr() does
+     *  after resampleSensorLog(), but without storing the resampled attitudes.
+     *
+     * @param srec     sensor attitudes
+     * @param vrec     video attitudes, serving as time base
+     * @param delta_t  offset in time before resample
+     * @return Sum of the roll and pitch mean square errors
+     */
+    private double calcOffsetSqrErr(AttitudeArrays srec, AttitudeArrays vrec, double delta_t) {
+        int i;
+        int j = -1;
+        double sum = 0.0;
+        for(i=0; i<vrec.size; i++) {
+            double time = vrec.time[i] + delta_t;
+
+            while(j<srec.size-1 && srec.time[j+1] < time) j++;
+
+            double roll;
+            double pitch;
+            if (j == -1 || j == srec.size-1) {
+                // use first or last, with the values AttitudeRec.assign() copies
+                int k = j == -1 ? 0 : j;
+                roll = srec.time[k];
+                pitch = srec.pitch[k];
+            } else {
+                // do linear resample
+                double alpha = (time - srec.time[j])/((srec.time[j+1] - srec.time[j]));
+                roll = (1-alpha) * srec.roll[j] + alpha * srec.roll[j+1];
+                pitch = (1-alpha) * srec.pitch[j] + alpha * srec.pitch[j+1];
+            }
+            double droll = vrec.roll[i] - roll;
+            double dpitch = vrec.pitch[i] - pitch;
+            sum += droll*droll + dpitch*dpitch;
+        }
+        return sum/vrec.size;
+    }
+
     /**
      * Debugging helper function. Dump the error between two time aligned ArrayList<AttitudeRec>'s
      *
@@ -797,7 +892,6 @@ public class RVCVXCheckAnalyzer {
 
 
         Mat frame;
-        Mat gray = new Mat();
         int i = -1;
 
         Size frameSize = videoDecoder.getSize();
@@ -815,96 +909,65 @@ public class RVCVXCheckAnalyzer {
 
         float fc = (float)(meta.frameWidth/2.0/Math.tan(meta.fovWidth/2.0));
         Mat camMat = cameraMatrix(fc, new Size(frameSize.width/2, frameSize.height/2));
-        MatOfDouble coeff = new MatOfDouble(); // dummy
-
-        MatOfPoint2f centers = new MatOfPoint2f();
-        MatOfPoint3f grid = asymmetricalCircleGrid(patternSize);
-        Mat rvec = new MatOfFloat();
-        Mat tvec = new MatOfFloat();
-
-        MatOfPoint2f reprojCenters = new MatOfPoint2f();
 
         if (LOCAL_LOGV) {
             Log.v(TAG, "Camera Mat = \n" + camMat.dump());
         }
 
-        long startTime = System.nanoTime();
-        long [] ts = new long[1];
-
-        while ((frame = videoDecoder.getFrame(ts)) !=null) {
-            if (LOCAL_LOGV) {
-                Log.v(TAG, "got a frame " + i);
-            }
-
-            if (use_timestamp && ts[0] == -1) {
-                use_timestamp = false;
-            }
-
-            // has to be in front, as there are cases where execution
-            // will skip the later part of this while
-            i++;
-
-            // convert to gray manually as by default findCirclesGridDefault uses COLOR_BGR2GRAY
-            Imgproc.cvtColor(frame, gray, Imgproc.COLOR_RGB2GRAY);
-
-            boolean foundPattern = Calib3d.findCirclesGrid(
-                    gray,  patternSize, centers, Calib3d.CALIB_CB_ASYMMETRIC_GRID);
-
-            if (!foundPattern) {
-                // skip to next frame
-                continue;
-            }
+        final FrameAnalyzer frameAnalyzer = new FrameAnalyzer(patternSize, camMat, frameSize);
 
-            if (OUTPUT_DEBUG_IMAGE) {
-                Calib3d.drawChessboardCorners(frame, patternSize, centers, true);
-            }
+        // frames are analyzed on a pool of threads, with a bounded number of frames waiting to
+        // be analyzed, and the results are collected in frame order
+        int nThreads = Math.min(Runtime.getRuntime().availableProcessors(),
+                MAX_VIDEO_ANALYSIS_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        ArrayDeque<Future<AttitudeRec>> pending = new ArrayDeque<>();
 
-            // figure out the extrinsic parameters using real ground truth 3D points and the pixel
-            // position of blobs found in findCircleGrid, an estimated camera matrix and
-            // no-distortion are assumed.
-            boolean foundSolution =
-                    Calib3d.solvePnP(grid, centers, camMat, coeff, rvec, tvec,
-                            false, Calib3d.CV_ITERATIVE);
+        long startTime = System.nanoTime();
+        long [] ts = new long[1];
 
-            if (!foundSolution) {
-                // skip to next frame
+        try {
+            while ((frame = videoDecoder.getFrame(ts)) !=null) {
                 if (LOCAL_LOGV) {
-                    Log.v(TAG, "cannot find pnp solution in frame " + i + ", skipped.");
+                    Log.v(TAG, "got a frame " + i);
                 }
-                continue;
-            }
 
-            // reproject points to for evaluation of result accuracy of solvePnP
-            Calib3d.projectPoints(grid, rvec, tvec, camMat, coeff, reprojCenters);
-
-            // error is evaluated in norm2, which is real error in pixel distance / sqrt(2)
-            double error = Core.norm(centers, reprojCenters, Core.NORM_L2);
+                if (use_timestamp && ts[0] == -1) {
+                    use_timestamp = false;
+                }
 
-            if (LOCAL_LOGV) {
-                Log.v(TAG, "Found attitude, re-projection error = " + error);
-            }
+                i++;
 
-            // if error is reasonable, add it into the results. use ratio to frame height to avoid
-            // discriminating higher definition videos
-            if (error < REPROJECTION_THREASHOLD_RATIO * frameSize.height) {
-                double [] rv = new double[3];
-                double timestamp;
+                // convert to gray manually as by default findCirclesGridDefault uses
+                // COLOR_BGR2GRAY. The decoder reuses the frame, so it is converted before
+                // getting the next one.
+                final Mat gray = new Mat();
+                Imgproc.cvtColor(frame, gray, Imgproc.COLOR_RGB2GRAY);
+                final Mat debugFrame = OUTPUT_DEBUG_IMAGE ? frame.clone() : null;
 
-                rvec.get(0,0, rv);
+                final int index = i;
+                final double timestamp;
                 if (use_timestamp) {
                     timestamp = (double)ts[0] / 1e6;
                 } else {
                     timestamp = (double) i / meta.fps;
                 }
-                if (LOCAL_LOGV) Log.v(TAG, String.format("Added frame %d  ts = %f", i, timestamp));
-                recs.add(new AttitudeRec(timestamp, rodr2rpy(rv)));
-            }
 
-            if (OUTPUT_DEBUG_IMAGE) {
-                Calib3d.drawChessboardCorners(frame, patternSize, reprojCenters, true);
-                Imgcodecs.imwrite(Environment.getExternalStorageDirectory().getPath()
-                        + "/RVCVRecData/DebugCV/img" + i + ".png", frame);
+                if (pending.size() >= 2 * nThreads) {
+                    addFrameResult(pending.poll(), recs);
+                }
+                pending.add(executor.submit(new Callable<AttitudeRec>() {
+                    @Override
+                    public AttitudeRec call() {
+                        return frameAnalyzer.analyze(gray, debugFrame, index, timestamp);
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                addFrameResult(pending.poll(), recs);
             }
+        } finally {
+            executor.shutdownNow();
         }
 
         if (LOCAL_LOGV) {
@@ -923,6 +986,129 @@ public class RVCVXCheckAnalyzer {
         return i;
     }
 
+    /**
+     * Wait for the analysis of a frame and add its attitude, if any, to the results
+     *
+     * @param result  the pending analysis of the frame
+     * @param recs    output ArrayList of AttitudeRec
+     */
+    private static void addFrameResult(Future<AttitudeRec> result, ArrayList<AttitudeRec> recs) {
+        try {
+            AttitudeRec rec = result.get();
+            if (rec != null) {
+                recs.add(rec);
+            }
+        } catch (InterruptedException e) {
+            // do not report results missing this frame
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted when waiting for frame analysis", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Frame analysis failed", e.getCause());
+        }
+    }
+
+    /**
+     * Finds the attitude of the camera in single video frames. Frames may be analyzed
+     * concurrently, as each analysis uses its own OpenCV output Mats.
+     */
+    private class FrameAnalyzer {
+        private final Size mPatternSize;
+        private final MatOfPoint3f mGrid;
+        private final Mat mCamMat;
+        private final MatOfDouble mCoeff = new MatOfDouble(); // dummy
+        private final Size mFrameSize;
+
+        FrameAnalyzer(Size patternSize, Mat camMat, Size frameSize) {
+            mPatternSize = patternSize;
+            mGrid = asymmetricalCircleGrid(patternSize);
+            mCamMat = camMat;
+            mFrameSize = frameSize;
+        }
+
+        /**
+         * Analyze a frame and release it
+         *
+         * @param gray       gray scale frame
+         * @param frame      color frame to draw debug images on, or null
+         * @param i          index of the frame
+         * @param timestamp  time of the frame, in seconds
+         * @return the attitude found in the frame, or null if there is no valid one
+         */
+        AttitudeRec analyze(Mat gray, Mat frame, int i, double timestamp) {
+            MatOfPoint2f centers = new MatOfPoint2f();
+            Mat rvec = new MatOfFloat();
+            Mat tvec = new MatOfFloat();
+            MatOfPoint2f reprojCenters = new MatOfPoint2f();
+            try {
+                boolean foundPattern = Calib3d.findCirclesGrid(
+                        gray,  mPatternSize, centers, Calib3d.CALIB_CB_ASYMMETRIC_GRID);
+
+                if (!foundPattern) {
+                    // skip to next frame
+                    return null;
+                }
+
+                if (OUTPUT_DEBUG_IMAGE) {
+                    Calib3d.drawChessboardCorners(frame, mPatternSize, centers, true);
+                }
+
+                // figure out the extrinsic parameters using real ground truth 3D points and the
+                // pixel position of blobs found in findCircleGrid, an estimated camera matrix and
+                // no-distortion are assumed.
+                boolean foundSolution =
+                        Calib3d.solvePnP(mGrid, centers, mCamMat, mCoeff, rvec, tvec,
+                                false, Calib3d.CV_ITERATIVE);
+
+                if (!foundSolution) {
+                    // skip to next frame
+                    if (LOCAL_LOGV) {
+                        Log.v(TAG, "cannot find pnp solution in frame " + i + ", skipped.");
+                    }
+                    return null;
+                }
+
+                // reproject points to for evaluation of result accuracy of solvePnP
+                Calib3d.projectPoints(mGrid, rvec, tvec, mCamMat, mCoeff, reprojCenters);
+
+                // error is evaluated in norm2, which is real error in pixel distance / sqrt(2)
+                double error = Core.norm(centers, reprojCenters, Core.NORM_L2);
+
+                if (LOCAL_LOGV) {
+                    Log.v(TAG, "Found attitude, re-projection error = " + error);
+                }
+
+                AttitudeRec rec = null;
+                // if error is reasonable, add it into the results. use ratio to frame height to
+                // avoid discriminating higher definition videos
+                if (error < REPROJECTION_THREASHOLD_RATIO * mFrameSize.height) {
+                    double [] rv = new double[3];
+
+                    rvec.get(0,0, rv);
+                    if (LOCAL_LOGV) {
+                        Log.v(TAG, String.format("Added frame %d  ts = %f", i, timestamp));
+                    }
+                    rec = new AttitudeRec(timestamp, rodr2rpy(rv));
+                }
+
+                if (OUTPUT_DEBUG_IMAGE) {
+                    Calib3d.drawChessboardCorners(frame, mPatternSize, reprojCenters, true);
+                    Imgcodecs.imwrite(Environment.getExternalStorageDirectory().getPath()
+                            + "/RVCVRecData/DebugCV/img" + i + ".png", frame);
+                }
+                return rec;
+            } finally {
+                gray.release();
+                if (frame != null) {
+                    frame.release();
+                }
+                centers.release();
+                rvec.release();
+                tvec.release();
+                reprojCenters.release();
+            }
+        }
+    }
+
     /**
      * OpenCV for Android have not support the VideoCapture from file
      * This is a make shift solution before it is supported.
@@ -42,8 +42,16 @@ public class DeviceReportLog extends ReportLog {
     private static final int INST_STATUS_IN_PROGRESS = 2;
 
     private ReportLogDeviceInfoStore store;
+    private MetricsFile mMetricsFile;
 
     public DeviceReportLog(String reportLogName, String streamName) {
+        this(reportLogName, streamName, false);
+    }
+
+    /**
+     * @param compressMetrics whether to gzip the {@link MetricsFile} of the report log.
+     */
+    public DeviceReportLog(String reportLogName, String streamName, boolean compressMetrics) {
         super(reportLogName, streamName);
         try {
             // dir value must match the src-dir value configured in ReportLogCollector target
@@ -54,9 +62,13 @@ public class DeviceReportLog extends ReportLog {
             } else if (!dir.mkdirs() && !dir.isDirectory()) {
                 throw new IOException("Cannot create directory for device info files");
             } else {
-                File jsonFile = new File(dir, mReportLogName + ".reportlog.json");
+                File jsonFile = new File(dir, mReportLogName + ReportLog.JSON_LINES_EXTENSION);
                 store = new ReportLogDeviceInfoStore(jsonFile, mStreamName);
                 store.open();
+                File metricsFile =
+                        new File(dir, MetricsFile.getFileName(mReportLogName, compressMetrics));
+                mMetricsFile = new MetricsFile(metricsFile);
+                setMetricsFileName(metricsFile.getName());
             }
         } catch (Exception e) {
             Log.e(TAG, "Could not create report log file.", e);
@@ -70,6 +82,7 @@ public class DeviceReportLog extends ReportLog {
     public void addValue(String source, String message, double value, ResultType type,
             ResultUnit unit) {
         super.addValue(source, message, value, type, unit);
+        writeMetric(source, message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -83,6 +96,7 @@ public class DeviceReportLog extends ReportLog {
     @Override
     public void addValue(String message, double value, ResultType type, ResultUnit unit) {
         super.addValue(message, value, type, unit);
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -97,6 +111,7 @@ public class DeviceReportLog extends ReportLog {
     public void addValues(String source, String message, double[] values, ResultType type,
             ResultUnit unit) {
         super.addValues(source, message, values, type, unit);
+        writeMetric(source, message, values, type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -110,6 +125,7 @@ public class DeviceReportLog extends ReportLog {
     @Override
     public void addValues(String message, double[] values, ResultType type, ResultUnit unit) {
         super.addValues(message, values, type, unit);
+        writeMetric("", message, values, type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -122,6 +138,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, int value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -134,6 +151,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, long value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -146,6 +164,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, float value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -182,6 +201,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, int[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -194,6 +214,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, long[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -206,6 +227,7 @@ public class DeviceReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, float[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -237,6 +259,18 @@ public class DeviceReportLog extends ReportLog {
         }
     }
 
+    /**
+     * Adds the statistics of a {@link StatSketch} to the report.
+     */
+    @Override
+    public void addValues(String message, StatSketch sketch, ResultType type, ResultUnit unit) {
+        try {
+            store.addSketchResult(message, sketch, type, unit);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not log metric.", e);
+        }
+    }
+
     /**
      * Sets the summary double metric of the report.
      *
@@ -245,6 +279,7 @@ public class DeviceReportLog extends ReportLog {
     @Override
     public void setSummary(String message, double value, ResultType type, ResultUnit unit) {
         super.setSummary(message, value, type, unit);
+        writeMetric(mSummary.getSource(), message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -252,6 +287,25 @@ public class DeviceReportLog extends ReportLog {
         }
     }
 
+    private void closeMetricsFile() throws IOException {
+        if (mMetricsFile != null) {
+            mMetricsFile.close();
+            mMetricsFile = null;
+        }
+    }
+
+    private void writeMetric(String source, String message, double[] values, ResultType type,
+            ResultUnit unit) {
+        if (mMetricsFile == null) {
+            return;
+        }
+        try {
+            mMetricsFile.write(mStreamName, new Metric(source, message, values, type, unit));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not log metric.", e);
+        }
+    }
+
     /**
      * Closes report file and submits report to instrumentation.
      */
@@ -259,6 +313,7 @@ public class DeviceReportLog extends ReportLog {
         Log.i(TAG, "Submit");
         try {
             store.close();
+            closeMetricsFile();
             Bundle output = new Bundle();
             output.putString(RESULT, serialize(this));
             instrumentation.sendStatus(INST_STATUS_IN_PROGRESS, output);
@@ -278,6 +333,7 @@ public class DeviceReportLog extends ReportLog {
         Log.i(TAG, "Submit");
         try {
             store.close();
+            closeMetricsFile();
         } catch (IOException e) {
             Log.e(TAG, "Submit Failed", e);
         }
@@ -17,13 +17,18 @@ package com.android.compatibility.common.util;
 
 import android.util.JsonWriter;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 
+/**
+ * Stores the metrics of a report log stream as one line of a JSON lines file, see
+ * {@link ReportLog#JSON_LINES_EXTENSION}.
+ * <p/>
+ * Each stream is appended to the file without reading the streams already in it, so submitting
+ * a stream costs the same however many streams were submitted before.
+ */
 public class ReportLogDeviceInfoStore extends DeviceInfoStore {
 
     private final String mStreamName;
@@ -41,57 +46,20 @@ public class ReportLogDeviceInfoStore extends DeviceInfoStore {
     @Override
     public void open() throws IOException {
         // Write new metrics to a temp file to avoid invalid JSON files due to failed tests.
-        BufferedWriter formatWriter;
-        tempJsonFile.createNewFile();
-        formatWriter = new BufferedWriter(new FileWriter(tempJsonFile));
-        if (mJsonFile.exists()) {
-            BufferedReader jsonReader = new BufferedReader(new FileReader(mJsonFile));
-            String currentLine;
-            String nextLine = jsonReader.readLine();
-            while ((currentLine = nextLine) != null) {
-                nextLine = jsonReader.readLine();
-                if (nextLine == null && currentLine.charAt(currentLine.length() - 1) == '}') {
-                    // Reopen overall JSON object to write new metrics.
-                    currentLine = currentLine.substring(0, currentLine.length() - 1) + ",";
-                }
-                // Copy to temp file directly to avoid large metrics string in memory.
-                formatWriter.write(currentLine, 0, currentLine.length());
-            }
-            jsonReader.close();
-        } else {
-            formatWriter.write("{", 0 , 1);
-        }
-        // Start new JSON object for new metrics.
-        formatWriter.write("\"" + mStreamName + "\":", 0, mStreamName.length() + 3);
-        formatWriter.flush();
-        formatWriter.close();
-        mJsonWriter = new JsonWriter(new FileWriter(tempJsonFile, true));
+        mJsonWriter = new JsonWriter(new BufferedWriter(new FileWriter(tempJsonFile)));
         mJsonWriter.beginObject();
     }
 
     /**
-     * Closes the writer.
+     * Closes the writer and appends the metric stream to the JSON lines file.
      */
     @Override
     public void close() throws IOException {
         // Close JSON Writer.
         mJsonWriter.endObject();
         mJsonWriter.close();
-        // Close overall JSON Object.
-        try (BufferedWriter formatWriter = new BufferedWriter(new FileWriter(tempJsonFile, true))) {
-            formatWriter.write("}", 0, 1);
-        }
-        // Copy metrics from temp file and delete temp file.
-        mJsonFile.createNewFile();
-        try (
-                BufferedReader jsonReader = new BufferedReader(new FileReader(tempJsonFile));
-                BufferedWriter metricsWriter = new BufferedWriter(new FileWriter(mJsonFile))
-        ) {
-            String line;
-            while ((line = jsonReader.readLine()) != null) {
-                // Copy from temp file directly to avoid large metrics string in memory.
-                metricsWriter.write(line, 0, line.length());
-            }
-        }
+        // Append metrics from temp file as a single line and delete temp file.
+        appendJsonLine(mJsonFile, mStreamName, tempJsonFile);
+        tempJsonFile.delete();
     }
 }
@@ -22,7 +22,6 @@ import android.os.Environment;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.lang.StringBuilder;
 
 import junit.framework.TestCase;
 
@@ -121,34 +120,37 @@ public class DeviceReportTest extends TestCase {
         log4.setSummary(TEST_MESSAGE_4, TEST_VALUE_4, TEST_TYPE_4, TEST_UNIT_4);
         log4.submit(inst);
 
-        File jsonFile1 = new File(dir, REPORT_NAME_1 + ".reportlog.json");
-        File jsonFile2 = new File(dir, REPORT_NAME_2 + ".reportlog.json");
+        File jsonFile1 = new File(dir, REPORT_NAME_1 + ReportLog.JSON_LINES_EXTENSION);
+        File jsonFile2 = new File(dir, REPORT_NAME_2 + ReportLog.JSON_LINES_EXTENSION);
         assertTrue("Report Log missing", jsonFile1.exists());
         assertTrue("Report Log missing", jsonFile2.exists());
 
-        BufferedReader jsonReader = new BufferedReader(new FileReader(jsonFile1));
-        StringBuilder metricsBuilder = new StringBuilder();
-        String line;
-        while ((line = jsonReader.readLine()) != null) {
-            metricsBuilder.append(line);
-        }
-        String metrics = metricsBuilder.toString().trim();
-        JSONObject jsonObject = new JSONObject(metrics);
+        JSONObject jsonObject = readJsonLines(jsonFile1);
         assertTrue("Incorrect metrics",
                 jsonObject.getJSONObject(STREAM_NAME_1).getDouble(TEST_MESSAGE_1) == TEST_VALUE_1);
         assertTrue("Incorrect metrics",
                 jsonObject.getJSONObject(STREAM_NAME_2).getDouble(TEST_MESSAGE_2) == TEST_VALUE_2);
 
-        jsonReader = new BufferedReader(new FileReader(jsonFile2));
-        metricsBuilder = new StringBuilder();
-        while ((line = jsonReader.readLine()) != null) {
-            metricsBuilder.append(line);
-        }
-        metrics = metricsBuilder.toString().trim();
-        jsonObject = new JSONObject(metrics);
+        jsonObject = readJsonLines(jsonFile2);
         assertTrue("Incorrect metrics",
                 jsonObject.getJSONObject(STREAM_NAME_3).getDouble(TEST_MESSAGE_3) == TEST_VALUE_3);
         assertTrue("Incorrect metrics",
                 jsonObject.getJSONObject(STREAM_NAME_4).getDouble(TEST_MESSAGE_4) == TEST_VALUE_4);
     }
+
+    /**
+     * Reads the streams of a JSON lines file, each line holding one stream, into one object.
+     */
+    private static JSONObject readJsonLines(File file) throws Exception {
+        JSONObject streams = new JSONObject();
+        try (BufferedReader jsonReader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = jsonReader.readLine()) != null) {
+                JSONObject stream = new JSONObject(line);
+                String streamName = stream.keys().next();
+                streams.put(streamName, stream.getJSONObject(streamName));
+            }
+        }
+        return streams;
+    }
 }
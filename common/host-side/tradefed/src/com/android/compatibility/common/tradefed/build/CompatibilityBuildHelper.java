@@ -32,6 +32,7 @@ import java.util.Map;
 public class CompatibilityBuildHelper {
 
     public static final String MODULE_IDS = "MODULE_IDS";
+    public static final String BUILD_MODEL = "cts:build_model";
 
     private static final String ROOT_DIR = "ROOT_DIR";
     private static final String ROOT_DIR2 = "ROOT_DIR2";
@@ -145,6 +146,14 @@ public class CompatibilityBuildHelper {
         return mBuildInfo.getBuildAttributes().get(DYNAMIC_CONFIG_OVERRIDE_URL);
     }
 
+    /**
+     * @return the model of the device, as collected by the DeviceInfoCollector, or null if it has
+     * not been collected yet.
+     */
+    public String getDeviceModel() {
+        return mBuildInfo.getBuildAttributes().get(BUILD_MODEL);
+    }
+
     public long getStartTime() {
         return Long.parseLong(mBuildInfo.getBuildAttributes().get(START_TIME_MS));
     }
@@ -231,6 +240,14 @@ public class CompatibilityBuildHelper {
         return new File(getDir(), "logs");
     }
 
+    /**
+     * @return a {@link File} holding the runtimes of modules measured in previous invocations.
+     * @throws FileNotFoundException if the directory structure is not valid.
+     */
+    public File getRuntimeHistoryFile() throws FileNotFoundException {
+        return new File(getDir(), "runtime_history.txt");
+    }
+
     /**
      * @return a {@link File} representing the directory to store derivedplan files.
      * @throws FileNotFoundException if the directory structure is not valid.
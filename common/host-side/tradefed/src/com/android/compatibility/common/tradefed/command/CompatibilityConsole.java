@@ -367,7 +367,7 @@ public class CompatibilityConsole extends Console {
                 }
 
                 String moduleProgress = String.format("%d of %d",
-                        result.getModuleCompleteCount(), result.getModules().size());
+                        result.getModuleCompleteCount(), result.getModuleSummaries().size());
 
                 table.add(Arrays.asList(
                         Integer.toString(i),
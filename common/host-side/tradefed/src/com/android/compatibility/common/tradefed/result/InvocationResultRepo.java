@@ -33,12 +33,13 @@ public class InvocationResultRepo implements IInvocationResultRepo {
     private List<IInvocationResult> mResults;
 
     /**
-     * Create a {@link InvocationResultRepo} from a directory of results
+     * Create a {@link InvocationResultRepo} from a directory of results. Only the summaries of
+     * the results are loaded, see {@link ResultHandler#getResultSummaries(File)}.
      *
      * @param testResultDir the parent directory of results
      */
     public InvocationResultRepo(File testResultDir) {
-        mResults = ResultHandler.getResults(testResultDir);
+        mResults = ResultHandler.getResultSummaries(testResultDir);
     }
 
     /**
@@ -18,14 +18,18 @@ package com.android.compatibility.common.tradefed.result;
 import com.android.compatibility.common.tradefed.build.CompatibilityBuildHelper;
 import com.android.compatibility.common.tradefed.result.InvocationFailureHandler;
 import com.android.compatibility.common.tradefed.testtype.CompatibilityTest;
+import com.android.compatibility.common.tradefed.util.RuntimeHistory;
 import com.android.compatibility.common.util.ICaseResult;
 import com.android.compatibility.common.util.IInvocationResult;
 import com.android.compatibility.common.util.IModuleResult;
+import com.android.compatibility.common.util.IModuleSummary;
 import com.android.compatibility.common.util.ITestResult;
 import com.android.compatibility.common.util.InvocationResult;
 import com.android.compatibility.common.util.MetricsStore;
+import com.android.compatibility.common.util.ModuleResult;
 import com.android.compatibility.common.util.ReportLog;
 import com.android.compatibility.common.util.ResultHandler;
+import com.android.compatibility.common.util.ResultJournal;
 import com.android.compatibility.common.util.ResultUploader;
 import com.android.compatibility.common.util.TestStatus;
 import com.android.ddmlib.Log;
@@ -59,6 +63,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Date;
@@ -118,6 +123,12 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
     private String mDeviceSerial = UNKNOWN_DEVICE;
     private Set<String> mMasterDeviceSerials = new HashSet<>();
     private Set<IBuildInfo> mMasterBuildInfos = new HashSet<>();
+    // Nullable. Runtimes of modules measured on each device model, updated by the master.
+    private RuntimeHistory mRuntimeHistory = null;
+    private Set<String> mRecordedModules = new HashSet<>();
+    // Nullable. Holds the results of modules that have run, so the master doesn't keep them all
+    // in memory until the end of the invocation.
+    private ResultJournal mJournal = null;
 
     // mCurrentTestNum and mTotalTestsInModule track the progress within the module
     // Note that this count is not necessarily equal to the count of tests contained
@@ -233,6 +244,24 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
             throw new IllegalArgumentException(String.format("Could not create log dir %s",
                     mLogDir.getAbsolutePath()));
         }
+        recoverIncompleteSessions();
+        try {
+            mJournal = new ResultJournal(new File(mLogDir, ResultJournal.JOURNAL_FILE_NAME));
+            // Results loaded from a retried session are written to the journal straight away.
+            for (IModuleResult module : mResult.getModules()) {
+                journalModule(module);
+            }
+        } catch (IOException e) {
+            warn("Failed to create result journal, keeping all results in memory");
+        }
+        if (mRetrySessionId == null) {
+            // Retries only run part of each module, so their runtimes are not recorded.
+            try {
+                mRuntimeHistory = new RuntimeHistory(mBuildHelper.getRuntimeHistoryFile());
+            } catch (FileNotFoundException e) {
+                warn("Could not load runtime history, module runtimes will not be recorded");
+            }
+        }
     }
 
     /**
@@ -254,8 +283,21 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
                         Math.max(0, numTests - mCurrentModuleResult.getNotExecuted());
             }
             mCurrentModuleResult.setDone(false);
+        } else if (isShardResultReporter()) {
+            // Shards forward each module to the master, so only the current one is kept.
+            mCurrentModuleResult = new ModuleResult(id);
+            mTotalTestsInModule = numTests;
+            // Reset counters
+            mCurrentTestNum = 0;
         } else {
-            mCurrentModuleResult = mResult.getOrCreateModule(id);
+            synchronized(this) {
+                if (mCurrentModuleResult != null) {
+                    // The previous module is done, write it to the journal once rather than
+                    // after each of its test runs.
+                    journalModule(mCurrentModuleResult);
+                }
+                mCurrentModuleResult = restoreModule(id);
+            }
             mTotalTestsInModule = numTests;
             // Reset counters
             mCurrentTestNum = 0;
@@ -347,12 +389,34 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
         // Expect them to be equal, but greater than to be safe.
         mCurrentModuleResult.setDone(mCurrentTestNum >= mTotalTestsInModule);
         mCurrentModuleResult.setNotExecuted(Math.max(mTotalTestsInModule - mCurrentTestNum, 0));
+        String model = mBuildHelper.getDeviceModel();
+        if (mCurrentModuleResult.isDone() && model != null) {
+            ResultReporter master = isShardResultReporter() ? mMasterResultReporter : this;
+            master.recordRuntime(mCurrentModuleResult.getId(), model,
+                    mCurrentModuleResult.getRuntime());
+        }
         if (isShardResultReporter()) {
             // Forward module results to the master.
             mMasterResultReporter.mergeModuleResult(mCurrentModuleResult);
         }
     }
 
+    /**
+     * Record the runtime of a completed module in the runtime history. Note: this method is meant
+     * to be invoked on the master ResultReporter.
+     */
+    private void recordRuntime(String moduleId, String model, long runtime) {
+        synchronized(this) {
+            if (mRuntimeHistory == null) {
+                return;
+            }
+            // Modules run with HostTest report a test run per test class, only keep the
+            // cumulative runtime of the last one.
+            boolean replaceLast = !mRecordedModules.add(moduleId);
+            mRuntimeHistory.addRuntime(moduleId, model, runtime, replaceLast);
+        }
+    }
+
     /**
      * Directly add a module result. Note: this method is meant to be used by
      * a shard ResultReporter.
@@ -362,7 +426,102 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
         // contained in mResult. This is useful for retries and allows the final
         // report from a retry to contain all test results.
         synchronized(this) {
+            restoreModule(moduleResult.getId());
             mResult.mergeModuleResult(moduleResult);
+            journalModule(mResult.getOrCreateModule(moduleResult.getId()));
+        }
+    }
+
+    /**
+     * Write the result files of previous sessions that ended without writing them, such as when
+     * the host went away, from the modules they journaled. Sessions still running hold the lock
+     * on their journal and are skipped.
+     */
+    private void recoverIncompleteSessions() {
+        File[] resultDirs = null;
+        File logsDir = null;
+        try {
+            resultDirs = mBuildHelper.getResultsDir().listFiles();
+            logsDir = mBuildHelper.getLogsDir();
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        if (resultDirs == null) {
+            return;
+        }
+        for (File resultDir : resultDirs) {
+            File journalFile = new File(new File(logsDir, resultDir.getName()),
+                    ResultJournal.JOURNAL_FILE_NAME);
+            if (!resultDir.isDirectory() || resultDir.equals(mResultDir)
+                    || !journalFile.exists()) {
+                continue;
+            }
+            long startTime;
+            try {
+                startTime = new SimpleDateFormat("yyyy.MM.dd_HH.mm.ss").parse(
+                        resultDir.getName()).getTime();
+            } catch (ParseException e) {
+                startTime = resultDir.lastModified();
+            }
+            try {
+                File resultFile = ResultHandler.recoverResults(mBuildHelper.getSuiteName(),
+                        mBuildHelper.getSuiteVersion(), mBuildHelper.getSuitePlan(),
+                        mBuildHelper.getSuiteBuild(), journalFile, resultDir, startTime);
+                if (resultFile != null) {
+                    info("Recovered results of incomplete session: %s",
+                            resultFile.getCanonicalPath());
+                }
+            } catch (IOException | XmlPullParserException e) {
+                warn("Could not recover results of %s: %s", resultDir.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Write a module result to the journal and only keep its summary in memory. Note: this
+     * method is meant to be invoked on the master ResultReporter while holding its lock.
+     */
+    private void journalModule(IModuleResult moduleResult) {
+        if (mJournal == null) {
+            return;
+        }
+        try {
+            mResult.setModuleSummary(mJournal.writeModule(moduleResult));
+        } catch (IOException | XmlPullParserException e) {
+            warn("Failed to write %s to the result journal, keeping it in memory",
+                    moduleResult.getId());
+            CLog.e(e);
+        }
+    }
+
+    /**
+     * Get the module result for the given id, reading it back from the journal if it has been
+     * written to it. Note: this method is meant to be invoked on the master ResultReporter while
+     * holding its lock.
+     */
+    private IModuleResult restoreModule(String id) {
+        IModuleSummary summary = mResult.getModuleSummary(id);
+        if (summary == null) {
+            return mResult.getOrCreateModule(id);
+        }
+        IModuleResult moduleResult = readModule(summary);
+        mResult.setModule(moduleResult);
+        return moduleResult;
+    }
+
+    /**
+     * Get the given module with all its results, reading them from the journal if the module is
+     * a summary of an entry in it.
+     */
+    private IModuleResult readModule(IModuleSummary module) {
+        if (mJournal == null || !mJournal.contains(module)) {
+            return mResult.getOrCreateModule(module.getId());
+        }
+        try {
+            return mJournal.readModule(module.getId());
+        } catch (IOException | XmlPullParserException e) {
+            throw new RuntimeException(String.format(
+                    "Failed to read %s from the result journal", module.getId()), e);
         }
     }
 
@@ -445,11 +604,13 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
         // Include a record in the report of all expected modules ids, even if they weren't
         // executed.
         for (String moduleId : allExpectedModules) {
-            mResult.getOrCreateModule(moduleId);
+            if (mResult.getModuleSummary(moduleId) == null) {
+                mResult.getOrCreateModule(moduleId);
+            }
         }
 
         String moduleProgress = String.format("%d of %d",
-                mResult.getModuleCompleteCount(), mResult.getModules().size());
+                mResult.getModuleCompleteCount(), mResult.getModuleSummaries().size());
 
         info("Invocation finished in %s. PASSED: %d, FAILED: %d, NOT EXECUTED: %d, MODULES: %s",
                 TimeUtil.formatElapsedTime(elapsedTime),
@@ -460,9 +621,12 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
 
         long startTime = mResult.getStartTime();
         try {
+            if (mJournal != null) {
+                mJournal.close();
+            }
             File resultFile = ResultHandler.writeResults(mBuildHelper.getSuiteName(),
                     mBuildHelper.getSuiteVersion(), mBuildHelper.getSuitePlan(),
-                    mBuildHelper.getSuiteBuild(), mResult, mResultDir, startTime,
+                    mBuildHelper.getSuiteBuild(), mResult, mJournal, mResultDir, startTime,
                     elapsedTime + startTime, mReferenceUrl, getLogUrl(),
                     mBuildHelper.getCommandLineArgs());
             info("Test Result: %s", resultFile.getCanonicalPath());
@@ -700,6 +864,24 @@ public class ResultReporter implements ILogSaverListener, ITestInvocationListene
      * For testing
      */
     IInvocationResult getResult() {
-        return mResult;
+        synchronized(this) {
+            // Copy the result, reading back the modules written to the journal without
+            // replacing their summaries.
+            IInvocationResult result = new InvocationResult();
+            result.setStartTime(mResult.getStartTime());
+            result.setTestPlan(mResult.getTestPlan());
+            result.setCommandLineArgs(mResult.getCommandLineArgs());
+            result.setBuildFingerprint(mResult.getBuildFingerprint());
+            for (String serial : mResult.getDeviceSerials()) {
+                result.addDeviceSerial(serial);
+            }
+            for (Entry<String, String> entry : mResult.getInvocationInfo().entrySet()) {
+                result.addInvocationInfo(entry.getKey(), entry.getValue());
+            }
+            for (IModuleSummary module : mResult.getModuleSummaries()) {
+                result.setModule(readModule(module));
+            }
+            return result;
+        }
     }
 }
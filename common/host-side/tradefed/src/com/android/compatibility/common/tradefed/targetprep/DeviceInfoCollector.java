@@ -48,7 +48,7 @@ public class DeviceInfoCollector extends ApkInstrumentationPreparer {
         BUILD_KEYS.put("cts:build_board", "ro.product.board");
         BUILD_KEYS.put("cts:build_manufacturer", "ro.product.manufacturer");
         BUILD_KEYS.put("cts:build_brand", "ro.product.brand");
-        BUILD_KEYS.put("cts:build_model", "ro.product.model");
+        BUILD_KEYS.put(CompatibilityBuildHelper.BUILD_MODEL, "ro.product.model");
         BUILD_KEYS.put("cts:build_type", "ro.build.type");
         BUILD_KEYS.put("cts:build_tags", "ro.build.tags");
         BUILD_KEYS.put("cts:build_fingerprint", "ro.build.fingerprint");
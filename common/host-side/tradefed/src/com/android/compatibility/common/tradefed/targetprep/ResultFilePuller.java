@@ -16,6 +16,7 @@
 package com.android.compatibility.common.tradefed.targetprep;
 
 import com.android.compatibility.common.tradefed.build.CompatibilityBuildHelper;
+import com.android.compatibility.common.util.ReportLogHostInfoStore;
 import com.android.tradefed.build.IBuildInfo;
 import com.android.tradefed.config.Option;
 import com.android.tradefed.config.OptionClass;
@@ -28,6 +29,7 @@ import com.android.tradefed.targetprep.TargetSetupError;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -93,8 +95,13 @@ public class ResultFilePuller implements ITargetCleaner {
             for (String dir : mSrcDirs) {
                 pull(device, dir, resultPath);
             }
+            // Report logs pulled with the files are merged once here, rather than on the device.
+            ReportLogHostInfoStore.mergeJsonLines(resultDir);
         } catch (FileNotFoundException fnfe) {
             fnfe.printStackTrace();
+        } catch (IOException ioe) {
+            CLog.e("Caught exception merging report logs.");
+            CLog.e(ioe);
         }
     }
 
@@ -402,9 +402,35 @@ public class CompatibilityTest implements IDeviceTest, IShardableTest, IBuildRec
                 prepAttempt++;
             }
 
-            // Run the tests
-            for (int i = 0; i < moduleCount; i++) {
-                IModuleDef module = modules.get(i);
+            // Run the tests, once this shard's own modules are done it picks up modules still
+            // waiting on other shards.
+            String serial = mDevice.getSerialNumber();
+            IModuleDef module;
+            while ((module = nextModule(serial)) != null) {
+                if (module.getDevice() != mDevice) {
+                    // Module was assigned to another shard, so it has not been prepared here.
+                    ITestDevice assignedDevice = module.getDevice();
+                    module.setBuild(mBuildHelper.getBuildInfo());
+                    module.setDevice(mDevice);
+                    module.setPreparerWhitelist(mPreparerWhitelist);
+                    boolean prepared = false;
+                    try {
+                        prepared = module.prepare(mSkipPreconditions);
+                    } finally {
+                        // Other shards may be waiting for this module to be settled.
+                        if (!prepared) {
+                            // The assigned shard still has the module prepared, so it runs it.
+                            CLog.logAndDisplay(LogLevel.ERROR,
+                                    "Failed to prepare %s on %s, leaving it to %s",
+                                    module.getId(), serial, assignedDevice.getSerialNumber());
+                            module.setDevice(assignedDevice);
+                        }
+                        mModuleRepo.finishPickUp(serial, module, prepared);
+                    }
+                    if (!prepared) {
+                        continue;
+                    }
+                }
                 long start = System.currentTimeMillis();
 
                 if (mRebootPerModule) {
@@ -522,6 +548,24 @@ public class CompatibilityTest implements IDeviceTest, IShardableTest, IBuildRec
         return checkers;
     }
 
+    /**
+     * Tears down the preconditions of the modules other shards took from this one, then pulls
+     * the next module to run.
+     */
+    private IModuleDef nextModule(String serial) throws DeviceNotAvailableException {
+        for (IModuleDef pickedUp : mModuleRepo.takePickedUpModules(serial)) {
+            pickedUp.tearDownPreconditions(mDevice);
+        }
+        IModuleDef module = mModuleRepo.getNextModule(serial);
+        if (module == null) {
+            // Modules may have been taken from this shard while it waited for the last ones.
+            for (IModuleDef pickedUp : mModuleRepo.takePickedUpModules(serial)) {
+                pickedUp.tearDownPreconditions(mDevice);
+            }
+        }
+        return module;
+    }
+
     /**
      * Resolve the inclusion and exclusion logic of system status checkers
      *
@@ -16,6 +16,7 @@
 package com.android.compatibility.common.tradefed.testtype;
 
 import com.android.tradefed.device.DeviceNotAvailableException;
+import com.android.tradefed.device.ITestDevice;
 import com.android.tradefed.testtype.IAbi;
 import com.android.tradefed.testtype.IBuildReceiver;
 import com.android.tradefed.testtype.IDeviceTest;
@@ -56,6 +57,14 @@ public interface IModuleDef extends Comparable<IModuleDef>, IBuildReceiver, IDev
      */
     IRemoteTest getTest();
 
+    /**
+     * Overrides the runtime hint provided by the test, e.g. with the runtime measured for this
+     * module in previous invocations.
+     *
+     * @param runtimeHint the expected runtime of this module in milliseconds.
+     */
+    void setRuntimeHint(long runtimeHint);
+
     /**
      * Set a list of preparers to allow to run before or after a test.
      * If this list is empty, then all configured preparers will run.
@@ -70,4 +79,10 @@ public interface IModuleDef extends Comparable<IModuleDef>, IBuildReceiver, IDev
      */
     boolean prepare(boolean skipPrep) throws DeviceNotAvailableException;
 
+    /**
+     * Tears down the module's preconditions on the given device, which prepared the module but
+     * will not run it.
+     */
+    void tearDownPreconditions(ITestDevice device) throws DeviceNotAvailableException;
+
 }
@@ -56,6 +56,35 @@ public interface IModuleRepo {
      */
     List<IModuleDef> getModules(String serial);
 
+    /**
+     * Pulls the next module to run on the device referenced by the given serial. Modules are taken
+     * from the device's own workload first, and once that is exhausted from the workload of the
+     * device with the most expected runtime left, as long as the device has the required tokens.
+     *
+     * Modules taken from another device must be passed to {@link #finishPickUp} once the device
+     * tried to prepare them.
+     *
+     * @return the next {@link IModuleDef} to run, or null if there is nothing left to run.
+     */
+    IModuleDef getNextModule(String serial);
+
+    /**
+     * Settles a module the device referenced by the given serial took from another device. A
+     * module that could not be prepared is given back to the device it was taken from, which has
+     * already prepared it, and is not taken by this device again. Modules that were not taken
+     * from another device are ignored.
+     *
+     * @param prepared whether the module's preconditions were run successfully on this device.
+     */
+    void finishPickUp(String serial, IModuleDef module, boolean prepared);
+
+    /**
+     * @return the modules prepared on the device referenced by the given serial, which were since
+     * taken and prepared by another device, so their preconditions can be torn down. Each module
+     * is only returned once.
+     */
+    List<IModuleDef> takePickedUpModules(String serial);
+
     /**
      * @return the number of shards this repo is initialized for.
      */
@@ -64,6 +64,7 @@ public class ModuleDef implements IModuleDef {
     private IBuildInfo mBuild;
     private ITestDevice mDevice;
     private Set<String> mPreparerWhitelist = new HashSet<>();
+    private Long mRuntimeHint = null;
 
     public ModuleDef(String name, IAbi abi, IRemoteTest test,
             List<ITargetPreparer> preparers) {
@@ -156,6 +157,9 @@ public class ModuleDef implements IModuleDef {
      */
     @Override
     public long getRuntimeHint() {
+        if (mRuntimeHint != null) {
+            return mRuntimeHint;
+        }
         if (mTest instanceof IRuntimeHintProvider) {
             return ((IRuntimeHintProvider) mTest).getRuntimeHint();
         }
@@ -170,6 +174,14 @@ public class ModuleDef implements IModuleDef {
         return mTest;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRuntimeHint(long runtimeHint) {
+        mRuntimeHint = runtimeHint;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -268,7 +280,7 @@ public class ModuleDef implements IModuleDef {
      * {@inheritDoc}
      */
     @Override
-    public boolean prepare(boolean skipPrep) throws DeviceNotAvailableException {
+    public synchronized boolean prepare(boolean skipPrep) throws DeviceNotAvailableException {
         for (ITargetPreparer preparer : mPreconditions) {
             CLog.d("Preparer: %s", preparer.getClass().getSimpleName());
             if (preparer instanceof IAbiReceiver) {
@@ -294,6 +306,22 @@ public class ModuleDef implements IModuleDef {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void tearDownPreconditions(ITestDevice device)
+            throws DeviceNotAvailableException {
+        // Synchronized with prepare(), as a module picked up by another device is prepared there
+        // while its preconditions are torn down on the device it was taken from.
+        for (ITargetCleaner cleaner : mCleaners) {
+            if (mPreconditions.contains(cleaner)) {
+                CLog.d("Cleaner: %s", cleaner.getClass().getSimpleName());
+                cleaner.tearDown(device, mBuild, null);
+            }
+        }
+    }
+
     private void setOption(Object target, String option, String value) {
         try {
             OptionSetter setter = new OptionSetter(target);
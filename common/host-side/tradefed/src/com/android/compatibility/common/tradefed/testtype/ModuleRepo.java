@@ -15,6 +15,8 @@
  */
 package com.android.compatibility.common.tradefed.testtype;
 
+import com.android.compatibility.common.tradefed.build.CompatibilityBuildHelper;
+import com.android.compatibility.common.tradefed.util.RuntimeHistory;
 import com.android.compatibility.common.util.AbiUtils;
 import com.android.compatibility.common.util.TestFilter;
 import com.android.ddmlib.Log.LogLevel;
@@ -34,6 +36,7 @@ import com.android.tradefed.util.FileUtil;
 import com.android.tradefed.util.TimeUtil;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -43,6 +46,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -77,6 +81,9 @@ public class ModuleRepo implements IModuleRepo {
     private Map<String, List<TestFilter>> mIncludeFilters = new HashMap<>();
     private Map<String, List<TestFilter>> mExcludeFilters = new HashMap<>();
     private IConfigurationFactory mConfigFactory = ConfigurationFactory.getInstance();
+    // Runtimes measured in previous invocations, null if there is no history for the device model.
+    private RuntimeHistory mRuntimeHistory = null;
+    private String mDeviceModel = null;
 
     private volatile boolean mInitialized = false;
     // Whether the modules in this repo are ready to run on their assigned devices.
@@ -92,6 +99,15 @@ public class ModuleRepo implements IModuleRepo {
     private List<IModuleDef> mLargeModules = new ArrayList<>();
     // Holds all the tests with tokens waiting to be run. Meaning the DUT must have a specific token.
     private List<IModuleDef> mTokenModules = new ArrayList<>();
+    // Holds the modules assigned to each device that have not been started yet, in execution order.
+    private Map<String, LinkedList<IModuleDef>> mPendingModules = new HashMap<>();
+    // Holds the serial of the device each module being picked up was taken from, until the device
+    // picking it up is done preparing it.
+    private Map<IModuleDef, String> mPickingUpModules = new HashMap<>();
+    // Holds the modules picked up from each device, which were prepared there but will not run.
+    private Map<String, List<IModuleDef>> mPickedUpModules = new HashMap<>();
+    // Holds the modules each device failed to prepare, so it does not pick them up again.
+    private Map<String, Set<IModuleDef>> mUnpreparedModules = new HashMap<>();
 
     /**
      * {@inheritDoc}
@@ -265,6 +281,7 @@ public class ModuleRepo implements IModuleRepo {
         addFilters(includeFilters, mIncludeFilters, abis);
         // Exclude all the exclusions
         addFilters(excludeFilters, mExcludeFilters, abis);
+        loadRuntimeHistory(buildInfo);
 
         File[] configFiles = testsDir.listFiles(new ConfigFilter());
         if (configFiles.length == 0) {
@@ -272,71 +289,103 @@ public class ModuleRepo implements IModuleRepo {
                     String.format("No config files found in %s", testsDir.getAbsolutePath()));
         }
         for (File configFile : configFiles) {
-            final String name = configFile.getName().replace(CONFIG_EXT, "");
-            final String[] pathArg = new String[] { configFile.getAbsolutePath() };
-            try {
-                // Invokes parser to process the test module config file
-                // Need to generate a different config for each ABI as we cannot guarantee the
-                // configs are idempotent. This however means we parse the same file multiple times
-                for (IAbi abi : abis) {
-                    IConfiguration config = mConfigFactory.createConfigurationFromArgs(pathArg);
-                    String id = AbiUtils.createId(abi.getName(), name);
-                    if (!shouldRunModule(id)) {
-                        // If the module should not run tests based on the state of filters,
-                        // skip this name/abi combination.
-                        continue;
+            for (IModuleDef moduleDef : createModuleDefs(configFile, abis, buildInfo)) {
+                addModuleDef(moduleDef);
+            }
+        }
+        mModulesPerShard = mModuleCount / shards;
+        if (mModuleCount % shards != 0) {
+            mModulesPerShard++; // Round up
+        }
+        mSmallModulesPerShard = mSmallModules.size() / shards;
+        mMediumModulesPerShard = mMediumModules.size() / shards;
+        mLargeModulesPerShard = mLargeModules.size() / shards;
+    }
+
+    /**
+     * Creates the {@link IModuleDef}s of the given config file for each ABI. Configs are only
+     * parsed for the ABIs whose module should run based on the state of filters.
+     */
+    private List<IModuleDef> createModuleDefs(File configFile, Set<IAbi> abis,
+            IBuildInfo buildInfo) {
+        final String name = configFile.getName().replace(CONFIG_EXT, "");
+        final String[] pathArg = new String[] { configFile.getAbsolutePath() };
+        List<IModuleDef> moduleDefs = new ArrayList<>();
+        try {
+            // Invokes parser to process the test module config file
+            // Need to generate a different config for each ABI as we cannot guarantee the
+            // configs are idempotent. The config factory caches the parsed definition of the
+            // file, so each ABI only instantiates a new configuration from it.
+            for (IAbi abi : abis) {
+                String id = AbiUtils.createId(abi.getName(), name);
+                if (!shouldRunModule(id)) {
+                    // If the module should not run tests based on the state of filters,
+                    // skip this name/abi combination without parsing its config.
+                    continue;
+                }
+                IConfiguration config = createConfiguration(pathArg);
+                {
+                    Map<String, String> args = new HashMap<>();
+                    if (mModuleArgs.containsKey(name)) {
+                        args.putAll(mModuleArgs.get(name));
                     }
-                    {
-                        Map<String, String> args = new HashMap<>();
-                        if (mModuleArgs.containsKey(name)) {
-                            args.putAll(mModuleArgs.get(name));
-                        }
-                        if (mModuleArgs.containsKey(id)) {
-                            args.putAll(mModuleArgs.get(id));
-                        }
-                        if (args != null && args.size() > 0) {
-                            for (Entry<String, String> entry : args.entrySet()) {
-                                config.injectOptionValue(entry.getKey(), entry.getValue());
-                            }
-                        }
+                    if (mModuleArgs.containsKey(id)) {
+                        args.putAll(mModuleArgs.get(id));
                     }
-                    List<IRemoteTest> tests = config.getTests();
-                    for (IRemoteTest test : tests) {
-                        String className = test.getClass().getName();
-                        Map<String, String> args = new HashMap<>();
-                        if (mTestArgs.containsKey(className)) {
-                            args.putAll(mTestArgs.get(className));
-                        }
-                        if (args != null && args.size() > 0) {
-                            for (Entry<String, String> entry : args.entrySet()) {
-                                config.injectOptionValue(entry.getKey(), entry.getValue());
-                            }
+                    if (args != null && args.size() > 0) {
+                        for (Entry<String, String> entry : args.entrySet()) {
+                            config.injectOptionValue(entry.getKey(), entry.getValue());
                         }
-                        addFiltersToTest(test, abi, name);
                     }
-                    List<IRemoteTest> shardedTests = tests;
-                    if (mShards > 1) {
-                         shardedTests = splitShardableTests(tests, buildInfo);
+                }
+                List<IRemoteTest> tests = config.getTests();
+                for (IRemoteTest test : tests) {
+                    String className = test.getClass().getName();
+                    Map<String, String> args = new HashMap<>();
+                    if (mTestArgs.containsKey(className)) {
+                        args.putAll(mTestArgs.get(className));
                     }
-                    for (IRemoteTest test : shardedTests) {
-                        if (test instanceof IBuildReceiver) {
-                            ((IBuildReceiver)test).setBuild(buildInfo);
+                    if (args != null && args.size() > 0) {
+                        for (Entry<String, String> entry : args.entrySet()) {
+                            config.injectOptionValue(entry.getKey(), entry.getValue());
                         }
-                        addModuleDef(name, abi, test, pathArg);
                     }
+                    addFiltersToTest(test, abi, name);
+                }
+                List<IRemoteTest> shardedTests = tests;
+                if (mShards > 1) {
+                     shardedTests = splitShardableTests(tests, buildInfo);
+                }
+                for (IRemoteTest test : shardedTests) {
+                    if (test instanceof IBuildReceiver) {
+                        ((IBuildReceiver)test).setBuild(buildInfo);
+                    }
+                    moduleDefs.add(createModuleDef(name, abi, test, pathArg));
                 }
-            } catch (ConfigurationException e) {
-                throw new RuntimeException(String.format("error parsing config file: %s",
-                        configFile.getName()), e);
             }
+        } catch (ConfigurationException e) {
+            throw new RuntimeException(String.format("error parsing config file: %s",
+                    configFile.getName()), e);
         }
-        mModulesPerShard = mModuleCount / shards;
-        if (mModuleCount % shards != 0) {
-            mModulesPerShard++; // Round up
+        return moduleDefs;
+    }
+
+    /**
+     * Loads the runtimes measured in previous invocations for the model of the device, so modules
+     * can be scheduled with their real runtime rather than the hint given in their config.
+     */
+    private void loadRuntimeHistory(IBuildInfo buildInfo) {
+        CompatibilityBuildHelper buildHelper = new CompatibilityBuildHelper(buildInfo);
+        mDeviceModel = buildHelper.getDeviceModel();
+        if (mDeviceModel == null) {
+            CLog.d("Device model unknown, using runtime hints from module configs");
+            return;
+        }
+        try {
+            mRuntimeHistory = new RuntimeHistory(buildHelper.getRuntimeHistoryFile());
+        } catch (FileNotFoundException e) {
+            CLog.w("Could not load runtime history, using runtime hints from module configs");
         }
-        mSmallModulesPerShard = mSmallModules.size() / shards;
-        mMediumModulesPerShard = mMediumModules.size() / shards;
-        mLargeModulesPerShard = mLargeModules.size() / shards;
     }
 
     private static List<IRemoteTest> splitShardableTests(List<IRemoteTest> tests,
@@ -375,6 +424,18 @@ public class ModuleRepo implements IModuleRepo {
         getFilter(filters, AbiUtils.createId(abi, filter.getName())).add(filter);
     }
 
+    /**
+     * @return the filters for the given module id, without modifying the map of filters.
+     */
+    private static List<TestFilter> lookupFilter(Map<String, List<TestFilter>> filters,
+            String id) {
+        List<TestFilter> fs = filters.get(id);
+        if (fs == null) {
+            return Collections.emptyList();
+        }
+        return fs;
+    }
+
     private static List<TestFilter> getFilter(Map<String, List<TestFilter>> filters, String id) {
         List<TestFilter> fs = filters.get(id);
         if (fs == null) {
@@ -384,14 +445,22 @@ public class ModuleRepo implements IModuleRepo {
         return fs;
     }
 
-    private void addModuleDef(String name, IAbi abi, IRemoteTest test,
+    private IModuleDef createModuleDef(String name, IAbi abi, IRemoteTest test,
             String[] configPaths) throws ConfigurationException {
         // Invokes parser to process the test module config file
-        IConfiguration config = mConfigFactory.createConfigurationFromArgs(configPaths);
-        addModuleDef(new ModuleDef(name, abi, test, config.getTargetPreparers()));
+        IConfiguration config = createConfiguration(configPaths);
+        return new ModuleDef(name, abi, test, config.getTargetPreparers());
+    }
+
+    private IConfiguration createConfiguration(String[] args) throws ConfigurationException {
+        return mConfigFactory.createConfigurationFromArgs(args);
     }
 
     private void addModuleDef(IModuleDef moduleDef) {
+        if (mRuntimeHistory != null) {
+            moduleDef.setRuntimeHint(mRuntimeHistory.getRuntime(moduleDef.getId(), mDeviceModel,
+                    moduleDef.getRuntimeHint()));
+        }
         Set<String> tokens = moduleDef.getTokens();
         if (tokens != null && !tokens.isEmpty()) {
             mTokenModules.add(moduleDef);
@@ -411,8 +480,8 @@ public class ModuleRepo implements IModuleRepo {
             throw new IllegalArgumentException(String.format(
                     "Test in module %s must implement ITestFilterReceiver.", moduleId));
         }
-        List<TestFilter> mdIncludes = getFilter(mIncludeFilters, moduleId);
-        List<TestFilter> mdExcludes = getFilter(mExcludeFilters, moduleId);
+        List<TestFilter> mdIncludes = lookupFilter(mIncludeFilters, moduleId);
+        List<TestFilter> mdExcludes = lookupFilter(mExcludeFilters, moduleId);
         if (!mdIncludes.isEmpty()) {
             addTestIncludes((ITestFilterReceiver) test, mdIncludes, name);
         }
@@ -422,8 +491,8 @@ public class ModuleRepo implements IModuleRepo {
     }
 
     private boolean shouldRunModule(String moduleId) {
-        List<TestFilter> mdIncludes = getFilter(mIncludeFilters, moduleId);
-        List<TestFilter> mdExcludes = getFilter(mExcludeFilters, moduleId);
+        List<TestFilter> mdIncludes = lookupFilter(mIncludeFilters, moduleId);
+        List<TestFilter> mdExcludes = lookupFilter(mExcludeFilters, moduleId);
         // if including all modules or includes exist for this module, and there are not excludes
         // for the entire module, this module should be run.
         return (mIncludeAll || !mdIncludes.isEmpty()) && !containsModuleExclude(mdExcludes);
@@ -536,12 +605,134 @@ public class ModuleRepo implements IModuleRepo {
             estimatedTime += def.getRuntimeHint();
         }
         Collections.sort(modules, new ExecutionOrderComparator());
+        mPendingModules.put(serial, new LinkedList<>(modules));
         CLog.logAndDisplay(LogLevel.INFO, String.format(
                 "%s running %s modules, expected to complete in %s",
                 serial, modules.size(), TimeUtil.formatElapsedTime(estimatedTime)));
         return modules;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized IModuleDef getNextModule(String serial) {
+        while (true) {
+            LinkedList<IModuleDef> pending = mPendingModules.get(serial);
+            if (pending != null && !pending.isEmpty()) {
+                return pending.removeFirst();
+            }
+            IModuleDef module = pickUpModule(serial);
+            if (module != null || mPickingUpModules.isEmpty()) {
+                return module;
+            }
+            // Modules being picked up may still be given back if they cannot be prepared, so
+            // wait for those to be settled before deciding there is nothing left to run.
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Takes the next module from the device with the most expected runtime left, so idle devices
+     * keep working until the whole run is done.
+     *
+     * @return the module taken, or null if there is none this device can run.
+     */
+    private IModuleDef pickUpModule(String serial) {
+        Set<String> tokens = mDeviceTokens.get(serial);
+        Set<IModuleDef> unprepared = mUnpreparedModules.get(serial);
+        String busiestSerial = null;
+        IModuleDef stolen = null;
+        long mostRemaining = -1;
+        for (Entry<String, LinkedList<IModuleDef>> entry : mPendingModules.entrySet()) {
+            if (entry.getKey().equals(serial)) {
+                continue;
+            }
+            IModuleDef candidate = null;
+            long remaining = 0;
+            for (IModuleDef module : entry.getValue()) {
+                remaining += module.getRuntimeHint();
+                if (candidate == null && canRunModule(tokens, module)
+                        && (unprepared == null || !unprepared.contains(module))) {
+                    candidate = module;
+                }
+            }
+            if (candidate != null && remaining > mostRemaining) {
+                mostRemaining = remaining;
+                busiestSerial = entry.getKey();
+                stolen = candidate;
+            }
+        }
+        if (stolen != null) {
+            mPendingModules.get(busiestSerial).remove(stolen);
+            mPickingUpModules.put(stolen, busiestSerial);
+            CLog.logAndDisplay(LogLevel.INFO, "%s picking up %s from %s, %s left on %s",
+                    serial, stolen.getId(), busiestSerial,
+                    TimeUtil.formatElapsedTime(mostRemaining - stolen.getRuntimeHint()),
+                    busiestSerial);
+        }
+        return stolen;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void finishPickUp(String serial, IModuleDef module, boolean prepared) {
+        String from = mPickingUpModules.remove(module);
+        if (from == null) {
+            // Not picked up from another device.
+            return;
+        }
+        if (prepared) {
+            List<IModuleDef> pickedUp = mPickedUpModules.get(from);
+            if (pickedUp == null) {
+                pickedUp = new ArrayList<>();
+                mPickedUpModules.put(from, pickedUp);
+            }
+            pickedUp.add(module);
+        } else {
+            CLog.logAndDisplay(LogLevel.WARN, "%s could not prepare %s, giving it back to %s",
+                    serial, module.getId(), from);
+            Set<IModuleDef> unprepared = mUnpreparedModules.get(serial);
+            if (unprepared == null) {
+                unprepared = new HashSet<>();
+                mUnpreparedModules.put(serial, unprepared);
+            }
+            unprepared.add(module);
+            mPendingModules.get(from).addFirst(module);
+        }
+        notifyAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<IModuleDef> takePickedUpModules(String serial) {
+        List<IModuleDef> pickedUp = mPickedUpModules.remove(serial);
+        if (pickedUp == null) {
+            return Collections.emptyList();
+        }
+        return pickedUp;
+    }
+
+    /**
+     * @return true if a device with the given tokens has all the tokens required by the module.
+     */
+    private static boolean canRunModule(Set<String> tokens, IModuleDef module) {
+        Set<String> required = module.getTokens();
+        if (required == null || required.isEmpty()) {
+            return true;
+        }
+        return tokens != null && tokens.containsAll(required);
+    }
+
     /**
      * Iterates through the remaining tests that require tokens and if the device has all the
      * required tokens it will queue that module to run on that device, else the module gets put
@@ -16,20 +16,42 @@
 
 package com.android.compatibility.common.tradefed.util;
 
+import com.android.compatibility.common.util.ReportLogHostInfoStore;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.json.stream.JsonReader;
+import com.android.json.stream.JsonToken;
+import com.android.json.stream.JsonWriter;
 import com.android.tradefed.device.DeviceNotAvailableException;
 import com.android.tradefed.device.ITestDevice;
 import com.android.tradefed.log.LogUtil.CLog;
 import com.android.tradefed.util.FileUtil;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,10 +64,18 @@ public class CollectorUtil {
     }
 
     private static final String ADB_LS_PATTERN = "([^\\s]+)\\s*";
-    private static final String TEST_METRICS_PATTERN = "\\\"([a-z0-9_]*)\\\":(\\{[^{}]*\\})";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DEVICE_ARCHIVE_DIR = "/data/local/tmp/";
+    private static final String ARCHIVE_CREATED = "ARCHIVE_CREATED";
+    private static final int TAR_BLOCK_SIZE = 512;
 
     /**
      * Copy files from device to host.
+     * <p/>
+     * The files are archived on the device and pulled as a single file, to save an adb sync round
+     * trip for each file, falling back to pulling the files one by one if the archive could not
+     * be created or extracted.
+     *
      * @param device The device reference.
      * @param src The source directory on the device.
      * @param dest The destination directory.
@@ -53,16 +83,14 @@ public class CollectorUtil {
     public static void pullFromDevice(ITestDevice device, String src, String dest) {
         try {
             if (device.doesFileExist(src)) {
-                String listCommand = String.format("ls %s", src);
-                String fileList = device.executeShellCommand(listCommand);
-                Pattern p = Pattern.compile(ADB_LS_PATTERN);
-                Matcher m = p.matcher(fileList);
-                while (m.find()) {
-                    String fileName = m.group(1);
-                    String srcPath = String.format("%s%s", src, fileName);
-                    File destFile = new File(String.format("%s/%s", dest, fileName));
-                    device.pullFile(srcPath, destFile);
+                long startTime = System.currentTimeMillis();
+                long bytes = pullArchiveFromDevice(device, src, new File(dest));
+                if (bytes < 0) {
+                    bytes = pullFilesFromDevice(device, src, dest);
                 }
+                long elapsedTime = Math.max(1, System.currentTimeMillis() - startTime);
+                CLog.logAndDisplay(LogLevel.INFO, "Pulled %d bytes from %s in %d ms (%d bytes/s)",
+                        bytes, src, elapsedTime, bytes * 1000 / elapsedTime);
             }
         } catch (DeviceNotAvailableException e) {
             CLog.e("Caught exception during pull.");
@@ -70,6 +98,199 @@ public class CollectorUtil {
         }
     }
 
+    /**
+     * Pulls the files of the source directory one by one.
+     *
+     * @return the number of bytes pulled.
+     */
+    private static long pullFilesFromDevice(ITestDevice device, String src, String dest)
+            throws DeviceNotAvailableException {
+        long bytes = 0;
+        String listCommand = String.format("ls %s", src);
+        String fileList = device.executeShellCommand(listCommand);
+        Pattern p = Pattern.compile(ADB_LS_PATTERN);
+        Matcher m = p.matcher(fileList);
+        while (m.find()) {
+            String fileName = m.group(1);
+            String srcPath = String.format("%s%s", src, fileName);
+            File destFile = new File(String.format("%s/%s", dest, fileName));
+            if (device.pullFile(srcPath, destFile)) {
+                bytes += destFile.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Pulls the source directory as a tar archive created on the device, and extracts it.
+     *
+     * @return the number of bytes pulled, or -1 if the archive could not be pulled.
+     */
+    private static long pullArchiveFromDevice(ITestDevice device, String src, File dest)
+            throws DeviceNotAvailableException {
+        String archive = String.format("%scollector-%d.tar", DEVICE_ARCHIVE_DIR,
+                System.nanoTime());
+        File localArchive = null;
+        try {
+            String output = device.executeShellCommand(String.format(
+                    "tar -cf %s -C %s . && echo %s", archive, src, ARCHIVE_CREATED));
+            if (output == null || !output.contains(ARCHIVE_CREATED)) {
+                CLog.d("Could not archive %s, pulling files one by one: %s", src, output);
+                return -1;
+            }
+            localArchive = device.pullFile(archive);
+            if (localArchive == null) {
+                CLog.d("Could not pull %s, pulling files one by one", archive);
+                return -1;
+            }
+            try (InputStream input =
+                    new BufferedInputStream(new FileInputStream(localArchive), BUFFER_SIZE)) {
+                extractTar(input, dest);
+            }
+            return localArchive.length();
+        } catch (IOException e) {
+            CLog.d("Could not extract %s, pulling files one by one: %s", archive, e.getMessage());
+            return -1;
+        } finally {
+            FileUtil.deleteFile(localArchive);
+            device.executeShellCommand(String.format("rm -f %s", archive));
+        }
+    }
+
+    /**
+     * Extracts the regular files and directories of a tar archive into the given directory.
+     * <p/>
+     * Handles ustar archives with GNU long names, as created by the tar of the device. Other
+     * entries, e.g. links, are skipped.
+     */
+    static void extractTar(InputStream input, File dest) throws IOException {
+        byte[] header = new byte[TAR_BLOCK_SIZE];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        String longName = null;
+        while (readBlock(input, header)) {
+            if (isZeroBlock(header)) {
+                return;
+            }
+            String name = getTarString(header, 0, 100);
+            String magic = getTarString(header, 257, 6);
+            String prefix = getTarString(header, 345, 155);
+            if (magic.startsWith("ustar") && !prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            long size = getTarSize(header);
+            char type = (char) header[156];
+
+            if (type == 'L') {
+                ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+                copyTarEntry(input, nameBytes, size, buffer);
+                longName = getTarString(nameBytes.toByteArray(), 0, nameBytes.size());
+                continue;
+            }
+            File file = getTarEntryFile(dest, name);
+            if (file != null && type == '5') {
+                file.mkdirs();
+            }
+            if (file == null || (type != '0' && type != 0)) {
+                copyTarEntry(input, null, size, buffer);
+                continue;
+            }
+            file.getParentFile().mkdirs();
+            try (OutputStream output = new FileOutputStream(file)) {
+                copyTarEntry(input, output, size, buffer);
+            }
+        }
+        throw new IOException("Truncated tar archive");
+    }
+
+    /**
+     * @return the file of a tar entry within the given directory, or null for the directory
+     * itself.
+     * @throws IOException if the entry is outside of the directory.
+     */
+    private static File getTarEntryFile(File dest, String name) throws IOException {
+        File file = dest;
+        for (String component : name.split("/")) {
+            if (component.equals("..")) {
+                throw new IOException(String.format("Tar entry %s is outside the archive", name));
+            } else if (!component.isEmpty() && !component.equals(".")) {
+                file = new File(file, component);
+            }
+        }
+        return file == dest ? null : file;
+    }
+
+    /**
+     * Copies the data of a tar entry and skips its padding.
+     *
+     * @param output the stream to copy to, or null to skip the data.
+     */
+    private static void copyTarEntry(InputStream input, OutputStream output, long size,
+            byte[] buffer) throws IOException {
+        long remaining = size + (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+        long data = size;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Truncated tar archive");
+            }
+            if (output != null && data > 0) {
+                output.write(buffer, 0, (int) Math.min(read, data));
+            }
+            data -= read;
+            remaining -= read;
+        }
+    }
+
+    private static boolean readBlock(InputStream input, byte[] block) throws IOException {
+        int offset = 0;
+        while (offset < block.length) {
+            int read = input.read(block, offset, block.length - offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getTarString(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long getTarSize(byte[] header) throws IOException {
+        if ((header[124] & 0x80) != 0) {
+            // base-256 encoding of large sizes
+            long size = 0;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        String size = getTarString(header, 124, 12).trim();
+        try {
+            return size.isEmpty() ? 0 : Long.parseLong(size, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid tar entry size %s", size));
+        }
+    }
+
     /**
      * Copy files from host and delete from source.
      * @param src The source directory.
@@ -87,94 +308,328 @@ public class CollectorUtil {
 
     /**
      * Reformat test metrics jsons to convert multiple json objects with identical stream names into
-     * arrays of objects (b/28790467).
+     * arrays of objects (b/28790467). The JSON lines files report logs append their streams to are
+     * merged into the jsons first. The jsons are reformatted in parallel.
      *
      * @param resultDir The directory containing test metrics.
      */
     public static void reformatRepeatedStreams(File resultDir) {
         try {
-            File[] reportLogs = resultDir.listFiles();
-            for (File reportLog : reportLogs) {
-                writeFile(reportLog, reformatJsonString(readFile(reportLog)));
-            }
+            ReportLogHostInfoStore.mergeJsonLines(resultDir);
         } catch (IOException e) {
-            CLog.e("Caught exception during reformatting.");
+            CLog.e("Caught exception during merging.");
             CLog.e(e);
         }
+        File[] reportLogs = resultDir.listFiles();
+        if (reportLogs == null) {
+            return;
+        }
+        List<Future<Void>> results = new ArrayList<>();
+        int threads = Math.min(reportLogs.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (final File reportLog : reportLogs) {
+                // leave binary metrics files as they are
+                if (!reportLog.getName().endsWith(".json")) {
+                    continue;
+                }
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        reformatFile(reportLog);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    CLog.e("Caught exception during reformatting.");
+                    CLog.e(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            CLog.e("Interrupted during reformatting.");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Helper function to read a file.
+     * Helper function to reformat a JSON file in place.
      *
      * @throws IOException
      */
-    private static String readFile(File file) throws IOException {
-        StringBuilder stringBuilder = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line);
-            }
+    private static void reformatFile(File reportLog) throws IOException {
+        File spoolFile = File.createTempFile(reportLog.getName(), "-streams");
+        File reformattedFile = File.createTempFile(reportLog.getName(), "-reformatted",
+                reportLog.getParentFile());
+        try (
+                Reader input = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(reportLog), StandardCharsets.UTF_8));
+                OutputStream output = new BufferedOutputStream(
+                        new FileOutputStream(reformattedFile), BUFFER_SIZE)
+        ) {
+            reformatJson(input, output, spoolFile);
+        } catch (IOException | RuntimeException e) {
+            reformattedFile.delete();
+            throw e;
+        } finally {
+            spoolFile.delete();
+        }
+        if (!reportLog.delete() || !reformattedFile.renameTo(reportLog)) {
+            reformattedFile.delete();
+            throw new IOException(String.format("Could not write %s",
+                    reportLog.getAbsolutePath()));
         }
-        return stringBuilder.toString();
     }
 
     /**
-     * Helper function to write to a file.
+     * Helper function to reformat JSON string.
      *
-     * @param file {@link File} to write to.
-     * @param jsonString String to be written.
+     * @param jsonString
+     * @return
      * @throws IOException
      */
-    private static void writeFile(File file, String jsonString) throws IOException {
-        file.createNewFile();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(jsonString, 0, jsonString.length());
+    public static String reformatJsonString(String jsonString) throws IOException {
+        File spoolFile = File.createTempFile("report-log", "-streams");
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            reformatJson(new StringReader(jsonString), output, spoolFile);
+            return output.toString(StandardCharsets.UTF_8.name());
+        } finally {
+            spoolFile.delete();
         }
     }
 
     /**
-     * Helper function to reformat JSON string.
+     * Groups the values of the JSON object read from the input by name, writing each name once
+     * with an array of its values.
+     * <p/>
+     * The input is read token by token, and each value is copied to the spool file as it is
+     * read, so only the offsets of the values are held in memory. The output is then written by
+     * copying the values of each name from the spool file. Values that are already arrays, e.g.
+     * of a file reformatted before, are merged with the other values of their name.
      *
-     * @param jsonString
-     * @return
+     * @param spoolFile temporary file to hold the values.
      */
-    public static String reformatJsonString(String jsonString) {
-        StringBuilder newJsonBuilder = new StringBuilder();
-        // Create map of stream names and json objects.
-        HashMap<String, List<String>> jsonMap = new HashMap<>();
-        Pattern p = Pattern.compile(TEST_METRICS_PATTERN);
-        Matcher m = p.matcher(jsonString);
-        while (m.find()) {
-            String key = m.group(1);
-            String value = m.group(2);
-            if (!jsonMap.containsKey(key)) {
-                jsonMap.put(key, new ArrayList<String>());
-            }
-            jsonMap.get(key).add(value);
-        }
-        // Rewrite json string as arrays.
-        newJsonBuilder.append("{");
-        boolean firstLine = true;
-        for (String key : jsonMap.keySet()) {
-            if (!firstLine) {
-                newJsonBuilder.append(",");
-            } else {
-                firstLine = false;
-            }
-            newJsonBuilder.append("\"").append(key).append("\":[");
-            boolean firstValue = true;
-            for (String stream : jsonMap.get(key)) {
-                if (!firstValue) {
-                    newJsonBuilder.append(",");
-                } else {
+    private static void reformatJson(Reader input, OutputStream output, File spoolFile)
+            throws IOException {
+        // Offsets of the values of each name in the spool file, in order of first appearance.
+        Map<String, List<long[]>> streams = new LinkedHashMap<>();
+        try (
+                JsonReader reader = new JsonReader(input);
+                CountingOutputStream spoolOutput = new CountingOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(spoolFile), BUFFER_SIZE))
+        ) {
+            reader.setLenient(true);
+            // The values are spooled as the elements of one array.
+            JsonWriter spool = new JsonWriter(
+                    new OutputStreamWriter(spoolOutput, StandardCharsets.UTF_8));
+            spool.beginArray();
+            boolean first = true;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                List<long[]> values = streams.get(name);
+                if (values == null) {
+                    values = new ArrayList<>();
+                    streams.put(name, values);
+                }
+                boolean grouped = reader.peek() == JsonToken.BEGIN_ARRAY;
+                if (grouped) {
+                    reader.beginArray();
+                }
+                while (!grouped || reader.hasNext()) {
+                    spool.flush();
+                    // skip the separator written before all but the first element
+                    long start = spoolOutput.getCount() + (first ? 0 : 1);
+                    copyValue(reader, spool);
+                    spool.flush();
+                    values.add(new long[] {start, spoolOutput.getCount()});
+                    first = false;
+                    if (!grouped) {
+                        break;
+                    }
+                }
+                if (grouped) {
+                    reader.endArray();
+                }
+            }
+            reader.endObject();
+            spool.endArray();
+            spool.close();
+        }
+
+        try (RandomAccessFile spoolInput = new RandomAccessFile(spoolFile, "r")) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            output.write('{');
+            boolean firstStream = true;
+            for (Map.Entry<String, List<long[]>> stream : streams.entrySet()) {
+                if (!firstStream) {
+                    output.write(',');
+                }
+                firstStream = false;
+                output.write(quote(stream.getKey()).getBytes(StandardCharsets.UTF_8));
+                output.write(':');
+                output.write('[');
+                boolean firstValue = true;
+                for (long[] value : stream.getValue()) {
+                    if (!firstValue) {
+                        output.write(',');
+                    }
                     firstValue = false;
+                    spoolInput.seek(value[0]);
+                    long remaining = value[1] - value[0];
+                    while (remaining > 0) {
+                        int read = spoolInput.read(buffer, 0,
+                                (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new IOException("Spooled values are truncated");
+                        }
+                        output.write(buffer, 0, read);
+                        remaining -= read;
+                    }
                 }
-                newJsonBuilder.append(stream);
+                output.write(']');
             }
-            newJsonBuilder.append("]");
+            output.write('}');
+        }
+    }
+
+    /**
+     * Copies the next value of the reader, including any nested values, to the writer.
+     */
+    private static void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copyValue(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copyValue(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                // copy the number as written, parsing it could lose precision or reformat it
+                writer.value(new JsonNumber(reader.nextString()));
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IOException(String.format("Unexpected %s", token));
+        }
+    }
+
+    /**
+     * Helper function to quote a name as a JSON string.
+     */
+    private static String quote(String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * A number read from JSON, kept as its literal so it is written back unchanged.
+     */
+    private static class JsonNumber extends Number {
+
+        private final String mLiteral;
+
+        JsonNumber(String literal) {
+            mLiteral = literal;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) doubleValue();
+        }
+
+        @Override
+        public long longValue() {
+            return (long) doubleValue();
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(mLiteral);
+        }
+
+        @Override
+        public String toString() {
+            return mLiteral;
+        }
+    }
+
+    /**
+     * An {@link OutputStream} counting the bytes written through it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long mCount = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+
+        long getCount() {
+            return mCount;
         }
-        newJsonBuilder.append("}");
-        return newJsonBuilder.toString();
     }
 }
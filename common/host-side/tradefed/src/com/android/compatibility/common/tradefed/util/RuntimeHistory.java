@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.tradefed.util;
+
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Stores the measured runtimes of modules across invocations, keyed by module id (which includes
+ * the ABI) and device model, so that scheduling can use real runtimes instead of the static hints
+ * given in the module configs.
+ * <p/>
+ * The history is persisted as a text file with one line per module id and device model, holding
+ * the most recent runtimes in milliseconds. The file may be shared by concurrent invocations, so
+ * it is replaced atomically, and merged with its current content: the lines of the modules
+ * recorded by this history replace theirs, the other lines are kept.
+ */
+public class RuntimeHistory {
+
+    public static final String UNKNOWN_MODEL = "unknown";
+
+    /** The number of runtimes kept for each module id and device model. */
+    private static final int MAX_SAMPLES = 10;
+    /** The percentile of the recorded runtimes used as the expected runtime. */
+    private static final int PERCENTILE = 90;
+    private static final String SEPARATOR = "\t";
+    private static final String VALUE_SEPARATOR = ",";
+
+    private final File mFile;
+    private final Map<String, LinkedList<Long>> mRuntimes = new LinkedHashMap<>();
+    // keys of the runtimes recorded by this history, which replace those in the file
+    private final Set<String> mRecordedKeys = new HashSet<>();
+
+    /**
+     * Creates a {@link RuntimeHistory} backed by the given file, loading any runtimes previously
+     * recorded in it.
+     */
+    public RuntimeHistory(File file) {
+        mFile = file;
+        if (mFile.exists()) {
+            mRuntimes.putAll(load(mFile));
+        }
+    }
+
+    /**
+     * Records the runtime of a module run on a device of the given model, and persists the
+     * history.
+     *
+     * @param moduleId the id of the module, including its ABI.
+     * @param model the model of the device the module ran on, may be null.
+     * @param runtime the runtime of the module in milliseconds.
+     * @param replaceLast whether the runtime replaces the last one recorded for this module, e.g.
+     * when a module reports several test runs during the same invocation.
+     */
+    public synchronized void addRuntime(String moduleId, String model, long runtime,
+            boolean replaceLast) {
+        String key = createKey(moduleId, model);
+        LinkedList<Long> runtimes = mRuntimes.get(key);
+        if (runtimes == null) {
+            runtimes = new LinkedList<>();
+            mRuntimes.put(key, runtimes);
+        } else if (replaceLast && !runtimes.isEmpty()) {
+            runtimes.removeLast();
+        }
+        runtimes.addLast(runtime);
+        mRecordedKeys.add(key);
+        while (runtimes.size() > MAX_SAMPLES) {
+            runtimes.removeFirst();
+        }
+        save();
+    }
+
+    /**
+     * @return the expected runtime of the module on a device of the given model, taken as the
+     * {@link #PERCENTILE}th percentile of the recorded runtimes, or the default runtime if the
+     * module has never been recorded on this model.
+     */
+    public synchronized long getRuntime(String moduleId, String model, long defaultRuntime) {
+        LinkedList<Long> runtimes = mRuntimes.get(createKey(moduleId, model));
+        if (runtimes == null || runtimes.isEmpty()) {
+            return defaultRuntime;
+        }
+        List<Long> sorted = new ArrayList<>(runtimes);
+        Collections.sort(sorted);
+        // Nearest rank method
+        int rank = (int) Math.ceil(PERCENTILE / 100.0 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    private static String createKey(String moduleId, String model) {
+        if (model == null || model.trim().isEmpty()) {
+            model = UNKNOWN_MODEL;
+        }
+        return model.trim() + SEPARATOR + moduleId;
+    }
+
+    private static Map<String, LinkedList<Long>> load(File file) {
+        Map<String, LinkedList<Long>> runtimeMap = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.lastIndexOf(SEPARATOR);
+                if (index <= 0) {
+                    continue;
+                }
+                LinkedList<Long> runtimes = new LinkedList<>();
+                for (String value : line.substring(index + 1).split(VALUE_SEPARATOR)) {
+                    try {
+                        runtimes.add(Long.parseLong(value));
+                    } catch (NumberFormatException e) {
+                        // Skip corrupted values
+                    }
+                }
+                if (!runtimes.isEmpty()) {
+                    runtimeMap.put(line.substring(0, index), runtimes);
+                }
+            }
+        } catch (IOException e) {
+            CLog.e("Failed to load runtime history from %s", file.getAbsolutePath());
+            CLog.e(e);
+        }
+        return runtimeMap;
+    }
+
+    private void save() {
+        File parent = mFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        // Keep the runtimes other invocations recorded since this history was loaded.
+        if (mFile.exists()) {
+            Map<String, LinkedList<Long>> runtimeMap = load(mFile);
+            for (String key : mRecordedKeys) {
+                runtimeMap.put(key, mRuntimes.get(key));
+            }
+            mRuntimes.clear();
+            mRuntimes.putAll(runtimeMap);
+        }
+        StringBuilder content = new StringBuilder();
+        for (Entry<String, LinkedList<Long>> entry : mRuntimes.entrySet()) {
+            content.append(entry.getKey()).append(SEPARATOR);
+            boolean first = true;
+            for (Long runtime : entry.getValue()) {
+                if (!first) {
+                    content.append(VALUE_SEPARATOR);
+                }
+                first = false;
+                content.append(runtime);
+            }
+            content.append(System.lineSeparator());
+        }
+        try {
+            AtomicFileUtil.write(mFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            CLog.e("Failed to save runtime history to %s", mFile.getAbsolutePath());
+            CLog.e(e);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.android.compatibility.common.tradefed.testtype.ModuleRepoTest;
 import com.android.compatibility.common.tradefed.testtype.SubPlanTest;
 import com.android.compatibility.common.tradefed.util.OptionHelperTest;
 import com.android.compatibility.common.tradefed.util.CollectorUtilTest;
+import com.android.compatibility.common.tradefed.util.RuntimeHistoryTest;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -52,6 +53,7 @@ public class UnitTests extends TestSuite {
         addTestSuite(ModuleDefTest.class);
         addTestSuite(ModuleRepoTest.class);
         addTestSuite(PropertyCheckTest.class);
+        addTestSuite(RuntimeHistoryTest.class);
         addTestSuite(SettingsPreparerTest.class);
         addTestSuite(SubPlanTest.class);
         addTestSuite(SubPlanCreatorTest.class);
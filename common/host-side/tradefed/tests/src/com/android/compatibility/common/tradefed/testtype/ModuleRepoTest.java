@@ -175,6 +175,58 @@ public class ModuleRepoTest extends TestCase {
         assertTrue("Unexpected device serial", serials.containsAll(SERIALS));
     }
 
+    public void testGetNextModule() throws Exception {
+        mRepo.initialize(3, mTestsDir, ABIS, DEVICE_TOKENS, TEST_ARGS, MODULE_ARGS, INCLUDES,
+                EXCLUDES, mBuild);
+        mRepo.getModules(SERIAL1);
+        mRepo.getModules(SERIAL2);
+        mRepo.getModules(SERIAL3);
+        // Serial 1 should run its own modules and then pick up the ones assigned to serial 2
+        Set<String> idSet = new HashSet<>();
+        IModuleDef module;
+        while ((module = mRepo.getNextModule(SERIAL1)) != null) {
+            assertFalse("Module with tokens picked up", MODULE_NAME_C.equals(module.getName()));
+            idSet.add(module.getId());
+            mRepo.finishPickUp(SERIAL1, module, true);
+        }
+        assertEquals("Wrong number of modules", 4, idSet.size());
+        assertEquals("Wrong number of modules picked up from serial 2", 2,
+                mRepo.takePickedUpModules(SERIAL2).size());
+        assertTrue("Modules picked up from serial 2 returned twice",
+                mRepo.takePickedUpModules(SERIAL2).isEmpty());
+        assertTrue("No modules picked up from serial 1",
+                mRepo.takePickedUpModules(SERIAL1).isEmpty());
+        assertNull("Serial 2 should have no modules left", mRepo.getNextModule(SERIAL2));
+        // The modules with tokens should be left for serial 3
+        assertEquals("Wrong module", MODULE_NAME_C, mRepo.getNextModule(SERIAL3).getName());
+        assertEquals("Wrong module", MODULE_NAME_C, mRepo.getNextModule(SERIAL3).getName());
+        assertNull("Serial 3 should have no modules left", mRepo.getNextModule(SERIAL3));
+    }
+
+    public void testGetNextModuleNotPrepared() throws Exception {
+        mRepo.initialize(3, mTestsDir, ABIS, DEVICE_TOKENS, TEST_ARGS, MODULE_ARGS, INCLUDES,
+                EXCLUDES, mBuild);
+        List<IModuleDef> serial1Modules = mRepo.getModules(SERIAL1);
+        List<IModuleDef> serial2Modules = mRepo.getModules(SERIAL2);
+        mRepo.getModules(SERIAL3);
+        assertSame("Wrong module", serial1Modules.get(0), mRepo.getNextModule(SERIAL1));
+        assertSame("Wrong module", serial1Modules.get(1), mRepo.getNextModule(SERIAL1));
+        // Serial 1 fails to prepare the first module it picks up from serial 2
+        IModuleDef unprepared = mRepo.getNextModule(SERIAL1);
+        assertSame("Wrong module", serial2Modules.get(0), unprepared);
+        mRepo.finishPickUp(SERIAL1, unprepared, false);
+        // so it picks up the next one, and leaves the first one to serial 2
+        IModuleDef prepared = mRepo.getNextModule(SERIAL1);
+        assertSame("Wrong module", serial2Modules.get(1), prepared);
+        mRepo.finishPickUp(SERIAL1, prepared, true);
+        assertNull("Serial 1 should have no modules left", mRepo.getNextModule(SERIAL1));
+        assertSame("Wrong module", unprepared, mRepo.getNextModule(SERIAL2));
+        assertNull("Serial 2 should have no modules left", mRepo.getNextModule(SERIAL2));
+        List<IModuleDef> pickedUp = mRepo.takePickedUpModules(SERIAL2);
+        assertEquals("Wrong number of modules picked up from serial 2", 1, pickedUp.size());
+        assertSame("Wrong module picked up from serial 2", prepared, pickedUp.get(0));
+    }
+
     public void testConfigFilter() throws Exception {
         File[] configFiles = mTestsDir.listFiles(new ConfigFilter());
         assertEquals("Wrong number of config files found.", 3, configFiles.length);
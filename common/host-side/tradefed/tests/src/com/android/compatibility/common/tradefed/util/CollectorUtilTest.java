@@ -15,8 +15,17 @@
  */
 package com.android.compatibility.common.tradefed.util;
 
+import com.android.tradefed.util.FileUtil;
+
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Unit tests for {@link CollectorUtil}
  */
@@ -28,18 +37,33 @@ public class CollectorUtilTest extends TestCase {
             + "\"stream_name_2\":"
             + "{\"id\":1,\"key1\":\"value3\"},"
             + "\"stream_name_1\":"
-            + "{\"id\":2,\"key1\":\"value2\"},"
+            + "{\"id\":2,\"key1\":\"value2\"}"
             + "}";
 
     String REFORMATTED_JSON = "{"
+            + "\"stream_name_1\":"
+            + "["
+            + "{\"id\":1,\"key1\":\"value1\"},"
+            + "{\"id\":2,\"key1\":\"value2\"}"
+            + "],"
             + "\"stream_name_2\":"
             + "["
             + "{\"id\":1,\"key1\":\"value3\"}"
-            + "],"
+            + "]"
+            + "}";
+
+    String UNFORMATTED_NESTED_JSON = "{"
+            + "\"stream_name_1\":"
+            + "{\"id\":1,\"stats\":{\"count\":2,\"values\":[1.5,2]}},"
+            + "\"stream_name_1\":"
+            + "{\"id\":2,\"stats\":{\"count\":0,\"values\":[]},\"valid\":false}"
+            + "}";
+
+    String REFORMATTED_NESTED_JSON = "{"
             + "\"stream_name_1\":"
             + "["
-            + "{\"id\":1,\"key1\":\"value1\"},"
-            + "{\"id\":2,\"key1\":\"value2\"}"
+            + "{\"id\":1,\"stats\":{\"count\":2,\"values\":[1.5,2]}},"
+            + "{\"id\":2,\"stats\":{\"count\":0,\"values\":[]},\"valid\":false}"
             + "]"
             + "}";
 
@@ -47,4 +71,83 @@ public class CollectorUtilTest extends TestCase {
         String reformattedJson = CollectorUtil.reformatJsonString(UNFORMATTED_JSON);
         assertEquals(reformattedJson, REFORMATTED_JSON);
     }
+
+    public void testReformatJsonString_nested() throws Exception {
+        String reformattedJson = CollectorUtil.reformatJsonString(UNFORMATTED_NESTED_JSON);
+        assertEquals(REFORMATTED_NESTED_JSON, reformattedJson);
+    }
+
+    public void testReformatJsonString_reformatted() throws Exception {
+        // Reformatting again leaves the streams as they are.
+        String reformattedJson = CollectorUtil.reformatJsonString(REFORMATTED_JSON);
+        assertEquals(REFORMATTED_JSON, reformattedJson);
+    }
+
+    public void testReformatJsonString_numbers() throws Exception {
+        // Numbers are copied as written, without losing precision or changing their format.
+        String values = "{\"big\":123456789012345678901234567890,"
+                + "\"precise\":0.10000000000000000555,\"exponent\":1e5,\"zero\":-0.0,"
+                + "\"values\":[1.50,-2E-3]}";
+        String reformattedJson =
+                CollectorUtil.reformatJsonString("{\"stream_name_1\":" + values + "}");
+        assertEquals("{\"stream_name_1\":[" + values + "]}", reformattedJson);
+    }
+
+    public void testExtractTar() throws Exception {
+        String longName = "sub/" + new String(new char[120]).replace('\0', 'x') + ".json";
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        addTarEntry(archive, "./", '5', new byte[0]);
+        addTarEntry(archive, "./a.reportlog.json", '0', "{}".getBytes(StandardCharsets.UTF_8));
+        addTarEntry(archive, "./sub/", '5', new byte[0]);
+        addTarEntry(archive, "././@LongLink", 'L', longName.getBytes(StandardCharsets.UTF_8));
+        byte[] data = new byte[1000];
+        Arrays.fill(data, (byte) 'y');
+        addTarEntry(archive, longName.substring(0, 100), '0', data);
+        addTarEntry(archive, "./link", '2', new byte[0]);
+        archive.write(new byte[1024]);
+
+        File dir = FileUtil.createTempDir("collector-util-test");
+        try {
+            CollectorUtil.extractTar(new ByteArrayInputStream(archive.toByteArray()), dir);
+            assertEquals(2, new File(dir, "a.reportlog.json").length());
+            assertEquals(1000, new File(dir, longName).length());
+            assertFalse(new File(dir, "link").exists());
+        } finally {
+            FileUtil.recursiveDelete(dir);
+        }
+    }
+
+    public void testExtractTar_outside() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        addTarEntry(archive, "../a.json", '0', new byte[1]);
+        archive.write(new byte[1024]);
+
+        File dir = FileUtil.createTempDir("collector-util-test");
+        try {
+            CollectorUtil.extractTar(new ByteArrayInputStream(archive.toByteArray()), dir);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            FileUtil.recursiveDelete(dir);
+        }
+    }
+
+    /**
+     * Writes a ustar entry with the given name, type and data.
+     */
+    private static void addTarEntry(ByteArrayOutputStream archive, String name, char type,
+            byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        byte[] magic = "ustar".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        archive.write(header);
+        archive.write(data);
+        archive.write(new byte[(512 - data.length % 512) % 512]);
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.tradefed.util;
+
+import com.android.tradefed.util.FileUtil;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Unit tests for {@link RuntimeHistory}
+ */
+public class RuntimeHistoryTest extends TestCase {
+
+    private static final String MODULE_ID = "armeabi-v7a FooModule";
+    private static final String MODEL_1 = "Model One";
+    private static final String MODEL_2 = "Model Two";
+    private static final long DEFAULT_RUNTIME = 1000L;
+
+    private File mDir;
+    private File mFile;
+
+    @Override
+    public void setUp() throws Exception {
+        mDir = FileUtil.createTempDir("runtime-history");
+        mFile = new File(mDir, "runtime_history.txt");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mDir);
+    }
+
+    public void testDefaultRuntime() throws Exception {
+        RuntimeHistory history = new RuntimeHistory(mFile);
+        assertEquals(DEFAULT_RUNTIME, history.getRuntime(MODULE_ID, MODEL_1, DEFAULT_RUNTIME));
+    }
+
+    public void testPercentile() throws Exception {
+        RuntimeHistory history = new RuntimeHistory(mFile);
+        for (long runtime = 10; runtime >= 1; runtime--) {
+            history.addRuntime(MODULE_ID, MODEL_1, runtime, false);
+        }
+        assertEquals(9L, history.getRuntime(MODULE_ID, MODEL_1, DEFAULT_RUNTIME));
+        assertEquals(DEFAULT_RUNTIME, history.getRuntime(MODULE_ID, MODEL_2, DEFAULT_RUNTIME));
+    }
+
+    public void testReplaceLast() throws Exception {
+        RuntimeHistory history = new RuntimeHistory(mFile);
+        history.addRuntime(MODULE_ID, MODEL_1, 5L, false);
+        history.addRuntime(MODULE_ID, MODEL_1, 7L, true);
+        assertEquals(7L, history.getRuntime(MODULE_ID, MODEL_1, DEFAULT_RUNTIME));
+    }
+
+    public void testPersistence() throws Exception {
+        RuntimeHistory history = new RuntimeHistory(mFile);
+        history.addRuntime(MODULE_ID, MODEL_1, 5L, false);
+        history.addRuntime(MODULE_ID, MODEL_2, 50L, false);
+        RuntimeHistory reloaded = new RuntimeHistory(mFile);
+        assertEquals(5L, reloaded.getRuntime(MODULE_ID, MODEL_1, DEFAULT_RUNTIME));
+        assertEquals(50L, reloaded.getRuntime(MODULE_ID, MODEL_2, DEFAULT_RUNTIME));
+    }
+
+    public void testConcurrentHistories() throws Exception {
+        RuntimeHistory history1 = new RuntimeHistory(mFile);
+        RuntimeHistory history2 = new RuntimeHistory(mFile);
+        history1.addRuntime(MODULE_ID, MODEL_1, 5L, false);
+        history2.addRuntime(MODULE_ID, MODEL_2, 50L, false);
+        history1.addRuntime(MODULE_ID, MODEL_1, 6L, true);
+        RuntimeHistory reloaded = new RuntimeHistory(mFile);
+        assertEquals(6L, reloaded.getRuntime(MODULE_ID, MODEL_1, DEFAULT_RUNTIME));
+        assertEquals(50L, reloaded.getRuntime(MODULE_ID, MODEL_2, DEFAULT_RUNTIME));
+        assertEquals(1, mDir.list().length);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Parser of ftrace data, as captured by atrace for systrace.
+ * <p/>
+ * Supports the record formats of (and should be kept in sync with) the ftrace importer in
+ * catapult:
+ * <pre>
+ * 3.2 and later with the print-tgid option:  &lt;idle&gt;-0    (    0) [001] d...  1.23: sched_switch: ...
+ * 3.2 and later (includes irq-info):         &lt;idle&gt;-0     [001] d...  1.23: sched_switch: ...
+ * pre-3.2:                                   &lt;idle&gt;-0     [001]  1.23: sched_switch: ...
+ * </pre>
+ * Lines are tokenized in a single pass without regexes, and each record is passed to an
+ * {@link FtraceEntryCallback} as soon as it is read, so a trace is never held in memory as a
+ * whole. As with the greedy regexes of the importer, the thread name ends at the last dash of the
+ * line that is followed by a valid record, so thread names may contain dashes and spaces.
+ */
+public class FtraceParser {
+
+    /**
+     * Receives the records of a trace, in order.
+     */
+    public interface FtraceEntryCallback {
+        /**
+         * @param threadName the name of the thread, as truncated by the kernel
+         * @param pid the id of the process of the thread, or -1 if not traced
+         * @param tid the id of the thread
+         * @param cpu the cpu the thread ran on
+         * @param timestampUs the time of the record, in microseconds
+         * @param eventName the name of the event, e.g. tracing_mark_write
+         * @param details the details of the event, e.g. B|1234|section
+         */
+        void onTraceEntry(String threadName, int pid, int tid, int cpu, long timestampUs,
+                String eventName, String details);
+
+        /**
+         * Called once the trace was read, also if reading it failed.
+         */
+        void onFinished();
+    }
+
+    // atrace writes this line before the trace data
+    private static final String TRACE_MARKER = "TRACE:";
+    // first byte of zlib data compressed with the default window size, as done by atrace -z
+    private static final int ZLIB_HEADER = 0x78;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MICROS_PER_SECOND = 1000000;
+
+    private final FtraceEntryCallback mCallback;
+    private int mUnmatchedLines;
+
+    // the line being read
+    private char[] mLine = new char[256];
+    private int mLength;
+
+    // the fields of the record being parsed
+    private int mPid;
+    private int mTid;
+    private int mCpu;
+    private long mTimestampUs;
+    private int mEventStart;
+    private int mEventEnd;
+
+    private FtraceParser(FtraceEntryCallback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Parses uncompressed trace data, i.e. the lines following the "TRACE:" line of atrace.
+     *
+     * @return the number of lines that are neither records nor comments
+     */
+    public static int parse(Reader reader, FtraceEntryCallback callback) throws IOException {
+        try {
+            return new FtraceParser(callback).read(reader);
+        } finally {
+            callback.onFinished();
+        }
+    }
+
+    /**
+     * Parses trace data captured with atrace -z, inflating it while it is read. The lines atrace
+     * prints before the compressed data, up to the "TRACE:" line, are skipped if present.
+     *
+     * @return the number of lines that are neither records nor comments
+     */
+    public static int parseCompressed(InputStream in, FtraceEntryCallback callback)
+            throws IOException {
+        try {
+            InputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+            skipHeader(buffered);
+            Reader reader = new InputStreamReader(
+                    new InflaterInputStream(buffered), StandardCharsets.UTF_8);
+            return new FtraceParser(callback).read(reader);
+        } finally {
+            callback.onFinished();
+        }
+    }
+
+    private static void skipHeader(InputStream in) throws IOException {
+        in.mark(1);
+        int b = in.read();
+        in.reset();
+        if (b == ZLIB_HEADER) {
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                line.append((char) b);
+                continue;
+            }
+            if (TRACE_MARKER.equals(line.toString().trim())) {
+                return;
+            }
+            line.setLength(0);
+        }
+        throw new IOException("No trace data found after " + TRACE_MARKER);
+    }
+
+    private int read(Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    endLine();
+                    continue;
+                }
+                if (mLength == mLine.length) {
+                    char[] line = new char[mLine.length * 2];
+                    System.arraycopy(mLine, 0, line, 0, mLength);
+                    mLine = line;
+                }
+                mLine[mLength++] = c;
+            }
+        }
+        endLine();
+        return mUnmatchedLines;
+    }
+
+    private void endLine() {
+        if (mLength > 0 && mLine[mLength - 1] == '\r') {
+            mLength--;
+        }
+        int start = skipWhitespace(0);
+        if (start < mLength && mLine[start] != '#' && !parseLine(start)) {
+            mUnmatchedLines++;
+        }
+        mLength = 0;
+    }
+
+    private boolean parseLine(int start) {
+        for (int dash = mLength - 1; dash > start; dash--) {
+            if (mLine[dash] == '-' && parseRecord(dash)) {
+                mCallback.onTraceEntry(
+                        new String(mLine, start, dash - start),
+                        mPid,
+                        mTid,
+                        mCpu,
+                        mTimestampUs,
+                        new String(mLine, mEventStart, mEventEnd - mEventStart),
+                        new String(mLine, mEventEnd + 2, mLength - mEventEnd - 2));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the rest of the record following the dash ending the thread name.
+     *
+     * @return true if the rest is a valid record
+     */
+    private boolean parseRecord(int dash) {
+        // thread id
+        int i = dash + 1;
+        int end = skipDigits(i);
+        if (end == i || (mTid = parseInt(i, end)) < 0) {
+            return false;
+        }
+        i = skipWhitespace(end);
+        if (i == end || i == mLength) {
+            return false;
+        }
+
+        // process id, with the print-tgid option, printed as dashes if not known
+        boolean hasTgid = mLine[i] == '(';
+        if (hasTgid) {
+            i = skipWhitespace(i + 1);
+            end = skipDigits(i);
+            if (end > i) {
+                if ((mPid = parseInt(i, end)) < 0) {
+                    return false;
+                }
+            } else {
+                while (end < mLength && mLine[end] == '-') {
+                    end++;
+                }
+                if (end == i) {
+                    return false;
+                }
+                mPid = -1;
+            }
+            if (end + 2 >= mLength || mLine[end] != ')' || !isWhitespace(mLine[end + 1])
+                    || mLine[end + 2] != '[') {
+                return false;
+            }
+            i = end + 2;
+        } else if (mLine[i] == '[') {
+            mPid = -1;
+        } else {
+            return false;
+        }
+
+        // cpu
+        i++;
+        end = skipDigits(i);
+        if (end == i || end == mLength || mLine[end] != ']' || (mCpu = parseInt(i, end)) < 0) {
+            return false;
+        }
+
+        // irq-info flags, not printed before 3.2
+        i = skipWhitespace(end + 1);
+        if (i > end + 1 && i + 4 < mLength && isFlags(i) && isWhitespace(mLine[i + 4])) {
+            i = skipWhitespace(i + 4);
+        } else if (hasTgid) {
+            return false;
+        }
+
+        // timestamp, in seconds
+        end = skipDigits(i);
+        if (end == i || end == mLength || mLine[end] != '.') {
+            return false;
+        }
+        long seconds = parseLong(i, end);
+        if (seconds > Long.MAX_VALUE / MICROS_PER_SECOND - 1) {
+            return false;
+        }
+        i = end + 1;
+        end = skipDigits(i);
+        if (end == i || end == mLength || mLine[end] != ':') {
+            return false;
+        }
+        long micros = 0;
+        for (int digit = 0; digit < 6; digit++) {
+            micros = micros * 10 + (i + digit < end ? mLine[i + digit] - '0' : 0);
+        }
+        mTimestampUs = seconds * MICROS_PER_SECOND + micros;
+
+        // event name, followed by a colon and a whitespace
+        i = end + 1;
+        mEventStart = skipWhitespace(i);
+        if (mEventStart == i) {
+            return false;
+        }
+        end = mEventStart;
+        while (end < mLength && !isWhitespace(mLine[end])) {
+            end++;
+        }
+        if (end - mEventStart < 2 || end == mLength || mLine[end - 1] != ':') {
+            return false;
+        }
+        mEventEnd = end - 1;
+        return true;
+    }
+
+    private boolean isFlags(int i) {
+        char irqsOff = mLine[i];
+        char needResched = mLine[i + 1];
+        char hardSoftIrq = mLine[i + 2];
+        char preemptDepth = mLine[i + 3];
+        return (irqsOff == 'd' || irqsOff == 'X' || irqsOff == '.')
+                && (needResched == 'N' || needResched == '.')
+                && (hardSoftIrq == 'H' || hardSoftIrq == 'h' || hardSoftIrq == 's'
+                        || hardSoftIrq == '.')
+                && ((preemptDepth >= '0' && preemptDepth <= '9')
+                        || (preemptDepth >= 'a' && preemptDepth <= 'f') || preemptDepth == '.');
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < mLength && isWhitespace(mLine[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipDigits(int i) {
+        while (i < mLength && mLine[i] >= '0' && mLine[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the value of the given digits, or -1 if it does not fit an int.
+     */
+    private int parseInt(int start, int end) {
+        long value = parseLong(start, end);
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * @return the value of the given digits, or Long.MAX_VALUE if it does not fit a long.
+     */
+    private long parseLong(int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            if (value > (Long.MAX_VALUE - 9) / 10) {
+                return Long.MAX_VALUE;
+            }
+            value = value * 10 + (mLine[i] - '0');
+        }
+        return value;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -35,6 +35,7 @@ public final class MetricsReportLog extends ReportLog {
     // preparer in cts/tools/cts-tradefed/res/config/cts-oreconditions.xml
     private static final String TEMPORARY_REPORT_FOLDER = "temp-report-logs/";
     private ReportLogHostInfoStore store;
+    private MetricsFile mMetricsFile;
 
     /**
      * @param buildInfo the test build info.
@@ -46,15 +47,27 @@ public final class MetricsReportLog extends ReportLog {
      */
     public MetricsReportLog(IBuildInfo buildInfo, String abi, String classMethodName,
             String reportLogName, String streamName) {
+        this(buildInfo, abi, classMethodName, reportLogName, streamName, false);
+    }
+
+    /**
+     * @param compressMetrics whether to gzip the {@link MetricsFile} of the report log.
+     */
+    public MetricsReportLog(IBuildInfo buildInfo, String abi, String classMethodName,
+            String reportLogName, String streamName, boolean compressMetrics) {
         super(reportLogName, streamName);
         mBuildInfo = buildInfo;
         mAbi = abi;
         mClassMethodName = classMethodName;
         try {
             final File dir = FileUtil.createNamedTempDir(TEMPORARY_REPORT_FOLDER);
-            File jsonFile = new File(dir, mReportLogName + ".reportlog.json");
+            File jsonFile = new File(dir, mReportLogName + ReportLog.JSON_LINES_EXTENSION);
             store = new ReportLogHostInfoStore(jsonFile, mStreamName);
             store.open();
+            File metricsFile =
+                    new File(dir, MetricsFile.getFileName(mReportLogName, compressMetrics));
+            mMetricsFile = new MetricsFile(metricsFile);
+            setMetricsFileName(metricsFile.getName());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -67,6 +80,7 @@ public final class MetricsReportLog extends ReportLog {
     public void addValue(String source, String message, double value, ResultType type,
             ResultUnit unit) {
         super.addValue(source, message, value, type, unit);
+        writeMetric(source, message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -80,6 +94,7 @@ public final class MetricsReportLog extends ReportLog {
     @Override
     public void addValue(String message, double value, ResultType type, ResultUnit unit) {
         super.addValue(message, value, type, unit);
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -95,6 +110,7 @@ public final class MetricsReportLog extends ReportLog {
     public void addValues(String source, String message, double[] values, ResultType type,
                           ResultUnit unit) {
         super.addValues(source, message, values, type, unit);
+        writeMetric(source, message, values, type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -108,6 +124,7 @@ public final class MetricsReportLog extends ReportLog {
     @Override
     public void addValues(String message, double[] values, ResultType type, ResultUnit unit) {
         super.addValues(message, values, type, unit);
+        writeMetric("", message, values, type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -120,6 +137,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, int value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -132,6 +150,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, long value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -144,6 +163,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValue(String message, float value, ResultType type, ResultUnit unit) {
+        writeMetric("", message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -180,6 +200,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, int[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -192,6 +213,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, long[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -204,6 +226,7 @@ public final class MetricsReportLog extends ReportLog {
      */
     @Override
     public void addValues(String message, float[] values, ResultType type, ResultUnit unit) {
+        writeMetric("", message, MetricsFile.toDoubles(values), type, unit);
         try {
             store.addArrayResult(message, values);
         } catch (IOException e) {
@@ -235,6 +258,18 @@ public final class MetricsReportLog extends ReportLog {
         }
     }
 
+    /**
+     * Adds the statistics of a {@link StatSketch} to the report.
+     */
+    @Override
+    public void addValues(String message, StatSketch sketch, ResultType type, ResultUnit unit) {
+        try {
+            store.addSketchResult(message, sketch, type, unit);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Sets the summary double metric of the report.
      *
@@ -243,6 +278,7 @@ public final class MetricsReportLog extends ReportLog {
     @Override
     public void setSummary(String message, double value, ResultType type, ResultUnit unit) {
         super.setSummary(message, value, type, unit);
+        writeMetric(mSummary.getSource(), message, new double[] {value}, type, unit);
         try {
             store.addResult(message, value);
         } catch (IOException e) {
@@ -250,12 +286,28 @@ public final class MetricsReportLog extends ReportLog {
         }
     }
 
+    private void writeMetric(String source, String message, double[] values, ResultType type,
+            ResultUnit unit) {
+        if (mMetricsFile == null) {
+            return;
+        }
+        try {
+            mMetricsFile.write(mStreamName, new Metric(source, message, values, type, unit));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Closes report file and submits report.
      */
     public void submit() {
         try {
             store.close();
+            if (mMetricsFile != null) {
+                mMetricsFile.close();
+                mMetricsFile = null;
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -15,6 +15,7 @@
  */
 package com.android.compatibility.common.util;
 
+import com.android.json.stream.JsonReader;
 import com.android.json.stream.JsonWriter;
 
 import java.io.BufferedReader;
@@ -23,7 +24,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 
+/**
+ * Stores the metrics of a report log stream as one line of a JSON lines file, see
+ * {@link ReportLog#JSON_LINES_EXTENSION}.
+ * <p/>
+ * Each stream is appended to the file without reading the streams already in it, so submitting
+ * a stream costs the same however many streams were submitted before.
+ */
 public class ReportLogHostInfoStore extends HostInfoStore {
 
     private final String mStreamName;
@@ -41,57 +51,145 @@ public class ReportLogHostInfoStore extends HostInfoStore {
     @Override
     public void open() throws IOException {
         // Write new metrics to a temp file to avoid invalid JSON files due to failed tests.
-        BufferedWriter formatWriter;
-        tempJsonFile.createNewFile();
-        formatWriter = new BufferedWriter(new FileWriter(tempJsonFile));
-        if (mJsonFile.exists()) {
-            BufferedReader jsonReader = new BufferedReader(new FileReader(mJsonFile));
-            String currentLine;
-            String nextLine = jsonReader.readLine();
-            while ((currentLine = nextLine) != null) {
-                nextLine = jsonReader.readLine();
-                if (nextLine == null && currentLine.charAt(currentLine.length() - 1) == '}') {
-                    // Reopen overall JSON object to write new metrics.
-                    currentLine = currentLine.substring(0, currentLine.length() - 1) + ",";
-                }
-                // Copy to temp file directly to avoid large metrics string in memory.
-                formatWriter.write(currentLine, 0, currentLine.length());
-            }
-            jsonReader.close();
-        } else {
-            formatWriter.write("{", 0 , 1);
-        }
-        // Start new JSON object for new metrics.
-        formatWriter.write("\"" + mStreamName + "\":", 0, mStreamName.length() + 3);
-        formatWriter.flush();
-        formatWriter.close();
-        mJsonWriter = new JsonWriter(new FileWriter(tempJsonFile, true));
+        mJsonWriter = new JsonWriter(new BufferedWriter(new FileWriter(tempJsonFile)));
         mJsonWriter.beginObject();
     }
 
     /**
-     * Closes the writer.
+     * Closes the writer and appends the metric stream to the JSON lines file.
      */
     @Override
     public void close() throws IOException {
         // Close JSON Writer.
         mJsonWriter.endObject();
         mJsonWriter.close();
-        // Close overall JSON Object.
-        try (BufferedWriter formatWriter = new BufferedWriter(new FileWriter(tempJsonFile, true))) {
-            formatWriter.write("}", 0, 1);
+        // Append metrics from temp file as a single line and delete temp file.
+        appendJsonLine(mJsonFile, mStreamName, tempJsonFile);
+        tempJsonFile.delete();
+    }
+
+    /**
+     * Merges the JSON lines files of the report logs in the given directory and its
+     * subdirectories into their JSON files, and deletes them.
+     * <p/>
+     * The streams of a report log become the members of a single JSON object, following those of
+     * an existing JSON file of the same report log. Lines that are not a complete JSON object,
+     * such as those left incomplete by a failed test, and a last line without a line break are
+     * skipped.
+     */
+    public static void mergeJsonLines(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                mergeJsonLines(file);
+                continue;
+            } else if (!name.endsWith(ReportLog.JSON_LINES_EXTENSION)) {
+                continue;
+            }
+            String reportLogName =
+                    name.substring(0, name.length() - ReportLog.JSON_LINES_EXTENSION.length());
+            File jsonFile = new File(dir, reportLogName + ReportLog.JSON_EXTENSION);
+            File mergedFile = File.createTempFile(reportLogName, "-merged-report-log", dir);
+            try (BufferedWriter metricsWriter = new BufferedWriter(new FileWriter(mergedFile))) {
+                metricsWriter.write("{");
+                boolean first = true;
+                if (jsonFile.exists()) {
+                    first = appendMembers(readFile(jsonFile), metricsWriter, first);
+                }
+                try (BufferedReader jsonReader = new BufferedReader(new FileReader(file))) {
+                    String line;
+                    while ((line = readCompleteLine(jsonReader)) != null) {
+                        first = appendMembers(line, metricsWriter, first);
+                    }
+                }
+                metricsWriter.write("}");
+            }
+            if ((jsonFile.exists() && !jsonFile.delete()) || !mergedFile.renameTo(jsonFile)) {
+                mergedFile.delete();
+                throw new IOException(String.format("Could not write %s",
+                        jsonFile.getAbsolutePath()));
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Reads the next line ended by a line break.
+     *
+     * @return the line without its line break, or null at the end of the input, including when
+     * the last line has no line break.
+     */
+    private static String readCompleteLine(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the members of the given JSON object, if it is complete.
+     *
+     * @return whether no member was written yet, including those written before.
+     */
+    private static boolean appendMembers(String jsonObject, BufferedWriter metricsWriter,
+            boolean first) throws IOException {
+        jsonObject = jsonObject.trim();
+        if (!jsonObject.startsWith("{") || !jsonObject.endsWith("}")
+                || !isJsonObject(jsonObject)) {
+            return first;
+        }
+        String members = jsonObject.substring(1, jsonObject.length() - 1).trim();
+        if (members.isEmpty()) {
+            return first;
+        }
+        if (!first) {
+            metricsWriter.write(",");
         }
-        // Copy metrics from temp file and delete temp file.
-        mJsonFile.createNewFile();
-        try (
-                BufferedReader jsonReader = new BufferedReader(new FileReader(tempJsonFile));
-                BufferedWriter metricsWriter = new BufferedWriter(new FileWriter(mJsonFile))
-        ) {
+        metricsWriter.write(members, 0, members.length());
+        return false;
+    }
+
+    /**
+     * @return whether the given string is a single valid JSON object.
+     */
+    private static boolean isJsonObject(String json) {
+        // Wrapped in an array, so that content after the object is parsed too.
+        JsonReader reader = new JsonReader(new StringReader("[" + json + "]"));
+        try {
+            reader.beginArray();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                reader.skipValue();
+            }
+            reader.endObject();
+            if (reader.hasNext()) {
+                return false;
+            }
+            reader.endArray();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        try (BufferedReader jsonReader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = jsonReader.readLine()) != null) {
-                // Copy from temp file directly to avoid large metrics string in memory.
-                metricsWriter.write(line, 0, line.length());
+                stringBuilder.append(line);
             }
         }
+        return stringBuilder.toString();
     }
 }
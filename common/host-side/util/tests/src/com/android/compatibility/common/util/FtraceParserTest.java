@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.compatibility.common.util;
+
+import com.android.compatibility.common.util.FtraceParser.FtraceEntryCallback;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Unit tests for {@link FtraceParser}
+ */
+public class FtraceParserTest extends TestCase {
+
+    private static final String TRACE =
+            "# tracer: nop\n" +
+            "#\n" +
+            "#           TASK-PID    TGID   CPU#  ||||    TIMESTAMP  FUNCTION\n" +
+            "#              | |        |      |   ||||       |         |\n" +
+            "          <idle>-0     (-----) [001] d..2  1234.567890: sched_switch: " +
+                    "prev_comm=swapper/1 ==> next_comm=RenderThread\n" +
+            "    RenderThread-2345  ( 1234) [002] ...1  1234.600001: tracing_mark_write: " +
+                    "B|1234|Record View#draw()\n" +
+            " Binder:1234_2-1300  [000] dNh.    12.5: tracing_mark_write: E\r\n" +
+            "   main thread-99    [003]  1.000002: cpu_idle: state=1 cpu_id=3\n" +
+            "not a trace record\n" +
+            "     kworker/0:1-20    [000] ...1    5.000000: workqueue_execute_start: " +
+                    "work struct 0x1: function x";
+
+    private static class Collector implements FtraceEntryCallback {
+        final List<String> mEntries = new ArrayList<>();
+        boolean mFinished;
+
+        @Override
+        public void onTraceEntry(String threadName, int pid, int tid, int cpu,
+                long timestampUs, String eventName, String details) {
+            mEntries.add(threadName + "|" + pid + "|" + tid + "|" + cpu + "|" + timestampUs + "|"
+                    + eventName + "|" + details);
+        }
+
+        @Override
+        public void onFinished() {
+            mFinished = true;
+        }
+    }
+
+    private static final String[] ENTRIES = {
+        "<idle>|-1|0|1|1234567890|sched_switch|prev_comm=swapper/1 ==> next_comm=RenderThread",
+        "RenderThread|1234|2345|2|1234600001|tracing_mark_write|B|1234|Record View#draw()",
+        "Binder:1234_2|-1|1300|0|12500000|tracing_mark_write|E",
+        "main thread|-1|99|3|1000002|cpu_idle|state=1 cpu_id=3",
+        "kworker/0:1|-1|20|0|5000000|workqueue_execute_start|work struct 0x1: function x",
+    };
+
+    public void testParse() throws Exception {
+        Collector collector = new Collector();
+        assertEquals(1, FtraceParser.parse(new StringReader(TRACE), collector));
+        assertTrue(collector.mFinished);
+        assertEquals(Arrays.asList(ENTRIES), collector.mEntries);
+    }
+
+    public void testParseThreadNameWithDashes() throws Exception {
+        Collector collector = new Collector();
+        FtraceParser.parse(new StringReader(
+                "  Thread-1-12 (   12) [000] ....    1.5: tracing_mark_write: C|12|a-1 [0]|3\n" +
+                // split at the last dash followed by a valid record, as the greedy regexes did
+                "  a-1 [000] ....  1.5: tracing_mark_write: b-2 [001] ....  2.5: sched_switch: x\n"),
+                collector);
+        assertEquals(Arrays.asList(
+                "Thread-1|12|12|0|1500000|tracing_mark_write|C|12|a-1 [0]|3",
+                "a-1 [000] ....  1.5: tracing_mark_write: b|-1|2|1|2500000|sched_switch|x"),
+                collector.mEntries);
+    }
+
+    public void testParseInvalidRecords() throws Exception {
+        Collector collector = new Collector();
+        int unmatchedLines = FtraceParser.parse(new StringReader(
+                // tgid records require irq-info flags
+                "  a-1 (1) [000] 1.5: tracing_mark_write: x\n" +
+                // invalid flags
+                "  a-1 [000] z...  1.5: tracing_mark_write: x\n" +
+                // no details
+                "  a-1 [000] ....  1.5: tracing_mark_write:\n" +
+                // no fractional seconds
+                "  a-1 [000] ....  1: tracing_mark_write: x\n" +
+                // no thread name
+                "-1 [000] ....  1.5: tracing_mark_write: x\n"),
+                collector);
+        assertTrue(collector.mFinished);
+        assertEquals(0, collector.mEntries.size());
+        assertEquals(5, unmatchedLines);
+    }
+
+    public void testParseCompressed() throws Exception {
+        for (String header : new String[] {"", "TRACE:\n", "capturing trace... done\nTRACE:\n"}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(header.getBytes(StandardCharsets.UTF_8));
+            DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+            deflater.write(TRACE.getBytes(StandardCharsets.UTF_8));
+            deflater.close();
+
+            Collector collector = new Collector();
+            FtraceParser.parseCompressed(new ByteArrayInputStream(out.toByteArray()), collector);
+            assertTrue(collector.mFinished);
+            assertEquals(Arrays.asList(ENTRIES), collector.mEntries);
+        }
+    }
+
+    public void testParseCompressedWithoutData() throws Exception {
+        Collector collector = new Collector();
+        try {
+            FtraceParser.parseCompressed(new ByteArrayInputStream(
+                    "capturing trace... done\n".getBytes(StandardCharsets.UTF_8)), collector);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(collector.mFinished);
+    }
+}
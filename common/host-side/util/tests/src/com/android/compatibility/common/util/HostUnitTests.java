@@ -28,6 +28,8 @@ public class HostUnitTests extends TestSuite {
     public HostUnitTests() {
         super();
         addTestSuite(DynamicConfigHandlerTest.class);
+        addTestSuite(FtraceParserTest.class);
+        addTestSuite(ReportLogHostInfoStoreTest.class);
     }
 
     public static Test suite() {
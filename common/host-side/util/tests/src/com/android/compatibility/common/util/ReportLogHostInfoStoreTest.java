@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.compatibility.common.util;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link ReportLogHostInfoStore}
+ */
+public class ReportLogHostInfoStoreTest extends TestCase {
+
+    private static final String REPORT_LOG_NAME = "SampleReport";
+
+    private File mDir;
+
+    @Override
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("report-log-test", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    public void testMergeJsonLines() throws Exception {
+        File jsonLinesFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_LINES_EXTENSION);
+        writeStream(jsonLinesFile, "stream_1", 1);
+        writeStream(jsonLinesFile, "stream_2", 2);
+        writeStream(jsonLinesFile, "stream_1", 3);
+        assertEquals("{\"stream_1\":{\"id\":1}}", readLine(jsonLinesFile, 0));
+        assertEquals("{\"stream_2\":{\"id\":2}}", readLine(jsonLinesFile, 1));
+
+        // A line left incomplete by a failed test is skipped.
+        try (FileWriter writer = new FileWriter(jsonLinesFile, true)) {
+            writer.write("{\"stream_3\":{\"id\":");
+        }
+        ReportLogHostInfoStore.mergeJsonLines(mDir);
+
+        assertFalse(jsonLinesFile.exists());
+        File jsonFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_EXTENSION);
+        assertEquals("{\"stream_1\":{\"id\":1},\"stream_2\":{\"id\":2},\"stream_1\":{\"id\":3}}",
+                readLine(jsonFile, 0));
+    }
+
+    public void testMergeJsonLines_truncatedRecord() throws Exception {
+        File jsonLinesFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_LINES_EXTENSION);
+        writeStream(jsonLinesFile, "stream_1", 1);
+        // A record cut short by a failed test is kept apart from the next one.
+        try (FileWriter writer = new FileWriter(jsonLinesFile, true)) {
+            writer.write("{\"stream_2\":{\"id\":{\"x\":");
+        }
+        writeStream(jsonLinesFile, "stream_3", 3);
+        // A line that merely starts and ends with a brace is not a complete object.
+        try (FileWriter writer = new FileWriter(jsonLinesFile, true)) {
+            writer.write("{\"stream_4\":{\"id\":4}}x}\n");
+        }
+        writeStream(jsonLinesFile, "stream_5", 5);
+        ReportLogHostInfoStore.mergeJsonLines(mDir);
+
+        File jsonFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_EXTENSION);
+        assertEquals("{\"stream_1\":{\"id\":1},\"stream_3\":{\"id\":3},\"stream_5\":{\"id\":5}}",
+                readLine(jsonFile, 0));
+    }
+
+    public void testMergeJsonLines_existingJson() throws Exception {
+        File jsonFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_EXTENSION);
+        try (FileWriter writer = new FileWriter(jsonFile)) {
+            writer.write("{\"stream_1\":{\"id\":1}}");
+        }
+        File jsonLinesFile = new File(mDir, REPORT_LOG_NAME + ReportLog.JSON_LINES_EXTENSION);
+        writeStream(jsonLinesFile, "stream_2", 2);
+        ReportLogHostInfoStore.mergeJsonLines(mDir);
+
+        assertFalse(jsonLinesFile.exists());
+        assertEquals("{\"stream_1\":{\"id\":1},\"stream_2\":{\"id\":2}}", readLine(jsonFile, 0));
+        assertEquals(1, mDir.listFiles().length);
+    }
+
+    private static void writeStream(File file, String streamName, int id) throws Exception {
+        ReportLogHostInfoStore store = new ReportLogHostInfoStore(file, streamName);
+        store.open();
+        store.addResult("id", id);
+        store.close();
+    }
+
+    private static String readLine(File file, int index) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = null;
+            for (int i = 0; i <= index; i++) {
+                line = reader.readLine();
+            }
+            return line;
+        }
+    }
+}
@@ -67,19 +67,46 @@ public interface IInvocationResult {
 
     /**
      * @return the {@link IModuleResult} for the given id, creating one if it doesn't exist
+     * @throws IllegalStateException if only a summary of the module is held, see
+     * {@link #setModuleSummary(IModuleSummary)}.
      */
     IModuleResult getOrCreateModule(String id);
 
     /**
-     * @return the {@link IModuleResult}s sorted by id.
+     * @return the {@link IModuleResult}s sorted by id, not including the modules of which only a
+     * summary is held.
      */
     List<IModuleResult> getModules();
 
+    /**
+     * @return the {@link IModuleSummary} for the given id, which is its {@link IModuleResult} if
+     * held, or null if it doesn't exist.
+     */
+    IModuleSummary getModuleSummary(String id);
+
+    /**
+     * @return the {@link IModuleSummary}s of all modules sorted by id, including those of which
+     * the {@link IModuleResult} is held.
+     */
+    List<IModuleSummary> getModuleSummaries();
+
     /**
      * Merges a module result to the invocation result.
      */
     void mergeModuleResult(IModuleResult moduleResult);
 
+    /**
+     * Replaces the module result with the same id by the given one, adding it if it doesn't
+     * exist.
+     */
+    void setModule(IModuleResult moduleResult);
+
+    /**
+     * Replaces the module with the same id by a summary of it, whose results are kept elsewhere,
+     * adding it if it doesn't exist.
+     */
+    void setModuleSummary(IModuleSummary moduleSummary);
+
     /**
      * Adds the given invocation info to the result.
      */
@@ -15,31 +15,15 @@
  */
 package com.android.compatibility.common.util;
 
-import java.util.List;
-
 /**
  * Data structure for a Compatibility test module result.
  */
-public interface IModuleResult extends Comparable<IModuleResult> {
-
-    String getId();
-
-    String getName();
-
-    String getAbi();
+public interface IModuleResult extends IModuleSummary {
 
     void addRuntime(long elapsedTime);
 
-    long getRuntime();
-
-    boolean isDone();
-
     void setDone(boolean done);
 
-    boolean isPassed();
-
-    int getNotExecuted();
-
     void setNotExecuted(int numTests);
 
     /**
@@ -50,24 +34,6 @@ public interface IModuleResult extends Comparable<IModuleResult> {
      */
     ICaseResult getOrCreateResult(String caseName);
 
-    /**
-     * Gets the {@link ICaseResult} result for given testcase.
-     *
-     * @param caseName the name of the testcase eg &lt;package-name&gt;&lt;class-name&gt;
-     * @return the {@link ITestResult} or <code>null</code>
-     */
-    ICaseResult getResult(String caseName);
-
-    /**
-     * Gets all results sorted by name.
-     */
-    List<ICaseResult> getResults();
-
-    /**
-     * Counts the number of results which have the given status.
-     */
-    int countResults(TestStatus status);
-
     /**
      * Merge the module results from otherModuleResult into this moduleResult.
      */
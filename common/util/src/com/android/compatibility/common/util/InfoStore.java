@@ -15,8 +15,13 @@
  */
 package com.android.compatibility.common.util;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.List;
 
@@ -126,6 +131,44 @@ public abstract class InfoStore {
      */
     abstract void addListResult(String name, List<String> list) throws IOException;
 
+    /**
+     * Adds the statistics and the quantile histogram of a {@link StatSketch} to the InfoStore
+     * as a group, so that sketches from several runs can be merged later.
+     * <p/>
+     * At most {@link #MAX_ARRAY_LENGTH} buckets of each sign are added, which spans about 8
+     * orders of magnitude. Values of smaller magnitudes are counted in the smallest bucket added.
+     */
+    void addSketchResult(String name, StatSketch sketch, ResultType type, ResultUnit unit)
+            throws IOException {
+        startGroup(name);
+        if (type != null) {
+            addResult("result_type", type.toReportString());
+        }
+        if (unit != null) {
+            addResult("result_unit", unit.toReportString());
+        }
+        addResult("count", sketch.getCount());
+        if (sketch.getCount() > 0) {
+            addResult("average", sketch.getAverage());
+            addResult("min", sketch.getMin());
+            addResult("max", sketch.getMax());
+            if (sketch.getCount() > 1) {
+                addResult("stddev", sketch.getStddev());
+            }
+            addResult("percentile_50", sketch.getQuantile(0.5));
+            addResult("percentile_90", sketch.getQuantile(0.9));
+            addResult("percentile_95", sketch.getQuantile(0.95));
+            addResult("percentile_99", sketch.getQuantile(0.99));
+        }
+        addResult("relative_accuracy", StatSketch.RELATIVE_ACCURACY);
+        addResult("zero_count", sketch.getZeroCount());
+        addResult("positive_offset", sketch.getBucketOffset(false, MAX_ARRAY_LENGTH));
+        addArrayResult("positive_counts", sketch.getBucketCounts(false, MAX_ARRAY_LENGTH));
+        addResult("negative_offset", sketch.getBucketOffset(true, MAX_ARRAY_LENGTH));
+        addArrayResult("negative_counts", sketch.getBucketCounts(true, MAX_ARRAY_LENGTH));
+        endGroup();
+    }
+
     protected static int[] checkArray(int[] values) {
         if (values.length > MAX_ARRAY_LENGTH) {
             return Arrays.copyOf(values, MAX_ARRAY_LENGTH);
@@ -193,4 +236,42 @@ public abstract class InfoStore {
     protected static boolean isDoubleNaNOrInfinite(Double value) {
         return Double.isNaN(value) || Double.isInfinite(value);
     }
+
+    /**
+     * Appends the JSON object in jsonFile to a JSON lines file as a single line holding the
+     * metrics of the given stream, see {@link ReportLog#JSON_LINES_EXTENSION}.
+     * <p/>
+     * A last line left without a line break, e.g. by a failed test, is ended first so that it
+     * stays apart from the appended one.
+     */
+    protected static void appendJsonLine(File jsonLinesFile, String streamName, File jsonFile)
+            throws IOException {
+        try (
+                BufferedReader jsonReader = new BufferedReader(new FileReader(jsonFile));
+                BufferedWriter metricsWriter =
+                        new BufferedWriter(new FileWriter(jsonLinesFile, true))
+        ) {
+            if (!endsWithNewLine(jsonLinesFile)) {
+                metricsWriter.newLine();
+            }
+            metricsWriter.write("{\"" + streamName + "\":");
+            String line;
+            while ((line = jsonReader.readLine()) != null) {
+                // Copy from the file directly to avoid large metrics string in memory.
+                metricsWriter.write(line, 0, line.length());
+            }
+            metricsWriter.write("}");
+            metricsWriter.newLine();
+        }
+    }
+
+    private static boolean endsWithNewLine(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(file.length() - 1);
+            return input.read() == '\n';
+        }
+    }
 }
@@ -31,6 +31,8 @@ public class InvocationResult implements IInvocationResult {
 
     private long mTimestamp;
     private Map<String, IModuleResult> mModuleResults = new LinkedHashMap<>();
+    // The summaries of all modules, including those in mModuleResults.
+    private Map<String, IModuleSummary> mModuleSummaries = new LinkedHashMap<>();
     private Map<String, String> mInvocationInfo = new HashMap<>();
     private Set<String> mSerials = new HashSet<>();
     private String mBuildFingerprint;
@@ -48,13 +50,31 @@ public class InvocationResult implements IInvocationResult {
         return modules;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IModuleSummary getModuleSummary(String id) {
+        return mModuleSummaries.get(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<IModuleSummary> getModuleSummaries() {
+        ArrayList<IModuleSummary> modules = new ArrayList<>(mModuleSummaries.values());
+        Collections.sort(modules);
+        return modules;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int countResults(TestStatus result) {
         int total = 0;
-        for (IModuleResult m : mModuleResults.values()) {
+        for (IModuleSummary m : mModuleSummaries.values()) {
             total += m.countResults(result);
         }
         return total;
@@ -66,7 +86,7 @@ public class InvocationResult implements IInvocationResult {
     @Override
     public int getNotExecuted() {
         int numTests = 0;
-        for (IModuleResult module : mModuleResults.values()) {
+        for (IModuleSummary module : mModuleSummaries.values()) {
             numTests += module.getNotExecuted();
         }
         return numTests;
@@ -79,8 +99,12 @@ public class InvocationResult implements IInvocationResult {
     public IModuleResult getOrCreateModule(String id) {
         IModuleResult moduleResult = mModuleResults.get(id);
         if (moduleResult == null) {
+            if (mModuleSummaries.containsKey(id)) {
+                throw new IllegalStateException(String.format(
+                        "Only a summary of %s is held", id));
+            }
             moduleResult = new ModuleResult(id);
-            mModuleResults.put(id, moduleResult);
+            setModule(moduleResult);
         }
         return moduleResult;
     }
@@ -95,6 +119,24 @@ public class InvocationResult implements IInvocationResult {
         existingModuleResult.mergeFrom(moduleResult);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModule(IModuleResult moduleResult) {
+        mModuleResults.put(moduleResult.getId(), moduleResult);
+        mModuleSummaries.put(moduleResult.getId(), moduleResult);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModuleSummary(IModuleSummary moduleSummary) {
+        mModuleResults.remove(moduleSummary.getId());
+        mModuleSummaries.put(moduleSummary.getId(), moduleSummary);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -194,7 +236,7 @@ public class InvocationResult implements IInvocationResult {
     @Override
     public int getModuleCompleteCount() {
         int completeModules = 0;
-        for (IModuleResult module : mModuleResults.values()) {
+        for (IModuleSummary module : mModuleSummaries.values()) {
             if (module.isDone()) {
                 completeModules++;
             }
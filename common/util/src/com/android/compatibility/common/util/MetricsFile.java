@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import com.android.compatibility.common.util.ReportLog.Metric;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact binary file of {@link Metric}s, holding all of their values.
+ * <p/>
+ * Report logs append the metrics they record to a metrics file next to their JSON file, and the
+ * summary of the report log in the result XML refers to it. The file is a sequence of records
+ * written with {@link DataOutputStream}: a magic number, the stream name, the metric's source,
+ * message, type and unit, the number of values and the values. Files named with
+ * {@link #COMPRESSED_EXTENSION} are gzip compressed, with one gzip member for each time the file
+ * was opened for appending.
+ */
+public class MetricsFile implements Closeable {
+
+    public static final String EXTENSION = ".reportlog.metrics";
+    public static final String COMPRESSED_EXTENSION = EXTENSION + ".gz";
+
+    private static final int RECORD_MAGIC = 0x524c4d31; // "RLM1"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream mOutput;
+
+    /**
+     * Opens the given file for appending metrics, compressed if its name ends with
+     * {@link #COMPRESSED_EXTENSION}.
+     */
+    public MetricsFile(File file) throws IOException {
+        OutputStream output =
+                new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+        if (isCompressed(file)) {
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+        mOutput = new DataOutputStream(output);
+    }
+
+    /**
+     * @return the name of the metrics file of the given report log.
+     */
+    public static String getFileName(String reportLogName, boolean compressed) {
+        return reportLogName + (compressed ? COMPRESSED_EXTENSION : EXTENSION);
+    }
+
+    private static boolean isCompressed(File file) {
+        return file.getName().endsWith(COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Appends a metric of the given stream to the file.
+     */
+    public void write(String streamName, Metric metric) throws IOException {
+        mOutput.writeInt(RECORD_MAGIC);
+        mOutput.writeUTF(streamName == null ? "" : streamName);
+        mOutput.writeUTF(metric.getSource());
+        mOutput.writeUTF(metric.getMessage());
+        mOutput.writeUTF(metric.getType().toReportString());
+        mOutput.writeUTF(metric.getUnit().toReportString());
+        double[] values = metric.getValues();
+        mOutput.writeInt(values.length);
+        for (double value : values) {
+            mOutput.writeDouble(value);
+        }
+    }
+
+    /**
+     * Flushes the metrics written so far and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        mOutput.close();
+    }
+
+    static double[] toDoubles(int[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    static double[] toDoubles(long[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    static double[] toDoubles(float[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    /**
+     * Reads the metrics of a stream back from a metrics file.
+     *
+     * @param streamName the stream to read, or null to read the metrics of all streams.
+     */
+    public static List<Metric> read(File file, String streamName) throws IOException {
+        List<Metric> metrics = new ArrayList<>();
+        InputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            if (isCompressed(file)) {
+                input = new GZIPInputStream(input, BUFFER_SIZE);
+            }
+            DataInputStream data = new DataInputStream(input);
+            while (true) {
+                int magic;
+                try {
+                    magic = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (magic != RECORD_MAGIC) {
+                    throw new IOException(String.format("Corrupted metrics file %s",
+                            file.getAbsolutePath()));
+                }
+                String stream = data.readUTF();
+                String source = data.readUTF();
+                String message = data.readUTF();
+                ResultType type = ResultType.parseReportString(data.readUTF());
+                ResultUnit unit = ResultUnit.parseReportString(data.readUTF());
+                double[] values = new double[data.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = data.readDouble();
+                }
+                if (streamName == null || streamName.equals(stream)) {
+                    metrics.add(new Metric(source, message, values, type, unit));
+                }
+            }
+        } finally {
+            input.close();
+        }
+        return metrics;
+    }
+}
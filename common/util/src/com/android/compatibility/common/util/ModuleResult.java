@@ -168,7 +168,7 @@ public class ModuleResult implements IModuleResult {
      * {@inheritDoc}
      */
     @Override
-    public int compareTo(IModuleResult another) {
+    public int compareTo(IModuleSummary another) {
         return getId().compareTo(another.getId());
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.compatibility.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only summary of a module result, holding its counts and the names of its failed tests
+ * but none of the details of its results.
+ */
+class ModuleResultSummary implements IModuleSummary {
+
+    private final String mId;
+    private final long mRuntime;
+    private final boolean mDone;
+    private final int mNotExecuted;
+    private final Map<TestStatus, Integer> mCounts = new HashMap<>();
+    private final Map<String, ICaseResult> mFailedResults = new HashMap<>();
+
+    /**
+     * Creates a summary of the given module.
+     */
+    ModuleResultSummary(IModuleSummary module) {
+        this(module.getId(), module.getRuntime(), module.isDone(), module.getNotExecuted());
+        for (TestStatus status : TestStatus.values()) {
+            setCount(status, module.countResults(status));
+        }
+        for (ICaseResult caseResult : module.getResults()) {
+            for (ITestResult testResult : caseResult.getResults(TestStatus.FAIL)) {
+                addFailedTest(caseResult.getName(), testResult.getName());
+            }
+        }
+    }
+
+    /**
+     * Creates an empty summary, to be filled in with {@link #setCount(TestStatus, int)} and
+     * {@link #addFailedTest(String, String)}.
+     */
+    ModuleResultSummary(String id, long runtime, boolean done, int notExecuted) {
+        mId = id;
+        mRuntime = runtime;
+        mDone = done;
+        mNotExecuted = notExecuted;
+    }
+
+    void setCount(TestStatus status, int count) {
+        mCounts.put(status, count);
+    }
+
+    void addFailedTest(String caseName, String testName) {
+        ICaseResult caseResult = mFailedResults.get(caseName);
+        if (caseResult == null) {
+            caseResult = new CaseResult(caseName);
+            mFailedResults.put(caseName, caseResult);
+        }
+        caseResult.getOrCreateResult(testName).setResultStatus(TestStatus.FAIL);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return AbiUtils.parseTestName(mId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAbi() {
+        return AbiUtils.parseAbi(mId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRuntime() {
+        return mRuntime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isPassed() {
+        return mDone && countResults(TestStatus.FAIL) == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNotExecuted() {
+        return mNotExecuted;
+    }
+
+    /**
+     * @return the {@link ICaseResult} holding the failed tests of the given case, or null if
+     * none of its tests failed.
+     */
+    @Override
+    public ICaseResult getResult(String caseName) {
+        return mFailedResults.get(caseName);
+    }
+
+    /**
+     * @return the {@link ICaseResult}s holding the failed tests of this module, sorted by name.
+     */
+    @Override
+    public List<ICaseResult> getResults() {
+        ArrayList<ICaseResult> results = new ArrayList<>(mFailedResults.values());
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countResults(TestStatus status) {
+        Integer count = mCounts.get(status);
+        return (count == null) ? 0 : count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(IModuleSummary another) {
+        return getId().compareTo(another.getId());
+    }
+}
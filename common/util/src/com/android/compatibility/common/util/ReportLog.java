@@ -26,7 +26,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -34,6 +33,14 @@ import java.util.List;
  */
 public class ReportLog implements Serializable {
 
+    /** Extension of the JSON file of a report log, holding all of its streams. */
+    public static final String JSON_EXTENSION = ".reportlog.json";
+    /**
+     * Extension of the file report logs append their streams to, one JSON object per line, which
+     * is merged into the {@link #JSON_EXTENSION} file once collected.
+     */
+    public static final String JSON_LINES_EXTENSION = ".reportlog.jsonl";
+
     private static final String ENCODING = "UTF-8";
     private static final String TYPE = "org.kxml2.io.KXmlParser,org.kxml2.io.KXmlSerializer";
 
@@ -43,6 +50,7 @@ public class ReportLog implements Serializable {
     private static final String SCORETYPE_ATTR = "score_type";
     private static final String SCOREUNIT_ATTR = "score_unit";
     private static final String SOURCE_ATTR = "source";
+    private static final String METRICS_FILE_ATTR = "metrics_file";
     private static final String SUMMARY_TAG = "Summary";
     private static final String VALUE_TAG = "Value";
     private static final String DEFAULT_NAME = "default";
@@ -50,6 +58,7 @@ public class ReportLog implements Serializable {
     protected Metric mSummary;
     protected String mReportLogName;
     protected String mStreamName;
+    protected String mMetricsFileName;
 
     public static class Metric implements Serializable {
         private static final int MAX_SOURCE_LENGTH = 200;
@@ -71,6 +80,9 @@ public class ReportLog implements Serializable {
          * class, method and line number information about the test which added this result which is
          * collected by looking at the stack trace.
          *
+         * All values are kept, only the first {@value #MAX_NUM_VALUES} are serialized to XML, see
+         * {@link MetricsFile} for the complete values.
+         *
          * @param message A string describing the values
          * @param values An array of the values
          * @param type Represents how to interpret the values (eg. A lower score is better)
@@ -91,13 +103,7 @@ public class ReportLog implements Serializable {
             } else {
                 mMessage = message;
             }
-            int valuesLength = values.length;
-            if (valuesLength > MAX_NUM_VALUES) {
-                // Subarray from the start
-                mValues = Arrays.copyOf(values, MAX_NUM_VALUES);
-            } else {
-                mValues = values;
-            }
+            mValues = values;
             mType = type;
             mUnit = unit;
         }
@@ -129,9 +135,11 @@ public class ReportLog implements Serializable {
             serializer.attribute(null, MESSAGE_ATTR, getMessage());
             serializer.attribute(null, SCORETYPE_ATTR, getType().toReportString());
             serializer.attribute(null, SCOREUNIT_ATTR, getUnit().toReportString());
-            for (double d : getValues()) {
+            // Subarray from the start
+            int length = Math.min(mValues.length, MAX_NUM_VALUES);
+            for (int i = 0; i < length; i++) {
                 serializer.startTag(null, VALUE_TAG);
-                serializer.text(Double.toString(d));
+                serializer.text(Double.toString(mValues[i]));
                 serializer.endTag(null, VALUE_TAG);
             }
             serializer.endTag(null, METRIC_TAG);
@@ -271,6 +279,13 @@ public class ReportLog implements Serializable {
         // Do nothing. Subclasses may implement using InfoStore to write metrics to files.
     }
 
+    /**
+     * Adds the statistics of a {@link StatSketch} to the report, in place of the raw values.
+     */
+    public void addValues(String message, StatSketch sketch, ResultType type, ResultUnit unit) {
+        // Do nothing. Subclasses may implement using InfoStore to write metrics to files.
+    }
+
     /**
      * @param elem
      */
@@ -292,6 +307,21 @@ public class ReportLog implements Serializable {
         return mSummary;
     }
 
+    /**
+     * @return the name of the {@link MetricsFile} holding the complete metrics of the report,
+     * relative to the report log directory of the result, or null.
+     */
+    public String getMetricsFileName() {
+        return mMetricsFileName;
+    }
+
+    /**
+     * Sets the name of the {@link MetricsFile} holding the complete metrics of the report.
+     */
+    public void setMetricsFileName(String metricsFileName) {
+        mMetricsFileName = metricsFileName;
+    }
+
     /**
      * Serializes a given {@link ReportLog} to a String.
      * @throws XmlPullParserException
@@ -326,6 +356,9 @@ public class ReportLog implements Serializable {
         // Summary is optional. Details are not included in result report.
         if (summary != null) {
             serializer.startTag(null, SUMMARY_TAG);
+            if (reportLog.getMetricsFileName() != null) {
+                serializer.attribute(null, METRICS_FILE_ATTR, reportLog.getMetricsFileName());
+            }
             summary.serialize(serializer);
             serializer.endTag(null, SUMMARY_TAG);
         }
@@ -364,8 +397,9 @@ public class ReportLog implements Serializable {
      */
     public static ReportLog parse(XmlPullParser parser) throws XmlPullParserException, IOException {
         parser.require(XmlPullParser.START_TAG, null, SUMMARY_TAG);
-        parser.nextTag();
         ReportLog report = new ReportLog();
+        report.setMetricsFileName(parser.getAttributeValue(null, METRICS_FILE_ATTR));
+        parser.nextTag();
         report.setSummary(Metric.parse(parser));
         parser.nextTag();
         parser.require(XmlPullParser.END_TAG, null, SUMMARY_TAG);
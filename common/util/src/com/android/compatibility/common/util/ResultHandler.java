@@ -34,6 +34,7 @@ import java.util.Comparator;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -47,6 +48,7 @@ public class ResultHandler {
     private static final String NS = null;
     private static final String RESULT_FILE_VERSION = "5.0";
     /* package */ static final String TEST_RESULT_FILE_NAME = "test_result.xml";
+    /* package */ static final String TEST_RESULT_INDEX_FILE_NAME = "test_result.index";
 
     // XML constants
     private static final String ABI_ATTR = "abi";
@@ -63,6 +65,7 @@ public class ResultHandler {
     private static final String END_TIME_ATTR = "end";
     private static final String FAILED_ATTR = "failed";
     private static final String FAILURE_TAG = "Failure";
+    private static final String FAILED_TESTS_TAG = "FailedTests";
     private static final String HOST_NAME_ATTR = "host_name";
     private static final String JAVA_VENDOR_ATTR = "java_vendor";
     private static final String JAVA_VERSION_ATTR = "java_version";
@@ -82,7 +85,7 @@ public class ResultHandler {
     private static final String REFERENCE_URL_ATTR = "reference_url";
     private static final String RESULT_ATTR = "result";
     private static final String RESULT_TAG = "Result";
-    private static final String RUNTIME_ATTR = "runtime";
+    /* package */ static final String RUNTIME_ATTR = "runtime";
     private static final String SCREENSHOT_TAG = "Screenshot";
     private static final String STACK_TAG = "StackTrace";
     private static final String START_DISPLAY_TIME_ATTR = "start_display";
@@ -95,125 +98,182 @@ public class ResultHandler {
     private static final String TEST_TAG = "Test";
 
     /**
+     * Fully parses the results of every session in the given directory, sorted by start time.
+     *
      * @param resultsDir
+     * @see #getResultSummaries(File)
      */
     public static List<IInvocationResult> getResults(File resultsDir) {
         List<IInvocationResult> results = new ArrayList<>();
+        for (File resultDir : getResultDirs(resultsDir)) {
+            try {
+                results.add(parseResult(new File(resultDir, TEST_RESULT_FILE_NAME)));
+            } catch (XmlPullParserException e) {
+                e.printStackTrace();
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        sortByStartTime(results);
+        return results;
+    }
+
+    /**
+     * Loads a summary of every session in the given directory, sorted by start time.
+     * <p/>
+     * The summaries are read from the index written next to each result file, which holds the
+     * invocation attributes, the counts of each module and the names of its failed tests, but
+     * none of the details of the results. Sessions without an up to date index are parsed once
+     * and indexed, so that later calls don't need to parse their result file again.
+     *
+     * @param resultsDir
+     */
+    public static List<IInvocationResult> getResultSummaries(File resultsDir) {
+        List<IInvocationResult> results = new ArrayList<>();
+        for (IndexedResult indexed : getIndexedResults(resultsDir)) {
+            results.add(indexed.mSummary);
+        }
+        return results;
+    }
+
+    /**
+     * @return the directories holding a result file in the given directory.
+     */
+    private static List<File> getResultDirs(File resultsDir) {
+        List<File> resultDirs = new ArrayList<>();
         File[] files = resultsDir.listFiles();
         if (files == null || files.length == 0) {
             // No results, just return the empty list
-            return results;
+            return resultDirs;
         }
         for (File resultDir : files) {
-            if (!resultDir.isDirectory()) {
-                continue;
+            if (resultDir.isDirectory() && new File(resultDir, TEST_RESULT_FILE_NAME).exists()) {
+                resultDirs.add(resultDir);
             }
-            try {
-                File resultFile = new File(resultDir, TEST_RESULT_FILE_NAME);
-                if (!resultFile.exists()) {
-                    continue;
-                }
-                IInvocationResult invocation = new InvocationResult();
-                XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-                XmlPullParser parser = factory.newPullParser();
-                parser.setInput(new FileReader(resultFile));
+        }
+        return resultDirs;
+    }
 
-                parser.nextTag();
-                parser.require(XmlPullParser.START_TAG, NS, RESULT_TAG);
-                invocation.setStartTime(Long.valueOf(
-                        parser.getAttributeValue(NS, START_TIME_ATTR)));
-                invocation.setTestPlan(parser.getAttributeValue(NS, SUITE_PLAN_ATTR));
-                invocation.setCommandLineArgs(parser.getAttributeValue(NS, COMMAND_LINE_ARGS));
-                String deviceList = parser.getAttributeValue(NS, DEVICES_ATTR);
-                for (String device : deviceList.split(",")) {
-                    invocation.addDeviceSerial(device);
+    /**
+     * @return the summary of each session in the given directory along with its directory,
+     * sorted by start time.
+     */
+    private static List<IndexedResult> getIndexedResults(File resultsDir) {
+        List<IndexedResult> results = new ArrayList<>();
+        for (File resultDir : getResultDirs(resultsDir)) {
+            File resultFile = new File(resultDir, TEST_RESULT_FILE_NAME);
+            File indexFile = new File(resultDir, TEST_RESULT_INDEX_FILE_NAME);
+            IInvocationResult summary = null;
+            if (indexFile.exists() && indexFile.lastModified() >= resultFile.lastModified()) {
+                try {
+                    summary = parseIndex(indexFile);
+                } catch (XmlPullParserException | IOException e) {
+                    // Stale or corrupted index, fall back to the result file.
+                    e.printStackTrace();
                 }
-
-                parser.nextTag();
-                parser.require(XmlPullParser.START_TAG, NS, BUILD_TAG);
-                invocation.addInvocationInfo(BUILD_ID, parser.getAttributeValue(NS, BUILD_ID));
-                invocation.addInvocationInfo(BUILD_PRODUCT, parser.getAttributeValue(NS,
-                        BUILD_PRODUCT));
-                invocation.setBuildFingerprint(parser.getAttributeValue(NS, BUILD_FINGERPRINT));
-
-                // TODO(stuartscott): may want to reload these incase the retry was done with
-                // --skip-device-info flag
-                parser.nextTag();
-                parser.require(XmlPullParser.END_TAG, NS, BUILD_TAG);
-                parser.nextTag();
-                parser.require(XmlPullParser.START_TAG, NS, SUMMARY_TAG);
-                parser.nextTag();
-                parser.require(XmlPullParser.END_TAG, NS, SUMMARY_TAG);
-                while (parser.nextTag() == XmlPullParser.START_TAG) {
-                    parser.require(XmlPullParser.START_TAG, NS, MODULE_TAG);
-                    String name = parser.getAttributeValue(NS, NAME_ATTR);
-                    String abi = parser.getAttributeValue(NS, ABI_ATTR);
-                    String moduleId = AbiUtils.createId(abi, name);
-                    boolean done = Boolean.parseBoolean(parser.getAttributeValue(NS, DONE_ATTR));
-                    IModuleResult module = invocation.getOrCreateModule(moduleId);
-                    module.setDone(done);
-                    int notExecuted =
-                            Integer.parseInt(parser.getAttributeValue(NS, NOT_EXECUTED_ATTR));
-                    module.setNotExecuted(notExecuted);
-                    while (parser.nextTag() == XmlPullParser.START_TAG) {
-                        parser.require(XmlPullParser.START_TAG, NS, CASE_TAG);
-                        String caseName = parser.getAttributeValue(NS, NAME_ATTR);
-                        ICaseResult testCase = module.getOrCreateResult(caseName);
-                        while (parser.nextTag() == XmlPullParser.START_TAG) {
-                            parser.require(XmlPullParser.START_TAG, NS, TEST_TAG);
-                            String testName = parser.getAttributeValue(NS, NAME_ATTR);
-                            ITestResult test = testCase.getOrCreateResult(testName);
-                            String result = parser.getAttributeValue(NS, RESULT_ATTR);
-                            test.setResultStatus(TestStatus.getStatus(result));
-                            test.setRetry(true);
-                            while (parser.nextTag() == XmlPullParser.START_TAG) {
-                                if (parser.getName().equals(FAILURE_TAG)) {
-                                    test.setMessage(parser.getAttributeValue(NS, MESSAGE_ATTR));
-                                    if (parser.nextTag() == XmlPullParser.START_TAG) {
-                                        parser.require(XmlPullParser.START_TAG, NS, STACK_TAG);
-                                        test.setStackTrace(parser.nextText());
-                                        parser.require(XmlPullParser.END_TAG, NS, STACK_TAG);
-                                        parser.nextTag();
-                                    }
-                                    parser.require(XmlPullParser.END_TAG, NS, FAILURE_TAG);
-                                } else if (parser.getName().equals(BUGREPORT_TAG)) {
-                                    test.setBugReport(parser.nextText());
-                                    parser.require(XmlPullParser.END_TAG, NS, BUGREPORT_TAG);
-                                } else if (parser.getName().equals(LOGCAT_TAG)) {
-                                    test.setLog(parser.nextText());
-                                    parser.require(XmlPullParser.END_TAG, NS, LOGCAT_TAG);
-                                } else if (parser.getName().equals(SCREENSHOT_TAG)) {
-                                    test.setScreenshot(parser.nextText());
-                                    parser.require(XmlPullParser.END_TAG, NS, SCREENSHOT_TAG);
-                                } else {
-                                    test.setReportLog(ReportLog.parse(parser));
-                                }
-                            }
-                            parser.require(XmlPullParser.END_TAG, NS, TEST_TAG);
-                        }
-                        parser.require(XmlPullParser.END_TAG, NS, CASE_TAG);
-                    }
-                    parser.require(XmlPullParser.END_TAG, NS, MODULE_TAG);
+            }
+            if (summary == null) {
+                try {
+                    IInvocationResult result = parseResult(resultFile);
+                    summary = summarize(result);
+                    writeIndex(result, resultDir, result.getStartTime(), result.getTestPlan(),
+                            result.getCommandLineArgs());
+                } catch (XmlPullParserException e) {
+                    e.printStackTrace();
+                } catch (FileNotFoundException e) {
+                    e.printStackTrace();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
-                parser.require(XmlPullParser.END_TAG, NS, RESULT_TAG);
-                results.add(invocation);
-            } catch (XmlPullParserException e) {
-                e.printStackTrace();
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
+            }
+            if (summary != null) {
+                results.add(new IndexedResult(resultDir, summary));
             }
         }
         // Sort the table entries on each entry's timestamp.
-        Collections.sort(results, new Comparator<IInvocationResult>() {
-            public int compare(IInvocationResult result1, IInvocationResult result2) {
-                return Long.compare(result1.getStartTime(), result2.getStartTime());
+        Collections.sort(results, new Comparator<IndexedResult>() {
+            public int compare(IndexedResult result1, IndexedResult result2) {
+                return Long.compare(result1.mSummary.getStartTime(),
+                        result2.mSummary.getStartTime());
             }
         });
         return results;
     }
 
+    /**
+     * Fully parses the given result file.
+     */
+    private static IInvocationResult parseResult(File resultFile)
+            throws XmlPullParserException, IOException {
+        IInvocationResult invocation = new InvocationResult();
+        try (FileReader reader = new FileReader(resultFile)) {
+            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+            XmlPullParser parser = factory.newPullParser();
+            parser.setInput(reader);
+
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, NS, RESULT_TAG);
+            parseResultAttributes(parser, invocation);
+
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, NS, BUILD_TAG);
+            parseBuildAttributes(parser, invocation);
+
+            // TODO(stuartscott): may want to reload these incase the retry was done with
+            // --skip-device-info flag
+            parser.nextTag();
+            parser.require(XmlPullParser.END_TAG, NS, BUILD_TAG);
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, NS, SUMMARY_TAG);
+            parser.nextTag();
+            parser.require(XmlPullParser.END_TAG, NS, SUMMARY_TAG);
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                parseModule(parser, invocation);
+            }
+            parser.require(XmlPullParser.END_TAG, NS, RESULT_TAG);
+        }
+        return invocation;
+    }
+
+    private static void parseResultAttributes(XmlPullParser parser, IInvocationResult invocation) {
+        invocation.setStartTime(Long.valueOf(parser.getAttributeValue(NS, START_TIME_ATTR)));
+        invocation.setTestPlan(parser.getAttributeValue(NS, SUITE_PLAN_ATTR));
+        invocation.setCommandLineArgs(parser.getAttributeValue(NS, COMMAND_LINE_ARGS));
+        String deviceList = parser.getAttributeValue(NS, DEVICES_ATTR);
+        for (String device : deviceList.split(",")) {
+            invocation.addDeviceSerial(device);
+        }
+    }
+
+    private static void parseBuildAttributes(XmlPullParser parser, IInvocationResult invocation) {
+        invocation.addInvocationInfo(BUILD_ID, parser.getAttributeValue(NS, BUILD_ID));
+        invocation.addInvocationInfo(BUILD_PRODUCT, parser.getAttributeValue(NS, BUILD_PRODUCT));
+        invocation.setBuildFingerprint(parser.getAttributeValue(NS, BUILD_FINGERPRINT));
+    }
+
+    /**
+     * @return a copy of the given result holding a {@link ModuleResultSummary} of each module.
+     */
+    private static IInvocationResult summarize(IInvocationResult result) {
+        IInvocationResult summary = new InvocationResult();
+        summary.setStartTime(result.getStartTime());
+        summary.setTestPlan(result.getTestPlan());
+        summary.setCommandLineArgs(result.getCommandLineArgs());
+        summary.setBuildFingerprint(result.getBuildFingerprint());
+        for (String serial : result.getDeviceSerials()) {
+            summary.addDeviceSerial(serial);
+        }
+        for (Entry<String, String> entry : result.getInvocationInfo().entrySet()) {
+            summary.addInvocationInfo(entry.getKey(), entry.getValue());
+        }
+        for (IModuleSummary module : result.getModuleSummaries()) {
+            summary.setModuleSummary(new ModuleResultSummary(module));
+        }
+        return summary;
+    }
+
     /**
      * @param result
      * @param resultDir
@@ -230,6 +290,23 @@ public class ResultHandler {
             long startTime, long endTime, String referenceUrl, String logUrl,
             String commandLineArgs)
                     throws IOException, XmlPullParserException {
+        return writeResults(suiteName, suiteVersion, suitePlan, suiteBuild, result, null,
+                resultDir, startTime, endTime, referenceUrl, logUrl, commandLineArgs);
+    }
+
+    /**
+     * Writes the results, streaming the modules that were written to the given journal from the
+     * journal instead of serializing them from memory.
+     *
+     * @param journal A nullable {@link ResultJournal} holding the results of completed modules
+     * @see #writeResults(String, String, String, String, IInvocationResult, File, long, long,
+     * String, String, String)
+     */
+    public static File writeResults(String suiteName, String suiteVersion, String suitePlan,
+            String suiteBuild, IInvocationResult result, ResultJournal journal, File resultDir,
+            long startTime, long endTime, String referenceUrl, String logUrl,
+            String commandLineArgs)
+                    throws IOException, XmlPullParserException {
         int passed = result.countResults(TestStatus.PASS);
         int failed = result.countResults(TestStatus.FAIL);
         int notExecuted = result.getNotExecuted();
@@ -303,70 +380,305 @@ public class ResultHandler {
         serializer.attribute(NS, MODULES_EXECUTED_ATTR,
                 Integer.toString(result.getModuleCompleteCount()));
         serializer.attribute(NS, MODULES_TOTAL_ATTR,
-                Integer.toString(result.getModules().size()));
+                Integer.toString(result.getModuleSummaries().size()));
         serializer.endTag(NS, SUMMARY_TAG);
 
         // Results
-        for (IModuleResult module : result.getModules()) {
-            serializer.startTag(NS, MODULE_TAG);
-            serializer.attribute(NS, NAME_ATTR, module.getName());
-            serializer.attribute(NS, ABI_ATTR, module.getAbi());
-            serializer.attribute(NS, RUNTIME_ATTR, String.valueOf(module.getRuntime()));
-            serializer.attribute(NS, DONE_ATTR, Boolean.toString(module.isDone()));
-            serializer.attribute(NS, NOT_EXECUTED_ATTR, Integer.toString(module.getNotExecuted()));
-            for (ICaseResult cr : module.getResults()) {
-                serializer.startTag(NS, CASE_TAG);
-                serializer.attribute(NS, NAME_ATTR, cr.getName());
-                for (ITestResult r : cr.getResults()) {
-                    TestStatus status = r.getResultStatus();
-                    if (status == null) {
-                        continue; // test was not executed, don't report
-                    }
-                    serializer.startTag(NS, TEST_TAG);
-                    serializer.attribute(NS, RESULT_ATTR, status.getValue());
-                    serializer.attribute(NS, NAME_ATTR, r.getName());
-                    String message = r.getMessage();
-                    if (message != null) {
-                        serializer.startTag(NS, FAILURE_TAG);
-                        serializer.attribute(NS, MESSAGE_ATTR, message);
-                        String stackTrace = r.getStackTrace();
-                        if (stackTrace != null) {
-                            serializer.startTag(NS, STACK_TAG);
-                            serializer.text(stackTrace);
-                            serializer.endTag(NS, STACK_TAG);
-                        }
-                        serializer.endTag(NS, FAILURE_TAG);
-                    }
-                    String bugreport = r.getBugReport();
-                    if (bugreport != null) {
-                        serializer.startTag(NS, BUGREPORT_TAG);
-                        serializer.text(bugreport);
-                        serializer.endTag(NS, BUGREPORT_TAG);
-                    }
-                    String logcat = r.getLog();
-                    if (logcat != null) {
-                        serializer.startTag(NS, LOGCAT_TAG);
-                        serializer.text(logcat);
-                        serializer.endTag(NS, LOGCAT_TAG);
+        for (IModuleSummary module : result.getModuleSummaries()) {
+            if (journal != null && journal.contains(module)) {
+                // Stream the module from the journal rather than holding it in memory.
+                serializer.flush();
+                journal.copyModule(module.getId(), stream);
+            } else {
+                serializeModule(serializer, result.getOrCreateModule(module.getId()));
+            }
+        }
+        serializer.endDocument();
+        stream.close();
+        writeIndex(result, resultDir, startTime, suitePlan, commandLineArgs);
+        return resultFile;
+    }
+
+    /**
+     * Writes the result file of a session that ended without writing one, from the modules
+     * recovered from its journal.
+     *
+     * @param journalFile the journal the session wrote its completed modules to
+     * @param resultDir the result directory of the session
+     * @param startTime the start time of the session
+     * @return The result file created, or null if the session already has a result file or
+     * there is nothing to recover.
+     * @throws IOException if the journal could not be read, or is still in use by the session.
+     * @throws XmlPullParserException
+     */
+    public static File recoverResults(String suiteName, String suiteVersion, String suitePlan,
+            String suiteBuild, File journalFile, File resultDir, long startTime)
+                    throws IOException, XmlPullParserException {
+        if (new File(resultDir, TEST_RESULT_FILE_NAME).exists() || !journalFile.exists()) {
+            return null;
+        }
+        ResultJournal journal = new ResultJournal(journalFile);
+        try {
+            List<IModuleSummary> modules = journal.getModules();
+            if (modules.isEmpty()) {
+                return null;
+            }
+            IInvocationResult result = new InvocationResult();
+            result.setStartTime(startTime);
+            result.setTestPlan(suitePlan);
+            for (IModuleSummary module : modules) {
+                result.setModuleSummary(module);
+            }
+            // The journal was last written when the last module completed.
+            long endTime = Math.max(startTime, journalFile.lastModified());
+            return writeResults(suiteName, suiteVersion, suitePlan, suiteBuild, result, journal,
+                    resultDir, startTime, endTime, null, null, null);
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Writes the index of the given result, which summarizes the result file so the session can
+     * be listed without parsing it, see {@link #getResultSummaries(File)}.
+     */
+    private static void writeIndex(IInvocationResult result, File resultDir, long startTime,
+            String suitePlan, String commandLineArgs) throws IOException, XmlPullParserException {
+        File indexFile = new File(resultDir, TEST_RESULT_INDEX_FILE_NAME);
+        try (OutputStream stream = new FileOutputStream(indexFile)) {
+            XmlSerializer serializer =
+                    XmlPullParserFactory.newInstance(TYPE, null).newSerializer();
+            serializer.setOutput(stream, ENCODING);
+            serializer.startDocument(ENCODING, false);
+            serializer.startTag(NS, RESULT_TAG);
+            serializer.attribute(NS, REPORT_VERSION_ATTR, RESULT_FILE_VERSION);
+            serializer.attribute(NS, START_TIME_ATTR, String.valueOf(startTime));
+            serializer.attribute(NS, SUITE_PLAN_ATTR, nullToEmpty(suitePlan));
+            serializer.attribute(NS, COMMAND_LINE_ARGS, nullToEmpty(commandLineArgs));
+            StringBuilder deviceList = new StringBuilder();
+            for (String device : result.getDeviceSerials()) {
+                if (deviceList.length() > 0) {
+                    deviceList.append(",");
+                }
+                deviceList.append(device);
+            }
+            serializer.attribute(NS, DEVICES_ATTR, deviceList.toString());
+
+            Map<String, String> invocationInfo = result.getInvocationInfo();
+            String fingerprint = result.getBuildFingerprint();
+            if (fingerprint == null) {
+                fingerprint = invocationInfo.get(BUILD_FINGERPRINT);
+            }
+            serializer.startTag(NS, BUILD_TAG);
+            serializer.attribute(NS, BUILD_ID, nullToEmpty(invocationInfo.get(BUILD_ID)));
+            serializer.attribute(NS, BUILD_PRODUCT,
+                    nullToEmpty(invocationInfo.get(BUILD_PRODUCT)));
+            serializer.attribute(NS, BUILD_FINGERPRINT, nullToEmpty(fingerprint));
+            serializer.endTag(NS, BUILD_TAG);
+
+            for (IModuleSummary module : result.getModuleSummaries()) {
+                serializer.startTag(NS, MODULE_TAG);
+                serializer.attribute(NS, NAME_ATTR, module.getName());
+                serializer.attribute(NS, ABI_ATTR, module.getAbi());
+                serializer.attribute(NS, RUNTIME_ATTR, String.valueOf(module.getRuntime()));
+                serializer.attribute(NS, DONE_ATTR, Boolean.toString(module.isDone()));
+                serializer.attribute(NS, NOT_EXECUTED_ATTR,
+                        Integer.toString(module.getNotExecuted()));
+                serializer.attribute(NS, PASS_ATTR,
+                        Integer.toString(module.countResults(TestStatus.PASS)));
+                serializer.attribute(NS, FAILED_ATTR,
+                        Integer.toString(module.countResults(TestStatus.FAIL)));
+                serializer.startTag(NS, FAILED_TESTS_TAG);
+                for (ICaseResult cr : module.getResults()) {
+                    for (ITestResult r : cr.getResults(TestStatus.FAIL)) {
+                        serializer.startTag(NS, TEST_TAG);
+                        serializer.attribute(NS, NAME_ATTR, r.getFullName());
+                        serializer.endTag(NS, TEST_TAG);
                     }
-                    String screenshot = r.getScreenshot();
-                    if (screenshot != null) {
-                        serializer.startTag(NS, SCREENSHOT_TAG);
-                        serializer.text(screenshot);
-                        serializer.endTag(NS, SCREENSHOT_TAG);
+                }
+                serializer.endTag(NS, FAILED_TESTS_TAG);
+                serializer.endTag(NS, MODULE_TAG);
+            }
+            serializer.endTag(NS, RESULT_TAG);
+            serializer.endDocument();
+        }
+    }
+
+    /**
+     * Parses the index of a result, see {@link #writeIndex(IInvocationResult, File, long, String,
+     * String)}.
+     */
+    private static IInvocationResult parseIndex(File indexFile)
+            throws XmlPullParserException, IOException {
+        IInvocationResult invocation = new InvocationResult();
+        try (FileReader reader = new FileReader(indexFile)) {
+            XmlPullParser parser = XmlPullParserFactory.newInstance(TYPE, null).newPullParser();
+            parser.setInput(reader);
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, NS, RESULT_TAG);
+            if (!RESULT_FILE_VERSION.equals(parser.getAttributeValue(NS, REPORT_VERSION_ATTR))) {
+                throw new XmlPullParserException(String.format("Outdated index %s",
+                        indexFile.getAbsolutePath()));
+            }
+            parseResultAttributes(parser, invocation);
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, NS, BUILD_TAG);
+            parseBuildAttributes(parser, invocation);
+            parser.nextTag();
+            parser.require(XmlPullParser.END_TAG, NS, BUILD_TAG);
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                parser.require(XmlPullParser.START_TAG, NS, MODULE_TAG);
+                String moduleId = AbiUtils.createId(parser.getAttributeValue(NS, ABI_ATTR),
+                        parser.getAttributeValue(NS, NAME_ATTR));
+                ModuleResultSummary module = new ModuleResultSummary(moduleId,
+                        Long.parseLong(parser.getAttributeValue(NS, RUNTIME_ATTR)),
+                        Boolean.parseBoolean(parser.getAttributeValue(NS, DONE_ATTR)),
+                        Integer.parseInt(parser.getAttributeValue(NS, NOT_EXECUTED_ATTR)));
+                module.setCount(TestStatus.PASS,
+                        Integer.parseInt(parser.getAttributeValue(NS, PASS_ATTR)));
+                module.setCount(TestStatus.FAIL,
+                        Integer.parseInt(parser.getAttributeValue(NS, FAILED_ATTR)));
+                parser.nextTag();
+                parser.require(XmlPullParser.START_TAG, NS, FAILED_TESTS_TAG);
+                while (parser.nextTag() == XmlPullParser.START_TAG) {
+                    parser.require(XmlPullParser.START_TAG, NS, TEST_TAG);
+                    // Full names are <case-name>#<test-name>
+                    String fullName = parser.getAttributeValue(NS, NAME_ATTR);
+                    int separator = fullName.lastIndexOf('#');
+                    module.addFailedTest(fullName.substring(0, separator),
+                            fullName.substring(separator + 1));
+                    parser.nextTag();
+                    parser.require(XmlPullParser.END_TAG, NS, TEST_TAG);
+                }
+                parser.require(XmlPullParser.END_TAG, NS, FAILED_TESTS_TAG);
+                parser.nextTag();
+                parser.require(XmlPullParser.END_TAG, NS, MODULE_TAG);
+                invocation.setModuleSummary(module);
+            }
+            parser.require(XmlPullParser.END_TAG, NS, RESULT_TAG);
+        }
+        return invocation;
+    }
+
+    /**
+     * Serializes a module element and all of its results.
+     */
+    static void serializeModule(XmlSerializer serializer, IModuleResult module)
+            throws IOException {
+        serializer.startTag(NS, MODULE_TAG);
+        serializer.attribute(NS, NAME_ATTR, module.getName());
+        serializer.attribute(NS, ABI_ATTR, module.getAbi());
+        serializer.attribute(NS, RUNTIME_ATTR, String.valueOf(module.getRuntime()));
+        serializer.attribute(NS, DONE_ATTR, Boolean.toString(module.isDone()));
+        serializer.attribute(NS, NOT_EXECUTED_ATTR, Integer.toString(module.getNotExecuted()));
+        for (ICaseResult cr : module.getResults()) {
+            serializer.startTag(NS, CASE_TAG);
+            serializer.attribute(NS, NAME_ATTR, cr.getName());
+            for (ITestResult r : cr.getResults()) {
+                TestStatus status = r.getResultStatus();
+                if (status == null) {
+                    continue; // test was not executed, don't report
+                }
+                serializer.startTag(NS, TEST_TAG);
+                serializer.attribute(NS, RESULT_ATTR, status.getValue());
+                serializer.attribute(NS, NAME_ATTR, r.getName());
+                String message = r.getMessage();
+                if (message != null) {
+                    serializer.startTag(NS, FAILURE_TAG);
+                    serializer.attribute(NS, MESSAGE_ATTR, message);
+                    String stackTrace = r.getStackTrace();
+                    if (stackTrace != null) {
+                        serializer.startTag(NS, STACK_TAG);
+                        serializer.text(stackTrace);
+                        serializer.endTag(NS, STACK_TAG);
                     }
-                    ReportLog report = r.getReportLog();
-                    if (report != null) {
-                        ReportLog.serialize(serializer, report);
+                    serializer.endTag(NS, FAILURE_TAG);
+                }
+                String bugreport = r.getBugReport();
+                if (bugreport != null) {
+                    serializer.startTag(NS, BUGREPORT_TAG);
+                    serializer.text(bugreport);
+                    serializer.endTag(NS, BUGREPORT_TAG);
+                }
+                String logcat = r.getLog();
+                if (logcat != null) {
+                    serializer.startTag(NS, LOGCAT_TAG);
+                    serializer.text(logcat);
+                    serializer.endTag(NS, LOGCAT_TAG);
+                }
+                String screenshot = r.getScreenshot();
+                if (screenshot != null) {
+                    serializer.startTag(NS, SCREENSHOT_TAG);
+                    serializer.text(screenshot);
+                    serializer.endTag(NS, SCREENSHOT_TAG);
+                }
+                ReportLog report = r.getReportLog();
+                if (report != null) {
+                    ReportLog.serialize(serializer, report);
+                }
+                serializer.endTag(NS, TEST_TAG);
+            }
+            serializer.endTag(NS, CASE_TAG);
+        }
+        serializer.endTag(NS, MODULE_TAG);
+    }
+
+    /**
+     * Parses a module element and its results into the given invocation, the parser must be
+     * positioned on the module's start tag and is left on its end tag.
+     */
+    static IModuleResult parseModule(XmlPullParser parser, IInvocationResult invocation)
+            throws XmlPullParserException, IOException {
+        parser.require(XmlPullParser.START_TAG, NS, MODULE_TAG);
+        String name = parser.getAttributeValue(NS, NAME_ATTR);
+        String abi = parser.getAttributeValue(NS, ABI_ATTR);
+        String moduleId = AbiUtils.createId(abi, name);
+        boolean done = Boolean.parseBoolean(parser.getAttributeValue(NS, DONE_ATTR));
+        IModuleResult module = invocation.getOrCreateModule(moduleId);
+        module.setDone(done);
+        int notExecuted =
+                Integer.parseInt(parser.getAttributeValue(NS, NOT_EXECUTED_ATTR));
+        module.setNotExecuted(notExecuted);
+        while (parser.nextTag() == XmlPullParser.START_TAG) {
+            parser.require(XmlPullParser.START_TAG, NS, CASE_TAG);
+            String caseName = parser.getAttributeValue(NS, NAME_ATTR);
+            ICaseResult testCase = module.getOrCreateResult(caseName);
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                parser.require(XmlPullParser.START_TAG, NS, TEST_TAG);
+                String testName = parser.getAttributeValue(NS, NAME_ATTR);
+                ITestResult test = testCase.getOrCreateResult(testName);
+                String result = parser.getAttributeValue(NS, RESULT_ATTR);
+                test.setResultStatus(TestStatus.getStatus(result));
+                test.setRetry(true);
+                while (parser.nextTag() == XmlPullParser.START_TAG) {
+                    if (parser.getName().equals(FAILURE_TAG)) {
+                        test.setMessage(parser.getAttributeValue(NS, MESSAGE_ATTR));
+                        if (parser.nextTag() == XmlPullParser.START_TAG) {
+                            parser.require(XmlPullParser.START_TAG, NS, STACK_TAG);
+                            test.setStackTrace(parser.nextText());
+                            parser.require(XmlPullParser.END_TAG, NS, STACK_TAG);
+                            parser.nextTag();
+                        }
+                        parser.require(XmlPullParser.END_TAG, NS, FAILURE_TAG);
+                    } else if (parser.getName().equals(BUGREPORT_TAG)) {
+                        test.setBugReport(parser.nextText());
+                        parser.require(XmlPullParser.END_TAG, NS, BUGREPORT_TAG);
+                    } else if (parser.getName().equals(LOGCAT_TAG)) {
+                        test.setLog(parser.nextText());
+                        parser.require(XmlPullParser.END_TAG, NS, LOGCAT_TAG);
+                    } else if (parser.getName().equals(SCREENSHOT_TAG)) {
+                        test.setScreenshot(parser.nextText());
+                        parser.require(XmlPullParser.END_TAG, NS, SCREENSHOT_TAG);
+                    } else {
+                        test.setReportLog(ReportLog.parse(parser));
                     }
-                    serializer.endTag(NS, TEST_TAG);
                 }
-                serializer.endTag(NS, CASE_TAG);
+                parser.require(XmlPullParser.END_TAG, NS, TEST_TAG);
             }
-            serializer.endTag(NS, MODULE_TAG);
+            parser.require(XmlPullParser.END_TAG, NS, CASE_TAG);
         }
-        serializer.endDocument();
-        return resultFile;
+        parser.require(XmlPullParser.END_TAG, NS, MODULE_TAG);
+        return module;
     }
 
     /**
@@ -379,11 +691,29 @@ public class ResultHandler {
                 String.format("Invalid session id [%d] ", sessionId));
         }
 
-        List<IInvocationResult> results = getResults(resultsDir);
+        // Only the result file of the requested session is parsed.
+        List<IndexedResult> results = getIndexedResults(resultsDir);
         if (results == null || sessionId >= results.size()) {
             throw new RuntimeException(String.format("Could not find session [%d]", sessionId));
         }
-        return results.get(sessionId);
+        File resultFile = new File(results.get(sessionId).mDir, TEST_RESULT_FILE_NAME);
+        try {
+            return parseResult(resultFile);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (XmlPullParserException | IOException e) {
+            throw new RuntimeException(String.format("Could not parse session [%d] from %s",
+                    sessionId, resultFile.getAbsolutePath()), e);
+        }
+    }
+
+    private static void sortByStartTime(List<IInvocationResult> results) {
+        // Sort the table entries on each entry's timestamp.
+        Collections.sort(results, new Comparator<IInvocationResult>() {
+            public int compare(IInvocationResult result1, IInvocationResult result2) {
+                return Long.compare(result1.getStartTime(), result2.getStartTime());
+            }
+        });
     }
 
     /**
@@ -404,4 +734,18 @@ public class ResultHandler {
     private static String nullToEmpty(String nullable) {
         return nullable == null ? "" : nullable;
     }
+
+    /**
+     * The summary of a session along with the directory holding its results.
+     */
+    private static class IndexedResult {
+
+        private final File mDir;
+        private final IInvocationResult mSummary;
+
+        IndexedResult(File dir, IInvocationResult summary) {
+            mDir = dir;
+            mSummary = summary;
+        }
+    }
 }
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.compatibility.common.util;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of module results.
+ * <p/>
+ * Each module is appended as a complete Module element once it has run, so its results survive
+ * the host going away and no longer need to be held in memory until the end of the invocation.
+ * A module written more than once is superseded by its latest entry, and the journal is
+ * compacted once superseded entries take up more of it than the latest ones, so that it does not
+ * grow with the number of times each module is written. The final result file is
+ * built by streaming the entries from the journal, see
+ * {@link ResultHandler#writeResults(String, String, String, String, IInvocationResult,
+ * ResultJournal, File, long, long, String, String, String)}.
+ * <p/>
+ * The journal is locked while it is open for writing. Opening the journal of a session that
+ * ended without writing its result file recovers the entries it holds, dropping an entry left
+ * incomplete by a crash and any superseded entry, see
+ * {@link ResultHandler#recoverResults(String, String, String, String, File, File, long)}.
+ */
+public class ResultJournal {
+
+    public static final String JOURNAL_FILE_NAME = "test_result.journal";
+
+    private static final String ENCODING = "UTF-8";
+    private static final String TYPE = "org.kxml2.io.KXmlParser,org.kxml2.io.KXmlSerializer";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // Marks the end of each entry, a literal one in the results would have been escaped.
+    private static final String ENTRY_END = "</Module>";
+    // Superseded entries are only compacted once they reach this length.
+    static final long MIN_COMPACT_LENGTH = 1024 * 1024;
+
+    private final File mFile;
+    private FileOutputStream mOutput;
+    private FileLock mLock;
+    private long mLength = 0;
+    // The length of the entries superseded by a later entry of their module.
+    private long mSupersededLength = 0;
+    // The latest entry of each module in the journal.
+    private final Map<String, JournaledModuleSummary> mEntries = new HashMap<>();
+
+    /**
+     * Opens a journal in the given file, creating it if needed. The complete entries of an
+     * existing journal are recovered and new entries are appended after them.
+     *
+     * @throws IOException if the journal could not be opened, or is in use by another session.
+     */
+    public ResultJournal(File file) throws IOException {
+        mFile = file;
+        mOutput = new FileOutputStream(file, true);
+        try {
+            mLock = lock(mOutput);
+            if (mLock == null) {
+                throw new IOException(String.format("Journal %s is in use",
+                        file.getAbsolutePath()));
+            }
+            recover();
+            if (mSupersededLength > 0) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            mOutput.close();
+            throw e;
+        }
+    }
+
+    private static FileLock lock(FileOutputStream output) throws IOException {
+        try {
+            return output.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already locked by this process.
+            return null;
+        }
+    }
+
+    /**
+     * Reads back the complete entries in the journal file, and truncates the file after the last
+     * one so that an entry cut short by a crash is dropped.
+     */
+    private void recover() throws IOException {
+        byte[] end = ENTRY_END.getBytes(ENCODING);
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(mFile), BUFFER_SIZE)) {
+            int matched = 0;
+            int b;
+            while ((b = input.read()) >= 0) {
+                entry.write(b);
+                // The end marker starts with the only '<' it holds, so a failed match can only
+                // restart on the current byte.
+                if (b == end[matched]) {
+                    matched++;
+                } else {
+                    matched = (b == end[0]) ? 1 : 0;
+                }
+                if (matched == end.length) {
+                    IModuleResult module = parseEntry(entry.toByteArray());
+                    if (module == null) {
+                        break;
+                    }
+                    putEntry(new JournaledModuleSummary(module, mLength, entry.size()));
+                    mLength += entry.size();
+                    entry.reset();
+                    matched = 0;
+                }
+            }
+        }
+        if (mOutput.getChannel().size() > mLength) {
+            mOutput.getChannel().truncate(mLength);
+        }
+    }
+
+    /**
+     * @return the module in the given entry, or null if the entry is not a valid module.
+     */
+    private static IModuleResult parseEntry(byte[] data) throws IOException {
+        try {
+            XmlPullParser parser = XmlPullParserFactory.newInstance(TYPE, null).newPullParser();
+            parser.setInput(new ByteArrayInputStream(data), ENCODING);
+            parser.nextTag();
+            String runtime = parser.getAttributeValue(null, ResultHandler.RUNTIME_ATTR);
+            IModuleResult module = ResultHandler.parseModule(parser, new InvocationResult());
+            if (parser.next() != XmlPullParser.END_DOCUMENT) {
+                return null;
+            }
+            module.addRuntime(Long.parseLong(runtime));
+            return module;
+        } catch (XmlPullParserException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the {@link File} backing this journal.
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Appends the given module to the journal.
+     *
+     * @return an {@link IModuleSummary} of the module, which holds its counts and failed tests
+     * but none of their details, to be kept in memory in place of the module.
+     */
+    public synchronized IModuleSummary writeModule(IModuleResult module)
+            throws IOException, XmlPullParserException {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        XmlSerializer serializer = XmlPullParserFactory.newInstance(TYPE, null).newSerializer();
+        serializer.setOutput(entry, ENCODING);
+        ResultHandler.serializeModule(serializer, module);
+        serializer.flush();
+        entry.writeTo(mOutput);
+        mOutput.flush();
+        JournaledModuleSummary summary = new JournaledModuleSummary(module, mLength, entry.size());
+        mLength += entry.size();
+        putEntry(summary);
+        if (mSupersededLength >= MIN_COMPACT_LENGTH && mSupersededLength > mLength / 2) {
+            compact();
+        }
+        return summary;
+    }
+
+    /**
+     * Makes the given entry the latest one of its module.
+     */
+    private void putEntry(JournaledModuleSummary entry) {
+        JournaledModuleSummary superseded = mEntries.put(entry.getId(), entry);
+        if (superseded != null) {
+            mSupersededLength += superseded.mLength;
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the latest entry of each module, in the order they were
+     * written. The entries are copied to a locked file which then atomically replaces the
+     * journal, so the journal holds all of its entries at any point. If this fails the journal
+     * is left as it is, which is still valid.
+     */
+    private void compact() {
+        try {
+            replaceWithLatestEntries();
+        } catch (IOException e) {
+            // Superseded entries are kept until the next attempt.
+        }
+    }
+
+    private void replaceWithLatestEntries() throws IOException {
+        List<JournaledModuleSummary> entries = new ArrayList<>(mEntries.values());
+        Collections.sort(entries, new Comparator<JournaledModuleSummary>() {
+            @Override
+            public int compare(JournaledModuleSummary entry1, JournaledModuleSummary entry2) {
+                return Long.compare(entry1.mOffset, entry2.mOffset);
+            }
+        });
+        File compacted = File.createTempFile(mFile.getName(), ".tmp", mFile.getParentFile());
+        FileOutputStream output = null;
+        boolean replaced = false;
+        try {
+            output = new FileOutputStream(compacted);
+            FileLock lock = lock(output);
+            if (lock == null) {
+                throw new IOException(String.format("Could not lock %s",
+                        compacted.getAbsolutePath()));
+            }
+            long[] offsets = new long[entries.size()];
+            long length = 0;
+            try (RandomAccessFile input = new RandomAccessFile(mFile, "r")) {
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = length;
+                    copyEntry(input, entries.get(i), output);
+                    length += entries.get(i).mLength;
+                }
+            }
+            output.flush();
+            if (!compacted.renameTo(mFile)) {
+                throw new IOException(String.format("Could not replace %s",
+                        mFile.getAbsolutePath()));
+            }
+            replaced = true;
+            // Closing the channel of the replaced file releases its lock.
+            mOutput.close();
+            mOutput = output;
+            mLock = lock;
+            for (int i = 0; i < offsets.length; i++) {
+                entries.get(i).mOffset = offsets[i];
+            }
+            mLength = length;
+            mSupersededLength = 0;
+        } finally {
+            if (!replaced) {
+                if (output != null) {
+                    output.close();
+                }
+                compacted.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the summaries of the latest entry of each module in the journal.
+     */
+    public synchronized List<IModuleSummary> getModules() {
+        return new ArrayList<IModuleSummary>(mEntries.values());
+    }
+
+    /**
+     * @return true if the given module is the summary of the latest entry of its module in this
+     * journal, meaning its results must be read from the journal.
+     */
+    public synchronized boolean contains(IModuleSummary module) {
+        return module != null && mEntries.get(module.getId()) == module;
+    }
+
+    /**
+     * Reads the latest entry of the given module back from the journal.
+     *
+     * @return the {@link IModuleResult} with all its results, or null if the module is not in
+     * this journal.
+     */
+    public synchronized IModuleResult readModule(String id)
+            throws IOException, XmlPullParserException {
+        JournaledModuleSummary entry = mEntries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        byte[] data = new byte[(int) entry.mLength];
+        try (RandomAccessFile input = new RandomAccessFile(mFile, "r")) {
+            input.seek(entry.mOffset);
+            input.readFully(data);
+        }
+        XmlPullParser parser = XmlPullParserFactory.newInstance(TYPE, null).newPullParser();
+        parser.setInput(new ByteArrayInputStream(data), ENCODING);
+        parser.nextTag();
+        IModuleResult module = ResultHandler.parseModule(parser, new InvocationResult());
+        module.addRuntime(entry.getRuntime());
+        return module;
+    }
+
+    /**
+     * Copies the latest entry of the given module to the output, without parsing it.
+     */
+    public synchronized void copyModule(String id, OutputStream output) throws IOException {
+        JournaledModuleSummary entry = mEntries.get(id);
+        if (entry == null) {
+            throw new IllegalArgumentException(String.format("Module %s not in journal", id));
+        }
+        try (RandomAccessFile input = new RandomAccessFile(mFile, "r")) {
+            copyEntry(input, entry, output);
+        }
+    }
+
+    private void copyEntry(RandomAccessFile input, JournaledModuleSummary entry,
+            OutputStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        input.seek(entry.mOffset);
+        long remaining = entry.mLength;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException(String.format("Journal %s is truncated",
+                        mFile.getAbsolutePath()));
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Closes the journal for writing and releases its lock, entries can still be read.
+     */
+    public synchronized void close() throws IOException {
+        // Closing the channel releases the lock.
+        mOutput.close();
+    }
+
+    /**
+     * The summary of a module written to the journal.
+     */
+    private static class JournaledModuleSummary extends ModuleResultSummary {
+
+        // Updated when the journal is compacted.
+        private long mOffset;
+        private final long mLength;
+
+        JournaledModuleSummary(IModuleResult module, long offset, long length) {
+            super(module);
+            mOffset = offset;
+            mLength = length;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Streaming statistics of a sequence of values, kept in fixed memory.
+ * <p/>
+ * The count, average, min, max and standard deviation are accumulated exactly, the variance with
+ * Welford's algorithm. Quantiles are estimated from a histogram of logarithmically sized buckets,
+ * so that an estimated quantile is within {@link #RELATIVE_ACCURACY} of the actual value. The
+ * buckets grow with the range of the values; all normal doubles of one sign span about 71,000
+ * buckets, so memory stays bounded without losing the accuracy of any quantile.
+ * <p/>
+ * Sketches can be merged, e.g. to combine the statistics of several threads or iterations.
+ */
+public class StatSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    // Number of buckets allocated for the first value, enough for 3 orders of magnitude
+    private static final int INITIAL_BUCKETS = 512;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private long mCount = 0;
+    private double mAverage = 0.0;
+    // Sum of squared differences from the average
+    private double mSquaredDiffs = 0.0;
+    private double mMin = Double.NaN;
+    private double mMax = Double.NaN;
+
+    // Values are counted in the buckets of their magnitude
+    private final Buckets mPositiveBuckets = new Buckets();
+    private final Buckets mNegativeBuckets = new Buckets();
+    private long mZeroCount = 0;
+
+    /**
+     * Counts of a contiguous range of bucket indexes, allocated on first use.
+     */
+    private static class Buckets implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        long[] mCounts = null;
+        // Bucket index of mCounts[0]
+        int mOffset = 0;
+        // Range of non-empty buckets
+        int mMinIndex = 0;
+        int mMaxIndex = -1;
+
+        boolean isEmpty() {
+            return mMaxIndex < mMinIndex;
+        }
+
+        long get(int index) {
+            return mCounts[index - mOffset];
+        }
+
+        void add(int index, long count) {
+            if (mCounts == null) {
+                mCounts = new long[INITIAL_BUCKETS];
+                mOffset = index - INITIAL_BUCKETS / 2;
+            } else if (index < mOffset || index >= mOffset + mCounts.length) {
+                grow(index);
+            }
+            if (isEmpty()) {
+                mMinIndex = index;
+                mMaxIndex = index;
+            } else {
+                mMinIndex = Math.min(mMinIndex, index);
+                mMaxIndex = Math.max(mMaxIndex, index);
+            }
+            mCounts[index - mOffset] += count;
+        }
+
+        /**
+         * Reallocates the counts so that the given index fits, leaving room to grow in both
+         * directions.
+         */
+        private void grow(int index) {
+            final int low = Math.min(index, mMinIndex);
+            final int high = Math.max(index, mMaxIndex);
+            final int length = Math.max(2 * mCounts.length, 2 * (high - low + 1));
+            final int offset = low - (length - (high - low + 1)) / 2;
+            final long[] counts = new long[length];
+            System.arraycopy(mCounts, mMinIndex - mOffset, counts, mMinIndex - offset,
+                    mMaxIndex - mMinIndex + 1);
+            mCounts = counts;
+            mOffset = offset;
+        }
+
+        /**
+         * @return the index of the first count of {@link #getNonEmptyCounts(int)}.
+         */
+        int getFirstIndex(int maxBuckets) {
+            return Math.max(mMinIndex, mMaxIndex - maxBuckets + 1);
+        }
+
+        /**
+         * @return the counts of the range of non-empty buckets, limited to the maxBuckets of
+         * the largest magnitudes. The counts of smaller magnitudes are added to the first one.
+         */
+        long[] getNonEmptyCounts(int maxBuckets) {
+            if (isEmpty()) {
+                return new long[0];
+            }
+            final int firstIndex = getFirstIndex(maxBuckets);
+            final long[] counts =
+                    Arrays.copyOfRange(mCounts, firstIndex - mOffset, mMaxIndex - mOffset + 1);
+            for (int i = mMinIndex; i < firstIndex; i++) {
+                counts[0] += get(i);
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Adds a value to the statistics.
+     */
+    public void add(double value) {
+        // Welford's algorithm
+        mCount++;
+        final double diff = value - mAverage;
+        mAverage += diff / mCount;
+        mSquaredDiffs += diff * (value - mAverage);
+        if (mCount == 1) {
+            mMin = value;
+            mMax = value;
+        } else {
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+        }
+
+        if (value >= Double.MIN_NORMAL) {
+            mPositiveBuckets.add(getBucketIndex(value), 1);
+        } else if (value <= -Double.MIN_NORMAL) {
+            mNegativeBuckets.add(getBucketIndex(-value), 1);
+        } else {
+            mZeroCount++;
+        }
+    }
+
+    /**
+     * Adds all values of the given array to the statistics.
+     */
+    public void addAll(double[] values) {
+        for (double value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * Adds the values counted by another sketch to this one.
+     */
+    public void merge(StatSketch other) {
+        if (other.mCount == 0) {
+            return;
+        }
+        if (mCount == 0) {
+            mMin = other.mMin;
+            mMax = other.mMax;
+        } else {
+            mMin = Math.min(mMin, other.mMin);
+            mMax = Math.max(mMax, other.mMax);
+        }
+        // Chan et al. parallel variant of Welford's algorithm
+        final long count = mCount + other.mCount;
+        final double diff = other.mAverage - mAverage;
+        mSquaredDiffs += other.mSquaredDiffs + diff * diff * mCount * other.mCount / count;
+        mAverage += diff * other.mCount / count;
+        mCount = count;
+
+        mergeBuckets(mPositiveBuckets, other.mPositiveBuckets);
+        mergeBuckets(mNegativeBuckets, other.mNegativeBuckets);
+        mZeroCount += other.mZeroCount;
+    }
+
+    private static void mergeBuckets(Buckets buckets, Buckets other) {
+        for (int i = other.mMinIndex; i <= other.mMaxIndex; i++) {
+            if (other.get(i) != 0) {
+                buckets.add(i, other.get(i));
+            }
+        }
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public double getAverage() {
+        return (mCount == 0) ? Double.NaN : mAverage;
+    }
+
+    public double getMin() {
+        return mMin;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return the sample variance, as in {@link Stat#getStat(double[])}.
+     */
+    public double getVariance() {
+        return mSquaredDiffs / (mCount - 1);
+    }
+
+    public double getStddev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Estimates the value at the given quantile using the nearest rank method, as in
+     * {@link Stat#get95PercentileValue(double[])}.
+     *
+     * @param quantile quantile between 0.0 and 1.0, e.g. 0.95 for the 95th percentile.
+     */
+    public double getQuantile(double quantile) {
+        if (mCount == 0) {
+            return Double.NaN;
+        }
+        // one-based rank
+        final long rank = Math.max(1, Math.min(mCount, Math.round(mCount * quantile + .5)));
+        // the extremes are known exactly
+        if (rank == 1) {
+            return mMin;
+        } else if (rank == mCount) {
+            return mMax;
+        }
+
+        long seen = 0;
+        // most negative values first
+        for (int i = mNegativeBuckets.mMaxIndex; i >= mNegativeBuckets.mMinIndex; i--) {
+            seen += mNegativeBuckets.get(i);
+            if (seen >= rank) {
+                return clamp(-getBucketValue(i));
+            }
+        }
+        seen += mZeroCount;
+        if (seen >= rank) {
+            return clamp(0.0);
+        }
+        for (int i = mPositiveBuckets.mMinIndex; i <= mPositiveBuckets.mMaxIndex; i++) {
+            seen += mPositiveBuckets.get(i);
+            if (seen >= rank) {
+                return clamp(getBucketValue(i));
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Estimates the value of the 95th percentile, see {@link #getQuantile(double)}.
+     */
+    public double get95PercentileValue() {
+        return getQuantile(0.95);
+    }
+
+    /**
+     * @return the statistics as a {@link Stat.StatResult}.
+     */
+    public Stat.StatResult getStat() {
+        return new Stat.StatResult(getAverage(), mMin, mMax, getStddev(), (int) mCount);
+    }
+
+    /**
+     * Estimates the statistics of the values while rejecting outlier +/- median *
+     * rejectionThreshold, as {@link Stat#getStatWithOutlierRejection(double[], double)} does.
+     * <p/>
+     * The values are only known up to their bucket, so the results are within
+     * {@link #RELATIVE_ACCURACY} of those of the values.
+     */
+    public Stat.StatResult getStatWithOutlierRejection(double rejectionThreshold) {
+        final double median = getQuantile(0.5);
+        final double thresholdMin = median * (1.0 - rejectionThreshold);
+        final double thresholdMax = median * (1.0 + rejectionThreshold);
+
+        final StatSketch accepted = new StatSketch();
+        for (int i = mNegativeBuckets.mMaxIndex; i >= mNegativeBuckets.mMinIndex; i--) {
+            accepted.addBucket(clamp(-getBucketValue(i)), mNegativeBuckets.get(i), thresholdMin,
+                    thresholdMax);
+        }
+        accepted.addBucket(0.0, mZeroCount, thresholdMin, thresholdMax);
+        for (int i = mPositiveBuckets.mMinIndex; i <= mPositiveBuckets.mMaxIndex; i++) {
+            accepted.addBucket(clamp(getBucketValue(i)), mPositiveBuckets.get(i), thresholdMin,
+                    thresholdMax);
+        }
+        return accepted.getStat();
+    }
+
+    /**
+     * Accumulates count occurrences of the value, if it is within the thresholds. Only the
+     * moments are accumulated, the buckets are left empty.
+     */
+    private void addBucket(double value, long count, double thresholdMin, double thresholdMax) {
+        if (count == 0 || value <= thresholdMin || value >= thresholdMax) {
+            return;
+        }
+        if (mCount == 0) {
+            mMin = value;
+        }
+        mMax = value;
+        final long total = mCount + count;
+        final double diff = value - mAverage;
+        mAverage += diff * count / total;
+        mSquaredDiffs += diff * (value - mAverage) * count;
+        mCount = total;
+    }
+
+    private double clamp(double value) {
+        return Math.max(mMin, Math.min(mMax, value));
+    }
+
+    private static int getBucketIndex(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    /**
+     * @return the value within {@link #RELATIVE_ACCURACY} of all magnitudes of the bucket.
+     */
+    private static double getBucketValue(int index) {
+        return 2.0 * Math.pow(GAMMA, index) / (GAMMA + 1.0);
+    }
+
+    /**
+     * @return the bucket index of the first count of {@link #getBucketCounts(boolean, int)}.
+     */
+    int getBucketOffset(boolean negative, int maxBuckets) {
+        return (negative ? mNegativeBuckets : mPositiveBuckets).getFirstIndex(maxBuckets);
+    }
+
+    /**
+     * @return the counts of the range of non-empty buckets of positive or negative values. At
+     * most maxBuckets counts are returned, those of the largest magnitudes, and the values of
+     * smaller magnitudes are counted in the first bucket.
+     */
+    long[] getBucketCounts(boolean negative, int maxBuckets) {
+        return (negative ? mNegativeBuckets : mPositiveBuckets).getNonEmptyCounts(maxBuckets);
+    }
+
+    long getZeroCount() {
+        return mZeroCount;
+    }
+}
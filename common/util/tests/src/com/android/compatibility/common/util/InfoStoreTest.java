@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.compatibility.common.util;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the JSON lines shared by the report log stores of {@link InfoStore}.
+ */
+public class InfoStoreTest extends TestCase {
+
+    private File mJsonFile;
+    private File mJsonLinesFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mJsonFile = File.createTempFile("stream", ".json");
+        mJsonLinesFile = File.createTempFile("report", ReportLog.JSON_LINES_EXTENSION);
+        mJsonLinesFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mJsonFile.delete();
+        mJsonLinesFile.delete();
+    }
+
+    public void testAppendJsonLine() throws Exception {
+        appendStream("stream_1", "{\"id\":1}");
+        appendStream("stream_2", "{\"id\":\n2}");
+        List<String> lines = readLines(mJsonLinesFile);
+        assertEquals(2, lines.size());
+        assertEquals("{\"stream_1\":{\"id\":1}}", lines.get(0));
+        assertEquals("{\"stream_2\":{\"id\":2}}", lines.get(1));
+    }
+
+    public void testAppendJsonLine_truncatedRecord() throws Exception {
+        appendStream("stream_1", "{\"id\":1}");
+        // A record cut short by a failed test is kept apart from the next one.
+        try (FileWriter writer = new FileWriter(mJsonLinesFile, true)) {
+            writer.write("{\"stream_2\":{\"id\":");
+        }
+        appendStream("stream_3", "{\"id\":3}");
+        List<String> lines = readLines(mJsonLinesFile);
+        assertEquals(3, lines.size());
+        assertEquals("{\"stream_1\":{\"id\":1}}", lines.get(0));
+        assertEquals("{\"stream_2\":{\"id\":", lines.get(1));
+        assertEquals("{\"stream_3\":{\"id\":3}}", lines.get(2));
+    }
+
+    private void appendStream(String streamName, String json) throws IOException {
+        try (FileWriter writer = new FileWriter(mJsonFile)) {
+            writer.write(json);
+        }
+        InfoStore.appendJsonLine(mJsonLinesFile, streamName, mJsonFile);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
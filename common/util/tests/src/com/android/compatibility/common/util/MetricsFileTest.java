@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import com.android.compatibility.common.util.ReportLog.Metric;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link MetricsFile}
+ */
+public class MetricsFileTest extends TestCase {
+
+    private static final String SOURCE = "Source";
+    private static final String MESSAGE = "Message";
+    private static final String STREAM = "stream";
+    private static final String OTHER_STREAM = "other_stream";
+
+    private File mDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        mDir = File.createTempFile("metrics", "test");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    public void testReadWrite() throws Exception {
+        checkReadWrite(new File(mDir, MetricsFile.getFileName("sample", false)));
+    }
+
+    public void testReadWrite_compressed() throws Exception {
+        checkReadWrite(new File(mDir, MetricsFile.getFileName("sample", true)));
+    }
+
+    private void checkReadWrite(File file) throws Exception {
+        // more values than are kept in the XML
+        double[] values = new double[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.5;
+        }
+        try (MetricsFile metricsFile = new MetricsFile(file)) {
+            metricsFile.write(STREAM, new Metric(SOURCE, MESSAGE, values, ResultType.LOWER_BETTER,
+                    ResultUnit.MS));
+            metricsFile.write(OTHER_STREAM, new Metric(SOURCE, MESSAGE, 1.0,
+                    ResultType.NEUTRAL, ResultUnit.COUNT));
+        }
+        // appending to the file
+        try (MetricsFile metricsFile = new MetricsFile(file)) {
+            metricsFile.write(STREAM, new Metric(SOURCE, MESSAGE, 2.0, ResultType.HIGHER_BETTER,
+                    ResultUnit.FPS));
+        }
+
+        List<Metric> metrics = MetricsFile.read(file, STREAM);
+        assertEquals(2, metrics.size());
+        Metric metric = metrics.get(0);
+        assertEquals(SOURCE, metric.getSource());
+        assertEquals(MESSAGE, metric.getMessage());
+        assertEquals(ResultType.LOWER_BETTER, metric.getType());
+        assertEquals(ResultUnit.MS, metric.getUnit());
+        assertTrue(Arrays.equals(values, metric.getValues()));
+        assertEquals(ResultUnit.FPS, metrics.get(1).getUnit());
+        assertEquals(2.0, metrics.get(1).getValues()[0]);
+
+        assertEquals(3, MetricsFile.read(file, null).size());
+    }
+}
@@ -146,10 +146,21 @@ public class ReportLogTest extends TestCase {
         // Make a big array.
         double[] values = new double[1001];
         for (int i = 0; i < values.length; i++) values[i] = i;
-        // Should be trimmed because array is too big.
+        // Should be kept, only the XML is trimmed.
         metric = new Metric(SOURCE, MESSAGE, values, ResultType.HIGHER_BETTER, ResultUnit.BYTE);
-        assertTrue("Expected values to be trimmed", Arrays.equals(Arrays.copyOf(values, 1000),
-                metric.getValues()));
+        assertTrue("Expected values to be kept", Arrays.equals(values, metric.getValues()));
+        mReportLog.setSummary(metric);
+        ReportLog report = ReportLog.parse(ReportLog.serialize(mReportLog));
+        assertTrue("Expected serialized values to be trimmed",
+                Arrays.equals(Arrays.copyOf(values, 1000), report.getSummary().getValues()));
+    }
+
+    public void testMetricsFileName() throws Exception {
+        mReportLog.setSummary("Sample", 1.0, ResultType.HIGHER_BETTER, ResultUnit.BYTE);
+        mReportLog.setMetricsFileName("sample.reportlog.metrics");
+        ReportLog report = ReportLog.parse(ReportLog.serialize(mReportLog));
+        assertEquals("sample.reportlog.metrics", report.getMetricsFileName());
+        assertEquals("Sample", report.getSummary().getMessage());
     }
 
 }
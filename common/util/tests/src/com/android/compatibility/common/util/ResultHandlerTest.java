@@ -21,6 +21,7 @@ import junit.framework.TestCase;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
@@ -153,7 +154,7 @@ public class ResultHandlerTest extends TestCase {
         }
     }
 
-    public void testSerialization() throws Exception {
+    private IInvocationResult createInvocationResult() {
         IInvocationResult result = new InvocationResult();
         result.setStartTime(START_MS);
         result.setTestPlan(SUITE_PLAN);
@@ -188,6 +189,12 @@ public class ResultHandlerTest extends TestCase {
         report.setSummary(summary);
         moduleBTest4.setReportLog(report);
 
+        return result;
+    }
+
+    public void testSerialization() throws Exception {
+        IInvocationResult result = createInvocationResult();
+
         // Serialize to file
         ResultHandler.writeResults(SUITE_NAME, SUITE_VERSION, SUITE_PLAN, SUITE_BUILD,
                 result, resultDir, START_MS, END_MS, REFERENCE_URL, LOG_URL,
@@ -197,6 +204,131 @@ public class ResultHandlerTest extends TestCase {
         checkResult(ResultHandler.getResults(resultsDir), resultDir);
     }
 
+    public void testSerializationFromJournal() throws Exception {
+        IInvocationResult result = createInvocationResult();
+        ResultJournal journal = new ResultJournal(new File(resultsDir,
+                ResultJournal.JOURNAL_FILE_NAME));
+        // Write the modules to the journal, module B twice to check the latest entry is used
+        result.setModuleSummary(journal.writeModule(result.getOrCreateModule(ID_A)));
+        journal.writeModule(result.getOrCreateModule(ID_B));
+        result.setModuleSummary(journal.writeModule(result.getOrCreateModule(ID_B)));
+        journal.close();
+        assertTrue("Module A not in journal", journal.contains(result.getModuleSummary(ID_A)));
+        assertTrue("Module B not in journal", journal.contains(result.getModuleSummary(ID_B)));
+        assertTrue("Expected only summaries", result.getModules().isEmpty());
+
+        // Serialize to file, streaming the modules from the journal
+        ResultHandler.writeResults(SUITE_NAME, SUITE_VERSION, SUITE_PLAN, SUITE_BUILD,
+                result, journal, resultDir, START_MS, END_MS, REFERENCE_URL, LOG_URL,
+                COMMAND_LINE_ARGS);
+
+        // Parse the results and assert correctness
+        checkResult(ResultHandler.getResults(resultsDir), resultDir);
+
+        // Modules read back from the journal should hold all their results
+        IModuleResult moduleB = journal.readModule(ID_B);
+        assertEquals("Expected 1 failure", 1, moduleB.countResults(TestStatus.FAIL));
+        assertEquals("Incorrect stack trace", STACK_TRACE,
+                moduleB.getResult(CLASS_B).getResult(METHOD_3).getStackTrace());
+    }
+
+    public void testRecoverFromJournal() throws Exception {
+        IInvocationResult result = createInvocationResult();
+        File journalFile = new File(resultsDir, ResultJournal.JOURNAL_FILE_NAME);
+        ResultJournal journal = new ResultJournal(journalFile);
+        journal.writeModule(result.getOrCreateModule(ID_A));
+        journal.writeModule(result.getOrCreateModule(ID_B));
+        long length = journalFile.length();
+        journal.writeModule(result.getOrCreateModule(ID_B));
+
+        // A session still running holds the journal
+        try {
+            ResultHandler.recoverResults(SUITE_NAME, SUITE_VERSION, SUITE_PLAN, SUITE_BUILD,
+                    journalFile, resultDir, START_MS);
+            fail("Recovered the journal of a running session");
+        } catch (IOException expected) {
+        }
+        journal.close();
+
+        // Simulate the host going away while writing an entry
+        try (FileWriter writer = new FileWriter(journalFile, true)) {
+            writer.write(String.format("<Module name=\"%s\" abi=\"%s\" runtime=\"0\" " +
+                    "done=\"true\" not_executed=\"0\"><TestCase name=\"%s\">",
+                    NAME_A, ABI, CLASS_A));
+        }
+        File resultFile = ResultHandler.recoverResults(SUITE_NAME, SUITE_VERSION, SUITE_PLAN,
+                SUITE_BUILD, journalFile, resultDir, START_MS);
+        assertNotNull("Results not recovered", resultFile);
+        assertEquals("Incomplete and superseded entries not dropped", length,
+                journalFile.length());
+        assertNull("Results recovered twice", ResultHandler.recoverResults(SUITE_NAME,
+                SUITE_VERSION, SUITE_PLAN, SUITE_BUILD, journalFile, resultDir, START_MS));
+
+        List<IInvocationResult> results = ResultHandler.getResults(resultsDir);
+        assertEquals("Expected 1 result", 1, results.size());
+        IInvocationResult recovered = results.get(0);
+        assertEquals("Incorrect start time", START_MS, recovered.getStartTime());
+        assertEquals("Incorrect test plan", SUITE_PLAN, recovered.getTestPlan());
+        assertEquals("Expected 2 modules", 2, recovered.getModules().size());
+        assertEquals("Expected 2 passes", 2, recovered.countResults(TestStatus.PASS));
+        assertEquals("Expected 1 failure", 1, recovered.countResults(TestStatus.FAIL));
+        IModuleResult moduleA = recovered.getModules().get(0);
+        assertEquals("Incorrect module", ID_A, moduleA.getId());
+        assertFalse("Module A should not be done", moduleA.isDone());
+        assertEquals("Incorrect stack trace", STACK_TRACE, recovered.getModules().get(1)
+                .getResult(CLASS_B).getResult(METHOD_3).getStackTrace());
+    }
+
+    public void testJournalCompaction() throws Exception {
+        IInvocationResult result = createInvocationResult();
+        File journalFile = new File(resultsDir, ResultJournal.JOURNAL_FILE_NAME);
+        ResultJournal journal = new ResultJournal(journalFile);
+        IModuleSummary moduleA = journal.writeModule(result.getOrCreateModule(ID_A));
+        long lengthA = journalFile.length();
+        IModuleSummary moduleB = journal.writeModule(result.getOrCreateModule(ID_B));
+        long entryLength = journalFile.length() - lengthA;
+        // Rewrite module B until its superseded entries have been compacted a few times
+        long written = journalFile.length();
+        while (written < 4 * ResultJournal.MIN_COMPACT_LENGTH) {
+            moduleB = journal.writeModule(result.getOrCreateModule(ID_B));
+            written += entryLength;
+            assertTrue("Journal not compacted", journalFile.length()
+                    <= lengthA + ResultJournal.MIN_COMPACT_LENGTH + 2 * entryLength);
+        }
+        assertTrue("Module A not in journal", journal.contains(moduleA));
+        assertTrue("Module B not in journal", journal.contains(moduleB));
+        assertEquals("Expected 1 pass", 1,
+                journal.readModule(ID_A).countResults(TestStatus.PASS));
+        journal.close();
+
+        // Reopening the journal drops the remaining superseded entries
+        journal = new ResultJournal(journalFile);
+        journal.close();
+        assertEquals("Superseded entries not dropped", lengthA + entryLength,
+                journalFile.length());
+        assertEquals("Incorrect stack trace", STACK_TRACE, journal.readModule(ID_B)
+                .getResult(CLASS_B).getResult(METHOD_3).getStackTrace());
+    }
+
+    public void testSummaries() throws Exception {
+        IInvocationResult result = createInvocationResult();
+        ResultHandler.writeResults(SUITE_NAME, SUITE_VERSION, SUITE_PLAN, SUITE_BUILD,
+                result, resultDir, START_MS, END_MS, REFERENCE_URL, LOG_URL,
+                COMMAND_LINE_ARGS);
+        File indexFile = new File(resultDir, ResultHandler.TEST_RESULT_INDEX_FILE_NAME);
+        assertTrue("Index not written", indexFile.exists());
+        checkSummaries(ResultHandler.getResultSummaries(resultsDir));
+
+        // Sessions without an index are indexed when first listed
+        assertTrue("Failed to delete index", indexFile.delete());
+        checkSummaries(ResultHandler.getResultSummaries(resultsDir));
+        assertTrue("Index not rebuilt", indexFile.exists());
+        checkSummaries(ResultHandler.getResultSummaries(resultsDir));
+
+        // The session being retried is fully loaded
+        checkResult(Arrays.asList(ResultHandler.findResult(resultsDir, 0)), resultDir);
+    }
+
     public void testParsing() throws Exception {
         File resultsDir = null;
         FileWriter writer = null;
@@ -247,6 +379,47 @@ public class ResultHandlerTest extends TestCase {
         }
     }
 
+    private void checkSummaries(List<IInvocationResult> results) throws Exception {
+        assertEquals("Expected 1 result", 1, results.size());
+        IInvocationResult result = results.get(0);
+        assertEquals("Expected 2 passes", 2, result.countResults(TestStatus.PASS));
+        assertEquals("Expected 1 failure", 1, result.countResults(TestStatus.FAIL));
+        assertEquals("Expected 1 not executed", 1, result.getNotExecuted());
+        assertEquals("Expected 1 module complete", 1, result.getModuleCompleteCount());
+        assertEquals("Incorrect Build ID", EXAMPLE_BUILD_ID,
+                result.getInvocationInfo().get(BUILD_ID));
+        assertEquals("Incorrect Build Product", EXAMPLE_BUILD_PRODUCT,
+                result.getInvocationInfo().get(BUILD_PRODUCT));
+        assertEquals("Expected 2 devices", 2, result.getDeviceSerials().size());
+        assertEquals("Incorrect start time", START_MS, result.getStartTime());
+        assertEquals("Incorrect test plan", SUITE_PLAN, result.getTestPlan());
+        assertEquals("Incorrect command line args", COMMAND_LINE_ARGS,
+                result.getCommandLineArgs());
+
+        List<IModuleSummary> modules = result.getModuleSummaries();
+        assertEquals("Expected 2 modules", 2, modules.size());
+        assertTrue("Expected only summaries", result.getModules().isEmpty());
+        IModuleSummary moduleA = modules.get(0);
+        assertEquals("Incorrect ID", ID_A, moduleA.getId());
+        assertFalse("Module A should not be done", moduleA.isDone());
+        assertEquals("Expected 1 pass", 1, moduleA.countResults(TestStatus.PASS));
+        assertTrue("Expected no failed tests", moduleA.getResults().isEmpty());
+        IModuleSummary moduleB = modules.get(1);
+        assertEquals("Incorrect ID", ID_B, moduleB.getId());
+        assertTrue("Module B should be done", moduleB.isDone());
+        assertEquals("Expected 1 pass", 1, moduleB.countResults(TestStatus.PASS));
+        assertEquals("Expected 1 failure", 1, moduleB.countResults(TestStatus.FAIL));
+        // Only the failed tests are kept, without their details
+        List<ICaseResult> moduleBCases = moduleB.getResults();
+        assertEquals("Expected 1 test case", 1, moduleBCases.size());
+        List<ITestResult> moduleBResults = moduleBCases.get(0).getResults();
+        assertEquals("Expected 1 failed test", 1, moduleBResults.size());
+        assertEquals("Incorrect name", METHOD_3, moduleBResults.get(0).getName());
+        assertEquals("Incorrect result", TestStatus.FAIL,
+                moduleBResults.get(0).getResultStatus());
+        assertNull("Unexpected stack trace", moduleBResults.get(0).getStackTrace());
+    }
+
     private void checkResult(List<IInvocationResult> results, File resultDir) throws Exception {
         assertEquals("Expected 1 result", 1, results.size());
         IInvocationResult result = results.get(0);
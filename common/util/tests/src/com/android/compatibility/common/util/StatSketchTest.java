@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for the {@link StatSketch} class.
+ */
+public class StatSketchTest extends TestCase {
+
+    private static final double EPSILON = 0.00001;
+
+    /**
+     * Test that the moments match those computed by {@link Stat#getStat(double[])}.
+     */
+    public void testGetStat() {
+        double[] values = new double[]{0, 1, 4, 9, 16, -3.5};
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(values);
+
+        Stat.StatResult expected = Stat.getStat(values);
+        Stat.StatResult result = sketch.getStat();
+        assertEquals(expected.mAverage, result.mAverage, EPSILON);
+        assertEquals(expected.mMin, result.mMin, EPSILON);
+        assertEquals(expected.mMax, result.mMax, EPSILON);
+        assertEquals(expected.mStddev, result.mStddev, EPSILON);
+        assertEquals(expected.mDataCount, result.mDataCount);
+    }
+
+    /**
+     * Test that quantiles are within the relative accuracy of the nearest rank values.
+     */
+    public void testGetQuantile() {
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * i + 1;
+        }
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(values);
+
+        double expected = Stat.get95PercentileValue(Arrays.copyOf(values, values.length));
+        assertEquals(expected, sketch.get95PercentileValue(),
+                expected * StatSketch.RELATIVE_ACCURACY);
+        assertEquals(1.0, sketch.getQuantile(0.0), EPSILON);
+        assertEquals(999 * 999 + 1, sketch.getQuantile(1.0), EPSILON);
+        assertTrue(Double.isNaN(new StatSketch().getQuantile(0.5)));
+    }
+
+    /**
+     * Test quantiles of negative and zero values.
+     */
+    public void testGetQuantile_signs() {
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(new double[]{-100, -10, 0, 0, 10});
+        assertEquals(-100, sketch.getQuantile(0.1), 100 * StatSketch.RELATIVE_ACCURACY);
+        assertEquals(-10, sketch.getQuantile(0.3), 10 * StatSketch.RELATIVE_ACCURACY);
+        assertEquals(0, sketch.getQuantile(0.5), EPSILON);
+        assertEquals(10, sketch.getQuantile(0.9), 10 * StatSketch.RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Test that merging sketches gives the same statistics as adding all values to one.
+     */
+    public void testMerge() {
+        Random random = new Random(0);
+        StatSketch all = new StatSketch();
+        StatSketch first = new StatSketch();
+        StatSketch second = new StatSketch();
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextGaussian() * 10 + 50;
+            all.add(value);
+            if (i % 3 == 0) {
+                first.add(value);
+            } else {
+                second.add(value);
+            }
+        }
+        first.merge(second);
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getAverage(), first.getAverage(), EPSILON);
+        assertEquals(all.getStddev(), first.getStddev(), EPSILON);
+        assertEquals(all.getMin(), first.getMin(), EPSILON);
+        assertEquals(all.getMax(), first.getMax(), EPSILON);
+        for (double quantile : new double[]{0.01, 0.5, 0.9, 0.95, 0.99}) {
+            assertEquals(all.getQuantile(quantile), first.getQuantile(quantile), EPSILON);
+        }
+    }
+
+    /**
+     * Test that quantiles keep their accuracy for values spanning a wide range.
+     */
+    public void testGetQuantile_wideRange() {
+        double[] values = new double[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.pow(1.5, i - 1000);
+        }
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(values);
+        checkQuantiles(values, sketch);
+
+        // extremes of the double range
+        sketch = new StatSketch();
+        sketch.addAll(new double[]{Double.MIN_NORMAL, 1.0, Double.MAX_VALUE});
+        assertEquals(1.0, sketch.getQuantile(0.5), StatSketch.RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Test that quantiles keep their accuracy for values of both signs spanning a wide range.
+     */
+    public void testGetQuantile_mixedSigns() {
+        Random random = new Random(0);
+        for (int run = 0; run < 10; run++) {
+            double[] values = new double[1001];
+            for (int i = 0; i < values.length; i++) {
+                double magnitude = Math.exp(random.nextGaussian() * 100);
+                values[i] = random.nextBoolean() ? magnitude : -magnitude;
+            }
+            StatSketch sketch = new StatSketch();
+            sketch.addAll(values);
+            checkQuantiles(values, sketch);
+        }
+    }
+
+    /**
+     * Checks that the quantiles of the sketch are within the relative accuracy of the nearest
+     * rank values.
+     */
+    private static void checkQuantiles(double[] values, StatSketch sketch) {
+        double[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        for (double quantile : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99}) {
+            long rank = Math.max(1, Math.min(sorted.length,
+                    Math.round(sorted.length * quantile + .5)));
+            double expected = sorted[(int) rank - 1];
+            assertEquals("quantile " + quantile, expected, sketch.getQuantile(quantile),
+                    Math.abs(expected) * StatSketch.RELATIVE_ACCURACY);
+        }
+    }
+
+    /**
+     * Test that outlier rejection is within the relative accuracy of
+     * {@link Stat#getStatWithOutlierRejection(double[], double)}.
+     */
+    public void testGetStatWithOutlierRejection() {
+        double[] values = new double[]{100, 101, 99, 102, 98, 100, 1000, 1, 100.5};
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(values);
+
+        Stat.StatResult expected = Stat.getStatWithOutlierRejection(values, 0.1);
+        Stat.StatResult result = sketch.getStatWithOutlierRejection(0.1);
+        assertEquals(expected.mDataCount, result.mDataCount);
+        assertEquals(expected.mAverage, result.mAverage,
+                expected.mAverage * StatSketch.RELATIVE_ACCURACY);
+        assertEquals(expected.mMin, result.mMin, expected.mMin * StatSketch.RELATIVE_ACCURACY);
+        assertEquals(expected.mMax, result.mMax, expected.mMax * StatSketch.RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Test that the bucket counts are limited to the largest magnitudes without losing values.
+     */
+    public void testGetBucketCounts_limited() {
+        StatSketch sketch = new StatSketch();
+        sketch.addAll(new double[]{Double.MIN_NORMAL, 1e-10, 1.0, 1.0, 1e10});
+        long[] all = sketch.getBucketCounts(false, Integer.MAX_VALUE);
+        assertTrue(all.length > 100);
+        assertEquals(5, sum(all));
+
+        long[] limited = sketch.getBucketCounts(false, 100);
+        assertEquals(100, limited.length);
+        assertEquals(sketch.getBucketOffset(false, Integer.MAX_VALUE) + all.length - 100,
+                sketch.getBucketOffset(false, 100));
+        assertEquals(4, limited[0]);
+        assertEquals(1, limited[99]);
+        assertEquals(5, sum(limited));
+
+        assertEquals(0, sketch.getBucketCounts(true, 100).length);
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+}
@@ -30,10 +30,13 @@ public class UnitTests extends TestSuite {
         addTestSuite(AbiUtilsTest.class);
         addTestSuite(CaseResultTest.class);
         addTestSuite(DynamicConfigTest.class);
+        addTestSuite(InfoStoreTest.class);
+        addTestSuite(MetricsFileTest.class);
         addTestSuite(MetricsXmlSerializerTest.class);
         addTestSuite(ModuleResultTest.class);
         addTestSuite(MultipartFormTest.class);
         addTestSuite(ReportLogTest.class);
+        addTestSuite(StatSketchTest.class);
         addTestSuite(StatTest.class);
         addTestSuite(TestFilterTest.class);
         addTestSuite(TestResultTest.class);
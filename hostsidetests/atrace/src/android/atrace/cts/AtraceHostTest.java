@@ -16,6 +16,8 @@
 
 package android.atrace.cts;
 
+import com.android.compatibility.common.util.FtraceParser;
+import com.android.compatibility.common.util.FtraceParser.FtraceEntryCallback;
 import com.android.cts.migration.MigrationHelper;
 import com.android.ddmlib.Log;
 import com.android.tradefed.build.IBuildInfo;
@@ -23,16 +25,13 @@ import com.android.tradefed.device.ITestDevice;
 import com.android.tradefed.testtype.DeviceTestCase;
 import com.android.tradefed.testtype.IBuildReceiver;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Test to check that atrace is usable, to enable usage of systrace.
@@ -41,82 +40,8 @@ public class AtraceHostTest extends DeviceTestCase implements IBuildReceiver {
     private static final String TEST_APK = "CtsAtraceTestApp.apk";
     private static final String TEST_PKG = "com.android.cts.atracetestapp";
 
-    private interface FtraceEntryCallback {
-        void onTraceEntry(String threadName, int pid, int tid, String eventType, String args);
-        void onFinished();
-    }
-
-    /**
-     * Helper for parsing ftrace data.
-     * Regexs copied from (and should be kept in sync with) ftrace importer in catapult.
-     */
-    private static class FtraceParser {
-        // Matches the trace record in 3.2 and later with the print-tgid option:
-        //          <idle>-0    0 [001] d...  1.23: sched_switch
-        private static final Pattern sLineWithTgid = Pattern.compile(
-                "^\\s*(.+)-(\\d+)\\s+\\(\\s*(\\d+|-+)\\)\\s\\[(\\d+)\\]"
-                + "\\s+[dX.][N.][Hhs.][0-9a-f.]"
-                + "\\s+(\\d+\\.\\d+):\\s+(\\S+):\\s(.*)");
-
-        // Matches the default trace record in 3.2 and later (includes irq-info):
-        //          <idle>-0     [001] d...  1.23: sched_switch
-        private static final Pattern sLineWithIrqInfo = Pattern.compile(
-                "^\\s*(.+)-(\\d+)\\s+\\[(\\d+)\\]"
-                + "\\s+[dX.][N.][Hhs.][0-9a-f.]"
-                + "\\s+(\\d+\\.\\d+):\\s+(\\S+):\\s(.*)$");
-
-        // Matches the default trace record pre-3.2:
-        //          <idle>-0     [001]  1.23: sched_switch
-        private static final Pattern sLineLegacy = Pattern.compile(
-                "^\\s*(.+)-(\\d+)\\s+\\[(\\d+)\\]\\s*(\\d+\\.\\d+):\\s+(\\S+):\\s(.*)");
-        private static void parseLine(String line, FtraceEntryCallback callback) {
-            Matcher m = sLineWithTgid.matcher(line);
-            if (m.matches()) {
-                callback.onTraceEntry(
-                        /*threadname*/ m.group(1),
-                        /*pid*/ m.group(3).startsWith("-") ? -1 : Integer.parseInt(m.group(3)),
-                        /*tid*/ Integer.parseInt(m.group(2)),
-                        /*eventName*/ m.group(6),
-                        /*details*/ m.group(7));
-                return;
-            }
-
-            m = sLineWithIrqInfo.matcher(line);
-            if (m.matches()) {
-                callback.onTraceEntry(
-                        /*threadname*/ m.group(1),
-                        /*pid*/ -1,
-                        /*tid*/ Integer.parseInt(m.group(2)),
-                        /*eventName*/ m.group(5),
-                        /*details*/ m.group(6));
-                return;
-            }
-
-            m = sLineLegacy.matcher(line);
-            if (m.matches()) {
-                callback.onTraceEntry(
-                        /*threadname*/ m.group(1),
-                        /*pid*/ -1,
-                        /*tid*/ Integer.parseInt(m.group(2)),
-                        /*eventName*/ m.group(5),
-                        /*details*/ m.group(6));
-                return;
-            }
-            System.err.println("line doesn't match: " + line);
-        }
-
-        private static void parse(Reader reader, FtraceEntryCallback callback) throws Exception {
-            try {
-                BufferedReader bufferedReader = new BufferedReader(reader);
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    FtraceParser.parseLine(line, callback);
-                }
-            } finally {
-                callback.onFinished();
-            }
-        }
-    }
+    // compressed trace data, written by atrace on the device and pulled by the host
+    private static final String DEVICE_TRACE_PATH = "/data/local/tmp/atrace-cts.z";
 
     private IBuildInfo mCtsBuild;
 
@@ -195,7 +120,7 @@ public class AtraceHostTest extends DeviceTestCase implements IBuildReceiver {
      * Tests that atrace captures app launch, including app level tracing
      */
     public void testTracingContent() throws Exception {
-        String atraceOutput = null;
+        File traceFile = null;
         try {
             // cleanup test apps that might be installed from previous partial test run
             getDevice().uninstallPackage(TEST_PKG);
@@ -209,24 +134,23 @@ public class AtraceHostTest extends DeviceTestCase implements IBuildReceiver {
 
             // capture a launch of the app with async tracing
             // content traced by 'view' tag tested below, 'sched' used to ensure tgid printed
-            String atraceArgs = "-a " + TEST_PKG + " -c -b 16000 view"; // TODO: zipping
+            String atraceArgs = "-a " + TEST_PKG + " -c -b 16000 view";
             getDevice().executeShellCommand("atrace --async_stop " + atraceArgs);
             getDevice().executeShellCommand("atrace --async_start " + atraceArgs);
             getDevice().executeShellCommand("am start " + TEST_PKG);
             getDevice().executeShellCommand("sleep 5");
-            atraceOutput = getDevice().executeShellCommand("atrace --async_stop " + atraceArgs);
+            // compress the trace data, and pull it as a file rather than reading it as shell
+            // output, which is held in memory as a whole
+            getDevice().executeShellCommand("atrace --async_stop -z -o " + DEVICE_TRACE_PATH
+                    + " " + atraceArgs);
+            traceFile = getDevice().pullFile(DEVICE_TRACE_PATH);
         } finally {
-            assertNotNull("unable to capture atrace output", atraceOutput);
+            getDevice().executeShellCommand("rm -f " + DEVICE_TRACE_PATH);
+            assertNotNull("unable to capture atrace output", traceFile);
             getDevice().uninstallPackage(TEST_PKG);
         }
 
-
         // now parse the trace data (see external/chromium-trace/systrace.py)
-        final String MARKER = "TRACE:";
-        int dataStart = atraceOutput.indexOf(MARKER);
-        assertTrue(dataStart >= 0);
-        String traceData = atraceOutput.substring(dataStart + MARKER.length());
-
         FtraceEntryCallback callback = new FtraceEntryCallback() {
             private int userSpaceMatches = 0;
             private int beginMatches = 0;
@@ -247,8 +171,8 @@ public class AtraceHostTest extends DeviceTestCase implements IBuildReceiver {
             };
 
             @Override
-            public void onTraceEntry(String truncatedThreadName, int pid, int tid,
-                    String eventName, String details) {
+            public void onTraceEntry(String truncatedThreadName, int pid, int tid, int cpu,
+                    long timestampUs, String eventName, String details) {
                 if (!"tracing_mark_write".equals(eventName)) {
                     // not userspace trace, ignore
                     return;
@@ -294,6 +218,15 @@ public class AtraceHostTest extends DeviceTestCase implements IBuildReceiver {
             }
         };
 
-        FtraceParser.parse(new StringReader(traceData), callback);
+        InputStream in = new FileInputStream(traceFile);
+        try {
+            int unmatchedLines = FtraceParser.parseCompressed(in, callback);
+            if (unmatchedLines > 0) {
+                System.err.println(unmatchedLines + " lines of atrace output don't match");
+            }
+        } finally {
+            in.close();
+            traceFile.delete();
+        }
     }
 }
@@ -114,10 +114,8 @@ public class SELinuxHostTest extends DeviceTestCase implements IBuildReceiver, I
         sepolicyAnalyze = MigrationHelper.getTestFile(mBuild, "sepolicy-analyze");
         sepolicyAnalyze.setExecutable(true);
 
-        /* obtain sepolicy file from running device */
-        devicePolicyFile = File.createTempFile("sepolicy", ".tmp");
-        devicePolicyFile.deleteOnExit();
-        mDevice.pullFile("/sys/fs/selinux/policy", devicePolicyFile);
+        /* obtain sepolicy file from running device, pulled once per device and policy */
+        devicePolicyFile = SELinuxPolicyCache.getDevicePolicyFile(mDevice);
     }
 
     /**
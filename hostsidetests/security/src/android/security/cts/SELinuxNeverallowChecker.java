@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.security.cts;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks neverallow rules against a policy with sepolicy-analyze, many rules per invocation.
+ * <p/>
+ * Starting sepolicy-analyze loads the whole policy, which used to be done again for every
+ * neverallow test. The first rule checked against a policy now checks all rules of its test
+ * class at once, and the other test methods only look up their result. Rules of a batch that
+ * reports errors are checked again in halves, down to one rule, so that each failing rule gets
+ * the errors sepolicy-analyze reports when checking it alone.
+ */
+public class SELinuxNeverallowChecker {
+
+    // sepolicy-analyze path and policy SHA-1 to the errors of each rule checked with them
+    private static final Map<String, Map<String, String>> sResults = new HashMap<>();
+    // policy paths to the SHA-1 of their content, so copies of a policy share their results
+    private static final Map<String, String> sPolicyHashes = new HashMap<>();
+
+    private SELinuxNeverallowChecker() {}
+
+    /**
+     * Checks a neverallow rule against a policy.
+     *
+     * @param sepolicyAnalyze the sepolicy-analyze executable
+     * @param policyFile the policy to check, which must not be modified
+     * @param allRules all rules that will be checked against the policy, to check together
+     * @param rule the rule to check
+     * @return the errors reported for the rule, empty if the policy does not violate it.
+     */
+    public static synchronized String check(File sepolicyAnalyze, File policyFile,
+            String[] allRules, String rule) throws IOException, InterruptedException {
+        String policyHash = sPolicyHashes.get(policyFile.getAbsolutePath());
+        if (policyHash == null) {
+            policyHash = SELinuxPolicyCache.getHash(policyFile);
+            sPolicyHashes.put(policyFile.getAbsolutePath(), policyHash);
+        }
+        String key = sepolicyAnalyze.getAbsolutePath() + ":" + policyHash;
+        Map<String, String> results = sResults.get(key);
+        if (results == null) {
+            results = new HashMap<>();
+            sResults.put(key, results);
+        }
+        if (!results.containsKey(rule)) {
+            List<String> rules = new ArrayList<>();
+            for (String r : allRules) {
+                if (!results.containsKey(r) && !rules.contains(r)) {
+                    rules.add(r);
+                }
+            }
+            if (!rules.contains(rule)) {
+                rules.add(rule);
+            }
+            checkAll(sepolicyAnalyze, policyFile, rules, results);
+        }
+        return results.get(rule);
+    }
+
+    private static void checkAll(File sepolicyAnalyze, File policyFile, List<String> rules,
+            Map<String, String> results) throws IOException, InterruptedException {
+        if (rules.size() == 1) {
+            /* run sepolicy-analyze neverallow check on policy file using given neverallow rule */
+            String rule = rules.get(0);
+            results.put(rule, run(sepolicyAnalyze.getAbsolutePath(),
+                    policyFile.getAbsolutePath(), "neverallow", "-n", rule).mOutput);
+            return;
+        }
+
+        File rulesFile = File.createTempFile("neverallow", ".tmp");
+        Result result;
+        try {
+            try (Writer writer = new FileWriter(rulesFile)) {
+                for (String rule : rules) {
+                    writer.write(rule);
+                    writer.write('\n');
+                }
+            }
+            result = run(sepolicyAnalyze.getAbsolutePath(), policyFile.getAbsolutePath(),
+                    "neverallow", "-f", rulesFile.getAbsolutePath());
+        } finally {
+            rulesFile.delete();
+        }
+        if (result.mExitCode == 0 && result.mOutput.length() == 0) {
+            for (String rule : rules) {
+                results.put(rule, "");
+            }
+            return;
+        }
+
+        int half = rules.size() / 2;
+        checkAll(sepolicyAnalyze, policyFile, rules.subList(0, half), results);
+        checkAll(sepolicyAnalyze, policyFile, rules.subList(half, rules.size()), results);
+    }
+
+    private static class Result {
+        final int mExitCode;
+        final String mOutput;
+
+        Result(int exitCode, String output) {
+            mExitCode = exitCode;
+            mOutput = output;
+        }
+    }
+
+    private static Result run(String... command) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(Arrays.asList(command));
+        pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        BufferedReader result = new BufferedReader(new InputStreamReader(p.getInputStream()));
+        String line;
+        StringBuilder output = new StringBuilder();
+        while ((line = result.readLine()) != null) {
+            output.append(line);
+            output.append("\n");
+        }
+        return new Result(p.waitFor(), output.toString());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.security.cts;
+
+import com.android.tradefed.device.DeviceNotAvailableException;
+import com.android.tradefed.device.ITestDevice;
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Local copies of the SELinux policy of devices, shared by all SELinux host tests.
+ * <p/>
+ * Each test class, and each test method of it, used to pull the multi-MB policy again. The
+ * device now computes the SHA-1 of its policy, and the policy is only pulled if no copy with
+ * that hash was pulled before, so a policy changed by e.g. flashing the device is pulled again.
+ * A device that cannot compute the hash has its policy pulled every time, but a policy with the
+ * same content as an earlier copy is still returned as that copy.
+ */
+public class SELinuxPolicyCache {
+
+    public static final String DEVICE_POLICY_PATH = "/sys/fs/selinux/policy";
+
+    private static final Pattern SHA1_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+    // SHA-1 of a policy to its local copy
+    private static final Map<String, File> sPolicyFiles = new HashMap<>();
+
+    private SELinuxPolicyCache() {}
+
+    /**
+     * Returns a local copy of the policy running on the given device, which must not be
+     * modified.
+     */
+    public static synchronized File getDevicePolicyFile(ITestDevice device)
+            throws DeviceNotAvailableException, IOException {
+        String hash = getDevicePolicyHash(device);
+        File policyFile = (hash == null) ? null : sPolicyFiles.get(hash);
+        if (policyFile != null && policyFile.isFile()) {
+            return policyFile;
+        }
+
+        policyFile = File.createTempFile("sepolicy", ".tmp");
+        policyFile.deleteOnExit();
+        device.pullFile(DEVICE_POLICY_PATH, policyFile);
+        String pulledHash = getHash(policyFile);
+        if (hash != null && !hash.equals(pulledHash)) {
+            CLog.w("Not caching the SELinux policy of %s, its hash could not be verified",
+                    device.getSerialNumber());
+            return policyFile;
+        }
+        File cachedFile = sPolicyFiles.get(pulledHash);
+        if (cachedFile != null && cachedFile.isFile()) {
+            policyFile.delete();
+            return cachedFile;
+        }
+        sPolicyFiles.put(pulledHash, policyFile);
+        return policyFile;
+    }
+
+    /**
+     * @return the SHA-1 of the policy of the device, or null if the device cannot compute it.
+     */
+    private static String getDevicePolicyHash(ITestDevice device)
+            throws DeviceNotAvailableException {
+        String output = device.executeShellCommand("sha1sum " + DEVICE_POLICY_PATH);
+        if (output == null) {
+            return null;
+        }
+        String[] tokens = output.trim().split("\\s+");
+        if (tokens.length == 0 || !SHA1_PATTERN.matcher(tokens[0]).matches()) {
+            return null;
+        }
+        return tokens[0];
+    }
+
+    /**
+     * @return the SHA-1 of the given file, as computed by sha1sum.
+     */
+    static String getHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b & 0xff));
+        }
+        return hash.toString();
+    }
+}
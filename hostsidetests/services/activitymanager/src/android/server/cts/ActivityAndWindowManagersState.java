@@ -45,6 +45,10 @@ class ActivityAndWindowManagersState extends Assert {
     // Must be kept in sync with 'default_minimal_size_resizable_task' dimen from frameworks/base.
     private static final int DEFAULT_RESIZABLE_TASK_SIZE_DP = 220;
 
+    // Polls for a valid state wait up to 5 seconds in total, at most a second at a time.
+    private static final long WAIT_MAX_DELAY_MS = 1000;
+    private static final long WAIT_MAX_SLEEP_MS = 5000;
+
     private ActivityManagerState mAmState = new ActivityManagerState();
     private WindowManagerState mWmState = new WindowManagerState();
 
@@ -118,43 +122,29 @@ class ActivityAndWindowManagersState extends Assert {
     void waitForValidState(ITestDevice device, boolean visibleOnly,
                            String[] waitForActivitiesVisible, int[] stackIds,
                            boolean compareTaskAndStackBounds) throws Exception {
-        int retriesLeft = 5;
+        final Backoff backoff = new Backoff(WAIT_MAX_DELAY_MS, WAIT_MAX_SLEEP_MS);
         do {
             // TODO: Get state of AM and WM at the same time to avoid mismatches caused by
             // requesting dump in some intermediate state.
             mAmState.computeState(device);
             mWmState.computeState(device, visibleOnly);
-            if (shouldWaitForValidStacks(compareTaskAndStackBounds)
-                    || shouldWaitForActivities(waitForActivitiesVisible, stackIds)) {
-                log("***Waiting for valid stacks and activities states...");
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    log(e.toString());
-                    // Well I guess we are not waiting...
-                }
-            } else {
+            if (!shouldWaitForValidStacks(compareTaskAndStackBounds)
+                    && !shouldWaitForActivities(waitForActivitiesVisible, stackIds)) {
                 break;
             }
-        } while (retriesLeft-- > 0);
+            log("***Waiting for valid stacks and activities states...");
+        } while (backoff.sleep());
     }
 
     void waitForHomeActivityVisible(ITestDevice device) throws Exception {
-        int retriesLeft = 5;
+        final Backoff backoff = new Backoff(WAIT_MAX_DELAY_MS, WAIT_MAX_SLEEP_MS);
         do {
             mAmState.computeState(device);
-            if (!mAmState.isHomeActivityVisible()) {
-                log("***Waiting for home activity to be visible...");
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    log(e.toString());
-                    // Well I guess we are not waiting...
-                }
-            } else {
+            if (mAmState.isHomeActivityVisible()) {
                 break;
             }
-        } while (retriesLeft-- > 0);
+            log("***Waiting for home activity to be visible...");
+        } while (backoff.sleep());
     }
 
     private boolean shouldWaitForValidStacks(boolean compareTaskAndStackBounds) {
@@ -25,7 +25,6 @@ import java.lang.Integer;
 import java.lang.String;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import java.util.regex.Pattern;
@@ -38,6 +37,9 @@ import static android.server.cts.StateLogger.logE;
 class ActivityManagerState {
     private static final String DUMPSYS_ACTIVITY_ACTIVITIES = "dumpsys activity activities";
 
+    private static final long RETRY_MAX_DELAY_MS = 500;
+    private static final long RETRY_MAX_SLEEP_MS = 1500;
+
     // Copied from ActivityRecord.java
     private static final int APPLICATION_ACTIVITY_TYPE = 0;
     private static final int HOME_ACTIVITY_TYPE = 1;
@@ -58,12 +60,13 @@ class ActivityManagerState {
     private int mFocusedStackId = -1;
     private String mFocusedActivityRecord = null;
     private final List<String> mResumedActivities = new ArrayList();
-    private final LinkedList<String> mSysDump = new LinkedList();
 
     void computeState(ITestDevice device) throws DeviceNotAvailableException {
         // It is possible the system is in the middle of transition to the right state when we get
         // the dump. We try a few times to get the information we need before giving up.
-        int retriesLeft = 3;
+        // Wait up to 1.5 seconds in total, with growing delays between retries, for activity manager
+        // to finish transitioning.
+        final Backoff backoff = new Backoff(RETRY_MAX_DELAY_MS, RETRY_MAX_SLEEP_MS);
         boolean retry = false;
         String dump = null;
 
@@ -74,13 +77,6 @@ class ActivityManagerState {
         do {
             if (retry) {
                 log("***Incomplete AM state. Retrying...");
-                // Wait half a second between retries for activity manager to finish transitioning.
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    log(e.toString());
-                    // Well I guess we are not waiting...
-                }
             }
 
             final CollectingOutputReceiver outputReceiver = new CollectingOutputReceiver();
@@ -90,7 +86,7 @@ class ActivityManagerState {
 
             retry = mStacks.isEmpty() || mFocusedStackId == -1 || mFocusedActivityRecord == null
                     || mResumedActivities.isEmpty();
-        } while (retry && retriesLeft-- > 0);
+        } while (retry && backoff.sleep());
 
         if (retry) {
             log(dump);
@@ -113,11 +109,11 @@ class ActivityManagerState {
     private void parseSysDump(String sysDump) {
         reset();
 
-        Collections.addAll(mSysDump, sysDump.split("\\n"));
+        final DumpLines dump = new DumpLines(sysDump);
 
         int currentDisplayId = 0;
-        while (!mSysDump.isEmpty()) {
-            final ActivityStack stack = ActivityStack.create(mSysDump, mStackIdPattern,
+        while (!dump.isEmpty()) {
+            final ActivityStack stack = ActivityStack.create(dump, mStackIdPattern,
                     mExtractStackExitPatterns, currentDisplayId);
 
             if (stack != null) {
@@ -128,10 +124,10 @@ class ActivityManagerState {
                 continue;
             }
 
-            final String line = mSysDump.pop().trim();
+            final String line = dump.pop();
 
-            Matcher matcher = mFocusedStackPattern.matcher(line);
-            if (matcher.matches()) {
+            Matcher matcher = DumpLines.match(mFocusedStackPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String stackId = matcher.group(2);
                 log(stackId);
@@ -139,16 +135,16 @@ class ActivityManagerState {
                 continue;
             }
 
-            matcher = mFocusedActivityPattern.matcher(line);
-            if (matcher.matches()) {
+            matcher = DumpLines.match(mFocusedActivityPattern, line);
+            if (matcher != null) {
                 log(line);
                 mFocusedActivityRecord = matcher.group(3);
                 log(mFocusedActivityRecord);
                 continue;
             }
 
-            matcher = mDisplayIdPattern.matcher(line);
-            if (matcher.matches()) {
+            matcher = DumpLines.match(mDisplayIdPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String displayId = matcher.group(2);
                 log(displayId);
@@ -162,7 +158,6 @@ class ActivityManagerState {
         mFocusedStackId = -1;
         mFocusedActivityRecord = null;
         mResumedActivities.clear();
-        mSysDump.clear();
     }
 
     int getFrontStackId() {
@@ -276,12 +271,12 @@ class ActivityManagerState {
         private ActivityStack() {
         }
 
-        static ActivityStack create(LinkedList<String> dump, Pattern stackIdPattern,
+        static ActivityStack create(DumpLines dump, Pattern stackIdPattern,
                                     Pattern[] exitPatterns, int displayId) {
-            final String line = dump.peek().trim();
+            final String line = dump.peek();
 
-            final Matcher matcher = stackIdPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(stackIdPattern, line);
+            if (matcher == null) {
                 // Not a stack.
                 return null;
             }
@@ -298,7 +293,7 @@ class ActivityManagerState {
             return stack;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
 
             final List<Pattern> taskExitPatterns = new ArrayList();
             Collections.addAll(taskExitPatterns, exitPatterns);
@@ -316,7 +311,7 @@ class ActivityManagerState {
                     continue;
                 }
 
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
                 if (extractFullscreen(line)) {
                     continue;
@@ -326,8 +321,8 @@ class ActivityManagerState {
                     continue;
                 }
 
-                Matcher matcher = RESUMED_ACTIVITY_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                Matcher matcher = DumpLines.match(RESUMED_ACTIVITY_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     mResumedActivity = matcher.group(3);
                     log(mResumedActivity);
@@ -380,11 +375,11 @@ class ActivityManagerState {
         }
 
         static ActivityTask create(
-                LinkedList<String> dump, Pattern taskIdPattern, Pattern[] exitPatterns) {
-            final String line = dump.peek().trim();
+                DumpLines dump, Pattern taskIdPattern, Pattern[] exitPatterns) {
+            final String line = dump.peek();
 
-            final Matcher matcher = taskIdPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(taskIdPattern, line);
+            if (matcher == null) {
                 // Not a task.
                 return null;
             }
@@ -400,7 +395,7 @@ class ActivityManagerState {
             return task;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
             final List<Pattern> activityExitPatterns = new ArrayList();
             Collections.addAll(activityExitPatterns, exitPatterns);
             activityExitPatterns.add(ACTIVITY_NAME_PATTERN);
@@ -416,7 +411,7 @@ class ActivityManagerState {
                     continue;
                 }
 
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
                 if (extractFullscreen(line)) {
                     continue;
@@ -430,8 +425,8 @@ class ActivityManagerState {
                     continue;
                 }
 
-                Matcher matcher = TASK_RECORD_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                Matcher matcher = DumpLines.match(TASK_RECORD_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     final String stackId = matcher.group(6);
                     mStackId = Integer.valueOf(stackId);
@@ -439,14 +434,14 @@ class ActivityManagerState {
                     continue;
                 }
 
-                matcher = LAST_NON_FULLSCREEN_BOUNDS_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(LAST_NON_FULLSCREEN_BOUNDS_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     mLastNonFullscreenBounds = extractBounds(matcher);
                 }
 
-                matcher = REAL_ACTIVITY_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(REAL_ACTIVITY_PATTERN, line);
+                if (matcher != null) {
                     if (mRealActivity == null) {
                         log(line);
                         mRealActivity = matcher.group(1);
@@ -455,8 +450,8 @@ class ActivityManagerState {
                     continue;
                 }
 
-                matcher = ORIG_ACTIVITY_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(ORIG_ACTIVITY_PATTERN, line);
+                if (matcher != null) {
                     if (mOrigActivity == null) {
                         log(line);
                         mOrigActivity = matcher.group(1);
@@ -465,8 +460,8 @@ class ActivityManagerState {
                     continue;
                 }
 
-                matcher = TASK_TYPE_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(TASK_TYPE_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     mTaskType = Integer.valueOf(matcher.group(4));
                     mReturnToType = Integer.valueOf(matcher.group(5));
@@ -491,11 +486,11 @@ class ActivityManagerState {
         }
 
         static Activity create(
-                LinkedList<String> dump, Pattern activityNamePattern, Pattern[] exitPatterns) {
-            final String line = dump.peek().trim();
+                DumpLines dump, Pattern activityNamePattern, Pattern[] exitPatterns) {
+            final String line = dump.peek();
 
-            final Matcher matcher = activityNamePattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(activityNamePattern, line);
+            if (matcher == null) {
                 // Not an activity.
                 return null;
             }
@@ -510,13 +505,13 @@ class ActivityManagerState {
             return activity;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
 
             while (!doneExtracting(dump, exitPatterns)) {
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
-                Matcher matcher = VISIBILITY_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                Matcher matcher = DumpLines.match(VISIBILITY_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     final String visibleString = matcher.group(3);
                     visible = Boolean.valueOf(visibleString);
@@ -524,8 +519,8 @@ class ActivityManagerState {
                     continue;
                 }
 
-                matcher = FRONT_OF_TASK_PATTERN.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(FRONT_OF_TASK_PATTERN, line);
+                if (matcher != null) {
                     log(line);
                     final String frontOfTaskString = matcher.group(1);
                     frontOfTask = Boolean.valueOf(frontOfTaskString);
@@ -551,8 +546,8 @@ class ActivityManagerState {
         protected int mMinHeight = -1;
 
         boolean extractFullscreen(String line) {
-            final Matcher matcher = FULLSCREEN_PATTERN.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(FULLSCREEN_PATTERN, line);
+            if (matcher == null) {
                 return false;
             }
             log(line);
@@ -563,8 +558,8 @@ class ActivityManagerState {
         }
 
         boolean extractBounds(String line) {
-            final Matcher matcher = BOUNDS_PATTERN.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(BOUNDS_PATTERN, line);
+            if (matcher == null) {
                 return false;
             }
             log(line);
@@ -616,17 +611,7 @@ class ActivityManagerState {
         }
     }
 
-    static boolean doneExtracting(LinkedList<String> dump, Pattern[] exitPatterns) {
-        if (dump.isEmpty()) {
-            return true;
-        }
-        final String line = dump.peek().trim();
-
-        for (Pattern pattern : exitPatterns) {
-            if (pattern.matcher(line).matches()) {
-                return true;
-            }
-        }
-        return false;
+    static boolean doneExtracting(DumpLines dump, Pattern[] exitPatterns) {
+        return dump.isEmptyOrNextMatchesAny(exitPatterns);
     }
 }
@@ -80,6 +80,10 @@ public abstract class ActivityManagerTestBase extends DeviceTestCase {
 
     private static final String INPUT_KEYEVENT_HOME = "input keyevent 3";
 
+    // Polls for the display to turn off up to 5 seconds in total, at most a second at a time.
+    private static final long LOCK_MAX_DELAY_MS = 1000;
+    private static final long LOCK_MAX_SLEEP_MS = 5000;
+
     /** A reference to the device under test. */
     protected ITestDevice mDevice;
 
@@ -318,21 +322,14 @@ public abstract class ActivityManagerTestBase extends DeviceTestCase {
     }
 
     protected void lockDevice() throws DeviceNotAvailableException {
-        int retriesLeft = 5;
+        final Backoff backoff = new Backoff(LOCK_MAX_DELAY_MS, LOCK_MAX_SLEEP_MS);
         runCommandAndPrintOutput("input keyevent 26");
         do {
-            if (isDisplayOn()) {
-                log("***Waiting for display to turn off...");
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    log(e.toString());
-                    // Well I guess we are not waiting...
-                }
-            } else {
+            if (!isDisplayOn()) {
                 break;
             }
-        } while (retriesLeft-- > 0);
+            log("***Waiting for display to turn off...");
+        } while (backoff.sleep());
     }
 
     protected void unlockDevice() throws DeviceNotAvailableException {
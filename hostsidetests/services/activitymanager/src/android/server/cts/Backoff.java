@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package android.server.cts;
+
+import static android.server.cts.StateLogger.log;
+
+/**
+ * Delays between polls of the device state, starting short and doubling up to a maximum.
+ * <p/>
+ * The state usually settles within a few hundred ms, so waiting a fixed delay of up to a second
+ * before the next poll made most waits longer than needed. The total time slept is limited the
+ * same way the fixed delays were, so states that take long to settle are polled at least as
+ * often as before.
+ */
+class Backoff {
+    private static final long INITIAL_DELAY_MS = 50;
+
+    private final long mMaxDelayMs;
+    private long mDelayMs = INITIAL_DELAY_MS;
+    private long mSleepLeftMs;
+
+    /**
+     * @param maxDelayMs the longest delay between two polls.
+     * @param maxSleepMs the total time to sleep at most.
+     */
+    Backoff(long maxDelayMs, long maxSleepMs) {
+        mMaxDelayMs = maxDelayMs;
+        mSleepLeftMs = maxSleepMs;
+    }
+
+    /**
+     * Sleeps before the next poll.
+     *
+     * @return false, without sleeping, if the total time to sleep was used up.
+     */
+    boolean sleep() {
+        if (mSleepLeftMs <= 0) {
+            return false;
+        }
+        final long delayMs = Math.min(mDelayMs, mSleepLeftMs);
+        mSleepLeftMs -= delayMs;
+        mDelayMs = Math.min(mDelayMs * 2, mMaxDelayMs);
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            log(e.toString());
+            // Well I guess we are not waiting...
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package android.server.cts;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trimmed lines of a dumpsys output, read once from the first to the last by the state parsers.
+ * <p/>
+ * The parsers check the next line against the exit patterns of every container it might end,
+ * i.e. up to ten patterns per nesting level. Each pattern is only matched against lines
+ * starting with its literal prefix, so most checks are a few string comparisons.
+ */
+class DumpLines {
+    private static final String REGEX_META_CHARS = "[](){}.*+?^$|";
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    // Literal prefixes of the patterns matched so far, empty for patterns without one.
+    private static final Map<Pattern, String> sPrefixes = new ConcurrentHashMap<>();
+
+    private final String[] mLines;
+    private int mNext;
+
+    DumpLines(String dump) {
+        mLines = dump.split("\\n");
+        for (int i = 0; i < mLines.length; i++) {
+            mLines[i] = mLines[i].trim();
+        }
+    }
+
+    boolean isEmpty() {
+        return mNext == mLines.length;
+    }
+
+    String peek() {
+        return isEmpty() ? null : mLines[mNext];
+    }
+
+    String pop() {
+        return mLines[mNext++];
+    }
+
+    /**
+     * @return true if there is no next line or it matches one of the given patterns.
+     */
+    boolean isEmptyOrNextMatchesAny(Pattern[] patterns) {
+        if (isEmpty()) {
+            return true;
+        }
+        final String line = mLines[mNext];
+        for (Pattern pattern : patterns) {
+            if (match(pattern, line) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the matcher of the given pattern if it matches the whole line, null otherwise.
+     */
+    static Matcher match(Pattern pattern, String line) {
+        if (!line.startsWith(getPrefix(pattern))) {
+            return null;
+        }
+        final Matcher matcher = pattern.matcher(line);
+        return matcher.matches() ? matcher : null;
+    }
+
+    private static String getPrefix(Pattern pattern) {
+        String prefix = sPrefixes.get(pattern);
+        if (prefix == null) {
+            prefix = computePrefix(pattern);
+            sPrefixes.put(pattern, prefix);
+        }
+        return prefix;
+    }
+
+    /**
+     * @return the literal text all lines matched by the given pattern start with.
+     */
+    static String computePrefix(Pattern pattern) {
+        final String regex = pattern.pattern();
+        final StringBuilder prefix = new StringBuilder();
+        if (pattern.flags() != 0 || regex.indexOf('|') >= 0) {
+            // Alternatives or flags such as CASE_INSENSITIVE, don't bother.
+            return "";
+        }
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            final char literal;
+            if (c == '\\') {
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // Character class such as \d, or a back reference.
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                i += 2;
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                i++;
+            }
+            if (i < regex.length()) {
+                final char quantifier = regex.charAt(i);
+                if (OPTIONAL_QUANTIFIERS.indexOf(quantifier) >= 0) {
+                    break;
+                }
+                if (quantifier == '+') {
+                    prefix.append(literal);
+                    break;
+                }
+            }
+            prefix.append(literal);
+        }
+        return prefix.toString();
+    }
+}
@@ -25,7 +25,6 @@ import java.awt.Rectangle;
 import java.lang.String;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import java.util.regex.Pattern;
@@ -38,6 +37,9 @@ class WindowManagerState {
     private static final String DUMPSYS_WINDOWS_APPS = "dumpsys window apps";
     private static final String DUMPSYS_WINDOWS_VISIBLE_APPS = "dumpsys window visible-apps";
 
+    private static final long RETRY_MAX_DELAY_MS = 500;
+    private static final long RETRY_MAX_SLEEP_MS = 1500;
+
     private static final Pattern sWindowPattern =
             Pattern.compile("Window #(\\d+) Window\\{([0-9a-fA-F]+) u(\\d+) (.+)\\}\\:");
     private static final Pattern sStartingWindowPattern =
@@ -70,12 +72,13 @@ class WindowManagerState {
     private List<Display> mDisplays = new ArrayList();
     private String mFocusedWindow = null;
     private String mFocusedApp = null;
-    private final LinkedList<String> mSysDump = new LinkedList();
 
     void computeState(ITestDevice device, boolean visibleOnly) throws DeviceNotAvailableException {
         // It is possible the system is in the middle of transition to the right state when we get
         // the dump. We try a few times to get the information we need before giving up.
-        int retriesLeft = 3;
+        // Wait up to 1.5 seconds in total, with growing delays between retries, for window manager
+        // to finish transitioning.
+        final Backoff backoff = new Backoff(RETRY_MAX_DELAY_MS, RETRY_MAX_SLEEP_MS);
         boolean retry = false;
         String dump = null;
 
@@ -85,13 +88,6 @@ class WindowManagerState {
         do {
             if (retry) {
                 log("***Incomplete WM state. Retrying...");
-                // Wait half a second between retries for window manager to finish transitioning...
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    log(e.toString());
-                    // Well I guess we are not waiting...
-                }
             }
 
             final CollectingOutputReceiver outputReceiver = new CollectingOutputReceiver();
@@ -102,7 +98,7 @@ class WindowManagerState {
             parseSysDump(dump, visibleOnly);
 
             retry = mWindows.isEmpty() || mFocusedWindow == null || mFocusedApp == null;
-        } while (retry && retriesLeft-- > 0);
+        } while (retry && backoff.sleep());
 
         if (retry) {
             log(dump);
@@ -122,11 +118,11 @@ class WindowManagerState {
     private void parseSysDump(String sysDump, boolean visibleOnly) {
         reset();
 
-        Collections.addAll(mSysDump, sysDump.split("\\n"));
+        final DumpLines dump = new DumpLines(sysDump);
 
-        while (!mSysDump.isEmpty()) {
+        while (!dump.isEmpty()) {
             final Display display =
-                    Display.create(mSysDump, sExtractStackExitPatterns);
+                    Display.create(dump, sExtractStackExitPatterns);
             if (display != null) {
                 log(display.toString());
                 mDisplays.add(display);
@@ -134,7 +130,7 @@ class WindowManagerState {
             }
 
             final WindowStack stack =
-                    WindowStack.create(mSysDump, sStackIdPattern, sExtractStackExitPatterns);
+                    WindowStack.create(dump, sStackIdPattern, sExtractStackExitPatterns);
 
             if (stack != null) {
                 mStacks.add(stack);
@@ -142,7 +138,7 @@ class WindowManagerState {
             }
 
 
-            final WindowState ws = WindowState.create(mSysDump, sExtractStackExitPatterns);
+            final WindowState ws = WindowState.create(dump, sExtractStackExitPatterns);
             if (ws != null) {
                 log(ws.toString());
 
@@ -165,10 +161,10 @@ class WindowManagerState {
                 continue;
             }
 
-            final String line = mSysDump.pop().trim();
+            final String line = dump.pop();
 
-            Matcher matcher = sFocusedWindowPattern.matcher(line);
-            if (matcher.matches()) {
+            Matcher matcher = DumpLines.match(sFocusedWindowPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String focusedWindow = matcher.group(3);
                 log(focusedWindow);
@@ -176,8 +172,8 @@ class WindowManagerState {
                 continue;
             }
 
-            matcher = sAppErrorFocusedWindowPattern.matcher(line);
-            if (matcher.matches()) {
+            matcher = DumpLines.match(sAppErrorFocusedWindowPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String focusedWindow = matcher.group(3);
                 log(focusedWindow);
@@ -185,8 +181,8 @@ class WindowManagerState {
                 continue;
             }
 
-            matcher = sWaitingForDebuggerFocusedWindowPattern.matcher(line);
-            if (matcher.matches()) {
+            matcher = DumpLines.match(sWaitingForDebuggerFocusedWindowPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String focusedWindow = matcher.group(3);
                 log(focusedWindow);
@@ -194,8 +190,8 @@ class WindowManagerState {
                 continue;
             }
 
-            matcher = sFocusedAppPattern.matcher(line);
-            if (matcher.matches()) {
+            matcher = DumpLines.match(sFocusedAppPattern, line);
+            if (matcher != null) {
                 log(line);
                 final String focusedApp = matcher.group(5);
                 log(focusedApp);
@@ -280,7 +276,6 @@ class WindowManagerState {
     }
 
     private void reset() {
-        mSysDump.clear();
         mStacks.clear();
         mDisplays.clear();
         mWindows.clear();
@@ -301,11 +296,11 @@ class WindowManagerState {
         }
 
         static WindowStack create(
-                LinkedList<String> dump, Pattern stackIdPattern, Pattern[] exitPatterns) {
-            final String line = dump.peek().trim();
+                DumpLines dump, Pattern stackIdPattern, Pattern[] exitPatterns) {
+            final String line = dump.peek();
 
-            final Matcher matcher = stackIdPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(stackIdPattern, line);
+            if (matcher == null) {
                 // Not a stack.
                 return null;
             }
@@ -321,7 +316,7 @@ class WindowManagerState {
             return stack;
         }
 
-        void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        void extract(DumpLines dump, Pattern[] exitPatterns) {
 
             final List<Pattern> taskExitPatterns = new ArrayList();
             Collections.addAll(taskExitPatterns, exitPatterns);
@@ -338,7 +333,7 @@ class WindowManagerState {
                     continue;
                 }
 
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
                 if (extractFullscreen(line)) {
                     continue;
@@ -377,11 +372,11 @@ class WindowManagerState {
         }
 
         static WindowTask create(
-                LinkedList<String> dump, Pattern taskIdPattern, Pattern[] exitPatterns) {
-            final String line = dump.peek().trim();
+                DumpLines dump, Pattern taskIdPattern, Pattern[] exitPatterns) {
+            final String line = dump.peek();
 
-            final Matcher matcher = taskIdPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(taskIdPattern, line);
+            if (matcher == null) {
                 // Not a task.
                 return null;
             }
@@ -397,9 +392,9 @@ class WindowManagerState {
             return task;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
             while (!doneExtracting(dump, exitPatterns)) {
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
                 if (extractFullscreen(line)) {
                     continue;
@@ -409,14 +404,14 @@ class WindowManagerState {
                     continue;
                 }
 
-                Matcher matcher = sTempInsetBoundsPattern.matcher(line);
-                if (matcher.matches()) {
+                Matcher matcher = DumpLines.match(sTempInsetBoundsPattern, line);
+                if (matcher != null) {
                     log(line);
                     mTempInsetBounds = extractBounds(matcher);
                 }
 
-                matcher = sAppTokenPattern.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(sAppTokenPattern, line);
+                if (matcher != null) {
                     log(line);
                     final String appToken = matcher.group(6);
                     log(appToken);
@@ -435,23 +430,13 @@ class WindowManagerState {
         protected boolean mFullscreen;
         protected Rectangle mBounds;
 
-        static boolean doneExtracting(LinkedList<String> dump, Pattern[] exitPatterns) {
-            if (dump.isEmpty()) {
-                return true;
-            }
-            final String line = dump.peek().trim();
-
-            for (Pattern pattern : exitPatterns) {
-                if (pattern.matcher(line).matches()) {
-                    return true;
-                }
-            }
-            return false;
+        static boolean doneExtracting(DumpLines dump, Pattern[] exitPatterns) {
+            return dump.isEmptyOrNextMatchesAny(exitPatterns);
         }
 
         boolean extractFullscreen(String line) {
-            final Matcher matcher = sFullscreenPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(sFullscreenPattern, line);
+            if (matcher == null) {
                 return false;
             }
             log(line);
@@ -462,8 +447,8 @@ class WindowManagerState {
         }
 
         boolean extractBounds(String line) {
-            final Matcher matcher = sBoundsPattern.matcher(line);
-            if (!matcher.matches()) {
+            final Matcher matcher = DumpLines.match(sBoundsPattern, line);
+            if (matcher == null) {
                 return false;
             }
             log(line);
@@ -537,12 +522,12 @@ class WindowManagerState {
             return mAppRect;
         }
 
-        static Display create(LinkedList<String> dump, Pattern[] exitPatterns) {
+        static Display create(DumpLines dump, Pattern[] exitPatterns) {
             // TODO: exit pattern for displays?
-            final String line = dump.peek().trim();
+            final String line = dump.peek();
 
-            Matcher matcher = sDisplayIdPattern.matcher(line);
-            if (!matcher.matches()) {
+            Matcher matcher = DumpLines.match(sDisplayIdPattern, line);
+            if (matcher == null) {
                 return null;
             }
 
@@ -555,12 +540,12 @@ class WindowManagerState {
             return display;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
             while (!doneExtracting(dump, exitPatterns)) {
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
-                final Matcher matcher = sDisplayInfoPattern.matcher(line);
-                if (matcher.matches()) {
+                final Matcher matcher = DumpLines.match(sDisplayInfoPattern, line);
+                if (matcher != null) {
                     log(TAG + "DISPLAY_INFO: " + line);
                     mDpi = Integer.valueOf(matcher.group(2));
 
@@ -643,11 +628,11 @@ class WindowManagerState {
             return mParentFrame;
         }
 
-        static WindowState create(LinkedList<String> dump, Pattern[] exitPatterns) {
-            final String line = dump.peek().trim();
+        static WindowState create(DumpLines dump, Pattern[] exitPatterns) {
+            final String line = dump.peek();
 
-            Matcher matcher = sWindowPattern.matcher(line);
-            if (!matcher.matches()) {
+            Matcher matcher = DumpLines.match(sWindowPattern, line);
+            if (matcher == null) {
                 return null;
             }
 
@@ -655,13 +640,13 @@ class WindowManagerState {
             dump.pop();
 
             final WindowState window;
-            Matcher specialMatcher = sStartingWindowPattern.matcher(line);
-            if (specialMatcher.matches()) {
+            Matcher specialMatcher = DumpLines.match(sStartingWindowPattern, line);
+            if (specialMatcher != null) {
                 log(TAG + "STARTING: " + line);
                 window = new WindowState(specialMatcher, true, false);
             } else {
-                specialMatcher = sExitingWindowPattern.matcher(line);
-                if (specialMatcher.matches()) {
+                specialMatcher = DumpLines.match(sExitingWindowPattern, line);
+                if (specialMatcher != null) {
                     log(TAG + "EXITING: " + line);
                     window = new WindowState(specialMatcher, false, true);
                 } else {
@@ -673,20 +658,20 @@ class WindowManagerState {
             return window;
         }
 
-        private void extract(LinkedList<String> dump, Pattern[] exitPatterns) {
+        private void extract(DumpLines dump, Pattern[] exitPatterns) {
             while (!doneExtracting(dump, exitPatterns)) {
-                final String line = dump.pop().trim();
+                final String line = dump.pop();
 
-                Matcher matcher = sWindowAssociationPattern.matcher(line);
-                if (matcher.matches()) {
+                Matcher matcher = DumpLines.match(sWindowAssociationPattern, line);
+                if (matcher != null) {
                     log(TAG + "WINDOW_ASSOCIATION: " + line);
                     mDisplayId = Integer.valueOf(matcher.group(1));
                     mStackId = Integer.valueOf(matcher.group(2));
                     continue;
                 }
 
-                matcher = sFramePattern.matcher(line);
-                if (matcher.matches()) {
+                matcher = DumpLines.match(sFramePattern, line);
+                if (matcher != null) {
                     log(TAG + "FRAME: " + line);
                     extractMultipleBounds(matcher, 1, mContainingFrame, mParentFrame);
                     continue;
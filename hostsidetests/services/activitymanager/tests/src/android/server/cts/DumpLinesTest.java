@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package android.server.cts;
+
+import junit.framework.TestCase;
+
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link DumpLines}, which do not need a device.
+ */
+public class DumpLinesTest extends TestCase {
+
+    private static void assertPrefix(String expected, String regex) {
+        assertEquals(regex, expected, DumpLines.computePrefix(Pattern.compile(regex)));
+    }
+
+    public void testComputePrefix_literals() {
+        assertPrefix("Display #0", "Display #0");
+        assertPrefix("mFocusedApp=AppWindowToken{",
+                "mFocusedApp=AppWindowToken\\{(.+) token=(.+)\\}");
+        assertPrefix("Stack #", "Stack #(\\d+)");
+        assertPrefix("", "(.+)");
+        assertPrefix("", "^Stack");
+    }
+
+    public void testComputePrefix_escapes() {
+        assertPrefix("a.b", "a\\.b");
+        assertPrefix("[x]", "\\[x\\]");
+        assertPrefix("a\\", "a\\\\");
+        assertPrefix("taskId=", "taskId=\\d+");
+        assertPrefix("a", "a\\1");
+    }
+
+    public void testComputePrefix_quantifiers() {
+        assertPrefix("a", "ab?c");
+        assertPrefix("a", "ab*c");
+        assertPrefix("a", "ab{2}c");
+        assertPrefix("a", "a\\.?c");
+        assertPrefix("ab", "ab+c");
+        assertPrefix("a.", "a\\.+c");
+    }
+
+    public void testComputePrefix_noPrefix() {
+        assertPrefix("", "ab|ac");
+        assertPrefix("", "Stack #(\\d+|none)");
+        assertEquals("", DumpLines.computePrefix(
+                Pattern.compile("display", Pattern.CASE_INSENSITIVE)));
+    }
+
+    public void testMatch() {
+        Pattern pattern = Pattern.compile("Stack #(\\d+):");
+        assertNotNull(DumpLines.match(pattern, "Stack #1:"));
+        assertNull(DumpLines.match(pattern, "Stack #1: x"));
+        assertNull(DumpLines.match(pattern, "Task #1:"));
+        assertNotNull(DumpLines.match(Pattern.compile("ab+c"), "abbc"));
+        assertNotNull(DumpLines.match(Pattern.compile("ab?c"), "ac"));
+        assertNotNull(DumpLines.match(
+                Pattern.compile("display", Pattern.CASE_INSENSITIVE), "Display"));
+    }
+
+    public void testIsEmptyOrNextMatchesAny() {
+        DumpLines lines = new DumpLines("  Stack #1:\n    Task #2:\n");
+        Pattern[] stackPatterns = {Pattern.compile("Stack #(\\d+):")};
+        Pattern[] taskPatterns = {Pattern.compile("Task #(\\d+):")};
+        assertTrue(lines.isEmptyOrNextMatchesAny(stackPatterns));
+        assertFalse(lines.isEmptyOrNextMatchesAny(taskPatterns));
+        assertEquals("Stack #1:", lines.pop());
+        assertTrue(lines.isEmptyOrNextMatchesAny(taskPatterns));
+        assertEquals("Task #2:", lines.pop());
+        assertTrue(lines.isEmpty());
+        assertNull(lines.peek());
+        assertTrue(lines.isEmptyOrNextMatchesAny(stackPatterns));
+    }
+}
@@ -16,15 +16,32 @@
 
 package android.cts.util;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A poor man's implementation of the readelf command. This program is designed
  * to parse ELF (Executable and Linkable Format) files.
+ * <p/>
+ * The file is memory-mapped and only the ELF header is decoded up front. Section and program
+ * headers are decoded on first use, and symbols are looked up one at a time, through the .hash or
+ * .gnu.hash table for dynamic symbols, without building a table of all of them.
  */
 public class ReadElf implements AutoCloseable {
     /** The magic values for the ELF identification. */
@@ -57,7 +74,14 @@ public class ReadElf implements AutoCloseable {
     private static final int SHT_SYMTAB = 2;
     private static final int SHT_STRTAB = 3;
     private static final int SHT_DYNAMIC = 6;
+    private static final int SHT_HASH = 5;
     private static final int SHT_DYNSYM = 11;
+    private static final int SHT_GNU_HASH = 0x6ffffff6;
+
+    private static final int SHDR32_SIZE = 40;
+    private static final int SHDR64_SIZE = 64;
+    private static final int PHDR32_SIZE = 32;
+    private static final int PHDR64_SIZE = 56;
 
     public static class Symbol {
         public static final int STB_LOCAL = 0;
@@ -122,15 +146,35 @@ public class ReadElf implements AutoCloseable {
         }
     }
 
+    /**
+     * Callback of {@link #scanDirectory(File, FileFilter, Visitor)}. It is invoked concurrently
+     * from several threads, so implementations must be thread safe.
+     */
+    public interface Visitor {
+        void visit(File file, ReadElf elf) throws IOException;
+    }
+
     private final String mPath;
-    private final RandomAccessFile mFile;
-    private final byte[] mBuffer = new byte[512];
+    private final ByteBuffer mBuffer;
     private int mEndian;
-    private boolean mIsDynamic;
-    private boolean mIsPIE;
     private int mType;
     private int mAddrSize;
 
+    /** Section Header table location, decoded by {@link #readSectionHeaders()} */
+    private long mShOff;
+    private int mShNum;
+    private int mShEntSize;
+    private int mShStrNdx;
+    private boolean mSectionHeadersRead;
+    private boolean mIsDynamic;
+
+    /** Program Header table location, decoded by {@link #readProgramHeaders()} */
+    private long mPhOff;
+    private int mPhNum;
+    private int mPhEntSize;
+    private boolean mProgramHeadersRead;
+    private boolean mIsPIE;
+
     /** Symbol Table offset */
     private long mSymTabOffset;
 
@@ -161,16 +205,101 @@ public class ReadElf implements AutoCloseable {
     /** Dynamic String Table size */
     private long mDynStrSize;
 
-    /** Symbol Table symbol names */
-    private Map<String, Symbol> mSymbols;
+    /** SysV hash table of the Dynamic Symbol Table offset, or 0 */
+    private long mHashOffset;
+
+    /** GNU hash table of the Dynamic Symbol Table offset, or 0 */
+    private long mGnuHashOffset;
 
-    /** Dynamic Symbol Table symbol names */
-    private Map<String, Symbol> mDynamicSymbols;
+    /** Symbol Table symbols looked up so far, including those not found */
+    private final Map<String, Symbol> mSymbols = new HashMap<String, Symbol>();
+
+    /** Dynamic Symbol Table symbols looked up so far, including those not found */
+    private final Map<String, Symbol> mDynamicSymbols = new HashMap<String, Symbol>();
 
     public static ReadElf read(File file) throws IOException {
         return new ReadElf(file);
     }
 
+    /**
+     * Reads all ELF files accepted by the filter in the given directory and its subdirectories,
+     * in parallel. Symbolic links to directories are not followed and files that are not ELF
+     * files are skipped.
+     *
+     * @throws IOException the first error reading a file or visiting it.
+     */
+    public static void scanDirectory(File dir, FileFilter filter, final Visitor visitor)
+            throws IOException {
+        List<File> files = new ArrayList<File>();
+        collectFiles(dir.getCanonicalFile(), filter, files);
+        if (files.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        ReadElf elf;
+                        try {
+                            elf = read(file);
+                        } catch (IllegalArgumentException ignored) {
+                            // Not an ELF file.
+                            return null;
+                        }
+                        try {
+                            visitor.visit(file, elf);
+                        } finally {
+                            elf.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted scanning " + dir);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void collectFiles(File canonicalDir, FileFilter filter, List<File> files)
+            throws IOException {
+        File[] children = canonicalDir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                File canonicalChild = child.getCanonicalFile();
+                // Skip symbolic links.
+                if (canonicalChild.getPath().equals(child.getAbsolutePath())) {
+                    collectFiles(canonicalChild, filter, files);
+                }
+            } else if (filter == null || filter.accept(child)) {
+                files.add(child);
+            }
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         for (String arg : args) {
             ReadElf re = new ReadElf(new File(arg));
@@ -181,6 +310,7 @@ public class ReadElf implements AutoCloseable {
     }
 
     public boolean isDynamic() {
+        readSectionHeaders();
         return mIsDynamic;
     }
 
@@ -189,47 +319,39 @@ public class ReadElf implements AutoCloseable {
     }
 
     public boolean isPIE() {
+        readProgramHeaders();
         return mIsPIE;
     }
 
     private ReadElf(File file) throws IOException {
         mPath = file.getPath();
-        mFile = new RandomAccessFile(file, "r");
-
-        if (mFile.length() < EI_NIDENT) {
-            throw new IllegalArgumentException("Too small to be an ELF file: " + file);
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            if (channel.size() < EI_NIDENT) {
+                throw new IllegalArgumentException("Too small to be an ELF file: " + file);
+            }
+            // The mapping stays valid once the channel is closed.
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
 
         readHeader();
     }
 
+    /**
+     * The file is closed as soon as it is mapped, and the mapping is released once this object is
+     * garbage collected, so there is nothing left to release here.
+     */
     @Override
     public void close() {
-        try {
-            mFile.close();
-        } catch (IOException ignored) {
-        }
-    }
-
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            close();
-        } finally {
-            super.finalize();
-        }
     }
 
     private void readHeader() throws IOException {
-        mFile.seek(0);
-        mFile.readFully(mBuffer, 0, EI_NIDENT);
-
-        if (mBuffer[0] != ELFMAG[0] || mBuffer[1] != ELFMAG[1] ||
-                mBuffer[2] != ELFMAG[2] || mBuffer[3] != ELFMAG[3]) {
+        if (mBuffer.get(0) != ELFMAG[0] || mBuffer.get(1) != ELFMAG[1] ||
+                mBuffer.get(2) != ELFMAG[2] || mBuffer.get(3) != ELFMAG[3]) {
             throw new IllegalArgumentException("Invalid ELF file: " + mPath);
         }
 
-        int elfClass = mBuffer[EI_CLASS];
+        int elfClass = mBuffer.get(EI_CLASS);
         if (elfClass == ELFCLASS32) {
             mAddrSize = 4;
         } else if (elfClass == ELFCLASS64) {
@@ -238,17 +360,21 @@ public class ReadElf implements AutoCloseable {
             throw new IOException("Invalid ELF EI_CLASS: " + elfClass + ": " + mPath);
         }
 
-        mEndian = mBuffer[EI_DATA];
+        mEndian = mBuffer.get(EI_DATA);
         if (mEndian == ELFDATA2LSB) {
+            mBuffer.order(ByteOrder.LITTLE_ENDIAN);
         } else if (mEndian == ELFDATA2MSB) {
             throw new IOException("Unsupported ELFDATA2MSB file: " + mPath);
         } else {
             throw new IOException("Invalid ELF EI_DATA: " + mEndian + ": " + mPath);
         }
 
-        mType = readHalf();
+        long offset = EI_NIDENT;
+        mType = readHalf(offset);
+        offset += 2;
 
-        int e_machine = readHalf();
+        int e_machine = readHalf(offset);
+        offset += 2;
         if (e_machine != EM_386 && e_machine != EM_X86_64 &&
                 e_machine != EM_AARCH64 && e_machine != EM_ARM &&
                 e_machine != EM_MIPS &&
@@ -266,99 +392,153 @@ public class ReadElf implements AutoCloseable {
                     e_machine + "/" + elfClass + ": " + mPath);
         }
 
-        long e_version = readWord();
+        long e_version = readWord(offset);
+        offset += 4;
         if (e_version != EV_CURRENT) {
             throw new IOException("Invalid e_version: " + e_version + ": " + mPath);
         }
 
-        long e_entry = readAddr();
-
-        long ph_off = readOff();
-        long sh_off = readOff();
-
-        long e_flags = readWord();
-        int e_ehsize = readHalf();
-        int e_phentsize = readHalf();
-        int e_phnum = readHalf();
-        int e_shentsize = readHalf();
-        int e_shnum = readHalf();
-        int e_shstrndx = readHalf();
-
-        readSectionHeaders(sh_off, e_shnum, e_shentsize, e_shstrndx);
-        readProgramHeaders(ph_off, e_phnum, e_phentsize);
+        // Skip e_entry.
+        offset += mAddrSize;
+
+        mPhOff = readOff(offset);
+        offset += mAddrSize;
+        mShOff = readOff(offset);
+        offset += mAddrSize;
+
+        // Skip e_flags and e_ehsize.
+        offset += 6;
+        mPhEntSize = readHalf(offset);
+        mPhNum = readHalf(offset + 2);
+        mShEntSize = readHalf(offset + 4);
+        mShNum = readHalf(offset + 6);
+        mShStrNdx = readHalf(offset + 8);
+
+        // Only check the header tables here, so that decoding them later cannot fail.
+        checkTable("section", mShOff, mShNum, mShEntSize,
+                mAddrSize == 8 ? SHDR64_SIZE : SHDR32_SIZE);
+        checkTable("program", mPhOff, mPhNum, mPhEntSize,
+                mAddrSize == 8 ? PHDR64_SIZE : PHDR32_SIZE);
+        if (mShNum > 0 && mShStrNdx >= mShNum) {
+            throw new IOException("Invalid e_shstrndx: " + mShStrNdx + ": " + mPath);
+        }
     }
 
-    private void readSectionHeaders(long sh_off, int e_shnum, int e_shentsize, int e_shstrndx)
+    private void checkTable(String name, long offset, int count, int entrySize, int minEntrySize)
             throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (entrySize < minEntrySize || offset < 0 ||
+                offset + (long) count * entrySize > mBuffer.limit()) {
+            throw new IOException("Invalid ELF " + name + " header table: " + mPath);
+        }
+    }
+
+    private synchronized void readSectionHeaders() {
+        if (mSectionHeadersRead) {
+            return;
+        }
+        mSectionHeadersRead = true;
+        if (mShNum == 0) {
+            return;
+        }
+
         // Read the Section Header String Table offset first.
         {
-            mFile.seek(sh_off + e_shstrndx * e_shentsize);
-
-            long sh_name = readWord();
-            long sh_type = readWord();
-            long sh_flags = readX(mAddrSize);
-            long sh_addr = readAddr();
-            long sh_offset = readOff();
-            long sh_size = readX(mAddrSize);
-            // ...
-
-            if (sh_type == SHT_STRTAB) {
-                mShStrTabOffset = sh_offset;
-                mShStrTabSize = sh_size;
+            int sh = (int) (mShOff + (long) mShStrNdx * mShEntSize);
+            if (getSectionType(sh) == SHT_STRTAB) {
+                mShStrTabOffset = getSectionOffset(sh);
+                mShStrTabSize = getSectionSize(sh);
             }
         }
 
-        for (int i = 0; i < e_shnum; ++i) {
+        int dynSymIndex = -1;
+        int hashLink = -1;
+        long hashOffset = 0;
+        int gnuHashLink = -1;
+        long gnuHashOffset = 0;
+        for (int i = 0; i < mShNum; ++i) {
             // Don't bother to re-read the Section Header StrTab.
-            if (i == e_shstrndx) {
+            if (i == mShStrNdx) {
                 continue;
             }
 
-            mFile.seek(sh_off + i * e_shentsize);
-
-            long sh_name = readWord();
-            long sh_type = readWord();
-            long sh_flags = readX(mAddrSize);
-            long sh_addr = readAddr();
-            long sh_offset = readOff();
-            long sh_size = readX(mAddrSize);
+            int sh = (int) (mShOff + (long) i * mShEntSize);
+            long sh_type = getSectionType(sh);
 
             if (sh_type == SHT_SYMTAB || sh_type == SHT_DYNSYM) {
-                final String symTabName = readShStrTabEntry(sh_name);
+                final String symTabName = readShStrTabEntry(mBuffer.getInt(sh) & 0xffffffffL);
                 if (".symtab".equals(symTabName)) {
-                    mSymTabOffset = sh_offset;
-                    mSymTabSize = sh_size;
+                    mSymTabOffset = getSectionOffset(sh);
+                    mSymTabSize = getSectionSize(sh);
                 } else if (".dynsym".equals(symTabName)) {
-                    mDynSymOffset = sh_offset;
-                    mDynSymSize = sh_size;
+                    mDynSymOffset = getSectionOffset(sh);
+                    mDynSymSize = getSectionSize(sh);
+                    dynSymIndex = i;
                 }
             } else if (sh_type == SHT_STRTAB) {
-                final String strTabName = readShStrTabEntry(sh_name);
+                final String strTabName = readShStrTabEntry(mBuffer.getInt(sh) & 0xffffffffL);
                 if (".strtab".equals(strTabName)) {
-                    mStrTabOffset = sh_offset;
-                    mStrTabSize = sh_size;
+                    mStrTabOffset = getSectionOffset(sh);
+                    mStrTabSize = getSectionSize(sh);
                 } else if (".dynstr".equals(strTabName)) {
-                    mDynStrOffset = sh_offset;
-                    mDynStrSize = sh_size;
+                    mDynStrOffset = getSectionOffset(sh);
+                    mDynStrSize = getSectionSize(sh);
                 }
             } else if (sh_type == SHT_DYNAMIC) {
                 mIsDynamic = true;
+            } else if (sh_type == SHT_HASH) {
+                hashLink = getSectionLink(sh);
+                hashOffset = getSectionOffset(sh);
+            } else if (sh_type == SHT_GNU_HASH) {
+                gnuHashLink = getSectionLink(sh);
+                gnuHashOffset = getSectionOffset(sh);
             }
         }
+
+        // Only use the hash tables of the Dynamic Symbol Table, which may come after them.
+        if (dynSymIndex >= 0 && hashLink == dynSymIndex) {
+            mHashOffset = hashOffset;
+        }
+        if (dynSymIndex >= 0 && gnuHashLink == dynSymIndex) {
+            mGnuHashOffset = gnuHashOffset;
+        }
+    }
+
+    private long getSectionType(int sh) {
+        return mBuffer.getInt(sh + 4) & 0xffffffffL;
+    }
+
+    private long getSectionOffset(int sh) {
+        return getAddr(sh + 8 + 2 * mAddrSize);
+    }
+
+    private long getSectionSize(int sh) {
+        return getAddr(sh + 8 + 3 * mAddrSize);
+    }
+
+    private int getSectionLink(int sh) {
+        return mBuffer.getInt(sh + 8 + 4 * mAddrSize);
+    }
+
+    private long getAddr(int offset) {
+        return (mAddrSize == 8) ? mBuffer.getLong(offset) : mBuffer.getInt(offset) & 0xffffffffL;
     }
 
-    private void readProgramHeaders(long ph_off, int e_phnum, int e_phentsize) throws IOException {
-        for (int i = 0; i < e_phnum; ++i) {
-            mFile.seek(ph_off + i * e_phentsize);
+    private synchronized void readProgramHeaders() {
+        if (mProgramHeadersRead) {
+            return;
+        }
+        mProgramHeadersRead = true;
+
+        for (int i = 0; i < mPhNum; ++i) {
+            int ph = (int) (mPhOff + (long) i * mPhEntSize);
 
-            long p_type = readWord();
+            long p_type = mBuffer.getInt(ph) & 0xffffffffL;
             if (p_type == PT_LOAD) {
-                if (mAddrSize == 8) {
-                    // Only in Elf64_phdr; in Elf32_phdr p_flags is at the end.
-                    long p_flags = readWord();
-                }
-                long p_offset = readOff();
-                long p_vaddr = readAddr();
+                // In Elf64_phdr p_flags comes before p_offset; in Elf32_phdr it is at the end.
+                long p_vaddr = (mAddrSize == 8) ? getAddr(ph + 16) : getAddr(ph + 8);
                 // ...
 
                 if (p_vaddr == 0) {
@@ -368,127 +548,265 @@ public class ReadElf implements AutoCloseable {
         }
     }
 
-    private HashMap<String, Symbol> readSymbolTable(long symStrOffset, long symStrSize,
-            long tableOffset, long tableSize) throws IOException {
-        HashMap<String, Symbol> result = new HashMap<String, Symbol>();
-        mFile.seek(tableOffset);
-        while (mFile.getFilePointer() < tableOffset + tableSize) {
-            long st_name = readWord();
-            int st_info;
-            if (mAddrSize == 8) {
-                st_info = readByte();
-                int st_other = readByte();
-                int st_shndx = readHalf();
-                long st_value = readAddr();
-                long st_size = readX(mAddrSize);
-            } else {
-                long st_value = readAddr();
-                long st_size = readWord();
-                st_info = readByte();
-                int st_other = readByte();
-                int st_shndx = readHalf();
-            }
-            if (st_name == 0) {
-                continue;
-            }
+    private String readShStrTabEntry(long strOffset) {
+        return readStrTabEntry(mShStrTabOffset, mShStrTabSize, strOffset);
+    }
 
-            final String symName = readStrTabEntry(symStrOffset, symStrSize, st_name);
-            if (symName != null) {
-                Symbol s = new Symbol(symName, st_info);
-                result.put(symName, s);
+    private String readStrTabEntry(long tableOffset, long tableSize, long strOffset) {
+        if (tableOffset == 0 || strOffset < 0 || strOffset >= tableSize) {
+            return null;
+        }
+        long start = tableOffset + strOffset;
+        long end = Math.min(tableOffset + tableSize, mBuffer.limit());
+        for (long i = start; i < end; ++i) {
+            if (mBuffer.get((int) i) == 0) {
+                byte[] bytes = new byte[(int) (i - start)];
+                for (int j = 0; j < bytes.length; ++j) {
+                    bytes[j] = mBuffer.get((int) start + j);
+                }
+                return new String(bytes);
             }
         }
-        return result;
+        return null;
     }
 
-    private String readShStrTabEntry(long strOffset) throws IOException {
-        if (mShStrTabOffset == 0 || strOffset < 0 || strOffset >= mShStrTabSize) {
-            return null;
+    /**
+     * @return true if the string table holds the given name at the given offset, compared in
+     * place without decoding the string.
+     */
+    private boolean strTabEntryEquals(long tableOffset, long tableSize, long strOffset,
+            byte[] name) {
+        if (tableOffset == 0 || strOffset < 0 || strOffset + name.length >= tableSize) {
+            return false;
+        }
+        long start = tableOffset + strOffset;
+        if (start + name.length >= mBuffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < name.length; ++i) {
+            if (mBuffer.get((int) start + i) != name[i]) {
+                return false;
+            }
         }
-        return readString(mShStrTabOffset + strOffset);
+        return mBuffer.get((int) start + name.length) == 0;
     }
 
-    private String readStrTabEntry(long tableOffset, long tableSize, long strOffset)
-            throws IOException {
-        if (tableOffset == 0 || strOffset < 0 || strOffset >= tableSize) {
-            return null;
-        }
-        return readString(tableOffset + strOffset);
+    private int readHalf(long offset) throws IOException {
+        return (int) readX(offset, 2);
     }
 
-    private int readHalf() throws IOException {
-        return (int) readX(2);
+    private long readWord(long offset) throws IOException {
+        return readX(offset, 4);
     }
 
-    private long readWord() throws IOException {
-        return readX(4);
+    private long readOff(long offset) throws IOException {
+        return readX(offset, mAddrSize);
     }
 
-    private long readOff() throws IOException {
-        return readX(mAddrSize);
+    private long readAddr(long offset) throws IOException {
+        return readX(offset, mAddrSize);
     }
 
-    private long readAddr() throws IOException {
-        return readX(mAddrSize);
+    private long readX(long offset, int byteCount) throws IOException {
+        if (offset < 0 || offset > mBuffer.limit() - byteCount) {
+            throw new EOFException("Truncated ELF file: " + mPath);
+        }
+        switch (byteCount) {
+            case 1:
+                return mBuffer.get((int) offset) & 0xff;
+            case 2:
+                return mBuffer.getShort((int) offset) & 0xffff;
+            case 4:
+                return mBuffer.getInt((int) offset) & 0xffffffffL;
+            default:
+                return mBuffer.getLong((int) offset);
+        }
     }
 
-    private long readX(int byteCount) throws IOException {
-        mFile.readFully(mBuffer, 0, byteCount);
+    private int getSymbolSize() {
+        return (mAddrSize == 8) ? 24 : 16;
+    }
 
-        int answer = 0;
-        if (mEndian == ELFDATA2LSB) {
-            for (int i = byteCount - 1; i >= 0; i--) {
-                answer = (answer << 8) | (mBuffer[i] & 0xff);
-            }
-        } else {
-            final int N = byteCount - 1;
-            for (int i = 0; i <= N; ++i) {
-                answer = (answer << 8) | (mBuffer[i] & 0xff);
-            }
+    private long getSymbolCount(long tableSize) {
+        return tableSize / getSymbolSize();
+    }
+
+    /**
+     * @return the symbol at the given index of a symbol table if it has the given name, or null.
+     */
+    private Symbol readSymbolIfNamed(long symStrOffset, long symStrSize, long tableOffset,
+            long index, String name, byte[] nameBytes) throws IOException {
+        long symbol = tableOffset + index * getSymbolSize();
+        long st_name = readWord(symbol);
+        if (st_name == 0 || !strTabEntryEquals(symStrOffset, symStrSize, st_name, nameBytes)) {
+            return null;
         }
+        // st_info follows st_name in Elf64_Sym, and st_value and st_size in Elf32_Sym.
+        int st_info = (int) readX(symbol + ((mAddrSize == 8) ? 4 : 12), 1);
+        return new Symbol(name, st_info);
+    }
 
-        return answer;
+    /**
+     * Looks up a symbol by comparing the names of the given range of a symbol table. The last
+     * symbol of that name wins.
+     */
+    private Symbol scanSymbolTable(long symStrOffset, long symStrSize, long tableOffset,
+            long start, long end, String name, byte[] nameBytes) throws IOException {
+        Symbol result = null;
+        for (long i = start; i < end; ++i) {
+            Symbol s = readSymbolIfNamed(symStrOffset, symStrSize, tableOffset, i, name,
+                    nameBytes);
+            if (s != null) {
+                result = s;
+            }
+        }
+        return result;
     }
 
-    private String readString(long offset) throws IOException {
-        long originalOffset = mFile.getFilePointer();
-        mFile.seek(offset);
-        mFile.readFully(mBuffer, 0, (int) Math.min(mBuffer.length, mFile.length() - offset));
-        mFile.seek(originalOffset);
+    /**
+     * Looks up a dynamic symbol through the SysV hash table, which covers all symbols.
+     */
+    private Symbol lookupHash(String name, byte[] nameBytes) throws IOException {
+        long nbucket = readWord(mHashOffset);
+        long nchain = readWord(mHashOffset + 4);
+        if (nbucket == 0) {
+            return null;
+        }
+        long buckets = mHashOffset + 8;
+        long chains = buckets + 4 * nbucket;
+
+        int hash = 0;
+        for (byte b : nameBytes) {
+            hash = (hash << 4) + (b & 0xff);
+            int g = hash & 0xf0000000;
+            if (g != 0) {
+                hash ^= g >>> 24;
+            }
+            hash &= ~g;
+        }
 
-        for (int i = 0; i < mBuffer.length; ++i) {
-            if (mBuffer[i] == 0) {
-                return new String(mBuffer, 0, i);
+        // Versioned symbols can share a name; the last one in the table wins.
+        Symbol result = null;
+        long resultIndex = -1;
+        long index = readWord(buckets + 4 * ((hash & 0xffffffffL) % nbucket));
+        // The chain can't be longer than the table; guard against loops in corrupted files.
+        for (long steps = 0; index != 0 && index < nchain && steps < nchain; ++steps) {
+            if (index > resultIndex) {
+                Symbol s = readSymbolIfNamed(mDynStrOffset, mDynStrSize, mDynSymOffset, index,
+                        name, nameBytes);
+                if (s != null) {
+                    result = s;
+                    resultIndex = index;
+                }
             }
+            index = readWord(chains + 4 * index);
         }
+        return result;
+    }
 
-        return null;
+    /**
+     * Looks up a dynamic symbol through the GNU hash table. That table only covers the symbols
+     * from its symoffset on, which are the defined ones; the others, which come first, are
+     * compared by name.
+     */
+    private Symbol lookupGnuHash(String name, byte[] nameBytes) throws IOException {
+        long nbuckets = readWord(mGnuHashOffset);
+        long symoffset = readWord(mGnuHashOffset + 4);
+        long bloomSize = readWord(mGnuHashOffset + 8);
+        long bloomShift = readWord(mGnuHashOffset + 12);
+        long count = getSymbolCount(mDynSymSize);
+
+        Symbol result = null;
+        if (nbuckets != 0 && bloomSize != 0) {
+            result = lookupGnuHashChain(name, nameBytes, nbuckets, symoffset, bloomSize,
+                    bloomShift, count);
+        }
+        if (result != null) {
+            return result;
+        }
+        return scanSymbolTable(mDynStrOffset, mDynStrSize, mDynSymOffset, 0,
+                Math.min(symoffset, count), name, nameBytes);
     }
 
-    private int readByte() throws IOException {
-        return mFile.read() & 0xff;
+    private Symbol lookupGnuHashChain(String name, byte[] nameBytes, long nbuckets,
+            long symoffset, long bloomSize, long bloomShift, long count) throws IOException {
+        long bloom = mGnuHashOffset + 16;
+        long buckets = bloom + bloomSize * mAddrSize;
+        long chains = buckets + 4 * nbuckets;
+
+        int hash = 5381;
+        for (byte b : nameBytes) {
+            hash = hash * 33 + (b & 0xff);
+        }
+        long h = hash & 0xffffffffL;
+
+        int wordBits = mAddrSize * 8;
+        long word = readAddr(bloom + mAddrSize * ((h / wordBits) % bloomSize));
+        long mask = (1L << (h % wordBits)) | (1L << ((h >>> bloomShift) % wordBits));
+        if ((word & mask) != mask) {
+            return null;
+        }
+
+        // Versioned symbols can share a name; the last one in the chain wins.
+        Symbol result = null;
+        for (long index = readWord(buckets + 4 * (h % nbuckets));
+                index >= symoffset && index < count; ++index) {
+            long chainHash = readWord(chains + 4 * (index - symoffset));
+            if ((chainHash | 1) == (h | 1)) {
+                Symbol s = readSymbolIfNamed(mDynStrOffset, mDynStrSize, mDynSymOffset, index,
+                        name, nameBytes);
+                if (s != null) {
+                    result = s;
+                }
+            }
+            // The lowest bit marks the end of the chain.
+            if ((chainHash & 1) != 0) {
+                break;
+            }
+        }
+        return result;
     }
 
     public Symbol getSymbol(String name) {
-        if (mSymbols == null) {
+        readSectionHeaders();
+        synchronized (mSymbols) {
+            if (mSymbols.containsKey(name)) {
+                return mSymbols.get(name);
+            }
+            Symbol s;
             try {
-                mSymbols = readSymbolTable(mStrTabOffset, mStrTabSize, mSymTabOffset, mSymTabSize);
+                s = scanSymbolTable(mStrTabOffset, mStrTabSize, mSymTabOffset, 0,
+                        getSymbolCount(mSymTabSize), name, name.getBytes());
             } catch (IOException e) {
                 return null;
             }
+            mSymbols.put(name, s);
+            return s;
         }
-        return mSymbols.get(name);
     }
 
     public Symbol getDynamicSymbol(String name) {
-        if (mDynamicSymbols == null) {
+        readSectionHeaders();
+        synchronized (mDynamicSymbols) {
+            if (mDynamicSymbols.containsKey(name)) {
+                return mDynamicSymbols.get(name);
+            }
+            byte[] nameBytes = name.getBytes();
+            Symbol s;
             try {
-                mDynamicSymbols = readSymbolTable(
-                        mDynStrOffset, mDynStrSize, mDynSymOffset, mDynSymSize);
+                if (mHashOffset != 0) {
+                    s = lookupHash(name, nameBytes);
+                } else if (mGnuHashOffset != 0) {
+                    s = lookupGnuHash(name, nameBytes);
+                } else {
+                    s = scanSymbolTable(mDynStrOffset, mDynStrSize, mDynSymOffset, 0,
+                            getSymbolCount(mDynSymSize), name, nameBytes);
+                }
             } catch (IOException e) {
                 return null;
             }
+            mDynamicSymbols.put(name, s);
+            return s;
         }
-        return mDynamicSymbols.get(name);
     }
 }
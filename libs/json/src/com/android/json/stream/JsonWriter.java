@@ -329,6 +329,27 @@ public final class JsonWriter implements Closeable {
         return this;
     }
 
+    /**
+     * Encodes {@code value}, as the string returned by its {@link Number#toString()}.
+     *
+     * @param value a finite value. May not be {@link Double#isNaN() NaNs} or
+     *     {@link Double#isInfinite() infinities}.
+     * @return this writer.
+     */
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+
+        String string = value.toString();
+        if (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN")) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue(false);
+        out.write(string);
+        return this;
+    }
+
     /**
      * Ensures all buffered data is written to the underlying {@link Writer}
      * and flushes that writer.
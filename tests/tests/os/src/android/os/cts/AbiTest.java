@@ -20,6 +20,7 @@ import android.cts.util.ReadElf;
 import android.util.ArraySet;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.util.Arrays;
 
 import junit.framework.TestCase;
@@ -59,27 +60,17 @@ public class AbiTest extends TestCase {
             return;
         }
 
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
-        }
-
-        for (File f : files) {
-            if (f.isDirectory()) {
-                checkElfFilesInDirectory(f);
-            } else if (f.getName().endsWith(".so") || f.canExecute()) {
-                ReadElf elf = null;
-                try { // TODO: switch to try-with-resources.
-                    elf = ReadElf.read(f);
-                } catch (IllegalArgumentException ignored) {
-                    // If it's not actually an ELF file, we don't care.
-                } finally {
-                    if (elf != null) {
-                        elf.close();
-                    }
-                }
+        ReadElf.scanDirectory(dir, new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.getName().endsWith(".so") || f.canExecute();
             }
-        }
+        }, new ReadElf.Visitor() {
+            @Override
+            public void visit(File f, ReadElf elf) {
+                // Reading the ELF header is the check.
+            }
+        });
     }
 
     private static boolean isSymbolicLink(File f) throws Exception {
@@ -239,7 +239,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty acos(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.acos(in.mid()),
             Math.acos(in.min()),
             Math.acos(in.max()));
@@ -248,7 +248,7 @@ public class CoreMathVerifier {
     // TODO Remove this function and similar variants that take a float parameter instead of double.
     static private Target.Floaty acos(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             acos(in.mid32()),
             acos(in.min32()),
             acos(in.max32()));
@@ -258,7 +258,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty acosh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             acosh((float) in.mid()),
             acosh((float) in.min()),
             acosh((float) in.max()));
@@ -266,23 +266,25 @@ public class CoreMathVerifier {
 
     static private Target.Floaty acosh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             acosh(in.mid32()),
             acosh(in.min32()),
             acosh(in.max32()));
     }
 
     static private Target.Floaty acospi(double d, Target t) {
-        return t.divide(acos(d, t), pi(t));
+        Target.Floaty in = acos(d, t);
+        return t.divide(in, pi(t), in);
     }
 
     static private Target.Floaty acospi(float f, Target t) {
-        return t.divide(acos(f, t), pi32(t));
+        Target.Floaty in = acos(f, t);
+        return t.divide(in, pi32(t), in);
     }
 
     static private Target.Floaty asin(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.asin(in.mid()),
             Math.asin(in.min()),
             Math.asin(in.max()));
@@ -290,7 +292,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty asin(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             asin(in.mid32()),
             asin(in.min32()),
             asin(in.max32()));
@@ -300,7 +302,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty asinh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             asinh((float) in.mid()),
             asinh((float) in.min()),
             asinh((float) in.max()));
@@ -308,23 +310,25 @@ public class CoreMathVerifier {
 
     static private Target.Floaty asinh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             asinh(in.mid32()),
             asinh(in.min32()),
             asinh(in.max32()));
     }
 
     static private Target.Floaty asinpi(double d, Target t) {
-        return t.divide(asin(d, t), pi(t));
+        Target.Floaty in = asin(d, t);
+        return t.divide(in, pi(t), in);
     }
 
     static private Target.Floaty asinpi(float f, Target t) {
-        return t.divide(asin(f, t), pi32(t));
+        Target.Floaty in = asin(f, t);
+        return t.divide(in, pi32(t), in);
     }
 
     static private Target.Floaty atan(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.atan(in.mid()),
             Math.atan(in.min()),
             Math.atan(in.max()));
@@ -332,7 +336,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty atan(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             atan(in.mid32()),
             atan(in.min32()),
             atan(in.max32()));
@@ -342,7 +346,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty atanh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             atanh((float) in.mid()),
             atanh((float) in.min()),
             atanh((float) in.max()));
@@ -350,24 +354,26 @@ public class CoreMathVerifier {
 
     static private Target.Floaty atanh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             atanh(in.mid32()),
             atanh(in.min32()),
             atanh(in.max32()));
     }
 
     static private Target.Floaty atanpi(double d, Target t) {
-        return t.divide(atan(d, t), pi(t));
+        Target.Floaty in = atan(d, t);
+        return t.divide(in, pi(t), in);
     }
 
     static private Target.Floaty atanpi(float f, Target t) {
-        return t.divide(atan(f, t), pi32(t));
+        Target.Floaty in = atan(f, t);
+        return t.divide(in, pi32(t), in);
     }
 
     static private Target.Floaty atan2(double y, double x, Target t) {
         Target.Floaty numerator = t.newFloaty(y);
         Target.Floaty denominator = t.newFloaty(x);
-        return t.newFloaty(
+        return numerator.set(
             Math.atan2(numerator.mid(), denominator.mid()),
             Math.atan2(numerator.min(), denominator.min()),
             Math.atan2(numerator.min(), denominator.max()),
@@ -378,7 +384,7 @@ public class CoreMathVerifier {
     static private Target.Floaty atan2(float y, float x, Target t) {
         Target.Floaty numerator = t.new32(y);
         Target.Floaty denominator = t.new32(x);
-        return t.new32(
+        return numerator.set(
             atan2(numerator.mid32(), denominator.mid32()),
             atan2(numerator.min32(), denominator.min32()),
             atan2(numerator.min32(), denominator.max32()),
@@ -387,16 +393,18 @@ public class CoreMathVerifier {
     }
 
     static private Target.Floaty atan2pi(double y, double x, Target t) {
-        return t.divide(atan2(y, x, t), pi(t));
+        Target.Floaty in = atan2(y, x, t);
+        return t.divide(in, pi(t), in);
     }
 
     static private Target.Floaty atan2pi(float y, float x, Target t) {
-        return t.divide(atan2(y, x, t), pi32(t));
+        Target.Floaty in = atan2(y, x, t);
+        return t.divide(in, pi32(t), in);
     }
 
     static private Target.Floaty cbrt(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.cbrt(in.mid()),
             Math.cbrt(in.min()),
             Math.cbrt(in.max()));
@@ -404,7 +412,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty cbrt(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             cbrt(in.mid32()),
             cbrt(in.min32()),
             cbrt(in.max32()));
@@ -420,7 +428,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty cos(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.cos(in.mid()),
             Math.cos(in.min()),
             Math.cos(in.max()));
@@ -428,7 +436,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty cos(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             cos(in.mid32()),
             cos(in.min32()),
             cos(in.max32()));
@@ -436,7 +444,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty cosh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.cosh(in.mid()),
             Math.cosh(in.min()),
             Math.cosh(in.max()));
@@ -444,14 +452,15 @@ public class CoreMathVerifier {
 
     static private Target.Floaty cosh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             cosh(in.mid32()),
             cosh(in.min32()),
             cosh(in.max32()));
     }
 
     static private Target.Floaty cospi(double d, Target t) {
-        Target.Floaty in = t.multiply(t.newFloaty(d), pi(t));
+        Target.Floaty in = t.newFloaty(d);
+        t.multiply(in, pi(t), in);
         return t.newFloaty(
             Math.cos(in.mid()),
             Math.cos(in.min()),
@@ -459,7 +468,8 @@ public class CoreMathVerifier {
     }
 
     static private Target.Floaty cospi(float f, Target t) {
-        Target.Floaty in = t.multiply(t.new32(f), pi32(t));
+        Target.Floaty in = t.new32(f);
+        t.multiply(in, pi32(t), in);
         return t.new32(
             cos(in.mid32()),
             cos(in.min32()),
@@ -468,15 +478,12 @@ public class CoreMathVerifier {
 
     // Computes the cross product of two double-precision 3D vectors.
     static private void cross(double[] v1, double[] v2, Target.Floaty[] out, Target t) {
-        Target.Floaty a12 = t.multiply(t.newFloaty(v1[1]), t.newFloaty(v2[2]));
-        Target.Floaty a21 = t.multiply(t.newFloaty(v1[2]), t.newFloaty(v2[1]));
-        out[0] = t.subtract(a12, a21);
-        Target.Floaty a02 = t.multiply(t.newFloaty(v1[0]), t.newFloaty(v2[2]));
-        Target.Floaty a20 = t.multiply(t.newFloaty(v1[2]), t.newFloaty(v2[0]));
-        out[1] = t.subtract(a20, a02);
-        Target.Floaty a01 = t.multiply(t.newFloaty(v1[0]), t.newFloaty(v2[1]));
-        Target.Floaty a10 = t.multiply(t.newFloaty(v1[1]), t.newFloaty(v2[0]));
-        out[2] = t.subtract(a01, a10);
+        Target.Floaty a = t.newFloaty(0.f);
+        Target.Floaty b = t.newFloaty(0.f);
+        Target.Floaty c = t.newFloaty(0.f);
+        out[0] = crossTerm(v1[1], v2[2], v1[2], v2[1], a, b, c, t);
+        out[1] = crossTerm(v1[2], v2[0], v1[0], v2[2], a, b, c, t);
+        out[2] = crossTerm(v1[0], v2[1], v1[1], v2[0], a, b, c, t);
         if (out.length == 4) {
             out[3] = t.newFloaty(0.f);
         }
@@ -484,39 +491,46 @@ public class CoreMathVerifier {
 
     // Computes the cross product of two 3D vectors.
     static private void cross(float[] v1, float[] v2, Target.Floaty[] out, Target t) {
-        Target.Floaty a12 = t.multiply(t.new32(v1[1]), t.new32(v2[2]));
-        Target.Floaty a21 = t.multiply(t.new32(v1[2]), t.new32(v2[1]));
-        out[0] = t.subtract(a12, a21);
-        Target.Floaty a02 = t.multiply(t.new32(v1[0]), t.new32(v2[2]));
-        Target.Floaty a20 = t.multiply(t.new32(v1[2]), t.new32(v2[0]));
-        out[1] = t.subtract(a20, a02);
-        Target.Floaty a01 = t.multiply(t.new32(v1[0]), t.new32(v2[1]));
-        Target.Floaty a10 = t.multiply(t.new32(v1[1]), t.new32(v2[0]));
-        out[2] = t.subtract(a01, a10);
+        Target.Floaty a = t.new32(0.f);
+        Target.Floaty b = t.new32(0.f);
+        Target.Floaty c = t.new32(0.f);
+        out[0] = crossTerm(v1[1], v2[2], v1[2], v2[1], a, b, c, t);
+        out[1] = crossTerm(v1[2], v2[0], v1[0], v2[2], a, b, c, t);
+        out[2] = crossTerm(v1[0], v2[1], v1[1], v2[0], a, b, c, t);
         if (out.length == 4) {
             out[3] = t.new32(0.f);
         }
     }
 
+    // Computes l1 * r1 - l2 * r2 for a cross product, using a, b and c as scratch Floaty.
+    static private Target.Floaty crossTerm(double l1, double r1, double l2, double r2,
+            Target.Floaty a, Target.Floaty b, Target.Floaty c, Target t) {
+        t.multiply(a.set(l1), c.set(r1), a);
+        t.multiply(b.set(l2), c.set(r2), b);
+        return t.subtract(a, b);
+    }
+
     static private Target.Floaty divide(double left, double right, Target t) {
         Target.Floaty lFloaty = t.newFloaty(left);
         Target.Floaty rFloaty = t.newFloaty(right);
-        return t.divide(lFloaty, rFloaty);
+        return t.divide(lFloaty, rFloaty, lFloaty);
     }
 
     // Convert a double-precision radian value to degrees.
     static private Target.Floaty degrees(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
         Target.Floaty k = t.newFloaty(180. / Math.PI);
-        return t.multiply(in, k);
+        return t.multiply(in, k, in);
     }
 
     // Returns the distance between two points (in double-precision) in n-dimensional space.
     static private Target.Floaty distance(double[] point1, double[] point2, Target t) {
         Target.Floaty sum = t.newFloaty(0.f);
+        Target.Floaty diff = t.newFloaty(0.f);
+        Target.Floaty other = t.newFloaty(0.f);
         for (int i = 0; i < point1.length; i++) {
-            Target.Floaty diff = t.subtract(t.newFloaty(point1[i]), t.newFloaty(point2[i]));
-            sum = t.add(sum, t.multiply(diff, diff));
+            t.subtract(diff.set(point1[i]), other.set(point2[i]), diff);
+            t.add(sum, t.multiply(diff, diff, diff), sum);
         }
         Target.Floaty d = t.sqrt(sum);
         return d;
@@ -525,9 +539,11 @@ public class CoreMathVerifier {
     // Returns the distance between two points in n-dimensional space.
     static private Target.Floaty distance(float[] point1, float[] point2, Target t) {
         Target.Floaty sum = t.new32(0.f);
+        Target.Floaty diff = t.new32(0.f);
+        Target.Floaty other = t.new32(0.f);
         for (int i = 0; i < point1.length; i++) {
-            Target.Floaty diff = t.subtract(t.new32(point1[i]), t.new32(point2[i]));
-            sum = t.add(sum, t.multiply(diff, diff));
+            t.subtract(diff.set(point1[i]), other.set(point2[i]), diff);
+            t.add(sum, t.multiply(diff, diff, diff), sum);
         }
         Target.Floaty d = t.sqrt(sum);
         return d;
@@ -538,7 +554,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty erf(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             erf((float) in.mid()),
             erf((float) in.min()),
             erf((float) in.max()));
@@ -549,7 +565,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty erfc(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             erfc((float) in.mid()),
             erfc((float) in.min()),
             erfc((float) in.max()));
@@ -557,7 +573,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty exp(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.exp(in.mid()),
             Math.exp(in.min()),
             Math.exp(in.max()));
@@ -565,7 +581,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty exp(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             exp(in.mid32()),
             exp(in.min32()),
             exp(in.max32()));
@@ -575,7 +591,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty exp10(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             exp10((float) in.mid()),
             exp10((float) in.min()),
             exp10((float) in.max()));
@@ -583,7 +599,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty exp10(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             exp10(in.mid32()),
             exp10(in.min32()),
             exp10(in.max32()));
@@ -593,7 +609,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty exp2(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             exp2((float) in.mid()),
             exp2((float) in.min()),
             exp2((float) in.max()));
@@ -601,7 +617,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty exp2(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             exp2(in.mid32()),
             exp2(in.min32()),
             exp2(in.max32()));
@@ -609,7 +625,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty expm1(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.expm1(in.mid()),
             Math.expm1(in.min()),
             Math.expm1(in.max()));
@@ -617,7 +633,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty expm1(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             expm1(in.mid32()),
             expm1(in.min32()),
             expm1(in.max32()));
@@ -625,7 +641,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty fabs(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.abs(in.mid()),
             Math.abs(in.min()),
             Math.abs(in.max()));
@@ -635,7 +651,7 @@ public class CoreMathVerifier {
         Target.Floaty inA = t.newFloaty(a);
         Target.Floaty inB = t.newFloaty(b);
         Target.Floaty r = t.subtract(inA, inB);
-        return t.newFloaty(
+        return inA.set(
             Math.max(0., r.mid()),
             Math.max(0., r.min()),
             Math.max(0., r.max()));
@@ -643,7 +659,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty floor(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
                     Math.floor(in.mid()),
                     Math.floor(in.min()),
                     Math.floor(in.max()));
@@ -654,7 +670,7 @@ public class CoreMathVerifier {
         Target.Floaty inM2 = t.newFloaty(m2);
         Target.Floaty inOffset = t.newFloaty(offset);
 
-        return t.add(t.multiply(inM1, inM2), inOffset);
+        return t.add(t.multiply(inM1, inM2, inM1), inOffset, inM1);
     }
 
     static private Target.Floaty fmax(double a, double b, Target t) {
@@ -668,7 +684,7 @@ public class CoreMathVerifier {
     static private Target.Floaty fmod(double numerator, double denominator, Target t) {
         Target.Floaty inNumerator = t.newFloaty(numerator);
         Target.Floaty inDenominator = t.newFloaty(denominator);
-        return t.newFloaty(
+        return inNumerator.set(
             numerator % denominator,
             inNumerator.min() % inDenominator.min(),
             inNumerator.min() % inDenominator.max(),
@@ -687,7 +703,7 @@ public class CoreMathVerifier {
     static private Target.Floaty hypot(double x, double y, Target t) {
         Target.Floaty inX = t.newFloaty(x);
         Target.Floaty inY = t.newFloaty(y);
-        return t.newFloaty(
+        return inX.set(
             Math.hypot(inX.mid(), inY.mid()),
             Math.hypot(inX.min(), inY.min()),
             Math.hypot(inX.min(), inY.max()),
@@ -698,7 +714,7 @@ public class CoreMathVerifier {
     static private Target.Floaty hypot(float x, float y, Target t) {
         Target.Floaty inX = t.new32(x);
         Target.Floaty inY = t.new32(y);
-        return t.new32(
+        return inX.set(
             hypot(inX.mid32(), inY.mid32()),
             hypot(inX.min32(), inY.min32()),
             hypot(inX.min32(), inY.max32()),
@@ -709,9 +725,10 @@ public class CoreMathVerifier {
     // Returns the length of an n-dimensional vector (in double-precision).
     static private Target.Floaty length(double[] array, Target t) {
         Target.Floaty sum = t.newFloaty(0.);
+        Target.Floaty f = t.newFloaty(0.);
         for (int i = 0; i < array.length; i++) {
-            Target.Floaty f = t.newFloaty(array[i]);
-            sum = t.add(sum, t.multiply(f, f));
+            f.set(array[i]);
+            t.add(sum, t.multiply(f, f, f), sum);
         }
         return t.sqrt(sum);
     }
@@ -719,9 +736,10 @@ public class CoreMathVerifier {
     // Returns the length of the n-dimensional vector.
     static private Target.Floaty length(float[] array, Target t) {
         Target.Floaty sum = t.new32(0.f);
+        Target.Floaty f = t.new32(0.f);
         for (int i = 0; i < array.length; i++) {
-            Target.Floaty f = t.new32(array[i]);
-            sum = t.add(sum, t.multiply(f, f));
+            f.set(array[i]);
+            t.add(sum, t.multiply(f, f, f), sum);
         }
         Target.Floaty l = t.sqrt(sum);
         return l;
@@ -729,7 +747,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.log(in.mid()),
             Math.log(in.min()),
             Math.log(in.max()));
@@ -737,7 +755,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             log(in.mid32()),
             log(in.min32()),
             log(in.max32()));
@@ -745,7 +763,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log10(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.log10(in.mid()),
             Math.log10(in.min()),
             Math.log10(in.max()));
@@ -753,7 +771,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log10(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             log10(in.mid32()),
             log10(in.min32()),
             log10(in.max32()));
@@ -761,7 +779,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log1p(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.log1p(in.mid()),
             Math.log1p(in.min()),
             Math.log1p(in.max()));
@@ -769,7 +787,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log1p(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             log1p(in.mid32()),
             log1p(in.min32()),
             log1p(in.max32()));
@@ -779,7 +797,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty log2(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             log2((float) in.mid()),
             log2((float) in.min()),
             log2((float) in.max()));
@@ -787,7 +805,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty log2(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             log2(in.mid32()),
             log2(in.min32()),
             log2(in.max32()));
@@ -797,15 +815,17 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty logb(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             logb((float) in.mid()),
             logb((float) in.min()),
             logb((float) in.max()));
     }
 
     static private Target.Floaty mad(double m1, double m2, double offset, Target t) {
-        Target.Floaty ab = t.multiply(t.newFloaty(m1), t.newFloaty(m2));
-        return t.add(ab, t.newFloaty(offset));
+        Target.Floaty ab = t.newFloaty(m1);
+        Target.Floaty operand = t.newFloaty(m2);
+        t.multiply(ab, operand, ab);
+        return t.add(ab, operand.set(offset), ab);
     }
 
     static private Target.Floaty max(double a, double b, Target t) {
@@ -821,8 +841,8 @@ public class CoreMathVerifier {
         Target.Floaty inStop = t.newFloaty(stop);
         Target.Floaty inFraction = t.newFloaty(fraction);
 
-        Target.Floaty diff = t.subtract(inStop, inStart);
-        return t.add(inStart, t.multiply(diff, inFraction));
+        Target.Floaty diff = t.subtract(inStop, inStart, inStop);
+        return t.add(inStart, t.multiply(diff, inFraction, diff), inStart);
     }
 
     // Normalizes the double-precision n-dimensional vector, i.e. makes it length 1.
@@ -832,7 +852,7 @@ public class CoreMathVerifier {
         for (int i = 0; i < in.length; i++) {
             out[i] = t.newFloaty(in[i]);
             if (!isZero) {
-                out[i] = t.divide(out[i], l);
+                t.divide(out[i], l, out[i]);
             }
         }
     }
@@ -844,7 +864,7 @@ public class CoreMathVerifier {
         for (int i = 0; i < in.length; i++) {
             out[i] = t.new32(in[i]);
             if (!isZero) {
-                out[i] = t.divide(out[i], l);
+                t.divide(out[i], l, out[i]);
             }
         }
     }
@@ -852,7 +872,7 @@ public class CoreMathVerifier {
     static private Target.Floaty pow(double x, double y, Target t) {
         Target.Floaty base = t.newFloaty(x);
         Target.Floaty exponent = t.newFloaty(y);
-        return t.newFloaty(
+        return base.set(
             Math.pow(base.mid(), exponent.mid()),
             Math.pow(base.min(), exponent.min()),
             Math.pow(base.min(), exponent.max()),
@@ -863,7 +883,7 @@ public class CoreMathVerifier {
     static private Target.Floaty powr(float x, float y, Target t) {
         Target.Floaty base = t.new32(x);
         Target.Floaty exponent = t.new32(y);
-        return t.new32(
+        return base.set(
             pow(base.mid32(), exponent.mid32()),
             pow(base.min32(), exponent.min32()),
             pow(base.min32(), exponent.max32()),
@@ -874,22 +894,22 @@ public class CoreMathVerifier {
     static private Target.Floaty radians(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
         Target.Floaty k = t.newFloaty(Math.PI / 180);
-        return t.multiply(in, k);
+        return t.multiply(in, k, in);
     }
 
     static private Target.Floaty recip(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.divide(t.newFloaty(1.), in);
+        return t.divide(t.newFloaty(1.), in, in);
     }
 
     static private Target.Floaty recip(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.divide(t.new32(1.f), in);
+        return t.divide(t.new32(1.f), in, in);
     }
 
     static private Target.Floaty rint(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.rint(in.mid()),
             Math.rint(in.min()),
             Math.rint(in.max()));
@@ -924,7 +944,7 @@ public class CoreMathVerifier {
     // behavior in case of ties.
     static private Target.Floaty round(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             round((float) in.mid()),
             round((float) in.min()),
             round((float) in.max()));
@@ -932,17 +952,19 @@ public class CoreMathVerifier {
 
     static private Target.Floaty rsqrt(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.divide(t.newFloaty(1.), t.sqrt(in));
+        Target.Floaty root = t.sqrt(in);
+        return t.divide(in.set(1.), root, root);
     }
 
     static private Target.Floaty rsqrt(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.divide(t.new32(1.f), t.sqrt(in));
+        Target.Floaty root = t.sqrt(in);
+        return t.divide(in.set(1.f), root, root);
     }
 
     static private Target.Floaty sin(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.sin(in.mid()),
             Math.sin(in.min()),
             Math.sin(in.max()));
@@ -950,7 +972,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty sin(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             sin(in.mid32()),
             sin(in.min32()),
             sin(in.max32()));
@@ -958,7 +980,7 @@ public class CoreMathVerifier {
 
     static private Target.Floaty sinh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.sinh(in.mid()),
             Math.sinh(in.min()),
             Math.sinh(in.max()));
@@ -966,14 +988,15 @@ public class CoreMathVerifier {
 
     static private Target.Floaty sinh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             sinh(in.mid32()),
             sinh(in.min32()),
             sinh(in.max32()));
     }
 
     static private Target.Floaty sinpi(double d, Target t) {
-        Target.Floaty in = t.multiply(t.newFloaty(d), pi(t));
+        Target.Floaty in = t.newFloaty(d);
+        t.multiply(in, pi(t), in);
         return t.newFloaty(
             Math.sin(in.mid()),
             Math.sin(in.min()),
@@ -981,7 +1004,8 @@ public class CoreMathVerifier {
     }
 
     static private Target.Floaty sinpi(float f, Target t) {
-        Target.Floaty in = t.multiply(t.new32(f), pi32(t));
+        Target.Floaty in = t.new32(f);
+        t.multiply(in, pi32(t), in);
         return t.new32(
             sin(in.mid32()),
             sin(in.min32()),
@@ -1012,7 +1036,7 @@ public class CoreMathVerifier {
         if (in.max() - in.min() > Math.PI || min > max) {
             return any(t);
         } else {
-            return t.newFloaty(Math.tan(d), min, max);
+            return in.set(Math.tan(d), min, max);
         }
     }
 
@@ -1026,13 +1050,13 @@ public class CoreMathVerifier {
         if (in.max() - in.min() > Math.PI || min > max) {
             return any32(t);
         } else {
-            return t.new32(tan(f), min, max);
+            return in.set(tan(f), min, max);
         }
     }
 
     static private Target.Floaty tanh(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             Math.tanh(in.mid()),
             Math.tanh(in.min()),
             Math.tanh(in.max()));
@@ -1040,14 +1064,15 @@ public class CoreMathVerifier {
 
     static private Target.Floaty tanh(float f, Target t) {
         Target.Floaty in = t.new32(f);
-        return t.new32(
+        return in.set(
             tanh(in.mid32()),
             tanh(in.min32()),
             tanh(in.max32()));
     }
 
     static private Target.Floaty tanpi(double d, Target t) {
-        Target.Floaty in = t.multiply(t.newFloaty(d), pi(t));
+        Target.Floaty in = t.newFloaty(d);
+        t.multiply(in, pi(t), in);
         double min = Math.tan(in.min());
         double max = Math.tan(in.max());
 
@@ -1062,7 +1087,8 @@ public class CoreMathVerifier {
     }
 
     static private Target.Floaty tanpi(float f, Target t) {
-        Target.Floaty in = t.multiply(t.new32(f), pi32(t));
+        Target.Floaty in = t.new32(f);
+        t.multiply(in, pi32(t), in);
         float min = tan(in.min32());
         float max = tan(in.max32());
         /* If difference between in.max() and in.min() is larger than PI or if the tan of the min is
@@ -1079,7 +1105,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty tgamma(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             tgamma((float) in.mid()),
             tgamma((float) in.min()),
             tgamma((float) in.max()));
@@ -1089,7 +1115,7 @@ public class CoreMathVerifier {
     // double-precision version later.
     static private Target.Floaty trunc(double d, Target t) {
         Target.Floaty in = t.newFloaty(d);
-        return t.newFloaty(
+        return in.set(
             trunc((float) in.mid()),
             trunc((float) in.min()),
             trunc((float) in.max()));
@@ -1230,7 +1256,7 @@ public class CoreMathVerifier {
     static public void computeCeil(TestCeil.ArgumentsHalfHalf args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.newFloaty(args.inVDouble);
-        args.out = t.newFloaty(
+        args.out = in.set(
             Math.ceil(in.mid()),
             Math.ceil(in.min()),
             Math.ceil(in.max()));
@@ -1239,7 +1265,7 @@ public class CoreMathVerifier {
     static public void computeCeil(TestCeil.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 1);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             ceil(in.mid32()),
             ceil(in.min32()),
             ceil(in.max32()));
@@ -1781,7 +1807,7 @@ public class CoreMathVerifier {
         t.setPrecision(3, 3);
         Target.Floaty in = t.new32(args.inV);
         Target.Floaty k = t.new32((float)(180.0 / Math.PI));
-        args.out = t.multiply(in, k);
+        args.out = t.multiply(in, k, in);
     }
 
     static public void computeDistance(TestDistance.ArgumentsHalfHalfHalf args, Target t) {
@@ -1808,16 +1834,18 @@ public class CoreMathVerifier {
         t.setPrecision(1, 4); // TODO double-check precision
         Target.Floaty a = t.newFloaty(args.inLeftVectorDouble);
         Target.Floaty b = t.newFloaty(args.inRightVectorDouble);
-        args.out = t.multiply(a, b);
+        args.out = t.multiply(a, b, a);
     }
 
     static public void computeDot(TestDot.ArgumentsHalfNHalfNHalf args, Target t) {
         t.setPrecision(1, 4); // TODO double-check precision
         Target.Floaty sum = t.newFloaty(0.);
+        Target.Floaty a = t.newFloaty(0.);
+        Target.Floaty b = t.newFloaty(0.);
         for (int i = 0; i < args.inLeftVectorDouble.length; i++) {
-            Target.Floaty a = t.newFloaty(args.inLeftVectorDouble[i]);
-            Target.Floaty b = t.newFloaty(args.inRightVectorDouble[i]);
-            sum = t.add(sum, t.multiply(a, b));
+            a.set(args.inLeftVectorDouble[i]);
+            b.set(args.inRightVectorDouble[i]);
+            t.add(sum, t.multiply(a, b, a), sum);
         }
         args.out = sum;
     }
@@ -1826,16 +1854,18 @@ public class CoreMathVerifier {
         t.setPrecision(1, 4);
         Target.Floaty a = t.new32(args.inLeftVector);
         Target.Floaty b = t.new32(args.inRightVector);
-        args.out = t.multiply(a, b);
+        args.out = t.multiply(a, b, a);
     }
 
     static public void computeDot(TestDot.ArgumentsFloatNFloatNFloat args, Target t) {
         t.setPrecision(1, 4);
         Target.Floaty sum = t.new32(0.f);
+        Target.Floaty a = t.new32(0.f);
+        Target.Floaty b = t.new32(0.f);
         for (int i = 0; i < args.inLeftVector.length; i++) {
-            Target.Floaty a = t.new32(args.inLeftVector[i]);
-            Target.Floaty b = t.new32(args.inRightVector[i]);
-            sum = t.add(sum, t.multiply(a, b));
+            a.set(args.inLeftVector[i]);
+            b.set(args.inRightVector[i]);
+            t.add(sum, t.multiply(a, b, a), sum);
         }
         args.out = sum;
     }
@@ -1848,7 +1878,7 @@ public class CoreMathVerifier {
     static public void computeErf(TestErf.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(16, 128);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             erf(args.inV),
             erf(in.min32()),
             erf(in.max32()));
@@ -1862,7 +1892,7 @@ public class CoreMathVerifier {
     static public void computeErfc(TestErfc.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(16, 128);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             erfc(args.inV),
             erfc(in.min32()),
             erfc(in.max32()));
@@ -1916,7 +1946,7 @@ public class CoreMathVerifier {
     static public void computeFabs(TestFabs.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             Math.abs(args.inV),
             Math.abs(in.min32()),
             Math.abs(in.max32()));
@@ -1964,7 +1994,7 @@ public class CoreMathVerifier {
         Target.Floaty inA = t.new32(args.inA);
         Target.Floaty inB = t.new32(args.inB);
         Target.Floaty r = t.subtract(inA, inB);
-        args.out = t.new32(
+        args.out = inA.set(
             Math.max(0.f, r.mid32()),
             Math.max(0.f, r.min32()),
             Math.max(0.f, r.max32()));
@@ -1978,7 +2008,7 @@ public class CoreMathVerifier {
     static public void computeFloor(TestFloor.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             floor(args.inV),
             floor(in.min32()),
             floor(in.max32()));
@@ -1992,8 +2022,10 @@ public class CoreMathVerifier {
 
     static public void computeFma(TestFma.ArgumentsFloatFloatFloatFloat args, Target t) {
         t.setPrecision(1, 1);
-        Target.Floaty ab = t.multiply(t.new32(args.inMultiplicand1), t.new32(args.inMultiplicand2));
-        args.out = t.add(ab, t.new32(args.inOffset));
+        Target.Floaty ab = t.new32(args.inMultiplicand1);
+        Target.Floaty operand = t.new32(args.inMultiplicand2);
+        t.multiply(ab, operand, ab);
+        args.out = t.add(ab, operand.set(args.inOffset), ab);
     }
 
     static public void computeFmax(TestFmax.ArgumentsHalfHalfHalf args, Target t) {
@@ -2005,7 +2037,7 @@ public class CoreMathVerifier {
         t.setPrecision(0, 0);
         Target.Floaty a = t.new32(args.inA);
         Target.Floaty b = t.new32(args.inB);
-        args.out = t.new32(
+        args.out = a.set(
             Math.max(args.inA, args.inB),
             Math.max(a.min32(), b.min32()),
             Math.max(a.min32(), b.max32()),
@@ -2022,7 +2054,7 @@ public class CoreMathVerifier {
         t.setPrecision(0, 0);
         Target.Floaty a = t.new32(args.inA);
         Target.Floaty b = t.new32(args.inB);
-        args.out = t.new32(
+        args.out = a.set(
             Math.min(args.inA, args.inB),
             Math.min(a.min32(), b.min32()),
             Math.min(a.min32(), b.max32()),
@@ -2039,7 +2071,7 @@ public class CoreMathVerifier {
         t.setPrecision(1, 1);
         Target.Floaty numerator = t.new32(args.inNumerator);
         Target.Floaty denominator = t.new32(args.inDenominator);
-        args.out = t.new32(
+        args.out = numerator.set(
             args.inNumerator % args.inDenominator,
             numerator.min32() % denominator.min32(),
             numerator.min32() % denominator.max32(),
@@ -2124,7 +2156,7 @@ public class CoreMathVerifier {
     static public void computeLdexp(TestLdexp.ArgumentsFloatIntFloat args, Target t) {
         t.setPrecision(1, 1);
         Target.Floaty inMantissa = t.new32(args.inMantissa);
-        args.out = t.new32(
+        args.out = inMantissa.set(
             ldexp(inMantissa.mid32(), args.inExponent),
             ldexp(inMantissa.min32(), args.inExponent),
             ldexp(inMantissa.max32(), args.inExponent));
@@ -2153,7 +2185,7 @@ public class CoreMathVerifier {
     static public void computeLgamma(TestLgamma.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(16, 128);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             lgamma(in.mid32()),
             lgamma(in.min32()),
             lgamma(in.max32()));
@@ -2249,7 +2281,7 @@ public class CoreMathVerifier {
     static public void computeLogb(TestLogb.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             logb(in.mid32()),
             logb(in.min32()),
             logb(in.max32()));
@@ -2262,8 +2294,10 @@ public class CoreMathVerifier {
 
     static public void computeMad(TestMad.ArgumentsFloatFloatFloatFloat args, Target t) {
         t.setPrecision(1, 4);
-        Target.Floaty ab = t.multiply(t.new32(args.inMultiplicand1), t.new32(args.inMultiplicand2));
-        args.out = t.add(ab, t.new32(args.inOffset));
+        Target.Floaty ab = t.new32(args.inMultiplicand1);
+        Target.Floaty operand = t.new32(args.inMultiplicand2);
+        t.multiply(ab, operand, ab);
+        args.out = t.add(ab, operand.set(args.inOffset), ab);
     }
 
     static public void computeMax(TestMax.ArgumentsCharCharChar args) {
@@ -2307,7 +2341,7 @@ public class CoreMathVerifier {
         t.setPrecision(0, 0);
         Target.Floaty a = t.new32(args.inA);
         Target.Floaty b = t.new32(args.inB);
-        args.out = t.new32(
+        args.out = a.set(
             Math.max(a.mid32(), b.mid32()),
             Math.max(a.min32(), b.min32()),
             Math.max(a.min32(), b.max32()),
@@ -2366,8 +2400,8 @@ public class CoreMathVerifier {
         t.setPrecision(1, 4);
         Target.Floaty start = t.new32(args.inStart);
         Target.Floaty stop = t.new32(args.inStop);
-        Target.Floaty diff = t.subtract(stop, start);
-        args.out = t.add(start, t.multiply(diff, t.new32(args.inFraction)));
+        Target.Floaty diff = t.subtract(stop, start, stop);
+        args.out = t.add(start, t.multiply(diff, t.new32(args.inFraction), diff), start);
     }
 
     static public void computeModf(TestModf.ArgumentsFloatFloatFloat args, Target t) {
@@ -2977,7 +3011,7 @@ public class CoreMathVerifier {
         t.setPrecision(16, 128);
         Target.Floaty base = t.new32(args.inBase);
         Target.Floaty exponent = t.new32(args.inExponent);
-        args.out = t.new32(
+        args.out = base.set(
             pow(base.mid32(), exponent.mid32()),
             pow(base.min32(), exponent.min32()),
             pow(base.min32(), exponent.max32()),
@@ -2997,7 +3031,7 @@ public class CoreMathVerifier {
         // mantissa bits.  Knowing if an int is odd or even will matter for negative
         // numbers.  Using a float loses the lowest bit.
         final double y = (double) args.inExponent;
-        args.out = t.new32(
+        args.out = in.set(
             (float) Math.pow(in.mid32(), y),
             (float) Math.pow(in.min32(), y),
             (float) Math.pow(in.max32(), y));
@@ -3022,7 +3056,7 @@ public class CoreMathVerifier {
         t.setPrecision(3, 3);
         Target.Floaty in = t.new32(args.inV);
         Target.Floaty k = t.new32((float)(Math.PI / 180.0));
-        args.out = t.multiply(in, k);
+        args.out = t.multiply(in, k, in);
     }
 
     // NOTE: This function delegates to the floating-point version in libm.  Need to switch to the
@@ -3075,7 +3109,7 @@ public class CoreMathVerifier {
     static public void computeRint(TestRint.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             rint(in.mid32()),
             rint(in.min32()),
             rint(in.max32()));
@@ -3094,7 +3128,7 @@ public class CoreMathVerifier {
     static public void computeRound(TestRound.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             round(in.mid32()),
             round(in.min32()),
             round(in.max32()));
@@ -3220,7 +3254,7 @@ public class CoreMathVerifier {
     static public void computeTgamma(TestTgamma.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(16, 128);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             tgamma(in.mid32()),
             tgamma(in.min32()),
             tgamma(in.max32()));
@@ -3234,7 +3268,7 @@ public class CoreMathVerifier {
     static public void computeTrunc(TestTrunc.ArgumentsFloatFloat args, Target t) {
         t.setPrecision(0, 0);
         Target.Floaty in = t.new32(args.inV);
-        args.out = t.new32(
+        args.out = in.set(
             trunc(in.mid32()),
             trunc(in.min32()),
             trunc(in.max32()));
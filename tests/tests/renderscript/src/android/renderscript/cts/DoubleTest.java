@@ -31,30 +31,41 @@ public class DoubleTest extends RSBaseCompute {
         Allocation out = Allocation.createSized(rs, Element.F32(rs), big);
 
         dc.forEach_times2pi(out);
-        float[] data = new float[big];
+        final float[] data = new float[big];
         out.copyTo(data);
 
-        Target t = new Target(Target.FunctionType.NORMAL, Target.ReturnType.DOUBLE, true);
-        t.setPrecision(1, 1);
-        double pi = 3.14159265359;
-        Target.Floaty pi2 = t.new32((float) (pi * 2));
-        for (int x = 0; x < data.length; x++) {
-            float v = data[x];
-            Target.Floaty expected = t.multiply(pi2, t.new32(x));
-            if (!expected.couldBe(v)) {
-                StringBuilder message = new StringBuilder();
-                message.append("X: ");
-                appendVariableToMessage(message, x);
-                message.append("\n");
-                message.append("Expected output: ");
-                appendVariableToMessage(message, expected);
-                message.append("\n");
-                message.append("Actual   output: ");
-                appendVariableToMessage(message, v);
-
-                message.append("\n");
-                assertTrue("Incorrect output for testDoubleGlobal " + message.toString(), false);
+        String message = verifyInParallel(data.length, new RangeVerifier() {
+            @Override
+            public String verify(int start, int end) {
+                Target t = new Target(Target.FunctionType.NORMAL, Target.ReturnType.DOUBLE, true);
+                t.setPrecision(1, 1);
+                double pi = 3.14159265359;
+                Target.Floaty pi2 = t.new32((float) (pi * 2));
+                Target.Floaty input = t.new32(0);
+                Target.Floaty expected = t.new32(0);
+                for (int x = start; x < end; x++) {
+                    float v = data[x];
+                    t.multiply(pi2, input.set((float) x), expected);
+                    if (!expected.couldBe(v)) {
+                        StringBuilder message = new StringBuilder();
+                        message.append("X: ");
+                        appendVariableToMessage(message, x);
+                        message.append("\n");
+                        message.append("Expected output: ");
+                        appendVariableToMessage(message, expected);
+                        message.append("\n");
+                        message.append("Actual   output: ");
+                        appendVariableToMessage(message, v);
+
+                        message.append("\n");
+                        return message.toString();
+                    }
+                }
+                return null;
             }
+        });
+        if (message != null) {
+            assertTrue("Incorrect output for testDoubleGlobal " + message, false);
         }
     }
 }
@@ -470,6 +470,24 @@ public class FloatyUnitTest extends RSBaseCompute {
         }
     }
 
+    // Test that a reused Floaty accepts the same values as a new one
+    public void testReuse() {
+        Target t = new Target(Target.FunctionType.NORMAL, Target.ReturnType.FLOAT, false);
+        t.setPrecision(4, 4);
+        Target.Floaty reused = t.new32(0);
+        Target.Floaty product = t.new32(0);
+        Target.Floaty two = t.new32(2.f);
+        for (float f : new float[] {normalFloat1, normalFloat2, subnormalFloat, 1.f, Float.NaN}) {
+            Target.Floaty expected = t.new32(f, 3.f);
+            reused.set(f, 3.f);
+            assertEquals(expected.toString(), reused.toString());
+
+            expected = t.multiply(two, t.new32(f));
+            t.multiply(two, reused.set(f), product);
+            assertEquals(expected.toString(), product.toString());
+        }
+    }
+
     private void validateRoundToFloat16(double argument, double low, double high) {
         double[] result = Float16Utils.roundToFloat16(argument);
         double[] expected = new double[]{low, high};
@@ -22,6 +22,9 @@ import android.renderscript.Element;
 import android.renderscript.RSRuntimeException;
 import android.util.Log;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * Base RenderScript test class. This class provides a message handler and a
  * convenient way to wait for compute scripts to complete their execution.
@@ -30,6 +33,67 @@ public class RSBaseCompute extends RSBase {
     RenderScript mRS;
     protected int INPUTSIZE = 512;
 
+    /** Ranges of at most this many elements are verified by a single task. */
+    private static final int VERIFY_TASK_SIZE = 4096;
+    private static ForkJoinPool sVerifierPool;
+
+    /**
+     * Verifies a range of the elements of a test's output.  Implementations should create the
+     * Target and Floaty objects they need once per range, and reuse them for each element with
+     * the set methods of Target.Floaty.
+     */
+    protected interface RangeVerifier {
+        /**
+         * Verifies the elements from start to end, exclusive.
+         *
+         * @return the message describing the first incorrect element, or null if all are
+         * correct.
+         */
+        String verify(int start, int end);
+    }
+
+    /**
+     * Verifies the elements from 0 to count, exclusive, splitting them across the cores.
+     *
+     * @return the message describing the incorrect element with the lowest index, the same a
+     * sequential verification would report, or null if all elements are correct.
+     */
+    protected static String verifyInParallel(int count, RangeVerifier verifier) {
+        return getVerifierPool().invoke(new VerifyTask(verifier, 0, count));
+    }
+
+    private static synchronized ForkJoinPool getVerifierPool() {
+        if (sVerifierPool == null) {
+            sVerifierPool = new ForkJoinPool();
+        }
+        return sVerifierPool;
+    }
+
+    private static class VerifyTask extends RecursiveTask<String> {
+        private final RangeVerifier mVerifier;
+        private final int mStart;
+        private final int mEnd;
+
+        VerifyTask(RangeVerifier verifier, int start, int end) {
+            mVerifier = verifier;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected String compute() {
+            if (mEnd - mStart <= VERIFY_TASK_SIZE) {
+                return mVerifier.verify(mStart, mEnd);
+            }
+            int middle = (mStart + mEnd) >>> 1;
+            VerifyTask upper = new VerifyTask(mVerifier, middle, mEnd);
+            upper.fork();
+            String message = new VerifyTask(mVerifier, mStart, middle).compute();
+            String upperMessage = upper.join();
+            return message != null ? message : upperMessage;
+        }
+    }
+
     @Override
     protected void setUp() throws Exception {
         super.setUp();
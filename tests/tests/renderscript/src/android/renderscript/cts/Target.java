@@ -111,23 +111,23 @@ public class Target {
      * considered valid values for that Floaty.
      */
     Floaty newFloaty(double a) {
-        return new Floaty(mFloatSize, new double [] { a });
+        return new Floaty(mFloatSize).set(a);
     }
 
     Floaty newFloaty(double a, double b) {
-        return new Floaty(mFloatSize, new double [] { a, b });
+        return new Floaty(mFloatSize).set(a, b);
     }
 
     Floaty newFloaty(double a, double b, double c) {
-        return new Floaty(mFloatSize, new double [] { a, b, c });
+        return new Floaty(mFloatSize).set(a, b, c);
     }
 
     Floaty newFloaty(double a, double b, double c, double d) {
-        return new Floaty(mFloatSize, new double [] { a, b, c, d });
+        return new Floaty(mFloatSize).set(a, b, c, d);
     }
 
     Floaty newFloaty(double a, double b, double c, double d, double e) {
-        return new Floaty(mFloatSize, new double [] { a, b, c, d, e });
+        return new Floaty(mFloatSize).set(a, b, c, d, e);
     }
 
     /**
@@ -136,23 +136,23 @@ public class Target {
      * valid values for that Floaty.
      */
     Floaty new32(float a) {
-        return new Floaty(32, new double [] { a });
+        return new Floaty(32).set(a);
     }
 
     Floaty new32(float a, float b) {
-        return new Floaty(32, new double [] { a, b });
+        return new Floaty(32).set(a, b);
     }
 
     Floaty new32(float a, float b, float c) {
-        return new Floaty(32, new double [] { a, b, c });
+        return new Floaty(32).set(a, b, c);
     }
 
     Floaty new32(float a, float b, float c, float d) {
-        return new Floaty(32, new double [] { a, b, c, d });
+        return new Floaty(32).set(a, b, c, d);
     }
 
     Floaty new32(float a, float b, float c, float d, float e) {
-        return new Floaty(32, new double [] { a, b, c, d, e });
+        return new Floaty(32).set(a, b, c, d, e);
     }
 
     /**
@@ -161,82 +161,109 @@ public class Target {
      * valid values for that Floaty.
      */
     Floaty new64(double a) {
-        return new Floaty(64, new double [] { a });
+        return new Floaty(64).set(a);
     }
 
     Floaty new64(double a, double b) {
-        return new Floaty(64, new double [] { a, b });
+        return new Floaty(64).set(a, b);
     }
 
     Floaty new64(double a, double b, double c) {
-        return new Floaty(64, new double [] { a, b, c });
+        return new Floaty(64).set(a, b, c);
     }
 
     Floaty new64(double a, double b, double c, double d) {
-        return new Floaty(64, new double [] { a, b, c, d });
+        return new Floaty(64).set(a, b, c, d);
     }
 
     Floaty new64(double a, double b, double c, double d, double e) {
-        return new Floaty(64, new double [] { a, b, c, d, e });
+        return new Floaty(64).set(a, b, c, d, e);
     }
 
     /**
      * Returns a Floaty that contain a NaN for the specified size.
      */
     Floaty newNan(int numberOfBits) {
-        return new Floaty(numberOfBits, new double [] { Double.NaN });
+        return new Floaty(numberOfBits).setNan();
     }
 
     Floaty add(Floaty a, Floaty b) {
+        return add(a, b, new Floaty(a.mNumberOfBits));
+    }
+
+    /**
+     * Computes a + b into result, which is returned.  The variants of the operations taking a
+     * result Floaty allow verifying many values without allocating a Floaty for each.
+     */
+    Floaty add(Floaty a, Floaty b, Floaty result) {
         //Log.w("Target.add", "a: " + a.toString());
         //Log.w("Target.add", "b: " + b.toString());
         assert(a.mNumberOfBits == b.mNumberOfBits);
+        result.mNumberOfBits = a.mNumberOfBits;
         if (!a.mHasRange || !b.mHasRange) {
-            return newNan(a.mNumberOfBits);
+            return result.setNan();
         }
-        return new Floaty(a.mNumberOfBits, new double[] { a.mValue + b.mValue,
-                                                          a.mMinValue + b.mMinValue,
-                                                          a.mMaxValue + b.mMaxValue });
+        return result.set(a.mValue + b.mValue,
+                          a.mMinValue + b.mMinValue,
+                          a.mMaxValue + b.mMaxValue);
     }
 
     Floaty subtract(Floaty a, Floaty b) {
+        return subtract(a, b, new Floaty(a.mNumberOfBits));
+    }
+
+    /** Computes a - b into result, which is returned. */
+    Floaty subtract(Floaty a, Floaty b, Floaty result) {
         //Log.w("Target.subtract", "a: " + a.toString());
         //Log.w("Target.subtract", "b: " + b.toString());
         assert(a.mNumberOfBits == b.mNumberOfBits);
+        result.mNumberOfBits = a.mNumberOfBits;
         if (!a.mHasRange || !b.mHasRange) {
-            return newNan(a.mNumberOfBits);
+            return result.setNan();
         }
-        return new Floaty(a.mNumberOfBits, new double[] { a.mValue - b.mValue,
-                                                          a.mMinValue - b.mMaxValue,
-                                                          a.mMaxValue - b.mMinValue });
+        return result.set(a.mValue - b.mValue,
+                          a.mMinValue - b.mMaxValue,
+                          a.mMaxValue - b.mMinValue);
     }
 
     Floaty multiply(Floaty a, Floaty b) {
+        return multiply(a, b, new Floaty(a.mNumberOfBits));
+    }
+
+    /** Computes a * b into result, which is returned. */
+    Floaty multiply(Floaty a, Floaty b, Floaty result) {
         //Log.w("Target.multiply", "a: " + a.toString());
         //Log.w("Target.multiply", "b: " + b.toString());
         assert(a.mNumberOfBits == b.mNumberOfBits);
+        result.mNumberOfBits = a.mNumberOfBits;
         if (!a.mHasRange || !b.mHasRange) {
-            return newNan(a.mNumberOfBits);
+            return result.setNan();
         }
-        return new Floaty(a.mNumberOfBits, new double[] { a.mValue * b.mValue,
-                                                          a.mMinValue * b.mMinValue,
-                                                          a.mMinValue * b.mMaxValue,
-                                                          a.mMaxValue * b.mMinValue,
-                                                          a.mMaxValue * b.mMaxValue});
+        return result.set(a.mValue * b.mValue,
+                          a.mMinValue * b.mMinValue,
+                          a.mMinValue * b.mMaxValue,
+                          a.mMaxValue * b.mMinValue,
+                          a.mMaxValue * b.mMaxValue);
     }
 
     Floaty divide(Floaty a, Floaty b) {
+        return divide(a, b, new Floaty(a.mNumberOfBits));
+    }
+
+    /** Computes a / b into result, which is returned. */
+    Floaty divide(Floaty a, Floaty b, Floaty result) {
         //Log.w("Target.divide", "a: " + a.toString());
         //Log.w("Target.divide", "b: " + b.toString());
         assert(a.mNumberOfBits == b.mNumberOfBits);
+        result.mNumberOfBits = a.mNumberOfBits;
         if (!a.mHasRange || !b.mHasRange) {
-            return newNan(a.mNumberOfBits);
+            return result.setNan();
         }
-        return new Floaty(a.mNumberOfBits, new double[] { a.mValue / b.mValue,
-                                                          a.mMinValue / b.mMinValue,
-                                                          a.mMinValue / b.mMaxValue,
-                                                          a.mMaxValue / b.mMinValue,
-                                                          a.mMaxValue / b.mMaxValue});
+        return result.set(a.mValue / b.mValue,
+                          a.mMinValue / b.mMinValue,
+                          a.mMinValue / b.mMaxValue,
+                          a.mMaxValue / b.mMinValue,
+                          a.mMaxValue / b.mMaxValue);
     }
 
     /** Returns the absolute value of a Floaty. */
@@ -335,35 +362,109 @@ public class Target {
          * values[0] is treated as the representative case, otherwise the order of values does not matter.
          */
         Floaty(int numberOfBits, double values[]) {
-            //Log.w("Floaty(double[], ulp)", "input: " + Arrays.toString(values) + ", ulp " + Integer.toString(mUlpFactor));
+            this(numberOfBits);
+            set(values);
+        }
+
+        /**
+         * Creates a Floaty without any acceptable value, to be initialized with one of the set
+         * methods.
+         */
+        Floaty(int numberOfBits) {
             mNumberOfBits = numberOfBits;
+        }
+
+        /**
+         * Reinitializes this Floaty so that the values passed could be represented by it, as
+         * {@link #Floaty(int, double[])} does.  The set methods let a Floaty be reused for
+         * many values instead of allocating one, and the variants with one to five arguments
+         * need no array.  Returns this Floaty.
+         */
+        Floaty set(double values[]) {
+            reset(values[0]);
+            for (int i = 1; i < values.length; i++) {
+                include(values[i]);
+            }
+            return expand();
+        }
+
+        Floaty set(double a) {
+            reset(a);
+            return expand();
+        }
+
+        Floaty set(double a, double b) {
+            reset(a);
+            include(b);
+            return expand();
+        }
+
+        Floaty set(double a, double b, double c) {
+            reset(a);
+            include(b);
+            include(c);
+            return expand();
+        }
+
+        Floaty set(double a, double b, double c, double d) {
+            reset(a);
+            include(b);
+            include(c);
+            include(d);
+            return expand();
+        }
+
+        Floaty set(double a, double b, double c, double d, double e) {
+            reset(a);
+            include(b);
+            include(c);
+            include(d);
+            include(e);
+            return expand();
+        }
+
+        /** Reinitializes this Floaty to only accept a NaN.  Returns this Floaty. */
+        Floaty setNan() {
+            return set(Double.NaN);
+        }
+
+        /** Starts over with value as the representative case. */
+        private void reset(double value) {
+            //Log.w("Floaty.set", "input: " + Double.toString(value) + ", ulp " + Integer.toString(mUlpFactor));
             mCanBeNan = false;
             mHasRange = false;
-            mValue = values[0];
-            for (double f: values) {
-                if (f != f) {
-                    mCanBeNan = true;
-                    continue;
-                }
-                updateMinAndMax(f);
-                // For relaxed mode, we don't require support of subnormal values.
-                // If we have a subnormal value, we'll allow both the normalized value and zero,
-                // to cover the two ways this small value might be handled.
-                if (!mHandleSubnormal) {
-                    if (IsSubnormal(f)) {
-                        updateMinAndMax(0.f);
-                        updateMinAndMax(smallestNormal(f));
-                    }
+            mValue = value;
+            include(value);
+        }
+
+        /** Accepts the value passed. */
+        private void include(double f) {
+            if (f != f) {
+                mCanBeNan = true;
+                return;
+            }
+            updateMinAndMax(f);
+            // For relaxed mode, we don't require support of subnormal values.
+            // If we have a subnormal value, we'll allow both the normalized value and zero,
+            // to cover the two ways this small value might be handled.
+            if (!mHandleSubnormal) {
+                if (IsSubnormal(f)) {
+                    updateMinAndMax(0.f);
+                    updateMinAndMax(smallestNormal(f));
                 }
             }
+        }
 
+        /** Expands the range of the values accepted so far.  Returns this Floaty. */
+        private Floaty expand() {
             // Expand the range to the closest value representable in the desired floating-point
             // format
             ExpandRangeToTargetPrecision();
 
             // Expand the range by one ulp factor to cover for the different rounding modes.
             ExpandRangeByUlpFactor();
-            //Log.w("Floaty(double[], ulp)", "output: " +  toString());
+            //Log.w("Floaty.set", "output: " +  toString());
+            return this;
         }
 
         /** Modify the mMinValue and mMaxValue so that f is contained within the range. */
@@ -18,7 +18,6 @@ package android.uirendering.cts.bitmapcomparers;
 import android.uirendering.cts.ScriptC_MSSIMComparer;
 
 import android.content.res.Resources;
-import android.graphics.Color;
 import android.renderscript.Allocation;
 import android.renderscript.RenderScript;
 import android.util.Log;
@@ -49,25 +48,20 @@ public class MSSIMComparer extends BaseRenderScriptComparer {
     @Override
     public boolean verifySame(int[] ideal, int[] given, int offset, int stride, int width,
             int height) {
-        double SSIMTotal = 0;
-        int windows = 0;
+        // Windows are not clipped to the region, so the statistics cover all pixels of the
+        // windows overlapping it.
+        int windowsX = (width + WINDOW_SIZE - 1) / WINDOW_SIZE;
+        int windowsY = (height + WINDOW_SIZE - 1) / WINDOW_SIZE;
+        WindowStatistics statistics = new WindowStatistics(ideal, given, offset, stride,
+                windowsX * WINDOW_SIZE, windowsY * WINDOW_SIZE);
 
+        int windows = 0;
         for (int currentWindowY = 0 ; currentWindowY < height ; currentWindowY += WINDOW_SIZE) {
             for (int currentWindowX = 0 ; currentWindowX < width ; currentWindowX += WINDOW_SIZE) {
-                int start = indexFromXAndY(currentWindowX, currentWindowY, stride, offset);
-                if (isWindowWhite(ideal, start, stride) && isWindowWhite(given, start, stride)) {
-                    continue;
+                if (!statistics.isWhite(currentWindowX, currentWindowY, WINDOW_SIZE,
+                        WINDOW_SIZE)) {
+                    windows++;
                 }
-                windows++;
-                double[] means = getMeans(ideal, given, start, stride);
-                double meanX = means[0];
-                double meanY = means[1];
-                double[] variances = getVariances(ideal, given, meanX, meanY, start, stride);
-                double varX = variances[0];
-                double varY = variances[1];
-                double stdBoth = variances[2];
-                double SSIM = SSIM(meanX, meanY, varX, varY, stdBoth);
-                SSIMTotal += SSIM;
             }
         }
 
@@ -75,6 +69,36 @@ public class MSSIMComparer extends BaseRenderScriptComparer {
             return true;
         }
 
+        double SSIMTotal = 0;
+        int remainingWindows = windows;
+        for (int currentWindowY = 0 ; currentWindowY < height ; currentWindowY += WINDOW_SIZE) {
+            for (int currentWindowX = 0 ; currentWindowX < width ; currentWindowX += WINDOW_SIZE) {
+                if (statistics.isWhite(currentWindowX, currentWindowY, WINDOW_SIZE,
+                        WINDOW_SIZE)) {
+                    continue;
+                }
+                double meanX = statistics.getMean0(currentWindowX, currentWindowY, WINDOW_SIZE,
+                        WINDOW_SIZE);
+                double meanY = statistics.getMean1(currentWindowX, currentWindowY, WINDOW_SIZE,
+                        WINDOW_SIZE);
+                double varX = statistics.getVariance0(currentWindowX, currentWindowY,
+                        WINDOW_SIZE, WINDOW_SIZE);
+                double varY = statistics.getVariance1(currentWindowX, currentWindowY,
+                        WINDOW_SIZE, WINDOW_SIZE);
+                double stdBoth = statistics.getCovariance(currentWindowX, currentWindowY,
+                        WINDOW_SIZE, WINDOW_SIZE);
+                double SSIM = SSIM(meanX, meanY, varX, varY, stdBoth);
+                SSIMTotal += SSIM;
+                remainingWindows--;
+
+                // The SSIM of a window is at most 1, stop once the threshold is out of reach.
+                if ((SSIMTotal + remainingWindows) / windows < mThreshold) {
+                    Log.d(TAG_NAME, "MSSIM < " + ((SSIMTotal + remainingWindows) / windows));
+                    return false;
+                }
+            }
+        }
+
         SSIMTotal /= windows;
 
         Log.d(TAG_NAME, "MSSIM = " + SSIMTotal);
@@ -107,17 +131,6 @@ public class MSSIMComparer extends BaseRenderScriptComparer {
         return (MSSIM >= mThreshold);
     }
 
-    private boolean isWindowWhite(int[] colors, int start, int stride) {
-        for (int y = 0 ; y < WINDOW_SIZE ; y++) {
-            for (int x = 0 ; x < WINDOW_SIZE ; x++) {
-                if (colors[indexFromXAndY(x, y, stride, start)] != Color.WHITE) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
     private double SSIM(double muX, double muY, double sigX, double sigY, double sigXY) {
         double SSIM = (((2 * muX * muY) + CONSTANT_C1) * ((2 * sigXY) + CONSTANT_C2));
         double denom = ((muX * muX) + (muY * muY) + CONSTANT_C1)
@@ -125,67 +138,4 @@ public class MSSIMComparer extends BaseRenderScriptComparer {
         SSIM /= denom;
         return SSIM;
     }
-
-
-    /**
-     * This method will find the mean of a window in both sets of pixels. The return is an array
-     * where the first double is the mean of the first set and the second double is the mean of the
-     * second set.
-     */
-    private double[] getMeans(int[] pixels0, int[] pixels1, int start, int stride) {
-        double avg0 = 0;
-        double avg1 = 0;
-        for (int y = 0 ; y < WINDOW_SIZE ; y++) {
-            for (int x = 0 ; x < WINDOW_SIZE ; x++) {
-                int index = indexFromXAndY(x, y, stride, start);
-                avg0 += getIntensity(pixels0[index]);
-                avg1 += getIntensity(pixels1[index]);
-            }
-        }
-        avg0 /= WINDOW_SIZE * WINDOW_SIZE;
-        avg1 /= WINDOW_SIZE * WINDOW_SIZE;
-        return new double[] {avg0, avg1};
-    }
-
-    /**
-     * Finds the variance of the two sets of pixels, as well as the covariance of the windows. The
-     * return value is an array of doubles, the first is the variance of the first set of pixels,
-     * the second is the variance of the second set of pixels, and the third is the covariance.
-     */
-    private double[] getVariances(int[] pixels0, int[] pixels1, double mean0, double mean1,
-            int start, int stride) {
-        double var0 = 0;
-        double var1 = 0;
-        double varBoth = 0;
-        for (int y = 0 ; y < WINDOW_SIZE ; y++) {
-            for (int x = 0 ; x < WINDOW_SIZE ; x++) {
-                int index = indexFromXAndY(x, y, stride, start);
-                double v0 = getIntensity(pixels0[index]) - mean0;
-                double v1 = getIntensity(pixels1[index]) - mean1;
-                var0 += v0 * v0;
-                var1 += v1 * v1;
-                varBoth += v0 * v1;
-            }
-        }
-        var0 /= (WINDOW_SIZE * WINDOW_SIZE) - 1;
-        var1 /= (WINDOW_SIZE * WINDOW_SIZE) - 1;
-        varBoth /= (WINDOW_SIZE * WINDOW_SIZE) - 1;
-        return new double[] {var0, var1, varBoth};
-    }
-
-    /**
-     * Gets the intensity of a given pixel in RGB using luminosity formula
-     *
-     * l = 0.21R' + 0.72G' + 0.07B'
-     *
-     * The prime symbols dictate a gamma correction of 1.
-     */
-    private double getIntensity(int pixel) {
-        final double gamma = 1;
-        double l = 0;
-        l += (0.21f * Math.pow(Color.red(pixel) / 255f, gamma));
-        l += (0.72f * Math.pow(Color.green(pixel) / 255f, gamma));
-        l += (0.07f * Math.pow(Color.blue(pixel) / 255f, gamma));
-        return l;
-    }
 }
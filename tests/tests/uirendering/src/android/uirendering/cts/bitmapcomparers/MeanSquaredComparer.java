@@ -43,7 +43,7 @@ public class MeanSquaredComparer extends BaseRenderScriptComparer {
     @Override
     public boolean verifySame(int[] ideal, int[] given, int offset, int stride, int width,
             int height) {
-        float totalError = getMSE(ideal, given, offset, stride, width, height);
+        float totalError = getMSE(ideal, given, offset, stride, width, height, mErrorPerPixel);
         Log.d(TAG, "Error : " + totalError);
         return (totalError < (mErrorPerPixel));
     }
@@ -77,16 +77,32 @@ public class MeanSquaredComparer extends BaseRenderScriptComparer {
      */
     public static float getMSE(int[] ideal, int[] given, int offset, int stride, int width,
             int height) {
+        return getMSE(ideal, given, offset, stride, width, height, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Gets the Mean Squared Error between two data sets, or a lower bound of it that is at least
+     * limit, as the error only grows with each pixel.
+     */
+    private static float getMSE(int[] ideal, int[] given, int offset, int stride, int width,
+            int height, float limit) {
         float totalError = 0;
 
         for (int y = 0 ; y < height ; y++) {
             for (int x = 0 ; x < width ; x++) {
                 int index = indexFromXAndY(x, y, stride, offset);
+                if (ideal[index] == given[index]) {
+                    // identical pixels add no error
+                    continue;
+                }
                 float idealSum = getColorSum(ideal[index]);
                 float givenSum = getColorSum(given[index]);
                 float difference = idealSum - givenSum;
                 totalError += (difference * difference);
             }
+            if (totalError / (width * height) >= limit) {
+                break;
+            }
         }
 
         totalError /= (width * height);
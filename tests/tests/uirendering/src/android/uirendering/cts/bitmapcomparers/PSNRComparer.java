@@ -41,22 +41,13 @@ public class PSNRComparer extends BitmapComparer {
             int height) {
         float MSE = 0f;
         int interestingRegions = 0;
+        // A single pass finds the interesting regions and the error of the sampled pixels.
         for (int y = 0 ; y < height ; y += REGION_SIZE) {
             for (int x = 0 ; x < width ; x += REGION_SIZE) {
                 int index = indexFromXAndY(x, y, stride, offset);
                 if (inspectRegion(ideal, index)) {
                     interestingRegions++;
                 }
-            }
-        }
-
-        if (interestingRegions == 0) {
-            return true;
-        }
-
-        for (int y = 0 ; y < height ; y += REGION_SIZE) {
-            for (int x = 0 ; x < width ; x += REGION_SIZE) {
-                int index = indexFromXAndY(x, y, stride, offset);
                 if (ideal[index] == given[index]) {
                     continue;
                 }
@@ -68,6 +59,11 @@ public class PSNRComparer extends BitmapComparer {
                         (Color.green(ideal[index]) - Color.green(given[index]));
             }
         }
+
+        if (interestingRegions == 0) {
+            return true;
+        }
+
         MSE /= (interestingRegions * REGION_SIZE * 3);
 
         float fraction = (MAX * MAX) / MSE;
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.uirendering.cts.bitmapcomparers;
+
+import android.graphics.Color;
+
+/**
+ * The luminance of a region of two bitmaps, with summed-area tables giving the mean, variance and
+ * covariance of any window of the region in constant time. The luminance of each pixel is
+ * computed once, however many windows contain it.
+ */
+class WindowStatistics {
+    private final int mTableStride;
+
+    // Summed-area tables: the entry of (x, y) holds the sum over the pixels above and to the left
+    // of (x, y), so that the table has a row and a column more than the region.
+    private final double[] mSums0;
+    private final double[] mSums1;
+    private final double[] mSquareSums0;
+    private final double[] mSquareSums1;
+    private final double[] mProductSums;
+    private final int[] mNonWhiteCounts0;
+    private final int[] mNonWhiteCounts1;
+
+    /**
+     * Computes the statistics of the region of the given size starting at offset in both
+     * bitmaps.
+     */
+    WindowStatistics(int[] pixels0, int[] pixels1, int offset, int stride, int width,
+            int height) {
+        mTableStride = width + 1;
+        int size = mTableStride * (height + 1);
+        mSums0 = new double[size];
+        mSums1 = new double[size];
+        mSquareSums0 = new double[size];
+        mSquareSums1 = new double[size];
+        mProductSums = new double[size];
+        mNonWhiteCounts0 = new int[size];
+        mNonWhiteCounts1 = new int[size];
+
+        for (int y = 0 ; y < height ; y++) {
+            // Sums of the current row up to x, added to the entries of the row above.
+            double sum0 = 0;
+            double sum1 = 0;
+            double squareSum0 = 0;
+            double squareSum1 = 0;
+            double productSum = 0;
+            int nonWhiteCount0 = 0;
+            int nonWhiteCount1 = 0;
+            for (int x = 0 ; x < width ; x++) {
+                int index = BitmapComparer.indexFromXAndY(x, y, stride, offset);
+                double l0 = getIntensity(pixels0[index]);
+                double l1 = getIntensity(pixels1[index]);
+                sum0 += l0;
+                sum1 += l1;
+                squareSum0 += l0 * l0;
+                squareSum1 += l1 * l1;
+                productSum += l0 * l1;
+                nonWhiteCount0 += (pixels0[index] != Color.WHITE) ? 1 : 0;
+                nonWhiteCount1 += (pixels1[index] != Color.WHITE) ? 1 : 0;
+
+                int entry = (y + 1) * mTableStride + x + 1;
+                int above = entry - mTableStride;
+                mSums0[entry] = mSums0[above] + sum0;
+                mSums1[entry] = mSums1[above] + sum1;
+                mSquareSums0[entry] = mSquareSums0[above] + squareSum0;
+                mSquareSums1[entry] = mSquareSums1[above] + squareSum1;
+                mProductSums[entry] = mProductSums[above] + productSum;
+                mNonWhiteCounts0[entry] = mNonWhiteCounts0[above] + nonWhiteCount0;
+                mNonWhiteCounts1[entry] = mNonWhiteCounts1[above] + nonWhiteCount1;
+            }
+        }
+    }
+
+    /**
+     * Gets the intensity of a given pixel in RGB using luminosity formula
+     *
+     * l = 0.21R' + 0.72G' + 0.07B'
+     *
+     * The prime symbols dictate a gamma correction of 1.
+     */
+    static double getIntensity(int pixel) {
+        double l = 0;
+        l += (0.21 * (Color.red(pixel) / 255.0));
+        l += (0.72 * (Color.green(pixel) / 255.0));
+        l += (0.07 * (Color.blue(pixel) / 255.0));
+        return l;
+    }
+
+    /**
+     * Returns whether all pixels of the window are white in both bitmaps.
+     */
+    boolean isWhite(int x, int y, int width, int height) {
+        return getSum(mNonWhiteCounts0, x, y, width, height) == 0
+                && getSum(mNonWhiteCounts1, x, y, width, height) == 0;
+    }
+
+    double getMean0(int x, int y, int width, int height) {
+        return getSum(mSums0, x, y, width, height) / (width * height);
+    }
+
+    double getMean1(int x, int y, int width, int height) {
+        return getSum(mSums1, x, y, width, height) / (width * height);
+    }
+
+    /**
+     * Returns the sample variance of the window of the first bitmap.
+     */
+    double getVariance0(int x, int y, int width, int height) {
+        return getCovariance(mSquareSums0, mSums0, mSums0, x, y, width, height);
+    }
+
+    /**
+     * Returns the sample variance of the window of the second bitmap.
+     */
+    double getVariance1(int x, int y, int width, int height) {
+        return getCovariance(mSquareSums1, mSums1, mSums1, x, y, width, height);
+    }
+
+    /**
+     * Returns the sample covariance of the windows of both bitmaps.
+     */
+    double getCovariance(int x, int y, int width, int height) {
+        return getCovariance(mProductSums, mSums0, mSums1, x, y, width, height);
+    }
+
+    private double getCovariance(double[] productSums, double[] sums0, double[] sums1, int x,
+            int y, int width, int height) {
+        int count = width * height;
+        double sum0 = getSum(sums0, x, y, width, height);
+        double sum1 = getSum(sums1, x, y, width, height);
+        return (getSum(productSums, x, y, width, height) - sum0 * sum1 / count) / (count - 1);
+    }
+
+    private double getSum(double[] table, int x, int y, int width, int height) {
+        int top = y * mTableStride;
+        int bottom = (y + height) * mTableStride;
+        return table[bottom + x + width] - table[bottom + x] - table[top + x + width]
+                + table[top + x];
+    }
+
+    private int getSum(int[] table, int x, int y, int width, int height) {
+        int top = y * mTableStride;
+        int bottom = (y + height) * mTableStride;
+        return table[bottom + x + width] - table[bottom + x] - table[top + x + width]
+                + table[top + x];
+    }
+}
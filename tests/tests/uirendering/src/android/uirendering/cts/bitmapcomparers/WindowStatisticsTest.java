@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.uirendering.cts.bitmapcomparers;
+
+import android.graphics.Color;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the statistics of {@link WindowStatistics} against those computed directly from the
+ * pixels of each window.
+ */
+@SmallTest
+public class WindowStatisticsTest {
+    private static final double EPSILON = 1e-9;
+
+    private static final int STRIDE = 40;
+    private static final int OFFSET = 2 * STRIDE + 3;
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 25;
+
+    @Test
+    public void testIntensity() {
+        assertEquals(1.0, WindowStatistics.getIntensity(Color.WHITE), EPSILON);
+        assertEquals(0.0, WindowStatistics.getIntensity(Color.BLACK), EPSILON);
+        assertEquals(0.21, WindowStatistics.getIntensity(Color.RED), EPSILON);
+        assertEquals(0.72 * 128 / 255.0, WindowStatistics.getIntensity(Color.rgb(0, 128, 0)),
+                EPSILON);
+    }
+
+    @Test
+    public void testWindows() {
+        Random random = new Random(0);
+        int[] pixels0 = new int[STRIDE * (HEIGHT + 4)];
+        int[] pixels1 = new int[pixels0.length];
+        for (int i = 0; i < pixels0.length; i++) {
+            pixels0[i] = randomPixel(random);
+            pixels1[i] = randomPixel(random);
+        }
+        // a region white in both bitmaps
+        for (int y = 10; y < 20; y++) {
+            for (int x = 0; x < 10; x++) {
+                int index = BitmapComparer.indexFromXAndY(x, y, STRIDE, OFFSET);
+                pixels0[index] = Color.WHITE;
+                pixels1[index] = Color.WHITE;
+            }
+        }
+
+        WindowStatistics statistics =
+                new WindowStatistics(pixels0, pixels1, OFFSET, STRIDE, WIDTH, HEIGHT);
+        for (int height = 2; height <= HEIGHT; height += 7) {
+            for (int width = 2; width <= WIDTH; width += 7) {
+                for (int y = 0; y + height <= HEIGHT; y += 3) {
+                    for (int x = 0; x + width <= WIDTH; x += 3) {
+                        checkWindow(statistics, pixels0, pixels1, x, y, width, height);
+                    }
+                }
+            }
+        }
+        checkWindow(statistics, pixels0, pixels1, 0, 10, 10, 10);
+        checkWindow(statistics, pixels0, pixels1, 0, 0, WIDTH, HEIGHT);
+    }
+
+    private static int randomPixel(Random random) {
+        // mostly white, as in the rendering tests
+        return random.nextInt(4) == 0 ? random.nextInt() | 0xff000000 : Color.WHITE;
+    }
+
+    private static void checkWindow(WindowStatistics statistics, int[] pixels0, int[] pixels1,
+            int x, int y, int width, int height) {
+        int count = width * height;
+        double sum0 = 0;
+        double sum1 = 0;
+        boolean white = true;
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                int index = BitmapComparer.indexFromXAndY(i, j, STRIDE, OFFSET);
+                sum0 += WindowStatistics.getIntensity(pixels0[index]);
+                sum1 += WindowStatistics.getIntensity(pixels1[index]);
+                white &= pixels0[index] == Color.WHITE && pixels1[index] == Color.WHITE;
+            }
+        }
+        double mean0 = sum0 / count;
+        double mean1 = sum1 / count;
+
+        double variance0 = 0;
+        double variance1 = 0;
+        double covariance = 0;
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                int index = BitmapComparer.indexFromXAndY(i, j, STRIDE, OFFSET);
+                double v0 = WindowStatistics.getIntensity(pixels0[index]) - mean0;
+                double v1 = WindowStatistics.getIntensity(pixels1[index]) - mean1;
+                variance0 += v0 * v0;
+                variance1 += v1 * v1;
+                covariance += v0 * v1;
+            }
+        }
+        variance0 /= count - 1;
+        variance1 /= count - 1;
+        covariance /= count - 1;
+
+        String window = String.format("window (%d, %d) %dx%d", x, y, width, height);
+        assertEquals(window, white, statistics.isWhite(x, y, width, height));
+        assertEquals(window, mean0, statistics.getMean0(x, y, width, height), EPSILON);
+        assertEquals(window, mean1, statistics.getMean1(x, y, width, height), EPSILON);
+        assertEquals(window, variance0, statistics.getVariance0(x, y, width, height), EPSILON);
+        assertEquals(window, variance1, statistics.getVariance1(x, y, width, height), EPSILON);
+        assertEquals(window, covariance, statistics.getCovariance(x, y, width, height), EPSILON);
+    }
+}
@@ -18,6 +18,9 @@ src_header = """/*
 
 package android.cts.security;
 
+import android.security.cts.SELinuxNeverallowChecker;
+import android.security.cts.SELinuxPolicyCache;
+
 import com.android.cts.migration.MigrationHelper;
 import com.android.tradefed.build.IBuildInfo;
 import com.android.tradefed.device.ITestDevice;
@@ -25,15 +28,16 @@ import com.android.tradefed.testtype.DeviceTestCase;
 import com.android.tradefed.testtype.IBuildReceiver;
 import com.android.tradefed.testtype.IDeviceTest;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 /**
  * Neverallow Rules SELinux tests.
  */
 public class SELinuxNeverallowRulesTest extends DeviceTestCase implements IBuildReceiver, IDeviceTest {
+    /* all rules tested below, checked together by the first test run */
+    private static final String[] NEVERALLOW_RULES = {
+$NEVERALLOW_RULES_HERE$    };
+
     private File sepolicyAnalyze;
     private File devicePolicyFile;
 
@@ -66,37 +70,26 @@ public class SELinuxNeverallowRulesTest extends DeviceTestCase implements IBuild
         sepolicyAnalyze = MigrationHelper.getTestFile(mBuild, "sepolicy-analyze");
         sepolicyAnalyze.setExecutable(true);
 
-        /* obtain sepolicy file from running device */
-        devicePolicyFile = File.createTempFile("sepolicy", ".tmp");
-        devicePolicyFile.deleteOnExit();
-        mDevice.pullFile("/sys/fs/selinux/policy", devicePolicyFile);
+        /* obtain sepolicy file from running device, pulled once per device and policy */
+        devicePolicyFile = SELinuxPolicyCache.getDevicePolicyFile(mDevice);
     }
 """
 src_body = ""
 src_footer = """}
 """
 
+src_rule = """        "$NEVERALLOW_RULE_HERE$",
+"""
+
 src_method = """
     public void testNeverallowRules() throws Exception {
         String neverallowRule = "$NEVERALLOW_RULE_HERE$";
 
         /* run sepolicy-analyze neverallow check on policy file using given neverallow rules */
-        ProcessBuilder pb = new ProcessBuilder(sepolicyAnalyze.getAbsolutePath(),
-                devicePolicyFile.getAbsolutePath(), "neverallow", "-n",
-                neverallowRule);
-        pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
-        p.waitFor();
-        BufferedReader result = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        String line;
-        StringBuilder errorString = new StringBuilder();
-        while ((line = result.readLine()) != null) {
-            errorString.append(line);
-            errorString.append("\\n");
-        }
+        String errorString = SELinuxNeverallowChecker.check(sepolicyAnalyze, devicePolicyFile,
+                NEVERALLOW_RULES, neverallowRule);
         assertTrue("The following errors were encountered when validating the SELinux"
                    + "neverallow rule:\\n" + neverallowRule + "\\n" + errorString,
-                   errorString.length() == 0);
+                   errorString.isEmpty());
     }
 """
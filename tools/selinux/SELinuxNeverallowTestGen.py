@@ -28,6 +28,14 @@ def neverallow_rule_to_test(neverallow_rule, test_num):
         "testNeverallowRules" + str(test_num) + "()")
     return method.replace("$NEVERALLOW_RULE_HERE$", squashed_neverallow)
 
+# neverallow_rule_to_array_entry - takes a neverallow statement and transforms it
+# into an entry of the array of all rules, which the tests check together.
+# returns: a string representing the rule as a java array element.
+def neverallow_rule_to_array_entry(neverallow_rule):
+    squashed_neverallow = neverallow_rule.replace("\n", " ")
+    return SELinuxNeverallowTestFrame.src_rule.replace("$NEVERALLOW_RULE_HERE$",
+        squashed_neverallow)
+
 if __name__ == "__main__":
     # check usage
     if len(sys.argv) != 3:
@@ -42,10 +50,13 @@ if __name__ == "__main__":
 
     # grab the neverallow rules from the policy file and transform into tests
     neverallow_rules = extract_neverallow_rules(input_file)
+    src_rules = ""
     i = 0
     for rule in neverallow_rules:
+        src_rules += neverallow_rule_to_array_entry(rule)
         src_body += neverallow_rule_to_test(rule, i)
         i += 1
+    src_header = src_header.replace("$NEVERALLOW_RULES_HERE$", src_rules)
 
     with open(output_file, 'w') as out_file:
         out_file.write(src_header)
@@ -130,6 +130,29 @@ public class CtsBuildHelper {
         return new File(getRepositoryDir(), "logs");
     }
 
+    /**
+     * @return a {@link File} representing the file storing the dEQP batch statistics of earlier
+     * runs.
+     */
+    public File getDeqpBatchStatsFile() {
+        return new File(getRepositoryDir(), "deqp_batch_stats.properties");
+    }
+
+    /**
+     * @return a {@link File} representing the file caching the test package definitions parsed
+     * from the test cases directory.
+     */
+    public File getTestPackageCacheFile() {
+        return new File(getRepositoryDir(), "test_package_cache.bin");
+    }
+
+    /**
+     * @return a {@link File} representing the file recording the apks installed on each device.
+     */
+    public File getApkInstallCacheFile() {
+        return new File(getRepositoryDir(), "apk_install_cache.properties");
+    }
+
     /**
      * @return a {@link File} representing the test cases directory
      */
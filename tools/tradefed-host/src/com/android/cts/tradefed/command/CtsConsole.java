@@ -197,7 +197,8 @@ public class CtsConsole extends Console {
     }
 
     private void listPackages(CtsBuildHelper ctsBuild) {
-        ITestPackageRepo testCaseRepo = new TestPackageRepo(ctsBuild.getTestCasesDir(), false);
+        ITestPackageRepo testCaseRepo = new TestPackageRepo(ctsBuild.getTestCasesDir(), false,
+                ctsBuild.getTestPackageCacheFile());
         for (String packageName : testCaseRepo.getPackageNames()) {
             printLine(packageName);
         }
@@ -116,7 +116,8 @@ public class PlanCreator {
             throws ConfigurationException {
         checkFields(build);
         ITestPackageRepo pkgDefRepo =
-                new TestPackageRepo(build.getTestCasesDir(), mIncludeKnownFailures);
+                new TestPackageRepo(build.getTestCasesDir(), mIncludeKnownFailures,
+                        build.getTestPackageCacheFile());
         ITestPlan derivedPlan = new TestPlan(mPlanName, abis);
         for (TestPackageResult pkg : mResult.getPackages()) {
             Collection<TestIdentifier> filteredTests = pkg.getTestsWithStatus(mResultFilter);
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.compatibility.common.util.AbiUtils;
+import com.android.tradefed.device.DeviceNotAvailableException;
+import com.android.tradefed.device.ITestDevice;
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileLock;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Installs test apks on a device, optionally skipping those already installed.
+ * <p/>
+ * With an install cache file, the SHA-1 of every apk installed is recorded per device serial,
+ * along with the state of the installed package reported by the package manager: its version
+ * code, last update time, signatures and ABI. An apk is only installed again if its content
+ * changed, or if the package on the device is no longer in the recorded state, e.g. because it
+ * was uninstalled or replaced since.
+ */
+public class ApkInstaller {
+
+    private static final String INSTALLED_STATE_SEPARATOR = ";";
+
+    private static final Pattern VERSION_CODE_PATTERN = Pattern.compile("versionCode=(\\S+)");
+    private static final Pattern LAST_UPDATE_TIME_PATTERN =
+            Pattern.compile("lastUpdateTime=(.+)");
+    // The first value is the identity hash of the signatures object, only keep the signatures.
+    private static final Pattern SIGNATURES_PATTERN =
+            Pattern.compile("signatures=PackageSignatures\\{\\S+ \\[(.*)\\]\\}");
+    private static final Pattern ABI_PATTERN = Pattern.compile("primaryCpuAbi=(\\S+)");
+
+    // Cache files are locked for the whole process, so installers of this process, one per
+    // device, also synchronize on this.
+    private static final Object sCacheFileLock = new Object();
+
+    private static class Entry {
+        final String mDigest;
+        final String mAbi;
+        final String mInstalledState;
+
+        Entry(String digest, String abi, String installedState) {
+            mDigest = digest;
+            mAbi = abi;
+            mInstalledState = installedState;
+        }
+    }
+
+    private final File mCacheFile;
+    private final String mSerial;
+    // package name to its entry, for packages installed on this device
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    /**
+     * Creates an installer that always installs.
+     */
+    public ApkInstaller() {
+        this(null, null);
+    }
+
+    /**
+     * Creates an installer.
+     *
+     * @param cacheFile file of the installs of earlier runs, or null to always install.
+     * @param serial the serial of the device the installer installs on, used when caching.
+     */
+    public ApkInstaller(File cacheFile, String serial) {
+        mCacheFile = cacheFile;
+        mSerial = serial;
+        if (isCaching() && mCacheFile.isFile()) {
+            load();
+        }
+    }
+
+    /**
+     * @return true if installed apks are recorded, and should thus be left installed to skip
+     * installing them again in later runs.
+     */
+    public boolean isCaching() {
+        return mCacheFile != null;
+    }
+
+    /**
+     * Installs the given apks in order, unless cached.
+     *
+     * @param device the device to install on
+     * @param apks the apk files to install, each mapped to its Android package name or null if
+     *        unknown, in which case it is always installed.
+     * @param abiName the ABI to install the apks for
+     * @return the error of each apk that failed to install, empty if all were installed.
+     */
+    public Map<File, String> install(ITestDevice device, Map<File, String> apks, String abiName)
+            throws DeviceNotAvailableException {
+        Map<File, String> errors = new LinkedHashMap<>();
+        for (Map.Entry<File, String> apk : apks.entrySet()) {
+            String digest = null;
+            if (isCaching() && apk.getValue() != null) {
+                digest = getDigest(apk.getKey());
+            }
+            String error = install(device, apk.getKey(), apk.getValue(), digest, abiName);
+            if (error != null) {
+                errors.put(apk.getKey(), error);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Installs the given apk, unless cached.
+     *
+     * @param digest the digest of the apk, or null to always install it.
+     * @return the install error, or null if the apk was installed or was already.
+     */
+    private String install(ITestDevice device, File apkFile, String packageName, String digest,
+            String abiName) throws DeviceNotAvailableException {
+        if (digest != null) {
+            Entry entry = mEntries.get(packageName);
+            if (entry != null && entry.mDigest.equals(digest) && entry.mAbi.equals(abiName)
+                    && entry.mInstalledState.equals(getInstalledState(device, packageName))) {
+                CLog.d("Skipping install of %s, already installed on %s", apkFile.getName(),
+                        device.getSerialNumber());
+                return null;
+            }
+        }
+
+        String[] options = {AbiUtils.createAbiFlag(abiName)};
+        String error = device.installPackage(apkFile, true, options);
+        if (digest != null) {
+            String installedState = (error == null) ? getInstalledState(device, packageName) : null;
+            if (installedState != null) {
+                mEntries.put(packageName, new Entry(digest, abiName, installedState));
+            } else {
+                mEntries.remove(packageName);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Uninstalls the given package and forgets it was installed.
+     */
+    public void uninstall(ITestDevice device, String packageName)
+            throws DeviceNotAvailableException {
+        device.uninstallPackage(packageName);
+        mEntries.remove(packageName);
+    }
+
+    /**
+     * Get the state of an installed package from the package manager.
+     * <p/>
+     * Exposed for unit testing.
+     *
+     * @return the state, or null if the package is not installed.
+     */
+    static String parseInstalledState(String packageName, String dumpsys) {
+        int start = dumpsys.indexOf("Package [" + packageName + "]");
+        if (start < 0) {
+            return null;
+        }
+        String section = dumpsys.substring(start);
+        StringBuilder state = new StringBuilder();
+        for (Pattern pattern : new Pattern[] {VERSION_CODE_PATTERN, LAST_UPDATE_TIME_PATTERN,
+                SIGNATURES_PATTERN, ABI_PATTERN}) {
+            Matcher matcher = pattern.matcher(section);
+            if (!matcher.find()) {
+                // Unknown format, do not rely on it.
+                return null;
+            }
+            state.append(matcher.group(1).trim()).append(INSTALLED_STATE_SEPARATOR);
+        }
+        return state.toString();
+    }
+
+    private static String getInstalledState(ITestDevice device, String packageName)
+            throws DeviceNotAvailableException {
+        String dumpsys = device.executeShellCommand("dumpsys package " + packageName);
+        return (dumpsys == null) ? null : parseInstalledState(packageName, dumpsys);
+    }
+
+    /**
+     * Generate a sha1sum digest for a file.
+     *
+     * @return a hex {@link String} of the digest, or null if it could not be generated
+     */
+    private static String getDigest(File file) {
+        try (InputStream fileStream = new BufferedInputStream(new FileInputStream(file))) {
+            return TestPackageDef.generateDigest(fileStream);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            CLog.e(e);
+            return null;
+        }
+    }
+
+    private String getKeyPrefix() {
+        return mSerial + "/";
+    }
+
+    private void load() {
+        final Properties properties = new Properties();
+        synchronized (sCacheFileLock) {
+            try (RandomAccessFile file = new RandomAccessFile(mCacheFile, "r");
+                    FileLock lock = file.getChannel().lock(0, Long.MAX_VALUE, true)) {
+                properties.load(Channels.newInputStream(file.getChannel()));
+            } catch (IOException e) {
+                CLog.w("Could not load apk install cache from %s: %s",
+                        mCacheFile.getAbsolutePath(), e.getMessage());
+                return;
+            }
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(getKeyPrefix())) {
+                continue;
+            }
+            String[] values = properties.getProperty(key).split(" ", 3);
+            if (values.length == 3) {
+                mEntries.put(key.substring(getKeyPrefix().length()),
+                        new Entry(values[0], values[1], values[2]));
+            }
+        }
+    }
+
+    /**
+     * Persists the installs on this device, keeping those of other devices, if the directory of
+     * the cache file exists.
+     * <p/>
+     * The cache file is locked while it is read and rewritten, so that installers of other
+     * processes sharing it, e.g. running on other devices, do not lose each other's installs.
+     */
+    public void save() {
+        if (!isCaching() || !mCacheFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            return;
+        }
+
+        synchronized (sCacheFileLock) {
+            try (RandomAccessFile file = new RandomAccessFile(mCacheFile, "rw");
+                    FileLock lock = file.getChannel().lock()) {
+                final Properties properties = new Properties();
+                try {
+                    properties.load(Channels.newInputStream(file.getChannel()));
+                } catch (IOException e) {
+                    // Rewrite it with the installs of this device only.
+                    properties.clear();
+                }
+                List<String> keys = new ArrayList<>(properties.stringPropertyNames());
+                for (String key : keys) {
+                    if (key.startsWith(getKeyPrefix())) {
+                        properties.remove(key);
+                    }
+                }
+                for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                    properties.setProperty(getKeyPrefix() + entry.getKey(),
+                            String.format("%s %s %s", entry.getValue().mDigest,
+                                    entry.getValue().mAbi, entry.getValue().mInstalledState));
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                properties.store(out, "Installed apks");
+                file.setLength(0);
+                file.write(out.toByteArray());
+            } catch (IOException e) {
+                CLog.w("Could not save apk install cache to %s: %s",
+                        mCacheFile.getAbsolutePath(), e.getMessage());
+            }
+        }
+    }
+}
@@ -15,7 +15,6 @@
  */
 package com.android.cts.tradefed.testtype;
 
-import com.android.compatibility.common.util.AbiUtils;
 import com.android.cts.tradefed.build.CtsBuildHelper;
 import com.android.ddmlib.Log;
 import com.android.tradefed.build.IBuildInfo;
@@ -30,6 +29,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * An {@link InstrumentationTest} that will install CTS apks
@@ -42,6 +44,7 @@ public class CtsInstrumentationApkTest extends InstrumentationTest implements IB
     /** the file names of the CTS apks to install */
     private Collection<String> mInstallFileNames = new ArrayList<String>();
     private Collection<String> mUninstallPackages = new ArrayList<String>();
+    private ApkInstaller mApkInstaller = new ApkInstaller();
     protected CtsBuildHelper mCtsBuild = null;
     protected IAbi mAbi = null;
 
@@ -52,6 +55,13 @@ public class CtsInstrumentationApkTest extends InstrumentationTest implements IB
         mAbi = abi;
     }
 
+    /**
+     * @param apkInstaller the installer of the apks. Apks are left installed if it caches them.
+     */
+    public void setApkInstaller(ApkInstaller apkInstaller) {
+        mApkInstaller = apkInstaller;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -88,31 +98,36 @@ public class CtsInstrumentationApkTest extends InstrumentationTest implements IB
             return;
         }
         boolean success = true;
+        Map<File, String> apks = new LinkedHashMap<>();
+        Iterator<String> packageNames = mUninstallPackages.iterator();
         for (String apkFileName : mInstallFileNames) {
+            String packageName = packageNames.next();
             Log.d(LOG_TAG, String.format("Installing %s on %s", apkFileName,
                     testDevice.getSerialNumber()));
             try {
-                File apkFile = mCtsBuild.getTestApp(apkFileName);
-                String errorCode = null;
-                String[] options = {AbiUtils.createAbiFlag(mAbi.getName())};
-                errorCode = testDevice.installPackage(apkFile, true, options);
-                if (errorCode != null) {
-                    Log.e(LOG_TAG, String.format("Failed to install %s on %s. Reason: %s",
-                          apkFileName, testDevice.getSerialNumber(), errorCode));
-                    success = false;
-                }
+                apks.put(mCtsBuild.getTestApp(apkFileName), packageName);
             } catch (FileNotFoundException e) {
                 Log.e(LOG_TAG, String.format("Could not find file %s", apkFileName));
                 success = false;
             }
         }
+        Map<File, String> errors = mApkInstaller.install(testDevice, apks, mAbi.getName());
+        for (Map.Entry<File, String> error : errors.entrySet()) {
+            Log.e(LOG_TAG, String.format("Failed to install %s on %s. Reason: %s",
+                    error.getKey().getName(), testDevice.getSerialNumber(), error.getValue()));
+            success = false;
+        }
         if (success) {
             super.run(listener);
         }
+        if (mApkInstaller.isCaching()) {
+            // leave the apks installed, to be reused by later runs
+            return;
+        }
         for (String packageName : mUninstallPackages) {
             Log.d(LOG_TAG, String.format("Uninstalling %s on %s", packageName,
                     testDevice.getSerialNumber()));
-            testDevice.uninstallPackage(packageName);
+            mApkInstaller.uninstall(testDevice, packageName);
         }
     }
 }
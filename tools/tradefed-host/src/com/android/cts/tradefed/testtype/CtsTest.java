@@ -209,11 +209,17 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
             description = "Don't verify device connectivity between module execution.")
     private boolean mSkipConnectivityCheck = false;
 
+    @Option(name = "apk-install-cache", description =
+            "Skip installing test apks whose identical content is already installed on the " +
+            "device, and leave test apks installed to be reused by later runs.")
+    private boolean mApkInstallCache = false;
+
     private final int mShardAssignment;
     private final int mTotalShards;
     private ITestDevice mDevice = null;
     private CtsBuildHelper mCtsBuild = null;
     private IBuildInfo mBuildInfo = null;
+    private ApkInstaller mApkInstaller = null;
     // last reboot time
     private long mPrevRebootTime;
     // The list of packages to run. populated in {@code setupTestPackageList}
@@ -492,6 +498,7 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
 
         checkFields();
         setupTestPackageList(abiSet);
+        mApkInstaller = createApkInstaller();
         if (mBugreport) {
             listener = new FailedTestBugreportGenerator(listener, getDevice());
         }
@@ -513,7 +520,8 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
 
         // collect and install the prerequisiteApks first, to save time when multiple test
         // packages are using the same prerequisite apk
-        Map<String, Set<String>> prerequisiteApks = getPrerequisiteApks(mTestPackageList, abiSet);
+        Map<String, Map<String, String>> prerequisiteApks =
+                getPrerequisiteApks(mTestPackageList, abiSet);
         Collection<String> uninstallPackages = getPrerequisitePackageNames(mTestPackageList);
 
         try {
@@ -552,6 +560,9 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
                 if (test instanceof IDeviceTest) {
                     ((IDeviceTest) test).setDevice(getDevice());
                 }
+                if (test instanceof CtsInstrumentationApkTest) {
+                    ((CtsInstrumentationApkTest) test).setApkInstaller(mApkInstaller);
+                }
                 if (test instanceof DeqpTestRunner) {
                     ((DeqpTestRunner)test).setCollectLogs(mCollectDeqpLogs);
                 }
@@ -622,7 +633,9 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
                 }
             }
 
-            uninstallPrequisiteApks(uninstallPackages);
+            if (!mApkInstaller.isCaching()) {
+                uninstallPrequisiteApks(uninstallPackages);
+            }
             // Collect test metric report logs.
             collectReportLogs(getDevice(), mBuildInfo);
         } catch (RuntimeException e) {
@@ -635,6 +648,7 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
             for (ResultFilter filter : filterMap.values()) {
                 filter.reportUnexecutedTests();
             }
+            mApkInstaller.save();
         }
     }
 
@@ -992,13 +1006,14 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
     }
 
     /**
-     * Return the list (by abi) of unique prerequisite apks to install
+     * Return the list (by abi) of unique prerequisite apks to install, with their Android package
+     * names
      *
      * @param testPackages The {@link List} of {@link TestPackage} that contain prerequisite APKs
      */
-    private Map<String, Set<String>> getPrerequisiteApks(
+    private Map<String, Map<String, String>> getPrerequisiteApks(
             List<TestPackage> testPackages, Set<String> abiSet) {
-        Map<String, Set<String>> abiToApkMap = new HashMap<>();
+        Map<String, Map<String, String>> abiToApkMap = new HashMap<>();
         for (TestPackage testPkg : testPackages) {
             if (testPkg.getKnownTests().size() == 0) {
                 // No tests, no point in installing pre-reqs
@@ -1014,9 +1029,9 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
             }
 
             if (!abiToApkMap.containsKey(abiName)) {
-                abiToApkMap.put(abiName, new HashSet<String>());
+                abiToApkMap.put(abiName, new HashMap<String, String>());
             }
-            abiToApkMap.get(abiName).add(apkName);
+            abiToApkMap.get(abiName).put(apkName, testPkg.mPackageDef.getTargetPackageName());
         }
         return abiToApkMap;
     }
@@ -1027,27 +1042,27 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
      *
      * Install the collection of test apk file names
      *
-     * @param prerequisiteApks The APKs that must be installed
+     * @param prerequisiteApks The APKs that must be installed, with their Android package names
      * @throws DeviceNotAvailableException
      */
-    private void installPrerequisiteApks(Collection<String> prerequisiteApks, IAbi abi)
+    private void installPrerequisiteApks(Map<String, String> prerequisiteApks, IAbi abi)
             throws DeviceNotAvailableException {
         if (prerequisiteApks == null) {
             return;
         }
         Log.logAndDisplay(LogLevel.INFO, LOG_TAG, "Installing prerequisites");
-        for (String apkName : prerequisiteApks) {
+        Map<File, String> apks = new HashMap<>();
+        for (Map.Entry<String, String> apk : prerequisiteApks.entrySet()) {
             try {
-                File apkFile = mCtsBuild.getTestApp(apkName);
-                String[] options = {AbiUtils.createAbiFlag(abi.getName())};
-                String errorCode = getDevice().installPackage(apkFile, true, options);
-                if (errorCode != null) {
-                    CLog.e("Failed to install %s. Reason: %s", apkName, errorCode);
-                }
+                apks.put(mCtsBuild.getTestApp(apk.getKey()), apk.getValue());
             } catch (FileNotFoundException e) {
-                CLog.e("Could not find test apk %s", apkName);
+                CLog.e("Could not find test apk %s", apk.getKey());
             }
         }
+        Map<File, String> errors = mApkInstaller.install(getDevice(), apks, abi.getName());
+        for (Map.Entry<File, String> error : errors.entrySet()) {
+            CLog.e("Failed to install %s. Reason: %s", error.getKey().getName(), error.getValue());
+        }
     }
 
     /**
@@ -1058,7 +1073,7 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
     private void uninstallPrequisiteApks(Collection<String> uninstallPackages)
             throws DeviceNotAvailableException {
         for (String pkgName : uninstallPackages) {
-            getDevice().uninstallPackage(pkgName);
+            mApkInstaller.uninstall(getDevice(), pkgName);
         }
     }
 
@@ -1123,7 +1138,20 @@ public class CtsTest implements IDeviceTest, IResumableTest, IShardableTest, IBu
      * Exposed for unit testing
      */
     ITestPackageRepo createTestCaseRepo() {
-        return new TestPackageRepo(mCtsBuild.getTestCasesDir(), mIncludeKnownFailures);
+        return new TestPackageRepo(mCtsBuild.getTestCasesDir(), mIncludeKnownFailures,
+                mCtsBuild.getTestPackageCacheFile());
+    }
+
+    /**
+     * Factory method for creating the {@link ApkInstaller} of a run.
+     * <p/>
+     * Exposed for unit testing
+     */
+    ApkInstaller createApkInstaller() {
+        if (!mApkInstallCache) {
+            return new ApkInstaller();
+        }
+        return new ApkInstaller(mCtsBuild.getApkInstallCacheFile(), getDevice().getSerialNumber());
     }
 
     /**
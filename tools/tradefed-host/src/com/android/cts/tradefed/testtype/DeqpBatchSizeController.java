@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.cts.tradefed.util.AtomicFileUtil;
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Chooses dEQP batch sizes from the crash rate and launch overhead observed on the device.
+ * <p/>
+ * Every batch is an am instrument launch, which costs process startup time, while a crash in a
+ * batch costs a recovery and the re-execution of the rest of the batch in smaller batches. The
+ * batch size limit of a test group balances the two, like a checkpoint interval: it is
+ * sqrt(2 * launch overhead / (crash probability per case * time per case)). Stable groups get
+ * larger batches and crash-prone groups smaller ones.
+ * <p/>
+ * Crash counts start from a prior that yields {@link #DEFAULT_BATCH_LIMIT} for groups that have
+ * not been observed yet, and are persisted between runs along with the timings. Runs on other
+ * devices may share the statistics file, so saving adds the counts observed since the last save
+ * to those in the file, instead of overwriting them, and replaces the file atomically.
+ */
+public class DeqpBatchSizeController {
+
+    /** Batch size limit of a test group without observations. */
+    static final int DEFAULT_BATCH_LIMIT = 1000;
+    static final int MAX_BATCH_LIMIT = 5000;
+
+    /** Number of test path components identifying a test group, e.g. dEQP-GLES3.functional.fbo */
+    private static final int TEST_GROUP_DEPTH = 3;
+
+    // Priors giving DEFAULT_BATCH_LIMIT: sqrt(2 * 5000 / (1 / 5000 * 50)) = 1000
+    private static final double PRIOR_CASES = 5000;
+    private static final double PRIOR_CRASHES = 1;
+    private static final double DEFAULT_LAUNCH_OVERHEAD_MS = 5000;
+    private static final double DEFAULT_CASE_TIME_MS = 50;
+    private static final double MIN_TIME_MS = 1;
+
+    /** Weight of a new timing observation in the moving averages. */
+    private static final double TIMING_WEIGHT = 0.1;
+    /** Counts of a group are halved past this many cases, so old observations fade out. */
+    private static final long MAX_OBSERVED_CASES = 100000;
+
+    private static final String LAUNCH_OVERHEAD_KEY = "launch_overhead_ms";
+    private static final String CASE_TIME_KEY = "case_time_ms";
+    private static final String CASES_PREFIX = "cases.";
+    private static final String CRASHES_PREFIX = "crashes.";
+
+    private static class GroupStats {
+        long cases;
+        long crashes;
+    }
+
+    private final File mStatsFile;
+    private final Map<String, GroupStats> mGroupStats = new HashMap<>();
+    private double mLaunchOverheadMs = DEFAULT_LAUNCH_OVERHEAD_MS;
+    private double mCaseTimeMs = DEFAULT_CASE_TIME_MS;
+    // observations since the last save, to be added to those saved by other runs
+    private final Map<String, GroupStats> mNewGroupStats = new HashMap<>();
+    private boolean mNewTimings = false;
+
+    /**
+     * Creates a controller loading and persisting its observations in the given file.
+     *
+     * @param statsFile file of the observations of earlier runs, or null to not persist them.
+     */
+    public DeqpBatchSizeController(File statsFile) {
+        mStatsFile = statsFile;
+        if (mStatsFile != null && mStatsFile.isFile()) {
+            load();
+        }
+    }
+
+    /**
+     * Get the test group of a test, which is the prefix of its path.
+     */
+    static String getTestGroup(TestIdentifier testId) {
+        final String className = testId.getClassName();
+        int end = -1;
+        for (int i = 0; i < TEST_GROUP_DEPTH; i++) {
+            end = className.indexOf('.', end + 1);
+            if (end < 0) {
+                return className;
+            }
+        }
+        return className.substring(0, end);
+    }
+
+    /**
+     * Get the batch size limit for a batch led by the given test.
+     */
+    public int getBatchSizeLimit(TestIdentifier leadingTest) {
+        final GroupStats stats = mGroupStats.get(getTestGroup(leadingTest));
+        final double cases = PRIOR_CASES + (stats == null ? 0 : stats.cases);
+        final double crashes = PRIOR_CRASHES + (stats == null ? 0 : stats.crashes);
+        final double crashProbability = crashes / cases;
+
+        final double limit = Math.sqrt(2.0 * mLaunchOverheadMs / (crashProbability * mCaseTimeMs));
+        return (int) Math.max(1, Math.min(MAX_BATCH_LIMIT, Math.round(limit)));
+    }
+
+    /**
+     * Records the outcome of one instrumentation launch.
+     *
+     * @param executedTests tests that completed in the launch
+     * @param crashedTest test that was running when the launch ended prematurely, or null
+     * @param launchOverheadMs time from the launch to the beginning of the first test, or a
+     *        negative value if no test began
+     * @param runTimeMs total time of the launch
+     */
+    public void recordBatchRun(Collection<TestIdentifier> executedTests,
+            TestIdentifier crashedTest, long launchOverheadMs, long runTimeMs) {
+        for (TestIdentifier test : executedTests) {
+            final String group = getTestGroup(test);
+            getOrCreateGroupStats(group).cases++;
+            getOrCreateNewGroupStats(group).cases++;
+        }
+        if (crashedTest != null) {
+            final String group = getTestGroup(crashedTest);
+            final GroupStats stats = getOrCreateGroupStats(group);
+            stats.cases++;
+            stats.crashes++;
+            final GroupStats newStats = getOrCreateNewGroupStats(group);
+            newStats.cases++;
+            newStats.crashes++;
+        }
+
+        if (launchOverheadMs >= 0) {
+            mNewTimings = true;
+            mLaunchOverheadMs = movingAverage(mLaunchOverheadMs, launchOverheadMs);
+            if (!executedTests.isEmpty()) {
+                final double caseTimeMs =
+                        (double) (runTimeMs - launchOverheadMs) / executedTests.size();
+                mCaseTimeMs = movingAverage(mCaseTimeMs, caseTimeMs);
+            }
+        }
+    }
+
+    private GroupStats getOrCreateGroupStats(String group) {
+        GroupStats stats = mGroupStats.get(group);
+        if (stats == null) {
+            stats = new GroupStats();
+            mGroupStats.put(group, stats);
+        }
+        if (stats.cases >= MAX_OBSERVED_CASES) {
+            stats.cases /= 2;
+            stats.crashes /= 2;
+        }
+        return stats;
+    }
+
+    private GroupStats getOrCreateNewGroupStats(String group) {
+        GroupStats stats = mNewGroupStats.get(group);
+        if (stats == null) {
+            stats = new GroupStats();
+            mNewGroupStats.put(group, stats);
+        }
+        return stats;
+    }
+
+    private static double movingAverage(double average, double value) {
+        return Math.max(MIN_TIME_MS, (1.0 - TIMING_WEIGHT) * average + TIMING_WEIGHT * value);
+    }
+
+    private void load() {
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(mStatsFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            CLog.w("Could not load dEQP batch statistics from %s: %s",
+                    mStatsFile.getAbsolutePath(), e.getMessage());
+            return;
+        }
+
+        try {
+            for (String key : properties.stringPropertyNames()) {
+                final long value = (long) Double.parseDouble(properties.getProperty(key));
+                if (key.startsWith(CASES_PREFIX)) {
+                    getOrCreateGroupStats(key.substring(CASES_PREFIX.length())).cases = value;
+                } else if (key.startsWith(CRASHES_PREFIX)) {
+                    getOrCreateGroupStats(key.substring(CRASHES_PREFIX.length())).crashes = value;
+                }
+            }
+            if (properties.containsKey(LAUNCH_OVERHEAD_KEY)) {
+                mLaunchOverheadMs = Math.max(MIN_TIME_MS,
+                        Double.parseDouble(properties.getProperty(LAUNCH_OVERHEAD_KEY)));
+            }
+            if (properties.containsKey(CASE_TIME_KEY)) {
+                mCaseTimeMs = Math.max(MIN_TIME_MS,
+                        Double.parseDouble(properties.getProperty(CASE_TIME_KEY)));
+            }
+        } catch (NumberFormatException e) {
+            CLog.w("Ignoring corrupted dEQP batch statistics in %s",
+                    mStatsFile.getAbsolutePath());
+            mGroupStats.clear();
+            mLaunchOverheadMs = DEFAULT_LAUNCH_OVERHEAD_MS;
+            mCaseTimeMs = DEFAULT_CASE_TIME_MS;
+        }
+    }
+
+    /**
+     * Persists the observations, if the directory of the statistics file exists. The counts
+     * observed since the last save are added to those currently in the file, and the timings
+     * observed since replace those in the file.
+     */
+    public void save() {
+        if (mStatsFile == null || !mStatsFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            return;
+        }
+
+        if (mStatsFile.isFile()) {
+            final double launchOverheadMs = mLaunchOverheadMs;
+            final double caseTimeMs = mCaseTimeMs;
+            mGroupStats.clear();
+            load();
+            for (Map.Entry<String, GroupStats> entry : mNewGroupStats.entrySet()) {
+                final GroupStats stats = getOrCreateGroupStats(entry.getKey());
+                stats.cases += entry.getValue().cases;
+                stats.crashes += entry.getValue().crashes;
+            }
+            if (mNewTimings) {
+                mLaunchOverheadMs = launchOverheadMs;
+                mCaseTimeMs = caseTimeMs;
+            }
+        }
+        mNewGroupStats.clear();
+        mNewTimings = false;
+
+        final Properties properties = new Properties();
+        properties.setProperty(LAUNCH_OVERHEAD_KEY, Double.toString(mLaunchOverheadMs));
+        properties.setProperty(CASE_TIME_KEY, Double.toString(mCaseTimeMs));
+        for (Map.Entry<String, GroupStats> entry : mGroupStats.entrySet()) {
+            properties.setProperty(CASES_PREFIX + entry.getKey(),
+                    Long.toString(entry.getValue().cases));
+            properties.setProperty(CRASHES_PREFIX + entry.getKey(),
+                    Long.toString(entry.getValue().crashes));
+        }
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(out, "dEQP batch statistics");
+            AtomicFileUtil.write(mStatsFile, out.toByteArray());
+        } catch (IOException e) {
+            CLog.w("Could not save dEQP batch statistics to %s: %s",
+                    mStatsFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+}
@@ -31,15 +31,16 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -59,7 +60,6 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
     public static final String FEATURE_LANDSCAPE = "android.hardware.screen.landscape";
     public static final String FEATURE_PORTRAIT = "android.hardware.screen.portrait";
 
-    private static final int TESTCASE_BATCH_LIMIT = 1000;
     private static final BatchRunConfiguration DEFAULT_CONFIG =
         new BatchRunConfiguration("rgba8888d24s8", "unspecified", "window");
 
@@ -67,8 +67,9 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
     private final String mPackageName;
     private final String mName;
-    private final Collection<TestIdentifier> mRemainingTests;
+    private final Set<TestIdentifier> mRemainingTests;
     private final Map<TestIdentifier, Set<BatchRunConfiguration>> mTestInstances;
+    private final Map<BatchRunConfiguration, SortedSet<TestIdentifier>> mPendingInstances;
     private final TestInstanceResultListener mInstanceListerner = new TestInstanceResultListener();
     private final Map<TestIdentifier, Integer> mTestInstabilityRatings;
     private IAbi mAbi;
@@ -77,6 +78,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
     private ITestDevice mDevice;
     private Set<String> mDeviceFeatures;
     private Map<String, Boolean> mConfigQuerySupportCache = new HashMap<>();
+    private DeqpBatchSizeController mBatchSizeController = new DeqpBatchSizeController(null);
     private IRunUtil mRunUtil = RunUtil.getDefault();
 
     private IRecovery mDeviceRecovery = new Recovery();
@@ -88,8 +90,9 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             Map<TestIdentifier, List<Map<String,String>>> testInstances) {
         mPackageName = packageName;
         mName = name;
-        mRemainingTests = new LinkedList<>(tests); // avoid modifying arguments
+        mRemainingTests = new LinkedHashSet<>(tests); // avoid modifying arguments
         mTestInstances = parseTestInstances(tests, testInstances);
+        mPendingInstances = indexTestInstances(mRemainingTests, mTestInstances);
         mTestInstabilityRatings = new HashMap<>();
     }
 
@@ -240,6 +243,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         private TestIdentifier mCurrentTestId;
         private boolean mGotTestResult;
         private String mCurrentTestLog;
+        private long mFirstTestBeginTime = -1;
 
         private class PendingResult {
             boolean allInstancesPassed;
@@ -265,6 +269,13 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             return mCurrentTestId;
         }
 
+        /**
+         * Get the time the first test case of the batch began, or -1 if none began yet
+         */
+        public long getFirstTestBeginTime() {
+            return mFirstTestBeginTime;
+        }
+
         /**
          * Forward result to sink
          */
@@ -361,6 +372,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
             result.errorMessages.put(mRunConfig, SKIPPED_INSTANCE_LOG_MESSAGE);
             result.remainingConfigs.remove(mRunConfig);
+            removePendingInstance(testId, mRunConfig);
 
             // Pending result finished, report result
             if (result.remainingConfigs.isEmpty()) {
@@ -380,6 +392,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             result.allInstancesPassed = false;
             result.errorMessages.put(mRunConfig, errorMessage);
             result.remainingConfigs.remove(mRunConfig);
+            removePendingInstance(testId, mRunConfig);
 
             // Pending result finished, report result
             if (result.remainingConfigs.isEmpty()) {
@@ -429,6 +442,9 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
             mCurrentTestLog = "";
             mGotTestResult = false;
+            if (mFirstTestBeginTime < 0) {
+                mFirstTestBeginTime = System.currentTimeMillis();
+            }
 
             if (casePath == null) {
                 CLog.w("Got null case path for test case begin event. Current test ID: %s", mCurrentTestId);
@@ -457,6 +473,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
                     CLog.i("Test %s failed as it ended before receiving result.", mCurrentTestId);
                 }
                 result.remainingConfigs.remove(mRunConfig);
+                removePendingInstance(mCurrentTestId, mRunConfig);
 
                 if (mLogData && mCurrentTestLog != null && mCurrentTestLog.length() > 0) {
                     result.testLogs.put(mRunConfig, mCurrentTestLog);
@@ -528,6 +545,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
                 mPendingResults.get(mCurrentTestId)
                         .errorMessages.put(mRunConfig, "Terminated: " + reason);
                 result.remainingConfigs.remove(mRunConfig);
+                removePendingInstance(mCurrentTestId, mRunConfig);
 
                 // Pending result finished, report result
                 if (result.remainingConfigs.isEmpty()) {
@@ -598,11 +616,13 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
                 CLog.i("Batch ended with test '%s' current", mCurrentTestId);
                 if (mPendingResults.get(mCurrentTestId) != null) {
                     mPendingResults.get(mCurrentTestId).remainingConfigs.add(mRunConfig);
+                    addPendingInstance(mCurrentTestId, mRunConfig);
                 } else {
                     CLog.w("Got unexpected internal state of %s", mCurrentTestId);
                 }
             }
             mCurrentTestId = null;
+            mFirstTestBeginTime = -1;
         }
     }
 
@@ -1079,6 +1099,60 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         return instances;
     }
 
+    /**
+     * Index test instances by BatchRunConfiguration. Each configuration maps to the tests with
+     * an instance in that configuration, in the order the tests were given.
+     */
+    private static Map<BatchRunConfiguration, SortedSet<TestIdentifier>> indexTestInstances(
+            Collection<TestIdentifier> tests,
+            Map<TestIdentifier, Set<BatchRunConfiguration>> testInstances) {
+        final Map<TestIdentifier, Integer> testOrder = new HashMap<>();
+        for (TestIdentifier test : tests) {
+            testOrder.put(test, testOrder.size());
+        }
+        final Comparator<TestIdentifier> inTestOrder = new Comparator<TestIdentifier>() {
+            @Override
+            public int compare(TestIdentifier test1, TestIdentifier test2) {
+                return Integer.compare(testOrder.get(test1), testOrder.get(test2));
+            }
+        };
+
+        final Map<BatchRunConfiguration, SortedSet<TestIdentifier>> instances =
+                new LinkedHashMap<>();
+        for (TestIdentifier test : tests) {
+            for (BatchRunConfiguration config : testInstances.get(test)) {
+                SortedSet<TestIdentifier> configTests = instances.get(config);
+                if (configTests == null) {
+                    configTests = new TreeSet<>(inTestOrder);
+                    instances.put(config, configTests);
+                }
+                configTests.add(test);
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Mark test instance as executed in the pending instance index.
+     */
+    private void removePendingInstance(TestIdentifier testId, BatchRunConfiguration config) {
+        final SortedSet<TestIdentifier> configTests = mPendingInstances.get(config);
+        if (configTests != null) {
+            configTests.remove(testId);
+        }
+    }
+
+    /**
+     * Mark test instance as not yet executed in the pending instance index.
+     */
+    private void addPendingInstance(TestIdentifier testId, BatchRunConfiguration config) {
+        final SortedSet<TestIdentifier> configTests = mPendingInstances.get(config);
+        if (configTests != null && mRemainingTests.contains(testId)
+                && mTestInstances.get(testId).contains(config)) {
+            configTests.add(testId);
+        }
+    }
+
     private static BatchRunConfiguration parseRunConfig(Map<String,String> instanceArguments) {
         final String glConfig;
         final String rotation;
@@ -1131,69 +1205,71 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
     }
 
     /**
-     * Generates tescase trie from dEQP testcase paths. Used to define which testcases to execute.
+     * dEQP testcase trie. Used to define which testcases to execute.
      */
-    private static String generateTestCaseTrieFromPaths(Collection<String> tests) {
-        String result = "{";
-        boolean first = true;
-
-        // Add testcases to results
-        for (Iterator<String> iter = tests.iterator(); iter.hasNext();) {
-            String test = iter.next();
-            String[] components = test.split("\\.");
-
-            if (components.length == 1) {
-                if (!first) {
-                    result = result + ",";
-                }
-                first = false;
-
-                result += components[0];
-                iter.remove();
+    private static class TestCaseTrie {
+        private final List<String> mTestCases = new ArrayList<>();
+        private final Map<String, TestCaseTrie> mTestGroups = new LinkedHashMap<>();
+
+        private TestCaseTrie getOrCreateTestGroup(String name) {
+            TestCaseTrie testGroup = mTestGroups.get(name);
+            if (testGroup == null) {
+                testGroup = new TestCaseTrie();
+                mTestGroups.put(name, testGroup);
             }
+            return testGroup;
         }
 
-        if (!tests.isEmpty()) {
-            HashMap<String, ArrayList<String> > testGroups = new HashMap<>();
-
-            // Collect all sub testgroups
-            for (String test : tests) {
-                String[] components = test.split("\\.");
-                ArrayList<String> testGroup = testGroups.get(components[0]);
-
-                if (testGroup == null) {
-                    testGroup = new ArrayList<String>();
-                    testGroups.put(components[0], testGroup);
+        /**
+         * Appends the trie in the dEQP case list format, testcases first, then test groups.
+         */
+        private void appendTo(StringBuilder builder) {
+            builder.append('{');
+            boolean first = true;
+            for (String testCase : mTestCases) {
+                if (!first) {
+                    builder.append(',');
                 }
-
-                testGroup.add(test.substring(components[0].length()+1));
+                first = false;
+                builder.append(testCase);
             }
-
-            for (String testGroup : testGroups.keySet()) {
+            for (Map.Entry<String, TestCaseTrie> testGroup : mTestGroups.entrySet()) {
                 if (!first) {
-                    result = result + ",";
+                    builder.append(',');
                 }
-
                 first = false;
-                result = result + testGroup
-                        + generateTestCaseTrieFromPaths(testGroups.get(testGroup));
+                builder.append(testGroup.getKey());
+                testGroup.getValue().appendTo(builder);
             }
+            builder.append('}');
         }
-
-        return result + "}";
     }
 
     /**
      * Generates testcase trie from TestIdentifiers.
+     *
+     * Each test class path is split only once, so the trie is generated in time linear to the
+     * number of tests.
      */
     private static String generateTestCaseTrie(Collection<TestIdentifier> tests) {
-        ArrayList<String> testPaths = new ArrayList<String>();
+        final TestCaseTrie root = new TestCaseTrie();
+        final Map<String, TestCaseTrie> testClassGroups = new HashMap<>();
 
         for (TestIdentifier test : tests) {
-            testPaths.add(test.getClassName() + "." + test.getTestName());
+            TestCaseTrie testClassGroup = testClassGroups.get(test.getClassName());
+            if (testClassGroup == null) {
+                testClassGroup = root;
+                for (String component : test.getClassName().split("\\.")) {
+                    testClassGroup = testClassGroup.getOrCreateTestGroup(component);
+                }
+                testClassGroups.put(test.getClassName(), testClassGroup);
+            }
+            testClassGroup.mTestCases.add(test.getTestName());
         }
 
-        return generateTestCaseTrieFromPaths(testPaths);
+        final StringBuilder builder = new StringBuilder();
+        root.appendTo(builder);
+        return builder.toString();
     }
 
     private static class TestBatch {
@@ -1201,8 +1277,33 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         public List<TestIdentifier> tests;
     }
 
+    /**
+     * Creates a TestBatch from the remaining tests or null if not tests remaining.
+     *
+     * The leading test is the first remaining test, and compatible instances are looked up from
+     * the pending instance index, so the batch is selected in time proportional to its size.
+     */
     private TestBatch selectRunBatch() {
-        return selectRunBatch(mRemainingTests, null);
+        if (mRemainingTests.isEmpty()) {
+            return null;
+        }
+        final TestIdentifier leadingTest = mRemainingTests.iterator().next();
+        final BatchRunConfiguration leadingTestConfig = getPendingTestRunConfig(leadingTest);
+        return selectRunBatch(leadingTest, leadingTestConfig,
+                mPendingInstances.get(leadingTestConfig));
+    }
+
+    /**
+     * Returns the first run configuration the test has a pending instance for.
+     */
+    private BatchRunConfiguration getPendingTestRunConfig(TestIdentifier test) {
+        for (BatchRunConfiguration runConfig : getTestRunConfigs(test)) {
+            if (mInstanceListerner.isPendingTestInstance(test, runConfig)) {
+                return runConfig;
+            }
+        }
+        // test pending <=> test has a pending config
+        throw new AssertionError("search postcondition failed");
     }
 
     /**
@@ -1235,46 +1336,49 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             return null;
         }
 
-        BatchRunConfiguration leadingTestConfig = null;
-        if (requiredConfig != null) {
-            leadingTestConfig = requiredConfig;
-        } else {
-            for (BatchRunConfiguration runConfig : getTestRunConfigs(leadingTest)) {
-                if (mInstanceListerner.isPendingTestInstance(leadingTest, runConfig)) {
-                    leadingTestConfig = runConfig;
-                    break;
-                }
-            }
+        if (requiredConfig == null) {
+            requiredConfig = getPendingTestRunConfig(leadingTest);
         }
 
-        // test pending <=> test has a pending config
-        if (leadingTestConfig == null) {
-            throw new AssertionError("search postcondition failed");
+        final List<TestIdentifier> compatibleTests = new ArrayList<>();
+        for (TestIdentifier test : pool) {
+            if (mInstanceListerner.isPendingTestInstance(test, requiredConfig)) {
+                compatibleTests.add(test);
+            }
         }
+        return selectRunBatch(leadingTest, requiredConfig, compatibleTests);
+    }
 
+    /**
+     * Creates a TestBatch of the leading test and tests packed along with it.
+     *
+     *  @param leadingTest Test to be executed first
+     *  @param leadingTestConfig Run configuration of the batch
+     *  @param compatibleTests Tests with a pending instance in leadingTestConfig, in execution
+     *         order
+     */
+    private TestBatch selectRunBatch(TestIdentifier leadingTest,
+            BatchRunConfiguration leadingTestConfig, Collection<TestIdentifier> compatibleTests) {
         final int leadingInstability = getTestInstabilityRating(leadingTest);
+        final int batchSizeLimit = getBatchSizeLimit(leadingTest, leadingInstability);
 
         final TestBatch runBatch = new TestBatch();
         runBatch.config = leadingTestConfig;
         runBatch.tests = new ArrayList<>();
         runBatch.tests.add(leadingTest);
 
-        for (TestIdentifier test : pool) {
+        for (TestIdentifier test : compatibleTests) {
             if (test == leadingTest) {
                 // do not re-select the leading tests
                 continue;
             }
-            if (!mInstanceListerner.isPendingTestInstance(test, leadingTestConfig)) {
-                // select only compatible
-                continue;
-            }
             if (getTestInstabilityRating(test) != leadingInstability) {
                 // pack along only cases in the same stability category. Packing more dangerous
                 // tests along jeopardizes the stability of this run. Packing more stable tests
                 // along jeopardizes their stability rating.
                 continue;
             }
-            if (runBatch.tests.size() >= getBatchSizeLimitForInstability(leadingInstability)) {
+            if (runBatch.tests.size() >= batchSizeLimit) {
                 // batch size is limited.
                 break;
             }
@@ -1294,9 +1398,10 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         return numPending;
     }
 
-    private int getBatchSizeLimitForInstability(int batchInstabilityRating) {
-        // reduce group size exponentially down to one
-        return Math.max(1, TESTCASE_BATCH_LIMIT / (1 << batchInstabilityRating));
+    private int getBatchSizeLimit(TestIdentifier leadingTest, int batchInstabilityRating) {
+        // limit learned from the test group, reduced exponentially down to one for unstable tests
+        return Math.max(1, mBatchSizeController.getBatchSizeLimit(leadingTest)
+                / (1 << batchInstabilityRating));
     }
 
     private int getTestInstabilityRating(TestIdentifier testId) {
@@ -1319,14 +1424,20 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
      * Executes all tests on the device.
      */
     private void runTests() throws DeviceNotAvailableException, CapabilityQueryFailureException {
-        for (;;) {
-            TestBatch batch = selectRunBatch();
+        mBatchSizeController = new DeqpBatchSizeController(mCtsBuild.getDeqpBatchStatsFile());
+        try {
+            for (;;) {
+                TestBatch batch = selectRunBatch();
 
-            if (batch == null) {
-                break;
-            }
+                if (batch == null) {
+                    break;
+                }
 
-            runTestRunBatch(batch);
+                runTestRunBatch(batch);
+            }
+        } finally {
+            // keep what was learned even if the run did not finish
+            mBatchSizeController.save();
         }
     }
 
@@ -1508,6 +1619,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         final int numRemainingInstancesBefore = getNumRemainingInstances();
         final InstrumentationParser parser = new InstrumentationParser(mInstanceListerner);
         Throwable interruptingError = null;
+        final long launchTime = System.currentTimeMillis();
 
         try {
             CLog.d("Running command '%s'", command);
@@ -1518,6 +1630,8 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             interruptingError = ex;
         }
 
+        recordBatchRun(batch, launchTime);
+
         final boolean progressedSinceLastCall = mInstanceListerner.getCurrentTestId() != null ||
                 getNumRemainingInstances() < numRemainingInstancesBefore;
 
@@ -1608,6 +1722,24 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
         mInstanceListerner.endBatch();
     }
 
+    /**
+     * Feeds the outcome of a batch run to the batch size controller.
+     */
+    private void recordBatchRun(TestBatch batch, long launchTime) {
+        final TestIdentifier crashedTest = mInstanceListerner.getCurrentTestId();
+        final List<TestIdentifier> executedTests = new ArrayList<>();
+        for (TestIdentifier test : batch.tests) {
+            if (!test.equals(crashedTest) &&
+                    !mInstanceListerner.isPendingTestInstance(test, batch.config)) {
+                executedTests.add(test);
+            }
+        }
+        final long firstTestBeginTime = mInstanceListerner.getFirstTestBeginTime();
+        final long launchOverhead = (firstTestBeginTime < 0) ? -1 : firstTestBeginTime - launchTime;
+        mBatchSizeController.recordBatchRun(executedTests, crashedTest, launchOverhead,
+                System.currentTimeMillis() - launchTime);
+    }
+
     private static String getRunConfigDisplayCmdLine(BatchRunConfiguration runConfig) {
         final StringBuilder deqpCmdLine = new StringBuilder();
         if (!runConfig.getGlConfig().isEmpty()) {
@@ -1633,15 +1765,8 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
 
     private int getNumRemainingInstances() {
         int retVal = 0;
-        for (TestIdentifier testId : mRemainingTests) {
-            // If case is in current working set, sum only not yet executed instances.
-            // If case is not in current working set, sum all instances (since they are not yet
-            // executed).
-            if (mInstanceListerner.mPendingResults.containsKey(testId)) {
-                retVal += mInstanceListerner.mPendingResults.get(testId).remainingConfigs.size();
-            } else {
-                retVal += mTestInstances.get(testId).size();
-            }
+        for (SortedSet<TestIdentifier> configTests : mPendingInstances.values()) {
+            retVal += configTests.size();
         }
         return retVal;
     }
@@ -1677,6 +1802,7 @@ public class DeqpTestRunner implements IBuildReceiver, IDeviceTest, IRemoteTest
             listener.testEnded(test, emptyMap);
         }
         mRemainingTests.clear();
+        mPendingInstances.clear();
     }
 
     /**
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.compatibility.common.util.AbiUtils;
+import com.android.cts.tradefed.util.AtomicFileUtil;
+import com.android.tradefed.log.LogUtil.CLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An on-disk cache of the {@link TestPackageDef}s parsed from package xml files.
+ * <p/>
+ * Every invocation and console command listing packages parses all package xml files. The cache
+ * keeps the result of parsing each file, keyed by its path and valid as long as the size and
+ * modification time of the file are unchanged. Entries are kept serialized in memory and only
+ * read back when looked up, so they can be read in parallel.
+ * <p/>
+ * A cache that cannot be loaded is ignored and rebuilt, and only the entries looked up or added
+ * since loading are saved back, which drops those of removed files.
+ */
+class TestPackageCache {
+
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static class Entry {
+        final long mLength;
+        final long mLastModified;
+        final byte[] mDefs;
+
+        Entry(long length, long lastModified, byte[] defs) {
+            mLength = length;
+            mLastModified = lastModified;
+            mDefs = defs;
+        }
+
+        boolean isValidFor(File xmlFile) {
+            return mLength == xmlFile.length() && mLastModified == xmlFile.lastModified();
+        }
+    }
+
+    private final File mCacheFile;
+    private final String mKey;
+    private final Map<String, Entry> mLoadedEntries = new HashMap<>();
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private boolean mChanged = false;
+
+    /**
+     * Creates a cache loaded from and saved to the given file.
+     *
+     * @param cacheFile file of the cache, or null to not persist it.
+     * @param includeKnownFailures whether the cached packages include tests known to fail.
+     */
+    TestPackageCache(File cacheFile, boolean includeKnownFailures) {
+        mCacheFile = cacheFile;
+        // The parsed packages also depend on the ABIs supported by this build.
+        mKey = String.format("%b %s", includeKnownFailures,
+                new TreeSet<>(AbiUtils.getAbisSupportedByCompatibility()));
+        if (mCacheFile != null && mCacheFile.isFile()) {
+            load();
+        }
+    }
+
+    /**
+     * @return the package definitions of the given package xml file, or null if the file is not
+     * in the cache or has changed since.
+     */
+    Set<TestPackageDef> get(File xmlFile) {
+        final String path = xmlFile.getAbsolutePath();
+        final Entry entry;
+        synchronized (this) {
+            entry = mLoadedEntries.get(path);
+            if (entry == null || !entry.isValidFor(xmlFile)) {
+                return null;
+            }
+            mEntries.put(path, entry);
+        }
+
+        try {
+            final DataInputStream in =
+                    new DataInputStream(new ByteArrayInputStream(entry.mDefs));
+            final int count = in.readInt();
+            final Set<TestPackageDef> defs = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                defs.add(TestPackageDef.readFrom(in));
+            }
+            return defs;
+        } catch (IOException e) {
+            CLog.w("Ignoring corrupted cache entry of %s: %s", path, e.getMessage());
+            synchronized (this) {
+                mEntries.remove(path);
+                mChanged = true;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Adds the package definitions parsed from the given package xml file.
+     */
+    void put(File xmlFile, Set<TestPackageDef> defs) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(defs.size());
+            for (TestPackageDef def : defs) {
+                def.writeTo(out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            CLog.w("Could not cache %s: %s", xmlFile.getAbsolutePath(), e.getMessage());
+            return;
+        }
+        final Entry entry = new Entry(xmlFile.length(), xmlFile.lastModified(),
+                bytes.toByteArray());
+        synchronized (this) {
+            mEntries.put(xmlFile.getAbsolutePath(), entry);
+            mChanged = true;
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mCacheFile), BUFFER_SIZE))) {
+            if (in.readInt() != VERSION || !mKey.equals(in.readUTF())) {
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String path = in.readUTF();
+                final long length = in.readLong();
+                final long lastModified = in.readLong();
+                final byte[] defs = new byte[in.readInt()];
+                in.readFully(defs);
+                mLoadedEntries.put(path, new Entry(length, lastModified, defs));
+            }
+        } catch (IOException e) {
+            CLog.w("Could not load test package cache from %s: %s",
+                    mCacheFile.getAbsolutePath(), e.getMessage());
+            mLoadedEntries.clear();
+        }
+    }
+
+    /**
+     * Persists the cache if it changed, and if the directory of the cache file exists.
+     */
+    synchronized void save() {
+        if (mCacheFile == null || !mCacheFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            return;
+        }
+        if (!mChanged && mEntries.size() == mLoadedEntries.size()) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeUTF(mKey);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().mLength);
+                out.writeLong(entry.getValue().mLastModified);
+                out.writeInt(entry.getValue().mDefs.length);
+                out.write(entry.getValue().mDefs);
+            }
+            // Concurrent invocations never read a partial cache.
+            AtomicFileUtil.write(mCacheFile, bytes.toByteArray());
+        } catch (IOException e) {
+            CLog.w("Could not save test package cache to %s: %s",
+                    mCacheFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+}
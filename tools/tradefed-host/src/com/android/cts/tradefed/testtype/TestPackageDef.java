@@ -26,6 +26,8 @@ import com.android.tradefed.testtype.InstrumentationTest;
 import com.android.tradefed.util.StreamUtil;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -35,6 +37,7 @@ import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -56,6 +59,8 @@ class TestPackageDef implements ITestPackageDef {
     public static final String JUNIT_DEVICE_TEST = "jUnitDeviceTest";
     public static final String TESTNG_DEVICE_TEST = "testNGDeviceTest";
 
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
     private String mAppPackageName = null;
     private String mAppNameSpace = null;
     private String mName = null;
@@ -382,6 +387,95 @@ class TestPackageDef implements ITestPackageDef {
         return mTestInstanceArguments;
     }
 
+    /**
+     * Writes the data parsed from the package xml to the given stream, to be read back by
+     * {@link #readFrom(DataInputStream)}. Dynamic options are not written.
+     * <p/>
+     * Exposed for {@link TestPackageCache}.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        writeString(out, mAppPackageName);
+        writeString(out, mAppNameSpace);
+        writeString(out, mName);
+        writeString(out, mRunner);
+        writeString(out, mTestType);
+        writeString(out, mJarPath);
+        writeString(out, mRunTimeArgs);
+        writeString(out, mTestPackageName);
+        writeString(out, mTargetBinaryName);
+        writeString(out, mTargetNameSpace);
+        writeString(out, mAbi.getName());
+        writeString(out, mAbi.getBitness());
+        out.writeInt(mTimeoutInMins);
+        out.writeInt(mTests.size());
+        for (TestIdentifier test : mTests) {
+            writeString(out, test.getClassName());
+            writeString(out, test.getTestName());
+            List<Map<String, String>> instances = mTestInstanceArguments.get(test);
+            out.writeInt(instances.size());
+            for (Map<String, String> instanceArguments : instances) {
+                out.writeInt(instanceArguments.size());
+                for (Map.Entry<String, String> argument : instanceArguments.entrySet()) {
+                    writeString(out, argument.getKey());
+                    writeString(out, argument.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a package definition written by {@link #writeTo(DataOutputStream)}.
+     * <p/>
+     * Exposed for {@link TestPackageCache}.
+     */
+    static TestPackageDef readFrom(DataInputStream in) throws IOException {
+        TestPackageDef def = new TestPackageDef();
+        def.mAppPackageName = readString(in);
+        def.mAppNameSpace = readString(in);
+        def.mName = readString(in);
+        def.mRunner = readString(in);
+        def.mTestType = readString(in);
+        def.mJarPath = readString(in);
+        def.mRunTimeArgs = readString(in);
+        def.mTestPackageName = readString(in);
+        def.mTargetBinaryName = readString(in);
+        def.mTargetNameSpace = readString(in);
+        final String abiName = readString(in);
+        def.mAbi = new Abi(abiName, readString(in));
+        def.mTimeoutInMins = in.readInt();
+        final int testCount = in.readInt();
+        for (int i = 0; i < testCount; i++) {
+            final String className = readString(in);
+            final TestIdentifier test = new TestIdentifier(className, readString(in));
+            def.mTests.add(test);
+            def.mTestClasses.add(className);
+            final List<Map<String, String>> instances = new LinkedList<Map<String, String>>();
+            final int instanceCount = in.readInt();
+            for (int j = 0; j < instanceCount; j++) {
+                final Map<String, String> instanceArguments = new HashMap<String, String>();
+                final int argumentCount = in.readInt();
+                for (int k = 0; k < argumentCount; k++) {
+                    final String key = readString(in);
+                    instanceArguments.put(key, readString(in));
+                }
+                instances.add(instanceArguments);
+            }
+            def.mTestInstanceArguments.put(test, instances);
+        }
+        return def;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -400,28 +494,34 @@ class TestPackageDef implements ITestPackageDef {
      * @return a hex {@link String} of the digest
      */
     String generateDigest(File fileDir, String fileName) {
-        final String algorithm = "SHA-1";
         InputStream fileStream = null;
-        DigestInputStream d = null;
         try {
             fileStream = getFileStream(fileDir, fileName);
-            MessageDigest md = MessageDigest.getInstance(algorithm);
-            d = new DigestInputStream(fileStream, md);
-            byte[] buffer = new byte[8196];
-            while (d.read(buffer) != -1) {
-            }
-            return toHexString(md.digest());
+            return generateDigest(fileStream);
         } catch (NoSuchAlgorithmException e) {
-            return algorithm + " not found";
+            return DIGEST_ALGORITHM + " not found";
         } catch (IOException e) {
             CLog.e(e);
         } finally {
-            StreamUtil.close(d);
             StreamUtil.close(fileStream);
         }
         return "failed to generate digest";
     }
 
+    /**
+     * Generate a sha1sum digest for the content of a stream, read to its end.
+     *
+     * @return a hex {@link String} of the digest
+     */
+    static String generateDigest(InputStream stream) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        DigestInputStream d = new DigestInputStream(stream, md);
+        byte[] buffer = new byte[8196];
+        while (d.read(buffer) != -1) {
+        }
+        return toHexString(md.digest());
+    }
+
     /**
      * Retrieve an input stream for given file
      * <p/>
@@ -439,7 +539,7 @@ class TestPackageDef implements ITestPackageDef {
      * @param arr The array to convert.
      * @return The hex encoded string.
      */
-    private String toHexString(byte[] arr) {
+    private static String toHexString(byte[] arr) {
         StringBuilder buf = new StringBuilder(arr.length * 2);
         for (byte b : arr) {
             buf.append(String.format("%02x", b & 0xFF));
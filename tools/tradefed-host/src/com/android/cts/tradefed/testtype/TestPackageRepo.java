@@ -20,6 +20,7 @@ import com.android.ddmlib.Log;
 import com.android.tradefed.config.ConfigurationException;
 import com.android.tradefed.config.ConfigurationFactory;
 import com.android.tradefed.config.IConfiguration;
+import com.android.tradefed.config.IConfigurationFactory;
 import com.android.tradefed.util.xml.AbstractXmlParser.ParseException;
 
 import java.io.BufferedInputStream;
@@ -35,9 +36,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Retrieves CTS test package definitions from the repository.
+ * <p/>
+ * Package definitions are loaded on a thread pool, and optionally cached on disk in a
+ * {@link TestPackageCache} so that unchanged package xml files are not parsed again.
  */
 public class TestPackageRepo implements ITestPackageRepo {
 
@@ -55,18 +64,64 @@ public class TestPackageRepo implements ITestPackageRepo {
      * @param includeKnownFailures Whether to run tests which are known to fail.
      */
     public TestPackageRepo(File testCaseDir, boolean includeKnownFailures) {
+        this(testCaseDir, includeKnownFailures, null);
+    }
+
+    /**
+     * Creates a {@link TestPackageRepo}, initialized from provided repo files
+     *
+     * @param testCaseDir directory containing all test case definition xml and build files
+     * ABIs supported by the device under test.
+     * @param includeKnownFailures Whether to run tests which are known to fail.
+     * @param cacheFile file caching the parsed test case definitions, or null to not cache them.
+     */
+    public TestPackageRepo(File testCaseDir, boolean includeKnownFailures, File cacheFile) {
         mTestMap = new HashMap<>();
         mIncludeKnownFailures = includeKnownFailures;
-        parse(testCaseDir);
+        TestPackageCache cache = new TestPackageCache(cacheFile, includeKnownFailures);
+        parse(testCaseDir, cache);
+        cache.save();
     }
 
     /**
-     * Builds mTestMap based on directory contents
+     * Builds mTestMap based on directory contents, parsing the files in parallel
      */
-    private void parse(File dir) {
+    private void parse(File dir, final TestPackageCache cache) {
         File[] xmlFiles = dir.listFiles(new XmlFilter());
-        for (File xmlFile : xmlFiles) {
-            parseModuleTestConfigs(xmlFile);
+        int threads = Math.max(1,
+                Math.min(xmlFiles.length, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Set<TestPackageDef>>> futures = new ArrayList<>(xmlFiles.length);
+            for (final File xmlFile : xmlFiles) {
+                futures.add(executor.submit(new Callable<Set<TestPackageDef>>() {
+                    @Override
+                    public Set<TestPackageDef> call() {
+                        return parseModuleTestConfigs(xmlFile, cache);
+                    }
+                }));
+            }
+            // merge in directory order, so a package defined twice resolves as before
+            for (Future<Set<TestPackageDef>> future : futures) {
+                for (TestPackageDef def : future.get()) {
+                    String name = def.getAppPackageName();
+                    String abi = def.getAbi().getName();
+                    if (!mTestMap.containsKey(abi)) {
+                        mTestMap.put(abi, new HashMap<String, TestPackageDef>());
+                    }
+                    mTestMap.get(abi).put(name, def);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted loading test packages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -90,49 +145,56 @@ public class TestPackageRepo implements ITestPackageRepo {
     }
 
     /**
-     * Processes test module definition XML file, and stores parsed data structure in class member
-     * variable. Parsed config objects will be associated with each applicable ABI type so multiple
+     * Processes test module definition XML file, and returns the parsed data structure. Parsed
+     * config objects will be associated with each applicable ABI type so multiple
      * {@link TestPackageDef}s will be generated accordingly. In addition, based on
      * &lt;module name&gt;.config file naming convention, this method also looks for the optional
      * module test config, and attaches defined configuration objects to the {@link TestPackageDef}
      * representing the module accordingly.
+     * <p/>
+     * Called concurrently for different files.
      * @param xmlFile the module definition XML
+     * @param cache the cache of parsed module definition XMLs
+     * @return the {@link TestPackageDef}s of the module, empty if the XML could not be parsed
      */
-    private void parseModuleTestConfigs(File xmlFile)  {
-        TestPackageXmlParser parser = new TestPackageXmlParser(mIncludeKnownFailures);
+    private Set<TestPackageDef> parseModuleTestConfigs(File xmlFile, TestPackageCache cache) {
         try {
-            parser.parse(createStreamFromFile(xmlFile));
+            Set<TestPackageDef> defs = cache.get(xmlFile);
+            if (defs == null) {
+                TestPackageXmlParser parser = new TestPackageXmlParser(mIncludeKnownFailures);
+                parser.parse(createStreamFromFile(xmlFile));
+                defs = parser.getTestPackageDefs();
+                cache.put(xmlFile, defs);
+            }
             // based on test module XML file path, and the <module name>.config naming convention,
             // infers the module test config file, and parses it
             File preparer = getPreparerDefForPackage(xmlFile);
             IConfiguration config = null;
             if (preparer != null) {
                 try {
-                    // invokes parser to process the test module config file
-                    config = ConfigurationFactory.getInstance().createConfigurationFromArgs(
-                            new String[]{preparer.getAbsolutePath()});
+                    // invokes parser to process the test module config file, one at a time as
+                    // the factory is shared
+                    IConfigurationFactory factory = ConfigurationFactory.getInstance();
+                    synchronized (factory) {
+                        config = factory.createConfigurationFromArgs(
+                                new String[]{preparer.getAbsolutePath()});
+                    }
                 } catch (ConfigurationException e) {
                     throw new RuntimeException(
                             String.format("error parsing config file: %s", xmlFile.getName()), e);
                 }
             }
-            Set<TestPackageDef> defs = parser.getTestPackageDefs();
             if (defs.isEmpty()) {
                 Log.w(LOG_TAG, String.format("Could not find test package info in xml file %s",
                         xmlFile.getAbsolutePath()));
             }
             // loops over multiple package defs defined for each ABI type
-            for (TestPackageDef def : defs) {
-                String name = def.getAppPackageName();
-                String abi = def.getAbi().getName();
-                if (config != null) {
+            if (config != null) {
+                for (TestPackageDef def : defs) {
                     def.setPackagePreparers(config.getTargetPreparers());
                 }
-                if (!mTestMap.containsKey(abi)) {
-                    mTestMap.put(abi, new HashMap<String, TestPackageDef>());
-                }
-                mTestMap.get(abi).put(name, def);
             }
+            return defs;
         } catch (FileNotFoundException e) {
             Log.e(LOG_TAG, String.format("Could not find test case xml file %s",
                     xmlFile.getAbsolutePath()));
@@ -142,6 +204,7 @@ public class TestPackageRepo implements ITestPackageRepo {
                     xmlFile.getAbsolutePath()));
             Log.e(LOG_TAG, e);
         }
+        return Collections.emptySet();
     }
 
     /**
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.tradefed.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files shared by concurrent invocations, so that they are never seen partially written.
+ */
+public class AtomicFileUtil {
+
+    private AtomicFileUtil() {}
+
+    /**
+     * Replaces the content of a file by writing a temporary file next to it, and renaming it over
+     * the file. Readers, including other processes, see either the old or the new content.
+     *
+     * @param file the file to write, whose directory must exist.
+     * @param content the new content of the file.
+     */
+    public static void write(File file, byte[] content) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                out.write(content);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Only left if writing or renaming failed.
+            tempFile.delete();
+        }
+    }
+}
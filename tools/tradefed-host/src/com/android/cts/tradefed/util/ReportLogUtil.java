@@ -16,6 +16,7 @@
 
 package com.android.cts.tradefed.util;
 
+import com.android.compatibility.common.util.ReportLogHostInfoStore;
 import com.android.cts.tradefed.result.CtsXmlResultReporter;
 import com.android.tradefed.build.IBuildInfo;
 import com.android.tradefed.device.ITestDevice;
@@ -106,6 +107,7 @@ public class ReportLogUtil{
             }
             FileUtil.recursiveCopy(hostDir, destDir);
             FileUtil.recursiveDelete(hostDir);
+            ReportLogHostInfoStore.mergeJsonLines(destDir);
         } catch (Exception e) {
             CLog.e("Caught exception during pull.");
             CLog.e(e);
@@ -23,11 +23,14 @@ import com.android.cts.tradefed.result.TestSummaryXmlTest;
 import com.android.cts.tradefed.result.TestTest;
 import com.android.cts.tradefed.result.TestLogTest;
 import com.android.cts.tradefed.testtype.Abi;
+import com.android.cts.tradefed.testtype.ApkInstallerTest;
 import com.android.cts.tradefed.testtype.CtsTestTest;
+import com.android.cts.tradefed.testtype.DeqpBatchSizeControllerTest;
 import com.android.cts.tradefed.testtype.DeqpTestRunnerTest;
 import com.android.cts.tradefed.testtype.GeeTestTest;
 import com.android.cts.tradefed.testtype.JarHostTestTest;
 import com.android.cts.tradefed.testtype.TestFilterTest;
+import com.android.cts.tradefed.testtype.TestPackageCacheTest;
 import com.android.cts.tradefed.testtype.TestPackageDefTest;
 import com.android.cts.tradefed.testtype.TestPackageXmlParserTest;
 import com.android.cts.tradefed.testtype.TestPlanTest;
@@ -60,11 +63,14 @@ public class UnitTests extends TestSuite {
         addTestSuite(TestLogTest.class);
 
         // testtype package
+        addTestSuite(ApkInstallerTest.class);
         addTestSuite(CtsTestTest.class);
+        addTestSuite(DeqpBatchSizeControllerTest.class);
         addTestSuite(DeqpTestRunnerTest.class);
         addTestSuite(GeeTestTest.class);
         addTestSuite(JarHostTestTest.class);
         addTestSuite(TestFilterTest.class);
+        addTestSuite(TestPackageCacheTest.class);
         addTestSuite(TestPackageDefTest.class);
         addTestSuite(TestPackageXmlParserTest.class);
         addTestSuite(TestPlanTest.class);
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.compatibility.common.util.AbiUtils;
+import com.android.cts.tradefed.UnitTests;
+import com.android.tradefed.device.ITestDevice;
+import com.android.tradefed.util.FileUtil;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link ApkInstaller}.
+ */
+public class ApkInstallerTest extends TestCase {
+
+    private static final String SERIAL = "serial";
+    private static final String PACKAGE = "android.example.cts";
+    private static final String DUMPSYS_COMMAND = "dumpsys package " + PACKAGE;
+    private static final String DUMPSYS =
+            "Packages:\n" +
+            "  Package [android.example.cts] (3b1f2a0):\n" +
+            "    userId=10072\n" +
+            "    primaryCpuAbi=armeabi-v7a\n" +
+            "    versionCode=23 targetSdk=23\n" +
+            "    lastUpdateTime=2016-05-01 12:00:00\n" +
+            "    signatures=PackageSignatures{4f5e6d1 [8a1b2c3d]}\n";
+
+    private File mTempDir;
+    private File mCacheFile;
+    private File mApkFile;
+    private ITestDevice mMockDevice;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTempDir = FileUtil.createTempDir("apk-installer");
+        mCacheFile = new File(mTempDir, "apk_install_cache.properties");
+        mApkFile = new File(mTempDir, "CtsExampleTestCases.apk");
+        writeApk("apk content");
+        mMockDevice = EasyMock.createMock(ITestDevice.class);
+        EasyMock.expect(mMockDevice.getSerialNumber()).andStubReturn(SERIAL);
+        EasyMock.expect(mMockDevice.executeShellCommand(DUMPSYS_COMMAND)).andStubReturn(DUMPSYS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mTempDir);
+        super.tearDown();
+    }
+
+    private void writeApk(String content) throws IOException {
+        try (FileWriter writer = new FileWriter(mApkFile)) {
+            writer.write(content);
+        }
+    }
+
+    private void expectInstall() throws Exception {
+        EasyMock.expect(mMockDevice.installPackage(EasyMock.eq(mApkFile), EasyMock.eq(true),
+                EasyMock.aryEq(new String[] {AbiUtils.createAbiFlag(UnitTests.ABI.getName())})))
+                .andReturn(null);
+    }
+
+    private void install(ApkInstaller installer) throws Exception {
+        assertTrue(installer.install(mMockDevice, Collections.singletonMap(mApkFile, PACKAGE),
+                UnitTests.ABI.getName()).isEmpty());
+    }
+
+    /**
+     * Test that the state of an installed package ignores the identity of its signatures.
+     */
+    public void testParseInstalledState() {
+        String state = ApkInstaller.parseInstalledState(PACKAGE, DUMPSYS);
+        assertNotNull(state);
+        assertEquals(state, ApkInstaller.parseInstalledState(PACKAGE,
+                DUMPSYS.replace("4f5e6d1", "1234567")));
+        assertFalse(state.equals(ApkInstaller.parseInstalledState(PACKAGE,
+                DUMPSYS.replace("versionCode=23", "versionCode=24"))));
+        assertNull(ApkInstaller.parseInstalledState("android.other.cts", DUMPSYS));
+        assertNull(ApkInstaller.parseInstalledState(PACKAGE,
+                DUMPSYS.replace("lastUpdateTime", "updateTime")));
+    }
+
+    /**
+     * Test that an apk already installed by an earlier run is not installed again.
+     */
+    public void testInstall_cached() throws Exception {
+        expectInstall();
+        EasyMock.replay(mMockDevice);
+        ApkInstaller installer = new ApkInstaller(mCacheFile, SERIAL);
+        install(installer);
+        installer.save();
+        install(new ApkInstaller(mCacheFile, SERIAL));
+        EasyMock.verify(mMockDevice);
+    }
+
+    /**
+     * Test that an apk is installed again if its content changed, or on another device.
+     */
+    public void testInstall_changed() throws Exception {
+        expectInstall();
+        EasyMock.expectLastCall().times(3);
+        EasyMock.replay(mMockDevice);
+        ApkInstaller installer = new ApkInstaller(mCacheFile, SERIAL);
+        install(installer);
+        installer.save();
+        install(new ApkInstaller(mCacheFile, "other"));
+        writeApk("new apk content");
+        install(new ApkInstaller(mCacheFile, SERIAL));
+        EasyMock.verify(mMockDevice);
+    }
+
+    /**
+     * Test that apks are always installed without a cache file.
+     */
+    public void testInstall_notCaching() throws Exception {
+        expectInstall();
+        EasyMock.expectLastCall().times(2);
+        EasyMock.replay(mMockDevice);
+        ApkInstaller installer = new ApkInstaller();
+        assertFalse(installer.isCaching());
+        install(installer);
+        install(installer);
+        EasyMock.verify(mMockDevice);
+    }
+
+    /**
+     * Test that several apks are installed in order, and that install errors are reported for
+     * the right apks.
+     */
+    public void testInstall_several() throws Exception {
+        final Map<File, String> apks = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            File apkFile = new File(mTempDir, "CtsExample" + i + "TestCases.apk");
+            try (FileWriter writer = new FileWriter(apkFile)) {
+                writer.write("apk content " + i);
+            }
+            apks.put(apkFile, PACKAGE + i);
+        }
+        final File failingApk = new File(mTempDir, "CtsExample2TestCases.apk");
+        final List<File> installed = new ArrayList<>();
+        ITestDevice device = (ITestDevice) Proxy.newProxyInstance(
+                ITestDevice.class.getClassLoader(), new Class<?>[] {ITestDevice.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getSerialNumber".equals(method.getName())) {
+                            return SERIAL;
+                        } else if ("executeShellCommand".equals(method.getName())) {
+                            String packageName = ((String) args[0]).substring(
+                                    "dumpsys package ".length());
+                            return DUMPSYS.replace(PACKAGE, packageName);
+                        } else if ("installPackage".equals(method.getName())) {
+                            installed.add((File) args[0]);
+                            return failingApk.equals(args[0]) ? "install failed" : null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ApkInstaller installer = new ApkInstaller(mCacheFile, SERIAL);
+        Map<File, String> errors = installer.install(device, apks, UnitTests.ABI.getName());
+        assertEquals(Collections.singletonMap(failingApk, "install failed"), errors);
+        assertEquals(new ArrayList<>(apks.keySet()), installed);
+        installer.save();
+
+        installed.clear();
+        errors = new ApkInstaller(mCacheFile, SERIAL).install(device, apks,
+                UnitTests.ABI.getName());
+        assertEquals(Collections.singletonMap(failingApk, "install failed"), errors);
+        assertEquals(Arrays.asList(failingApk), installed);
+    }
+}
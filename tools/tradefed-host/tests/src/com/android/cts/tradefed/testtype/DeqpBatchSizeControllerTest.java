@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.util.FileUtil;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link DeqpBatchSizeController}.
+ */
+public class DeqpBatchSizeControllerTest extends TestCase {
+
+    private static final TestIdentifier STABLE_TEST =
+            new TestIdentifier("dEQP-GLES3.functional.stable.group", "test");
+    private static final TestIdentifier CRASHING_TEST =
+            new TestIdentifier("dEQP-GLES3.functional.crashing.group", "test");
+
+    private static final long LAUNCH_OVERHEAD_MS = 5000;
+    private static final long CASE_TIME_MS = 50;
+
+    private File mTempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTempDir = FileUtil.createTempDir("deqp-batch-stats");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mTempDir);
+        super.tearDown();
+    }
+
+    public void testGetTestGroup() {
+        assertEquals("dEQP-GLES3.functional.stable",
+                DeqpBatchSizeController.getTestGroup(STABLE_TEST));
+        assertEquals("dEQP-GLES3.info",
+                DeqpBatchSizeController.getTestGroup(new TestIdentifier("dEQP-GLES3.info", "x")));
+    }
+
+    public void testDefaultLimit() {
+        DeqpBatchSizeController controller = new DeqpBatchSizeController(null);
+        assertEquals(DeqpBatchSizeController.DEFAULT_BATCH_LIMIT,
+                controller.getBatchSizeLimit(STABLE_TEST));
+    }
+
+    public void testAdaptsToGroups() {
+        DeqpBatchSizeController controller = new DeqpBatchSizeController(null);
+        runStableBatches(controller, 20);
+        runCrashingBatches(controller, 20);
+
+        assertTrue(controller.getBatchSizeLimit(STABLE_TEST)
+                > DeqpBatchSizeController.DEFAULT_BATCH_LIMIT);
+        assertTrue(controller.getBatchSizeLimit(STABLE_TEST)
+                <= DeqpBatchSizeController.MAX_BATCH_LIMIT);
+        assertTrue(controller.getBatchSizeLimit(CRASHING_TEST)
+                < DeqpBatchSizeController.DEFAULT_BATCH_LIMIT);
+        assertTrue(controller.getBatchSizeLimit(CRASHING_TEST) >= 1);
+    }
+
+    public void testPersistence() {
+        File statsFile = new File(mTempDir, "stats.properties");
+        DeqpBatchSizeController controller = new DeqpBatchSizeController(statsFile);
+        runStableBatches(controller, 20);
+        runCrashingBatches(controller, 20);
+        controller.save();
+        assertTrue(statsFile.exists());
+
+        DeqpBatchSizeController loaded = new DeqpBatchSizeController(statsFile);
+        assertEquals(controller.getBatchSizeLimit(STABLE_TEST),
+                loaded.getBatchSizeLimit(STABLE_TEST));
+        assertEquals(controller.getBatchSizeLimit(CRASHING_TEST),
+                loaded.getBatchSizeLimit(CRASHING_TEST));
+    }
+
+    public void testConcurrentSaves() {
+        File statsFile = new File(mTempDir, "stats.properties");
+        DeqpBatchSizeController controller1 = new DeqpBatchSizeController(statsFile);
+        DeqpBatchSizeController controller2 = new DeqpBatchSizeController(statsFile);
+        runStableBatches(controller1, 20);
+        runCrashingBatches(controller1, 10);
+        controller1.save();
+        runCrashingBatches(controller2, 10);
+        controller2.save();
+        controller1.save();
+
+        DeqpBatchSizeController expected = new DeqpBatchSizeController(null);
+        runStableBatches(expected, 20);
+        runCrashingBatches(expected, 20);
+        DeqpBatchSizeController loaded = new DeqpBatchSizeController(statsFile);
+        assertEquals(expected.getBatchSizeLimit(STABLE_TEST),
+                loaded.getBatchSizeLimit(STABLE_TEST));
+        assertEquals(expected.getBatchSizeLimit(CRASHING_TEST),
+                loaded.getBatchSizeLimit(CRASHING_TEST));
+        assertEquals(1, mTempDir.list().length);
+    }
+
+    public void testNoSaveWithoutDirectory() {
+        File statsFile = new File(new File(mTempDir, "missing"), "stats.properties");
+        DeqpBatchSizeController controller = new DeqpBatchSizeController(statsFile);
+        runStableBatches(controller, 1);
+        controller.save();
+        assertFalse(statsFile.exists());
+    }
+
+    private void runStableBatches(DeqpBatchSizeController controller, int numBatches) {
+        List<TestIdentifier> executed = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            executed.add(STABLE_TEST);
+        }
+        for (int i = 0; i < numBatches; i++) {
+            controller.recordBatchRun(executed, null, LAUNCH_OVERHEAD_MS,
+                    LAUNCH_OVERHEAD_MS + executed.size() * CASE_TIME_MS);
+        }
+    }
+
+    private void runCrashingBatches(DeqpBatchSizeController controller, int numBatches) {
+        List<TestIdentifier> executed = Collections.nCopies(10, CRASHING_TEST);
+        for (int i = 0; i < numBatches; i++) {
+            controller.recordBatchRun(executed, CRASHING_TEST, LAUNCH_OVERHEAD_MS,
+                    LAUNCH_OVERHEAD_MS + executed.size() * CASE_TIME_MS);
+        }
+    }
+}
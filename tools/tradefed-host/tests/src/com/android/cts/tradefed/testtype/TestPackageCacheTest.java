@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.cts.tradefed.testtype;
+
+import com.android.ddmlib.testrunner.TestIdentifier;
+import com.android.tradefed.util.FileUtil;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link TestPackageCache}.
+ */
+public class TestPackageCacheTest extends TestCase {
+
+    private static final TestIdentifier TEST =
+            new TestIdentifier("android.example.cts.ExampleTest", "testExample");
+
+    private File mTempDir;
+    private File mCacheFile;
+    private File mXmlFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTempDir = FileUtil.createTempDir("test-package-cache");
+        mCacheFile = new File(mTempDir, "cache.bin");
+        mXmlFile = new File(mTempDir, "CtsExampleTestCases.xml");
+        writeXml("<TestPackage/>");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.recursiveDelete(mTempDir);
+        super.tearDown();
+    }
+
+    private void writeXml(String content) throws IOException {
+        try (FileWriter writer = new FileWriter(mXmlFile)) {
+            writer.write(content);
+        }
+    }
+
+    private static TestPackageDef createPackageDef() {
+        TestPackageDef def = new TestPackageDef();
+        def.setAppPackageName("android.example.cts");
+        def.setName("CtsExampleTestCases");
+        def.setRunner("android.support.test.runner.AndroidJUnitRunner");
+        def.setAbi(new Abi("armeabi-v7a", "32"));
+        def.addTest(TEST, 10);
+        Map<String, String> instanceArguments = new HashMap<>();
+        instanceArguments.put("glconfig", "rgba8888d24s8");
+        def.addTestInstance(TEST, instanceArguments);
+        return def;
+    }
+
+    /**
+     * Test that package definitions are read back from a saved cache.
+     */
+    public void testSaveAndLoad() {
+        TestPackageCache cache = new TestPackageCache(mCacheFile, false);
+        assertNull(cache.get(mXmlFile));
+        cache.put(mXmlFile, Collections.singleton(createPackageDef()));
+        cache.save();
+        assertTrue(mCacheFile.isFile());
+
+        Set<TestPackageDef> defs = new TestPackageCache(mCacheFile, false).get(mXmlFile);
+        assertNotNull(defs);
+        assertEquals(1, defs.size());
+        TestPackageDef def = defs.iterator().next();
+        assertEquals("android.example.cts", def.getAppPackageName());
+        assertEquals("CtsExampleTestCases", def.getName());
+        assertNull(def.getAppNameSpace());
+        assertEquals("armeabi-v7a", def.getAbi().getName());
+        assertEquals("32", def.getAbi().getBitness());
+        assertEquals(Collections.singleton(TEST), def.getTests());
+        assertTrue(def.isKnownTestClass(TEST.getClassName()));
+        assertEquals("rgba8888d24s8",
+                def.getTestInstanceArguments().get(TEST).get(0).get("glconfig"));
+    }
+
+    /**
+     * Test that entries of changed files and of other settings are not used.
+     */
+    public void testInvalidation() throws IOException {
+        TestPackageCache cache = new TestPackageCache(mCacheFile, false);
+        cache.put(mXmlFile, Collections.singleton(createPackageDef()));
+        cache.save();
+
+        assertNull(new TestPackageCache(mCacheFile, true).get(mXmlFile));
+        writeXml("<TestPackage name=\"changed\"/>");
+        assertNull(new TestPackageCache(mCacheFile, false).get(mXmlFile));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dot.junit;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a batch of Main_ classes in one VM, instead of starting one VM per class.
+ * <p>
+ * The batch file has one line per Main_ class: the class name and the class path it is run
+ * with. Each class is loaded by its own class loader over that class path, parented to the boot
+ * class loader, so that classes failing verification in one test, and the static state of
+ * {@link DxAbstractMain}, are never seen by the next one.
+ * <p>
+ * Results are written to stdout, each test's own output enclosed between
+ * <pre>
+ * #DxBatchMain start &lt;index&gt; &lt;class&gt;
+ * #DxBatchMain end &lt;index&gt; &lt;class&gt; PASS|FAIL
+ * </pre>
+ * followed by <code>#DxBatchMain done</code> once all tests ran. A test that crashes the VM
+ * has a start line but no end line; the batch can be resumed after it with the optional index
+ * argument.
+ * <p>
+ * usage: DxBatchMain batch-file [first-index]
+ */
+public class DxBatchMain {
+
+    public static final String MARKER = "#DxBatchMain";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: DxBatchMain batch-file [first-index]");
+            System.exit(1);
+        }
+        List<String[]> tests = readBatch(args[0]);
+        int first = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+
+        // Not referenced directly, so that this class also compiles on the host.
+        Constructor<?> loaderConstructor = Class.forName("dalvik.system.PathClassLoader")
+                .getConstructor(String.class, ClassLoader.class);
+        ClassLoader bootLoader = ClassLoader.getSystemClassLoader().getParent();
+
+        for (int i = first; i < tests.size(); i++) {
+            String className = tests.get(i)[0];
+            String classPath = tests.get(i)[1];
+            System.out.println(MARKER + " start " + i + " " + className);
+            System.out.flush();
+
+            boolean passed = false;
+            try {
+                ClassLoader loader =
+                        (ClassLoader) loaderConstructor.newInstance(classPath, bootLoader);
+                loader.loadClass(className).getMethod("main", String[].class)
+                        .invoke(null, (Object) new String[0]);
+                passed = true;
+            } catch (InvocationTargetException e) {
+                // Same output as an uncaught exception in a VM running the class alone.
+                e.getCause().printStackTrace(System.err);
+            } catch (Throwable t) {
+                t.printStackTrace(System.err);
+            }
+
+            System.err.flush();
+            System.out.println(MARKER + " end " + i + " " + className + " "
+                    + (passed ? "PASS" : "FAIL"));
+            System.out.flush();
+        }
+        System.out.println(MARKER + " done");
+        System.out.flush();
+    }
+
+    private static List<String[]> readBatch(String fileName) throws IOException {
+        List<String[]> tests = new ArrayList<String[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() != 0) {
+                    tests.add(line.split(" ", 2));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util.build;
+
+import com.android.dx.command.dexer.Main;
+
+import dasm.DAsm;
+import dxconvext.ClassFileAssembler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory of build outputs, keyed by the content of the files they were built from.
+ * <p>
+ * The output directories of the suite are deleted before every build, so outputs are kept in
+ * this cache between builds instead, and copied back when the inputs of a step did not change.
+ * Keys also cover the tools building the outputs, so updating dx, dasm, cfassembler or jack
+ * builds everything again. Outputs that were not used by the last successful build are removed
+ * by {@link #prune()}.
+ */
+class BuildCache {
+
+    // Increment when the way steps build their outputs changes.
+    private static final int VERSION = 1;
+
+    private final File dir;
+    private final String toolStamp;
+    private final Set<String> usedKeys = Collections.synchronizedSet(new HashSet<String>());
+
+    BuildCache(File dir, String jack) {
+        this.dir = dir;
+        StringBuilder stamp = new StringBuilder();
+        stamp.append(VERSION);
+        for (Class<?> tool : new Class<?>[] {Main.class, DAsm.class, ClassFileAssembler.class}) {
+            CodeSource source = tool.getProtectionDomain().getCodeSource();
+            if (source != null) {
+                stamp.append(':').append(getStamp(new File(source.getLocation().getPath())));
+            }
+        }
+        if (jack != null) {
+            stamp.append(':').append(getStamp(new File(jack)))
+                    .append(':').append(System.getenv("JACK_VERSION"));
+        }
+        toolStamp = stamp.toString();
+    }
+
+    /**
+     * @return the path, size and modification time of the given file, to detect changes of
+     * files too large to hash for every step.
+     */
+    static String getStamp(File file) {
+        return file.getAbsolutePath() + "@" + file.length() + "@" + file.lastModified();
+    }
+
+    /**
+     * @param recipe what the step does with its inputs, e.g. the class of the step and the
+     *        name of its output
+     * @param inputs the files the output is built from
+     * @return the key of the output of a step
+     */
+    String getKey(String recipe, List<File> inputs) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        update(digest, toolStamp);
+        update(digest, recipe);
+        byte[] buffer = new byte[8192];
+        for (File input : inputs) {
+            update(digest, input.getName());
+            InputStream in = new FileInputStream(input);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+        return key.toString();
+    }
+
+    private static void update(MessageDigest digest, String value)
+            throws UnsupportedEncodingException {
+        digest.update(value.getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Copies the cached output of the given key, if any, to the given file.
+     *
+     * @return true if the output was cached
+     */
+    boolean restore(String key, File output) {
+        usedKeys.add(key);
+        File cached = new File(dir, key);
+        if (!cached.isFile()) {
+            return false;
+        }
+        File outDir = output.getParentFile();
+        if (!outDir.exists() && !outDir.mkdirs()) {
+            return false;
+        }
+        try {
+            BuildStep.copyFile(cached, output);
+            return true;
+        } catch (IOException e) {
+            output.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Adds the given output of a step to the cache.
+     */
+    void store(String key, File output) {
+        usedKeys.add(key);
+        if (!dir.exists() && !dir.mkdirs()) {
+            System.err.println("warning: failed to create build cache dir: "
+                    + dir.getAbsolutePath());
+            return;
+        }
+        // copy to a temporary file first, never to leave a partial output in the cache
+        File tmp = new File(dir, key + ".tmp");
+        try {
+            BuildStep.copyFile(output, tmp);
+            if (!tmp.renameTo(new File(dir, key))) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            System.err.println("warning: failed to cache " + output.getAbsolutePath() + ": "
+                    + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Removes the outputs not used since this cache was created.
+     */
+    void prune() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!usedKeys.contains(file.getName())) {
+                file.delete();
+            }
+        }
+    }
+}
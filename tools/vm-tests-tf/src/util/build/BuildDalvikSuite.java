@@ -19,6 +19,7 @@ package util.build;
 import com.android.dex.util.FileUtils;
 
 import dot.junit.AllTests;
+import dot.junit.DxBatchMain;
 import util.build.BuildStep.BuildFile;
 
 import junit.framework.TestCase;
@@ -28,7 +29,6 @@ import junit.textui.TestRunner;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
@@ -36,13 +36,20 @@ import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.Map.Entry;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
@@ -59,6 +66,10 @@ public class BuildDalvikSuite {
 
     public static final String TARGET_MAIN_FILE = "mains.jar";
 
+    // Extension of the files listing the Main_ classes of a test class, for running them all
+    // in one VM with dot.junit.DxBatchMain.
+    private static final String BATCH_FILE_EXTENSION = ".batch";
+
     public static boolean DEBUG = true;
 
     private static String JAVASRC_FOLDER = "";
@@ -79,9 +90,17 @@ public class BuildDalvikSuite {
 
     private static final String TARGET_JAR_ROOT_PATH = "/data/local/tmp/vm-tests";
 
+    // system property of the directory to cache built dependant test classes in, if any
+    public static final String BUILD_CACHE_PROPERTY = "util.build.cache";
+
+    // threads building steps without jack: dx and dasm only build one step at a time, so a
+    // second thread only overlaps them with the steps that do not use them, e.g. javac and jar
+    private static final int DX_BUILD_THREADS = 2;
+
     private int testClassCnt = 0;
     private int testMethodsCnt = 0;
     private boolean useJack;
+    private BuildCache buildCache;
 
     /*
      * using a linked hashmap to keep the insertion order for iterators.
@@ -93,10 +112,20 @@ public class BuildDalvikSuite {
     private LinkedHashMap<String, List<String>> map = new LinkedHashMap<String,
     List<String>>();
 
-    private class MethodData {
+    private static class MethodData {
         String methodBody, constraint, title;
+        boolean hasJavadoc;
     }
 
+    private static final Pattern METHOD_PATTERN =
+            Pattern.compile("public\\s+void\\s+(\\w+)[^\\{]+\\{");
+    private static final Pattern TITLE_PATTERN = Pattern.compile("@title (.*)", Pattern.DOTALL);
+    private static final Pattern CONSTRAINT_PATTERN = Pattern.compile("@constraint (.*)");
+
+    // test source path to the methods in it, see indexTestMethods()
+    private final Map<String, Map<String, MethodData>> methodIndex =
+            new HashMap<String, Map<String, MethodData>>();
+
     /**
      * @param args
      *            args 0 must be the project root folder (where src, lib etc.
@@ -150,6 +179,11 @@ public class BuildDalvikSuite {
 
     public BuildDalvikSuite(boolean useJack) {
       this.useJack = useJack;
+      String buildCacheDir = System.getProperty(BUILD_CACHE_PROPERTY);
+      if (buildCacheDir != null && buildCacheDir.length() != 0) {
+          buildCache = new BuildCache(new File(buildCacheDir),
+                  useJack ? JackBuildDalvikSuite.JACK : null);
+      }
     }
 
     public void compose() throws IOException {
@@ -238,6 +272,8 @@ public class BuildDalvikSuite {
         "import com.android.tradefed.testtype.DeviceTestCase;\n" +
         "import com.android.tradefed.util.AbiFormatter;\n" +
         "\n" +
+        "import dot.junit.DxBatchRunner;\n" +
+        "\n" +
         "public class " + sourceName + " extends DeviceTestCase implements IAbiReceiver {\n";
     }
 
@@ -260,15 +296,14 @@ public class BuildDalvikSuite {
         return "//Autogenerated code by " + this.getClass().getName() + "; do not edit.\n";
     }
 
-    private void addCTSHostMethod(String pName, String method, MethodData md,
-            Set<String> dependentTestClassNames) {
-        curJunitFileData += "public void " + method + "() throws Exception {\n";
-        final String targetCoreJarPath = String.format("%s/dot/junit/dexcore.jar",
-                TARGET_JAR_ROOT_PATH);
+    private static String getTargetCoreJarPath() {
+        return String.format("%s/dot/junit/dexcore.jar", TARGET_JAR_ROOT_PATH);
+    }
 
+    private static String getTargetClassPath(Set<String> dependentTestClassNames) {
         String mainsJar = String.format("%s/%s", TARGET_JAR_ROOT_PATH, TARGET_MAIN_FILE);
 
-        String cp = String.format("%s:%s", targetCoreJarPath, mainsJar);
+        String cp = String.format("%s:%s", getTargetCoreJarPath(), mainsJar);
         for (String depFqcn : dependentTestClassNames) {
             String sourceName = depFqcn.replaceAll("\\.", "/") + ".jar";
             String targetName= String.format("%s/%s", TARGET_JAR_ROOT_PATH,
@@ -277,13 +312,147 @@ public class BuildDalvikSuite {
             // dot.junit.opcodes.invoke_interface_range.ITest
             // -> dot/junit/opcodes/invoke_interface_range/ITest.jar
         }
+        return cp;
+    }
+
+    private static String getBatchFileName(String pName, String classOnlyName) {
+        return pName.replaceAll("\\.", "/") + "/" + classOnlyName + BATCH_FILE_EXTENSION;
+    }
+
+    private void addCTSHostMethod(String pName, String classOnlyName, String method,
+            MethodData md, Set<String> dependentTestClassNames) {
+        curJunitFileData += "public void " + method + "() throws Exception {\n";
 
         //"dot.junit.opcodes.add_double_2addr.Main_testN2";
         String mainclass = pName + ".Main_" + method;
-        curJunitFileData += getShellExecJavaLine(cp, mainclass);
+        if (!dependentTestClassNames.isEmpty()) {
+            // Only tests with a Main_ class are in the batch, see handleTests().
+            String batchFile = String.format("%s/%s", TARGET_JAR_ROOT_PATH,
+                    getBatchFileName(pName, classOnlyName));
+            curJunitFileData += String.format(
+                    "    if (DxBatchRunner.hasPassed(getDevice(), mAbi, \"%s\", \"%s\")) {\n" +
+                    "        return;\n" +
+                    "    }\n", batchFile, mainclass);
+        }
+        curJunitFileData += getShellExecJavaLine(getTargetClassPath(dependentTestClassNames),
+                mainclass);
         curJunitFileData += "\n}\n\n";
     }
 
+    /**
+     * Writes the host side class running the Main_ classes of a test class in one VM, so that
+     * each generated test method only starts its own VM if it did not pass in the batch.
+     */
+    private void writeHostBatchRunner() {
+        File toWrite = new File(HOSTJUNIT_SRC_OUTPUT_FOLDER + "/dot/junit/DxBatchRunner.java");
+        String cmd = String.format("ANDROID_DATA=%s dalvikvm|#ABI#| -Xmx512M -Xss32K " +
+                "-Djava.io.tmpdir=%s -classpath %s dot.junit.DxBatchMain %%s %%d",
+                TARGET_JAR_ROOT_PATH, TARGET_JAR_ROOT_PATH, getTargetCoreJarPath());
+        String content = getWarningMessage() +
+        "package dot.junit;\n" +
+        "\n" +
+        "import com.android.tradefed.device.CollectingOutputReceiver;\n" +
+        "import com.android.tradefed.device.DeviceNotAvailableException;\n" +
+        "import com.android.tradefed.device.DeviceUnresponsiveException;\n" +
+        "import com.android.tradefed.device.ITestDevice;\n" +
+        "import com.android.tradefed.log.LogUtil.CLog;\n" +
+        "import com.android.tradefed.testtype.IAbi;\n" +
+        "import com.android.tradefed.util.AbiFormatter;\n" +
+        "\n" +
+        "import java.util.HashMap;\n" +
+        "import java.util.HashSet;\n" +
+        "import java.util.Map;\n" +
+        "import java.util.Set;\n" +
+        "import java.util.concurrent.TimeUnit;\n" +
+        "\n" +
+        "/**\n" +
+        " * Runs the Main_ classes listed in a batch file in one VM, with DxBatchMain.\n" +
+        " * <p>\n" +
+        " * Only passing tests are reported from the batch, each only once. Tests failing or\n" +
+        " * crashing the VM in the batch, and tests run again, run in their own VM as before.\n" +
+        " */\n" +
+        "public class DxBatchRunner {\n" +
+        "\n" +
+        "    private static final String MARKER = \"" + DxBatchMain.MARKER + "\";\n" +
+        "\n" +
+        "    // device serial, ABI and batch file to the Main_ classes that passed and were\n" +
+        "    // not reported yet\n" +
+        "    private static final Map<String, Set<String>> sPassed =\n" +
+        "            new HashMap<String, Set<String>>();\n" +
+        "\n" +
+        "    /**\n" +
+        "     * @return true if the given Main_ class passed in its batch, running the batch\n" +
+        "     * first if needed.\n" +
+        "     */\n" +
+        "    public static synchronized boolean hasPassed(ITestDevice device, IAbi abi,\n" +
+        "            String batchFile, String mainClass) throws DeviceNotAvailableException {\n" +
+        "        String key = device.getSerialNumber() + \" \" + abi.getName() + \" \" +\n" +
+        "                batchFile;\n" +
+        "        Set<String> passed = sPassed.get(key);\n" +
+        "        if (passed == null) {\n" +
+        "            passed = runBatch(device, abi, batchFile);\n" +
+        "            sPassed.put(key, passed);\n" +
+        "        }\n" +
+        "        return passed.remove(mainClass);\n" +
+        "    }\n" +
+        "\n" +
+        "    private static Set<String> runBatch(ITestDevice device, IAbi abi,\n" +
+        "            String batchFile) throws DeviceNotAvailableException {\n" +
+        "        Set<String> passed = new HashSet<String>();\n" +
+        "        int first = 0;\n" +
+        "        while (true) {\n" +
+        "            String cmd = AbiFormatter.formatCmdForAbi(String.format(\"" + cmd + "\",\n" +
+        "                    batchFile, first), abi.getBitness());\n" +
+        "            CollectingOutputReceiver receiver = new CollectingOutputReceiver();\n" +
+        "            try {\n" +
+        "                device.executeShellCommand(cmd, receiver, 6, TimeUnit.MINUTES, 0);\n" +
+        "            } catch (DeviceUnresponsiveException e) {\n" +
+        "                // Resume after the test that hung.\n" +
+        "                CLog.w(\"Batch %s timed out: %s\", batchFile, e.getMessage());\n" +
+        "            }\n" +
+        "            int next = parseOutput(receiver.getOutput(), passed);\n" +
+        "            if (next <= first) {\n" +
+        "                // Done, or the VM did not start.\n" +
+        "                return passed;\n" +
+        "            }\n" +
+        "            // The VM crashed in the test before next, resume after it.\n" +
+        "            first = next;\n" +
+        "        }\n" +
+        "    }\n" +
+        "\n" +
+        "    /**\n" +
+        "     * Adds the Main_ classes that passed without output to the given set.\n" +
+        "     *\n" +
+        "     * @return the index to resume the batch from, or -1 if all tests ran.\n" +
+        "     */\n" +
+        "    private static int parseOutput(String output, Set<String> passed) {\n" +
+        "        int next = 0;\n" +
+        "        StringBuilder testOutput = null;\n" +
+        "        for (String line : output.split(\"\\r?\\n\")) {\n" +
+        "            if (line.startsWith(MARKER + \" start \")) {\n" +
+        "                next = Integer.parseInt(line.split(\" \")[2]) + 1;\n" +
+        "                testOutput = new StringBuilder();\n" +
+        "            } else if (line.startsWith(MARKER + \" end \")) {\n" +
+        "                String[] parts = line.split(\" \");\n" +
+        "                // A sucessful test prints nothing, as when run in its own VM.\n" +
+        "                if (testOutput != null && testOutput.length() == 0 &&\n" +
+        "                        \"PASS\".equals(parts[4])) {\n" +
+        "                    passed.add(parts[3]);\n" +
+        "                }\n" +
+        "                testOutput = null;\n" +
+        "            } else if (line.equals(MARKER + \" done\")) {\n" +
+        "                return -1;\n" +
+        "            } else if (testOutput != null) {\n" +
+        "                testOutput.append(line).append('\\n');\n" +
+        "            }\n" +
+        "        }\n" +
+        "        return next;\n" +
+        "    }\n" +
+        "}\n";
+        writeToFileMkdir(toWrite, content);
+        hostJunitBuildStep.addSourceFile(toWrite.getAbsolutePath());
+    }
+
     private void handleTests() throws IOException {
         System.out.println("collected " + testMethodsCnt + " test methods in " +
                 testClassCnt + " junit test classes");
@@ -311,6 +480,8 @@ public class BuildDalvikSuite {
             String instPrefix = "new " + classOnlyName + "()";
 
             openCTSHostFileFor(pName, classOnlyName);
+            // the Main_ classes of this test class and their class paths, one per line
+            String batchContent = "";
 
             curJunitFileData += "\n" +
                     "protected IAbi mAbi;\n" +
@@ -347,7 +518,7 @@ public class BuildDalvikSuite {
                 Set<String> dependentTestClassNames = parseTestClassName(pName,
                         classOnlyName, methodContent);
 
-                addCTSHostMethod(pName, method, md, dependentTestClassNames);
+                addCTSHostMethod(pName, classOnlyName, method, md, dependentTestClassNames);
 
 
                 if (dependentTestClassNames.isEmpty()) {
@@ -368,6 +539,9 @@ public class BuildDalvikSuite {
                 writeToFile(sourceFile, content);
                 srcBuildStep.addSourceFile(sourceFile.getAbsolutePath());
 
+                batchContent += pName + ".Main_" + method + " " +
+                        getTargetClassPath(dependentTestClassNames) + "\n";
+
                 // prepare the entry in the data file for the bash script.
                 // e.g.
                 // main class to execute; opcode/constraint; test purpose
@@ -451,42 +625,99 @@ public class BuildDalvikSuite {
                         targets);
             }
 
+            writeToFileMkdir(new File(OUTPUT_FOLDER, getBatchFileName(pName, classOnlyName)),
+                    batchContent);
 
         }
 
+        BuildStep mainsBuildStep = srcBuildStep;
         if (!useJack) {
           DxBuildStep dexBuildStep = new DxBuildStep(
               new BuildStep.BuildFile(new File(CLASSES_OUTPUT_FOLDER)),
               new BuildStep.BuildFile(new File(mainsJar)),
               false);
-
-          targets.add(dexBuildStep);
+          dexBuildStep.addChild(srcBuildStep);
+          mainsBuildStep = dexBuildStep;
         }
 
         // write latest HOSTJUNIT generated file.
         flushHostJunitFile();
+        writeHostBatchRunner();
 
         File scriptDataDir = new File(OUTPUT_FOLDER + "/data/");
         scriptDataDir.mkdirs();
         writeToFile(new File(scriptDataDir, "scriptdata"), datafileContent);
 
-        if (!hostJunitBuildStep.build()) {
-            System.out.println("main javac cts-host-hostjunit-classes build step failed");
-            System.exit(1);
+        // The steps do not depend on each other. With jack, most of them run jack in its own
+        // process and can all build at the same time. Without jack, most of them run dx or dasm,
+        // which are serialized by BuildStep.DX_LOCK, so more threads would only wait.
+        LinkedHashMap<BuildStep, String> steps = new LinkedHashMap<BuildStep, String>();
+        steps.put(hostJunitBuildStep, "main javac cts-host-hostjunit-classes build step failed");
+        steps.put(mainsBuildStep, "main src dalvik-cts-buildutil build step failed");
+        for (BuildStep buildStep : targets) {
+            steps.put(buildStep, "building failed. buildStep: " +
+                    buildStep.getClass().getName() + ", " + buildStep);
         }
-
-        if (!srcBuildStep.build()) {
-            System.out.println("main src dalvik-cts-buildutil build step failed");
+        int threads = useJack ? Runtime.getRuntime().availableProcessors() : DX_BUILD_THREADS;
+        if (!buildAll(steps, threads)) {
             System.exit(1);
         }
+        if (buildCache != null) {
+            buildCache.prune();
+        }
+    }
 
-        for (BuildStep buildStep : targets) {
-            if (!buildStep.build()) {
-                System.out.println("building failed. buildStep: " +
-                        buildStep.getClass().getName() + ", " + buildStep);
-                System.exit(1);
+    /**
+     * Builds the given steps on a pool of threads.
+     *
+     * @param steps the steps to build, each mapped to the message printed if it fails.
+     * @param threads the number of steps to build at the same time.
+     * @return true if all steps were built, false if one failed.
+     */
+    private static boolean buildAll(Map<BuildStep, String> steps, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            LinkedHashMap<Future<Boolean>, String> results =
+                    new LinkedHashMap<Future<Boolean>, String>();
+            for (Entry<BuildStep, String> step : steps.entrySet()) {
+                final BuildStep buildStep = step.getKey();
+                results.put(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return buildStep.build();
+                    }
+                }), step.getValue());
             }
+            for (Entry<Future<Boolean>, String> result : results.entrySet()) {
+                if (!result.getKey().get()) {
+                    System.out.println(result.getValue());
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("interrupted while building", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds a step building the given output file of a dependant test class, built from the
+     * given input file only unless the output of the same input is in the build cache.
+     */
+    private void addTarget(Set<BuildStep> targets, BuildStep buildStep, String recipe,
+            File inputFile) {
+        if (buildCache != null) {
+            buildStep = new CachedBuildStep(buildStep, buildCache, recipe,
+                    Collections.singletonList(inputFile));
         }
+        targets.add(buildStep);
     }
 
     private void generateBuildStepFor(String pName, String method,
@@ -519,7 +750,7 @@ public class BuildDalvikSuite {
                     "classes.dex", jarFile, true);
             jarBuildStep.addChild(buildStep);
 
-            targets.add(jarBuildStep);
+            addTarget(targets, jarBuildStep, "dfh " + fileName, inputFile.fileName);
             return;
         }
 
@@ -538,24 +769,29 @@ public class BuildDalvikSuite {
             JarBuildStep jarBuildStep = new JarBuildStep(dexFile,
                     "classes.dex", jarFile, true);
             jarBuildStep.addChild(buildStep);
-            targets.add(jarBuildStep);
+            addTarget(targets, jarBuildStep, "dasm " + fileName, inputFile.fileName);
             return;
         }
 
         File srcFile = new File(sourceFolder, fileName + ".java");
         if (srcFile.exists()) {
-            BuildStep dexBuildStep;
             if (useJack) {
                 JackBuildStep jackBuildStep = new JackBuildStep(
                     OUTPUT_FOLDER + File.separator + fileName + ".jar",
                         CLASS_PATH);
                 jackBuildStep.addSourceFile(srcFile.getAbsolutePath());
-                dexBuildStep = jackBuildStep;
+                // the source is compiled against the class path
+                String recipe = "jack " + fileName;
+                for (String entry : CLASS_PATH.split(File.pathSeparator)) {
+                    recipe += " " + BuildCache.getStamp(new File(entry));
+                }
+                addTarget(targets, jackBuildStep, recipe, srcFile);
             } else {
-              dexBuildStep = generateDexBuildStep(
+              BuildStep dexBuildStep = generateDexBuildStep(
                 COMPILED_CLASSES_FOLDER, fileName, null);
+              addTarget(targets, dexBuildStep, "dx " + fileName,
+                  new File(COMPILED_CLASSES_FOLDER, fileName + ".class"));
             }
-            targets.add(dexBuildStep);
             return;
         }
 
@@ -575,7 +811,8 @@ public class BuildDalvikSuite {
                 }
                 BuildStep dexBuildStep = generateDexBuildStep(
                     COMPILED_CLASSES_FOLDER, fileName, jillBuildStep);
-                targets.add(dexBuildStep);
+                addTarget(targets, dexBuildStep, (useJack ? "jill " : "dx ") + fileName,
+                    new File(COMPILED_CLASSES_FOLDER, fileName + ".class"));
                 return;
             }
         } catch (ClassNotFoundException e) {
@@ -705,110 +942,100 @@ public class BuildDalvikSuite {
 
         String path = pname.replaceAll("\\.", "/");
         String absPath = JAVASRC_FOLDER + "/" + path + "/" + classOnlyName + ".java";
-        File f = new File(absPath);
 
-        Scanner scanner;
-        try {
-            scanner = new Scanner(f);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("error while reading to file: " + e.getClass().getName() +
-                    ", msg:" + e.getMessage());
+        // all test methods of a class are looked up in turn, so index each file only once
+        Map<String, MethodData> methods;
+        synchronized (methodIndex) {
+            methods = methodIndex.get(absPath);
+            if (methods == null) {
+                methods = indexTestMethods(new File(absPath));
+                methodIndex.put(absPath, methods);
+            }
         }
 
-        String methodPattern = "public\\s+void\\s+" + method + "[^\\{]+\\{";
-
-        String token = scanner.findWithinHorizon(methodPattern, (int) f.length());
-        if (token == null) {
+        MethodData md = methods.get(method);
+        if (md == null) {
             throw new RuntimeException("cannot find method source of 'public void " + method +
                     "' in file '" + absPath + "'");
         }
 
-        MatchResult result = scanner.match();
-        result.start();
-        result.end();
+        if (!md.hasJavadoc) {
+            System.err.println("warning: no javadoc found for method " + method + " in " + pname +
+                    "," + classOnlyName);
+        } else {
+            if (md.title == null) {
+                System.err.println("warning: no @title found for method " + method + " in " +
+                        pname + "," + classOnlyName);
+            }
+            if (md.constraint == null && method.contains("VFE")) {
+                System.err
+                .println("warning: no @constraint for for a VFE method:" + method + " in " +
+                        pname + "," + classOnlyName);
+            }
+        }
+        return md;
+    }
 
-        StringBuilder builder = new StringBuilder();
-        //builder.append(token);
+    /**
+     * Reads the given test source once and extracts every "public void" method in it: its body
+     * after the opening brace, and the @title/@constraint of its javadoc comment.
+     *
+     * @return the methods by name, keeping the first one of methods with the same name
+     */
+    private static Map<String, MethodData> indexTestMethods(File f) {
+        // using platform's default charset
+        String all = new String(FileUtils.readFile(f));
+        Map<String, MethodData> methods = new HashMap<String, MethodData>();
 
-        try {
-            FileReader reader = new FileReader(f);
-            reader.skip(result.end());
+        Matcher methodM = METHOD_PATTERN.matcher(all);
+        while (methodM.find()) {
+            String method = methodM.group(1);
+            if (methods.containsKey(method)) {
+                continue;
+            }
 
-            char currentChar;
+            // the body, up to and including the closing brace
             int blocks = 1;
-            while ((currentChar = (char) reader.read()) != -1 && blocks > 0) {
-                switch (currentChar) {
-                    case '}': {
-                        blocks--;
-                        builder.append(currentChar);
-                        break;
-                    }
-                    case '{': {
-                        blocks++;
-                        builder.append(currentChar);
-                        break;
-                    }
-                    default: {
-                        builder.append(currentChar);
-                        break;
-                    }
+            int end = methodM.end();
+            while (end < all.length() && blocks > 0) {
+                char currentChar = all.charAt(end++);
+                if (currentChar == '}') {
+                    blocks--;
+                } else if (currentChar == '{') {
+                    blocks++;
                 }
             }
-            if (reader != null) {
-                reader.close();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("failed to parse", e);
-        }
 
-        // find the @title/@constraint in javadoc comment for this method
-        // using platform's default charset
-        String all = new String(FileUtils.readFile(f));
-        // System.out.println("grepping javadoc found for method " + method +
-        // " in " + pname + "," + classOnlyName);
-        String commentPattern = "/\\*\\*([^{]*)\\*/\\s*" + methodPattern;
-        Pattern p = Pattern.compile(commentPattern, Pattern.DOTALL);
-        Matcher m = p.matcher(all);
-        String title = null, constraint = null;
-        if (m.find()) {
-            String res = m.group(1);
-            // System.out.println("res: " + res);
-            // now grep @title and @constraint
-            Matcher titleM = Pattern.compile("@title (.*)", Pattern.DOTALL)
-            .matcher(res);
-            if (titleM.find()) {
-                title = titleM.group(1).replaceAll("\\n     \\*", "");
-                title = title.replaceAll("\\n", " ");
-                title = title.trim();
-                // System.out.println("title: " + title);
-            } else {
-                System.err.println("warning: no @title found for method " + method + " in " + pname +
-                        "," + classOnlyName);
+            MethodData md = new MethodData();
+            md.methodBody = all.substring(methodM.end(), end);
+
+            // find the javadoc comment for this method: the last comment before the method,
+            // without any brace between its start and the method
+            int commentEnd = methodM.start();
+            while (commentEnd > 0 && Character.isWhitespace(all.charAt(commentEnd - 1))) {
+                commentEnd--;
             }
-            // constraint can be one line only
-            Matcher constraintM = Pattern.compile("@constraint (.*)").matcher(
-                    res);
-            if (constraintM.find()) {
-                constraint = constraintM.group(1);
-                constraint = constraint.trim();
-                // System.out.println("constraint: " + constraint);
-            } else if (method.contains("VFE")) {
-                System.err
-                .println("warning: no @constraint for for a VFE method:" + method + " in " +
-                        pname + "," + classOnlyName);
+            int commentStart = all.indexOf("/**", all.lastIndexOf('{', commentEnd) + 1);
+            if (commentStart >= 0 && commentStart + 3 <= commentEnd - 2
+                    && all.startsWith("*/", commentEnd - 2)) {
+                md.hasJavadoc = true;
+                String res = all.substring(commentStart + 3, commentEnd - 2);
+                // now grep @title and @constraint
+                Matcher titleM = TITLE_PATTERN.matcher(res);
+                if (titleM.find()) {
+                    String title = titleM.group(1).replaceAll("\\n     \\*", "");
+                    title = title.replaceAll("\\n", " ");
+                    md.title = title.trim();
+                }
+                // constraint can be one line only
+                Matcher constraintM = CONSTRAINT_PATTERN.matcher(res);
+                if (constraintM.find()) {
+                    md.constraint = constraintM.group(1).trim();
+                }
             }
-        } else {
-            System.err.println("warning: no javadoc found for method " + method + " in " + pname +
-                    "," + classOnlyName);
-        }
-        MethodData md = new MethodData();
-        md.methodBody = builder.toString();
-        md.constraint = constraint;
-        md.title = title;
-        if (scanner != null) {
-            scanner.close();
+            methods.put(method, md);
         }
-        return md;
+        return methods;
     }
 
     private void writeToFileMkdir(File file, String content) {
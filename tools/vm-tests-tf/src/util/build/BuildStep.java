@@ -78,6 +78,10 @@ abstract class BuildStep implements Comparable<BuildStep> {
         this.outputFile = new BuildFile(output);
     }
 
+    // dx, which dasm is built on, keeps global state and is not reentrant, so only one step at a
+    // time may use them when steps are built in parallel.
+    static final Object DX_LOCK = new Object();
+
     private Set<BuildStep> children;
 
     boolean build() {
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Builds a step only if its output is not in the {@link BuildCache} for its current inputs.
+ */
+class CachedBuildStep extends BuildStep {
+
+    private final BuildStep step;
+    private final BuildCache cache;
+    private final String recipe;
+    private final List<File> inputs;
+
+    /**
+     * @param step the step to build, with its children
+     * @param cache the cache of the step's output
+     * @param recipe what the step does, besides its inputs, see {@link BuildCache#getKey}
+     * @param inputs all files the step's output is built from
+     */
+    CachedBuildStep(BuildStep step, BuildCache cache, String recipe, List<File> inputs) {
+        super(step.outputFile.fileName);
+        this.step = step;
+        this.cache = cache;
+        this.recipe = recipe;
+        this.inputs = inputs;
+    }
+
+    @Override
+    boolean build() {
+        String key;
+        try {
+            key = cache.getKey(recipe, inputs);
+        } catch (IOException e) {
+            System.err.println("warning: not caching " + outputFile.getPath() + ": "
+                    + e.getMessage());
+            return step.build();
+        }
+
+        if (cache.restore(key, outputFile.fileName)) {
+            return true;
+        }
+        if (!step.build()) {
+            return false;
+        }
+        cache.store(key, outputFile.fileName);
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (super.equals(obj)) {
+            return step.equals(((CachedBuildStep) obj).step);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return step.hashCode() ^ 41;
+    }
+}
@@ -43,7 +43,9 @@ class DasmBuildStep extends BuildStep {
     @Override
     boolean build() {
         if (super.build()) {
-            return assemble(inputFile.fileName);
+            synchronized (DX_LOCK) {
+                return assemble(inputFile.fileName);
+            }
         }
         return false;
     }
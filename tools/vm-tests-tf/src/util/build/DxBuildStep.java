@@ -42,7 +42,9 @@ public class DxBuildStep extends BuildStep {
 
             int result = 0;
             try {
-                result = Main.run(args);
+                synchronized (DX_LOCK) {
+                    result = Main.run(args);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
                 return false;
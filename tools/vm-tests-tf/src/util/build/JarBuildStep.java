@@ -37,9 +37,26 @@ public class JarBuildStep extends BuildStep {
     @Override
     boolean build() {
         if (super.build()) {
+            File outDir = outputFile.fileName.getParentFile();
+            if (!outDir.exists() && !outDir.mkdirs()) {
+                System.err.println("failed to create output dir: "
+                        + outDir.getAbsolutePath());
+                return false;
+            }
+
+            File sourceFolder = inputFile.folder;
             File tempFile = new File(inputFile.folder, destFileName);
             try {
                 if (!inputFile.fileName.equals(tempFile)) {
+                    // copy to a folder of this step only, as steps building in parallel may
+                    // use the same destFileName
+                    sourceFolder = new File(outDir, outputFile.fileName.getName() + ".tmp");
+                    tempFile = new File(sourceFolder, destFileName);
+                    if (!tempFile.getParentFile().exists() && !tempFile.getParentFile().mkdirs()) {
+                        System.err.println("failed to create temp dir: "
+                                + tempFile.getParentFile().getAbsolutePath());
+                        return false;
+                    }
                     copyFile(inputFile.fileName, tempFile);
                 } else {
                     tempFile = null;
@@ -50,29 +67,24 @@ public class JarBuildStep extends BuildStep {
                 return false;
             }
 
-            File outDir = outputFile.fileName.getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
-                System.err.println("failed to create output dir: "
-                        + outDir.getAbsolutePath());
-                return false;
-            }
             String[] arguments = new String[] {
                     "-cMf", outputFile.fileName.getAbsolutePath(), "-C",
-                    inputFile.folder.getAbsolutePath(), destFileName};
+                    sourceFolder.getAbsolutePath(), destFileName};
             Main main = new Main(System.out, System.err, "jar");
             boolean success = main.run(arguments);
 
+            if (tempFile != null) {
+                tempFile.delete();
+                sourceFolder.delete();
+            }
             if (success) {
-                if (tempFile != null) {
-                    tempFile.delete();
-                }
                 if (deleteInputFileAfterBuild) {
                     inputFile.fileName.delete();
                 }
             } else {
                 System.err.println("exception in JarBuildStep while calling jar with args:" +
                         " \"-cMf\", "+outputFile.fileName.getAbsolutePath()+", \"-C\"," + 
-                        inputFile.folder.getAbsolutePath()+", "+ destFileName);
+                        sourceFolder.getAbsolutePath()+", "+ destFileName);
             }
             return success;
         }